@@ -22,9 +22,17 @@ package org.sonar.plugins.cpd;
 import org.slf4j.Logger;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.config.Settings;
 
 public abstract class CpdEngine implements BatchExtension {
 
+  /**
+   * Number of threads used to tokenize files and to detect duplications. Default value is 1.
+   *
+   * @since 5.1
+   */
+  public static final String THREADS_PROPERTY = "sonar.cpd.threads";
+
   abstract boolean isLanguageSupported(String language);
 
   abstract void analyse(String language, SensorContext context);
@@ -41,6 +49,10 @@ public abstract class CpdEngine implements BatchExtension {
     }
   }
 
+  protected static int getThreads(Settings settings) {
+    return Math.max(1, settings.getInt(THREADS_PROPERTY));
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -20,6 +20,7 @@
 
 package org.sonar.plugins.cpd;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
@@ -43,7 +44,6 @@ import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.BlockChunker;
 import org.sonar.duplications.detector.suffixtree.SuffixTreeCloneDetectionAlgorithm;
 import org.sonar.duplications.index.CloneGroup;
-import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.duplications.java.JavaStatementBuilder;
 import org.sonar.duplications.java.JavaTokenProducer;
@@ -59,13 +59,22 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class JavaCpdEngine extends CpdEngine {
 
@@ -76,7 +85,7 @@ public class JavaCpdEngine extends CpdEngine {
   /**
    * Limit of time to analyse one file (in seconds).
    */
-  private static final int TIMEOUT = 5 * 60;
+  static final int TIMEOUT = 5 * 60;
 
   private final IndexFactory indexFactory;
   private final FileSystem fs;
@@ -112,79 +121,162 @@ public class JavaCpdEngine extends CpdEngine {
     if (sourceFiles.isEmpty()) {
       return;
     }
-    SonarDuplicationsIndex index = createIndex(project, languageKey, sourceFiles);
-    detect(index, context, sourceFiles);
+    int threads = getThreads(settings);
+    SonarDuplicationsIndex index = createIndex(project, languageKey, sourceFiles, threads);
+    detect(index, context, sourceFiles, threads, null);
   }
 
-  private SonarDuplicationsIndex createIndex(@Nullable Project project, String language, Iterable<InputFile> sourceFiles) {
+  /**
+   * Files are tokenized concurrently, but blocks are inserted into the index by the calling thread,
+   * in the order of files. The number of files tokenized but not inserted yet is bounded to limit memory consumption.
+   */
+  private SonarDuplicationsIndex createIndex(@Nullable Project project, String language, List<InputFile> sourceFiles, int threads) {
     final SonarDuplicationsIndex index = indexFactory.create(project, language);
+    // chunkers are not thread-safe
+    ThreadLocal<Chunkers> chunkers = new ThreadLocal<Chunkers>() {
+      @Override
+      protected Chunkers initialValue() {
+        return new Chunkers();
+      }
+    };
+
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      Deque<InputFile> pendingFiles = new ArrayDeque<InputFile>();
+      Deque<Future<List<Block>>> pendingBlocks = new ArrayDeque<Future<List<Block>>>();
+      for (InputFile inputFile : sourceFiles) {
+        pendingFiles.add(inputFile);
+        pendingBlocks.add(executorService.submit(new ChunkTask(inputFile, fs.encoding(), chunkers)));
+        if (pendingBlocks.size() >= 2 * threads) {
+          insertNext(index, pendingFiles, pendingBlocks);
+        }
+      }
+      while (!pendingBlocks.isEmpty()) {
+        insertNext(index, pendingFiles, pendingBlocks);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    return index;
+  }
+
+  private static void insertNext(SonarDuplicationsIndex index, Deque<InputFile> pendingFiles, Deque<Future<List<Block>>> pendingBlocks) {
+    InputFile inputFile = pendingFiles.poll();
+    try {
+      index.insert(inputFile, pendingBlocks.poll().get());
+    } catch (InterruptedException e) {
+      throw new SonarException("Fail to populate index from " + inputFile, e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof SonarException) {
+        throw (SonarException) e.getCause();
+      }
+      throw new SonarException("Fail to populate index from " + inputFile, e);
+    }
+  }
+
+  private static class Chunkers {
+    private final TokenChunker tokenChunker = JavaTokenProducer.build();
+    private final StatementChunker statementChunker = JavaStatementBuilder.build();
+    private final BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+  }
 
-    TokenChunker tokenChunker = JavaTokenProducer.build();
-    StatementChunker statementChunker = JavaStatementBuilder.build();
-    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+  private static class ChunkTask implements Callable<List<Block>> {
+    private final InputFile inputFile;
+    private final Charset encoding;
+    private final ThreadLocal<Chunkers> chunkers;
+
+    ChunkTask(InputFile inputFile, Charset encoding, ThreadLocal<Chunkers> chunkers) {
+      this.inputFile = inputFile;
+      this.encoding = encoding;
+      this.chunkers = chunkers;
+    }
 
-    for (InputFile inputFile : sourceFiles) {
+    @Override
+    public List<Block> call() {
       LOG.debug("Populating index from {}", inputFile);
       String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
+      Chunkers threadChunkers = chunkers.get();
 
       List<Statement> statements;
 
       Reader reader = null;
       try {
-        reader = new InputStreamReader(new FileInputStream(inputFile.file()), fs.encoding());
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
+        reader = new InputStreamReader(new FileInputStream(inputFile.file()), encoding);
+        statements = threadChunkers.statementChunker.chunk(threadChunkers.tokenChunker.chunk(reader));
       } catch (FileNotFoundException e) {
         throw new SonarException("Cannot find file " + inputFile.file(), e);
       } finally {
         IOUtils.closeQuietly(reader);
       }
 
-      List<Block> blocks = blockChunker.chunk(resourceEffectiveKey, statements);
-      index.insert(inputFile, blocks);
+      return threadChunkers.blockChunker.chunk(resourceEffectiveKey, statements);
     }
-
-    return index;
   }
 
-  private void detect(SonarDuplicationsIndex index, org.sonar.api.batch.sensor.SensorContext context, List<InputFile> sourceFiles) {
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+  /**
+   * Detects and saves the duplications of each file. Detection is executed on a pool of threads, while
+   * results are saved by the calling thread, in the order of files. As at most one file per thread is submitted
+   * at a time, the timeout of a file approximately starts with its detection.
+   * <p/>
+   * Detection is sequential if the index does not support concurrent queries.
+   */
+  static void detect(SonarDuplicationsIndex index, SensorContext context, List<InputFile> sourceFiles, int threads,
+    @Nullable Predicate<CloneGroup> filter) {
+    int poolSize = index.supportsConcurrentQueries() ? threads : 1;
+    ExecutorService executorService = Executors.newFixedThreadPool(poolSize);
     try {
+      Deque<InputFile> pendingFiles = new ArrayDeque<InputFile>();
+      Deque<Future<List<CloneGroup>>> pendingClones = new ArrayDeque<Future<List<CloneGroup>>>();
       for (InputFile inputFile : sourceFiles) {
-        LOG.debug("Detection of duplications for {}", inputFile);
-        String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
-
-        Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
-
-        List<CloneGroup> clones;
-        try {
-          clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          clones = null;
-          LOG.warn("Timeout during detection of duplications for " + inputFile, e);
-        } catch (InterruptedException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
-        } catch (ExecutionException e) {
-          throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+        pendingFiles.add(inputFile);
+        pendingClones.add(executorService.submit(new Task(index, inputFile)));
+        if (pendingClones.size() >= poolSize) {
+          saveNext(context, pendingFiles, pendingClones, filter);
         }
-
-        save(context, inputFile, clones);
+      }
+      while (!pendingClones.isEmpty()) {
+        saveNext(context, pendingFiles, pendingClones, filter);
       }
     } finally {
       executorService.shutdown();
     }
   }
 
+  private static void saveNext(SensorContext context, Deque<InputFile> pendingFiles, Deque<Future<List<CloneGroup>>> pendingClones,
+    @Nullable Predicate<CloneGroup> filter) {
+    InputFile inputFile = pendingFiles.poll();
+    Future<List<CloneGroup>> future = pendingClones.poll();
+    Iterable<CloneGroup> clones;
+    try {
+      List<CloneGroup> duplications = future.get(TIMEOUT, TimeUnit.SECONDS);
+      clones = filter == null ? duplications : Iterables.filter(duplications, filter);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      clones = null;
+      LOG.warn("Timeout during detection of duplications for " + inputFile, e);
+    } catch (InterruptedException e) {
+      throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Fail during detection of duplication for " + inputFile, e);
+    }
+
+    save(context, inputFile, clones);
+  }
+
   static class Task implements Callable<List<CloneGroup>> {
-    private final CloneIndex index;
-    private final Collection<Block> fileBlocks;
+    private final SonarDuplicationsIndex index;
+    private final InputFile inputFile;
 
-    public Task(CloneIndex index, Collection<Block> fileBlocks) {
+    public Task(SonarDuplicationsIndex index, InputFile inputFile) {
       this.index = index;
-      this.fileBlocks = fileBlocks;
+      this.inputFile = inputFile;
     }
 
     @Override
     public List<CloneGroup> call() {
+      LOG.debug("Detection of duplications for {}", inputFile);
+      String resourceEffectiveKey = ((DeprecatedDefaultInputFile) inputFile).key();
+      Collection<Block> fileBlocks = index.getByInputFile(inputFile, resourceEffectiveKey);
       return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
     }
   }
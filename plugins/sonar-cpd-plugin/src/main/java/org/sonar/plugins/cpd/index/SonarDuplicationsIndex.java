@@ -52,6 +52,14 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
     }
   }
 
+  /**
+   * The in-memory index supports concurrent queries once all the blocks are inserted. The database index
+   * does not, as it caches the candidates of the file being analysed.
+   */
+  public boolean supportsConcurrentQueries() {
+    return db == null;
+  }
+
   public Collection<Block> getByInputFile(InputFile inputFile, String resourceKey) {
     if (db != null) {
       db.prepareCache(inputFile);
@@ -131,6 +131,32 @@ public class CpdMediumTest {
     assertThat(cloneGroupFile2.duplicates().get(0).resourceKey()).isEqualTo(((DefaultInputFile) inputFile1).key());
   }
 
+  @Test
+  public void testCrossFileDuplicationsWithSeveralThreads() throws IOException {
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+
+    String duplicatedStuff = "Sample xoo\ncontent\nfoo\nbar\ntoto\ntiti\nfoo\nbar\ntoto\ntiti\nbar\ntoto\ntiti\nfoo\nbar\ntoto\ntiti";
+    for (int i = 0; i < 10; i++) {
+      FileUtils.write(new File(srcDir, "sample" + i + ".xoo"), duplicatedStuff);
+    }
+
+    TaskResult result = tester.newTask()
+      .properties(builder
+        .put("sonar.sources", "src")
+        .put("sonar.cpd.xoo.minimumTokens", "10")
+        .put("sonar.cpd.threads", "4")
+        .build())
+      .start();
+
+    assertThat(result.inputFiles()).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      List<DuplicationGroup> duplicationGroups = result.duplicationsFor(result.inputFile("src/sample" + i + ".xoo"));
+      assertThat(duplicationGroups).hasSize(1);
+      assertThat(duplicationGroups.get(0).duplicates()).hasSize(9);
+    }
+  }
+
   @Test
   public void testIntraFileDuplications() throws IOException {
     File srcDir = new File(baseDir, "src");
@@ -0,0 +1,99 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.graph.CycleDetector;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.IncrementalCyclesAndFESSolver;
+import org.sonar.graph.StringEdge;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Search of cycles and feedback edges on synthetic dependency graphs, as done by the DSM decorators.
+ * Classes are grouped in clusters with many dependencies between classes of the same cluster,
+ * while clusters depend only on previous clusters.
+ */
+public class CycleSolverBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkCycleSolver");
+  private static final int CLUSTER_SIZE = 30;
+  private static final int DEPENDENCIES_PER_CLASS = 3;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Test
+  public void benchmark_small_graph() throws Exception {
+    long duration = benchmark(500);
+    benchmark.expectLessThanOrEqualTo("Time to solve graph of 500 vertices (ms)", duration, 1000L);
+  }
+
+  @Test
+  public void benchmark_big_graph() throws Exception {
+    long duration = benchmark(3000);
+    benchmark.expectLessThanOrEqualTo("Time to solve graph of 3000 vertices (ms)", duration, 5000L);
+  }
+
+  private long benchmark(int nbVertices) {
+    DirectedGraph<String, StringEdge> graph = newGraph(nbVertices, new Random(nbVertices));
+
+    long start = System.currentTimeMillis();
+    IncrementalCyclesAndFESSolver<String> solver = new IncrementalCyclesAndFESSolver<String>(graph, graph.getVertices());
+    long duration = System.currentTimeMillis() - start;
+
+    LOGGER.info(String.format("%d vertices, %d cycles, %d feedback edges (weight %d) in %d ms (%d iterations)",
+      nbVertices, solver.getCycles().size(), solver.getFeedbackEdgeSet().size(), solver.getWeightOfFeedbackEdgeSet(),
+      duration, solver.getIterations()));
+
+    // removing feedback edges must break all the cycles
+    assertThat(new CycleDetector<String>(graph, solver.getFeedbackEdgeSet()).detectCycles()).isEmpty();
+    return duration;
+  }
+
+  private static DirectedGraph<String, StringEdge> newGraph(int nbVertices, Random random) {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    int nbClusters = nbVertices / CLUSTER_SIZE;
+    for (int cluster = 0; cluster < nbClusters; cluster++) {
+      for (int i = 0; i < CLUSTER_SIZE; i++) {
+        String from = "C" + (cluster * CLUSTER_SIZE + i);
+        for (int dep = 0; dep < DEPENDENCIES_PER_CLASS; dep++) {
+          addEdge(graph, from, "C" + (cluster * CLUSTER_SIZE + random.nextInt(CLUSTER_SIZE)), random);
+        }
+        if (cluster > 0 && i == 0) {
+          addEdge(graph, from, "C" + ((cluster - 1) * CLUSTER_SIZE + random.nextInt(CLUSTER_SIZE)), random);
+        }
+      }
+    }
+    return graph;
+  }
+
+  private static void addEdge(DirectedGraph<String, StringEdge> graph, String from, String to, Random random) {
+    if (!graph.hasEdge(from, to)) {
+      graph.addEdge(from, to, 1 + random.nextInt(5));
+    }
+  }
+}
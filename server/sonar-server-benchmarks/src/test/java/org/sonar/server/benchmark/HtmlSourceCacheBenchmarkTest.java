@@ -0,0 +1,99 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+import org.sonar.server.source.HtmlSourceCache;
+import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.index.SourceLineDoc;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time to render pages of decorated source lines, when {@link HtmlSourceCache} is empty (cold)
+ * and when it contains the lines (warm)
+ */
+public class HtmlSourceCacheBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkHtmlSourceCache");
+  private static final int FILES = 10;
+  private static final int LINES_PER_FILE = 2000;
+  private static final int PAGES = 10;
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Test
+  public void benchmark() throws Exception {
+    // large enough to keep all the lines
+    HtmlSourceCache cache = new HtmlSourceCache(new HtmlSourceDecorator(), new Settings().setProperty(HtmlSourceCache.SIZE_PROPERTY, 64));
+    List<List<SourceLineDoc>> files = Lists.newArrayList();
+    for (int i = 0; i < FILES; i++) {
+      files.add(newFile("FILE" + i));
+    }
+
+    long cold = render(cache, files);
+    LOGGER.info(String.format("Cold render of %d lines: %d ms", FILES * LINES_PER_FILE, cold));
+
+    long warm = 0L;
+    for (int i = 0; i < PAGES; i++) {
+      warm += render(cache, files);
+    }
+    warm /= PAGES;
+    LOGGER.info(String.format("Warm render of %d lines: %d ms", FILES * LINES_PER_FILE, warm));
+    LOGGER.info(String.format("Cache: %d hits, %d misses, %d lines", cache.hitCount(), cache.missCount(), cache.size()));
+
+    assertThat(cache.missCount()).isEqualTo((long) FILES * LINES_PER_FILE);
+    benchmark.expectLessThanOrEqualTo("Time of warm render (ms)", warm, cold);
+  }
+
+  private long render(HtmlSourceCache cache, List<List<SourceLineDoc>> files) {
+    long start = System.currentTimeMillis();
+    for (List<SourceLineDoc> lines : files) {
+      for (SourceLineDoc line : lines) {
+        cache.getDecoratedSourceAsHtml(line);
+      }
+    }
+    return System.currentTimeMillis() - start;
+  }
+
+  private static List<SourceLineDoc> newFile(String fileUuid) {
+    Date updatedAt = new Date();
+    List<SourceLineDoc> lines = Lists.newArrayList();
+    for (int line = 1; line <= LINES_PER_FILE; line++) {
+      lines.add(new SourceLineDoc()
+        .setFileUuid(fileUuid)
+        .setLine(line)
+        .setUpdateDate(updatedAt)
+        .setSource("    public static final String FIELD_" + line + " = \"value\"; // comment < 42")
+        .setHighlighting("4,10,k;11,17,k;18,23,k;24,30,k;43,50,s;52,66,cd")
+        .setSymbols("31,37," + line));
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.issue.Issue;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+import org.sonar.api.utils.System2;
+import org.sonar.api.utils.internal.Uuids;
+import org.sonar.server.computation.issue.DefaultIssueCodec;
+import org.sonar.server.util.CloseableIterator;
+import org.sonar.server.util.cache.DiskCache;
+import org.sonar.server.util.cache.DiskCodec;
+import org.sonar.server.util.cache.JavaSerializationCodec;
+
+import java.io.File;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the codecs of the cache of issues used by the Compute Engine
+ */
+public class IssueCacheBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkIssueCache");
+
+  final static int ISSUES = 500000;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Test
+  public void benchmark() throws Exception {
+    long javaSerialization = benchmarkCodec("java serialization", new JavaSerializationCodec<DefaultIssue>(), DiskCache.Compression.NONE);
+    long binary = benchmarkCodec("binary", new DefaultIssueCodec(), DiskCache.Compression.NONE);
+    benchmarkCodec("binary + deflate", new DefaultIssueCodec(), DiskCache.Compression.DEFLATE);
+
+    benchmark.expectLessThanOrEqualTo("Binary codec is faster than Java serialization", binary, javaSerialization);
+  }
+
+  /**
+   * @return the time in ms to write then read all the issues
+   */
+  private long benchmarkCodec(String label, DiskCodec<DefaultIssue> codec, DiskCache.Compression compression) throws Exception {
+    File file = temp.newFile();
+    DiskCache<DefaultIssue> cache = new DiskCache<>(file, System2.INSTANCE, codec, compression);
+
+    long start = System.currentTimeMillis();
+    try (DiskCache<DefaultIssue>.DiskAppender appender = cache.newAppender()) {
+      for (int i = 0; i < ISSUES; i++) {
+        appender.append(newIssue(i));
+      }
+    }
+    long writePeriod = System.currentTimeMillis() - start;
+
+    start = System.currentTimeMillis();
+    int count = 0;
+    try (CloseableIterator<DefaultIssue> issues = cache.traverse()) {
+      while (issues.hasNext()) {
+        issues.next();
+        count++;
+      }
+    }
+    long readPeriod = System.currentTimeMillis() - start;
+    assertThat(count).isEqualTo(ISSUES);
+
+    LOGGER.info(String.format("%s: %d issues written in %d ms (%d issues/second), read in %d ms (%d issues/second), file size: %s",
+      label, ISSUES, writePeriod, 1000L * ISSUES / Math.max(1L, writePeriod), readPeriod, 1000L * ISSUES / Math.max(1L, readPeriod),
+      FileUtils.byteCountToDisplaySize(file.length())));
+    return writePeriod + readPeriod;
+  }
+
+  private DefaultIssue newIssue(int index) {
+    Date now = new Date();
+    String key = Uuids.create();
+    DefaultIssue issue = new DefaultIssue()
+      .setKey(key)
+      .setComponentUuid("FILE" + (index / 100))
+      .setComponentKey("project:src/main/java/Foo" + (index / 100) + ".java")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".PROJECT1.MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("project")
+      .setRuleKey(RuleKey.of("squid", "rule" + (index % 1000)))
+      .setLanguage("java")
+      .setSeverity(Severity.ALL.get(index % Severity.ALL.size()))
+      .setMessage(index + " this is the message. Not too short.")
+      .setLine(1 + index % 1000)
+      .setEffortToFix(3.14)
+      .setDebt(Duration.create(10L))
+      .setStatus(Issue.STATUS_OPEN)
+      .setChecksum("c7b5db46591806455cf082bb348631e8")
+      .setAuthorLogin("guy" + (index % 200))
+      .setCreationDate(now)
+      .setUpdateDate(now);
+    if (index % 10 == 0) {
+      issue.addComment(DefaultIssueComment.create(key, "guy1", "this issue is a false-positive"));
+      issue.setFieldChange(IssueChangeContext.createScan(now), "severity", Severity.MINOR, Severity.MAJOR);
+    }
+    return issue;
+  }
+}
@@ -30,10 +30,12 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.internal.Uuids;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.issue.IssueQuery;
 import org.sonar.server.issue.index.IssueAuthorizationDao;
 import org.sonar.server.issue.index.IssueAuthorizationIndexer;
@@ -99,26 +101,40 @@ public class IssueIndexBenchmarkTest {
   }
 
   private void benchmarkIssueIndexing() {
-    LOGGER.info("Indexing issues");
-    IssueIterator issues = new IssueIterator(PROJECTS, FILES_PER_PROJECT, ISSUES_PER_FILE);
+    // half of the projects are indexed with synchronous bulk requests, the other half with asynchronous requests
+    long syncThroughput = indexIssues(new IssueIterator(0, PROJECTS / 2, FILES_PER_PROJECT, ISSUES_PER_FILE), 0);
+    benchmark.expectBetween("Throughput to index issues synchronously", syncThroughput, 3000, 3400);
+
+    int concurrentRequests = PartitionedIndexing.threads(tester.get(Settings.class));
+    long asyncThroughput = indexIssues(new IssueIterator(PROJECTS / 2, PROJECTS - PROJECTS / 2, FILES_PER_PROJECT, ISSUES_PER_FILE), concurrentRequests);
+    // upper bound depends on the number of cores, so range is large
+    benchmark.expectBetween("Throughput to index issues asynchronously", asyncThroughput, 3000, 6000);
+
+    // be sure that physical files do not evolve during estimation of size
+    tester.get(EsClient.class).prepareOptimize("issues").get();
+    long dirSize = FileUtils.sizeOfDirectory(tester.getEsServerHolder().getHomeDir());
+    LOGGER.info(String.format("ES dir: " + FileUtils.byteCountToDisplaySize(dirSize)));
+    benchmark.expectBetween("ES dir size (b)", dirSize, 200L * FileUtils.ONE_MB, 420L * FileUtils.ONE_MB);
+  }
+
+  /**
+   * @return throughput in docs/second
+   */
+  private long indexIssues(IssueIterator issues, int concurrentRequests) {
+    LOGGER.info(String.format("Indexing issues with %d concurrent bulk requests", concurrentRequests));
     ProgressTask progressTask = new ProgressTask(LOGGER, "issues", issues.count());
     Timer timer = new Timer("IssuesIndex");
     timer.schedule(progressTask, ProgressTask.PERIOD_MS, ProgressTask.PERIOD_MS);
 
     long start = System.currentTimeMillis();
-    tester.get(IssueIndexer.class).index(issues);
+    tester.get(IssueIndexer.class).index(issues, concurrentRequests);
 
     timer.cancel();
     long period = System.currentTimeMillis() - start;
     long throughputPerSecond = 1000 * issues.count.get() / period;
-    LOGGER.info(String.format("%d issues indexed in %d ms (%d docs/second)", issues.count.get(), period, throughputPerSecond));
-    benchmark.expectBetween("Throughput to index issues", throughputPerSecond, 3000, 3400);
-
-    // be sure that physical files do not evolve during estimation of size
-    tester.get(EsClient.class).prepareOptimize("issues").get();
-    long dirSize = FileUtils.sizeOfDirectory(tester.getEsServerHolder().getHomeDir());
-    LOGGER.info(String.format("ES dir: " + FileUtils.byteCountToDisplaySize(dirSize)));
-    benchmark.expectBetween("ES dir size (b)", dirSize, 200L * FileUtils.ONE_MB, 420L * FileUtils.ONE_MB);
+    LOGGER.info(String.format("%d issues indexed in %d ms (%d docs/second, %d concurrent bulk requests)", issues.count.get(), period, throughputPerSecond,
+      concurrentRequests));
+    return throughputPerSecond;
   }
 
   private void benchmarkQueries() {
@@ -146,7 +162,7 @@ public class IssueIndexBenchmarkTest {
 
   private static class IssueIterator implements Iterator<IssueDoc> {
     private final int nbProjects, nbFilesPerProject, nbIssuesPerFile;
-    private int currentProject = 0, currentFile = 0;
+    private int currentProject, currentFile;
     private AtomicLong count = new AtomicLong(0L);
     private final Iterator<String> users = cycleIterator("guy", 200);
     private Iterator<String> rules = cycleIterator("squid:rule", 1000);
@@ -154,7 +170,9 @@ public class IssueIndexBenchmarkTest {
     private final Iterator<String> statuses = Iterables.cycle(Issue.STATUSES).iterator();
     private final Iterator<String> resolutions = Iterables.cycle(Issue.RESOLUTIONS).iterator();
 
-    IssueIterator(int nbProjects, int nbFilesPerProject, int nbIssuesPerFile) {
+    IssueIterator(int firstProject, int nbProjects, int nbFilesPerProject, int nbIssuesPerFile) {
+      this.currentProject = firstProject;
+      this.currentFile = firstProject * nbFilesPerProject;
       this.nbProjects = nbProjects;
       this.nbFilesPerProject = nbFilesPerProject;
       this.nbIssuesPerFile = nbIssuesPerFile;
@@ -0,0 +1,187 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.benchmark;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.core.issue.db.IssueBulkWriter;
+import org.sonar.core.issue.db.IssueChangeDto;
+import org.sonar.core.issue.db.IssueChangeMapper;
+import org.sonar.core.issue.db.IssueDto;
+import org.sonar.core.issue.db.IssueMapper;
+import org.sonar.core.issue.db.UpdateConflictResolver;
+import org.sonar.core.persistence.BatchSession;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.DbTester;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.Timer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of persistence of issues on H2, when statements are interleaved row by row (as
+ * done before {@link IssueBulkWriter}) and when they are grouped by {@link IssueBulkWriter}.
+ * A change is inserted every 10 issues.
+ */
+public class IssuePersistenceBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkIssuePersistence");
+  private static final int ISSUES = 1000000;
+  private static final long SELECTED_AT = 1500000000000L;
+
+  @Rule
+  public DbTester dbTester = new DbTester();
+
+  @Rule
+  public Benchmark benchmark = new Benchmark();
+
+  @Test
+  public void benchmark() throws Exception {
+    long interleaved = insertInterleavedStatements();
+    dbTester.truncateTables();
+
+    long bulk = insertWithBulkWriter();
+    assertThat(dbTester.countRowsOfTable("issues")).isEqualTo(ISSUES);
+    assertThat(dbTester.countRowsOfTable("issue_changes")).isEqualTo(ISSUES / 10);
+
+    updateWithBulkWriter();
+    assertThat(dbTester.countSql("select count(*) from issues where status='RESOLVED'")).isEqualTo(ISSUES);
+
+    benchmark.expectLessThanOrEqualTo("Time to insert issues with bulk writer (ms)", bulk, interleaved);
+  }
+
+  private long insertInterleavedStatements() {
+    LOGGER.info("Insert issues and changes row by row");
+    DbSession session = dbTester.myBatis().openSession(true);
+    IssueMapper mapper = session.getMapper(IssueMapper.class);
+    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
+    AtomicLong counter = new AtomicLong();
+    Timer timer = startProgress(counter);
+    try {
+      long start = System.currentTimeMillis();
+      int count = 0;
+      for (int i = 0; i < ISSUES; i++) {
+        mapper.insert(newIssue(i));
+        count++;
+        if (i % 10 == 0) {
+          changeMapper.insert(newChange(i));
+          count++;
+        }
+        if (count > BatchSession.MAX_BATCH_SIZE) {
+          session.flushStatements();
+          session.commit();
+          count = 0;
+        }
+        counter.incrementAndGet();
+      }
+      session.flushStatements();
+      session.commit();
+      return logThroughput("inserted row by row", start);
+    } finally {
+      timer.cancel();
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private long insertWithBulkWriter() {
+    LOGGER.info("Insert issues and changes with bulk writer");
+    DbSession session = dbTester.myBatis().openSession(true);
+    IssueBulkWriter writer = new IssueBulkWriter(session, new UpdateConflictResolver());
+    AtomicLong counter = new AtomicLong();
+    Timer timer = startProgress(counter);
+    try {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < ISSUES; i++) {
+        writer.insert(newIssue(i));
+        if (i % 10 == 0) {
+          writer.insertChange(newChange(i));
+        }
+        counter.incrementAndGet();
+      }
+      writer.flush();
+      return logThroughput("inserted with bulk writer", start);
+    } finally {
+      timer.cancel();
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private void updateWithBulkWriter() {
+    LOGGER.info("Update issues with bulk writer and detection of conflicts");
+    DbSession session = dbTester.myBatis().openSession(true);
+    IssueBulkWriter writer = new IssueBulkWriter(session, new UpdateConflictResolver());
+    AtomicLong counter = new AtomicLong();
+    Timer timer = startProgress(counter);
+    try {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < ISSUES; i++) {
+        IssueDto dto = newIssue(i).setStatus("RESOLVED").setSelectedAt(SELECTED_AT);
+        writer.updateIfBeforeSelectedDate(new DefaultIssue().setKey(dto.getKee()), dto);
+        counter.incrementAndGet();
+      }
+      writer.flush();
+      logThroughput("updated with bulk writer", start);
+    } finally {
+      timer.cancel();
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  private Timer startProgress(AtomicLong counter) {
+    ProgressTask progress = new ProgressTask(LOGGER, "issues", counter);
+    Timer timer = new Timer("IssuePersistence");
+    timer.schedule(progress, ProgressTask.PERIOD_MS, ProgressTask.PERIOD_MS);
+    return timer;
+  }
+
+  private long logThroughput(String label, long start) {
+    long period = System.currentTimeMillis() - start;
+    LOGGER.info(String.format("%d issues %s in %d ms (%d issues/second)", ISSUES, label, period, 1000L * ISSUES / Math.max(period, 1L)));
+    return period;
+  }
+
+  private static IssueDto newIssue(int index) {
+    return new IssueDto()
+      .setKee("ISSUE_" + index)
+      .setRuleId(10)
+      .setComponentUuid("FILE_" + (index / 100))
+      .setProjectUuid("PROJECT")
+      .setSeverity("MAJOR")
+      .setStatus("OPEN")
+      .setMessage("message " + index)
+      .setLine(index % 1000)
+      .setCreatedAt(1400000000000L)
+      .setUpdatedAt(1400000000000L);
+  }
+
+  private static IssueChangeDto newChange(int index) {
+    return new IssueChangeDto()
+      .setIssueKey("ISSUE_" + index)
+      .setChangeType(IssueChangeDto.TYPE_COMMENT)
+      .setChangeData("comment " + index)
+      .setCreatedAt(1400000000000L)
+      .setUpdatedAt(1400000000000L);
+  }
+}
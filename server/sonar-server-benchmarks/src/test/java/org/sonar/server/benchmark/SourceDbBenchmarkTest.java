@@ -19,6 +19,9 @@
  */
 package org.sonar.server.benchmark;
 
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -28,13 +31,18 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.internal.Uuids;
 import org.sonar.core.persistence.DbTester;
 import org.sonar.core.source.db.FileSourceDao;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.source.index.SourceLineResultSetIterator;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Timer;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -52,10 +60,42 @@ public class SourceDbBenchmarkTest {
 
   @Test
   public void benchmark() throws Exception {
-    prepareFileSources();
+    prepareFileSources(false);
     scrollRows();
   }
 
+  @Test
+  public void benchmark_binary_data() throws Exception {
+    prepareFileSources(true);
+    scrollRows();
+    readScmAuthors();
+  }
+
+  /**
+   * Only the column of SCM authors is decoded, as done when computing issues
+   */
+  private void readScmAuthors() throws SQLException {
+    LOGGER.info("Read SCM authors from FILE_SOURCES.BINARY_DATA");
+    Connection connection = dbTester.openConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      long start = System.currentTimeMillis();
+      long count = 0L;
+      stmt = connection.prepareStatement("SELECT binary_data FROM file_sources");
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        String[] authors = FileSourceData.decodeColumn(rs.getBytes(1), FileSourceDto.CSV_INDEX_SCM_AUTHOR);
+        assertThat(authors).hasSize(3220);
+        count++;
+      }
+      long period = System.currentTimeMillis() - start;
+      LOGGER.info(String.format("SCM authors of %d files read in %d ms (%d files/second)", count, period, 1000L * count / Math.max(period, 1L)));
+    } finally {
+      DbUtils.closeQuietly(connection, stmt, rs);
+    }
+  }
+
   private void scrollRows() throws SQLException {
     LOGGER.info("Scroll table FILE_SOURCES");
     DbClient dbClient = new DbClient(dbTester.database(), dbTester.myBatis());
@@ -85,11 +125,39 @@ public class SourceDbBenchmarkTest {
     }
   }
 
-  private void prepareFileSources() throws IOException {
+  private void prepareFileSources(boolean binary) throws IOException {
     LOGGER.info("Populate table FILE_SOURCES");
     FileSourceDao dao = new FileSourceDao(dbTester.myBatis());
+    FileSourceData binaryData = binary ? toBinaryData() : null;
     for (int i = 0; i < NUMBER_OF_FILES; i++) {
-      dao.insert(newFileSourceDto());
+      FileSourceDto dto = newFileSourceDto();
+      if (binaryData != null) {
+        dto.setData(null);
+        dto.setBinaryData(binaryData.getBytes());
+        dto.setDataHash(binaryData.getHash());
+      }
+      dao.insert(dto);
+    }
+  }
+
+  private FileSourceData toBinaryData() throws IOException {
+    String csv = IOUtils.toString(getClass().getResourceAsStream("SourceDbBenchmarkTest/data.txt"));
+    CSVParser parser = new CSVParser(new StringReader(csv), CSVFormat.DEFAULT);
+    try {
+      List<CSVRecord> records = parser.getRecords();
+      FileSourceData.Builder builder = FileSourceData.newBuilder(records.size());
+      for (int line = 1; line <= records.size(); line++) {
+        CSVRecord record = records.get(line - 1);
+        String[] values = new String[FileSourceData.NB_COLUMNS];
+        for (int column = 0; column < FileSourceData.SOURCE_INDEX; column++) {
+          values[column] = record.get(column);
+        }
+        values[FileSourceData.SOURCE_INDEX] = record.get(record.size() - 1);
+        builder.setLine(line, values);
+      }
+      return builder.build();
+    } finally {
+      parser.close();
     }
   }
 
@@ -22,6 +22,7 @@ package org.sonar.server.computation;
 
 import com.google.common.base.Throwables;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.ServerComponent;
@@ -61,12 +62,15 @@ public class ComputationService implements ServerComponent {
   public void process(AnalysisReportDto report) {
     TimeProfiler profiler = new TimeProfiler(LOG).start(String.format(
       "#%s - %s - processing analysis report", report.getId(), report.getProjectKey()));
+    logQueueLatency(report);
 
     ComponentDto project = loadProject(report);
-    File reportDir = tempFolder.newDir();
+    File reportZip = tempFolder.newFile("report", ".zip");
+    BatchOutputReader reader = null;
     try {
-      decompressReport(report, reportDir);
-      ComputationContext context = new ComputationContext(report, project, new BatchOutputReader(reportDir));
+      copyReport(report, reportZip);
+      reader = BatchOutputReader.fromZip(reportZip);
+      ComputationContext context = new ComputationContext(report, project, reader);
       for (ComputationStep step : steps.orderedSteps()) {
         TimeProfiler stepProfiler = new TimeProfiler(LOG).start(step.getDescription());
         step.execute(context);
@@ -79,12 +83,20 @@ public class ComputationService implements ServerComponent {
       throw Throwables.propagate(e);
 
     } finally {
-      FileUtils.deleteQuietly(reportDir);
+      IOUtils.closeQuietly(reader);
+      FileUtils.deleteQuietly(reportZip);
       logActivity(report, project);
       profiler.stop();
     }
   }
 
+  private void logQueueLatency(AnalysisReportDto report) {
+    if (report.getCreatedAt() != null && report.getStartedAt() != null) {
+      LOG.info(String.format("#%s - %s - analysis report waited %dms in queue",
+        report.getId(), report.getProjectKey(), report.getStartedAt() - report.getCreatedAt()));
+    }
+  }
+
   private ComponentDto loadProject(AnalysisReportDto report) {
     DbSession session = dbClient.openSession(false);
     try {
@@ -105,15 +117,15 @@ public class ComputationService implements ServerComponent {
     }
   }
 
-  private void decompressReport(AnalysisReportDto report, File toDir) {
+  private void copyReport(AnalysisReportDto report, File toFile) {
     long startTime = System.currentTimeMillis();
     DbSession session = dbClient.openSession(false);
     try {
-      dbClient.analysisReportDao().selectAndDecompressToDir(session, report.getId(), toDir);
+      dbClient.analysisReportDao().selectAndCopyToFile(session, report.getId(), toFile);
     } finally {
       MyBatis.closeQuietly(session);
     }
     long stopTime = System.currentTimeMillis();
-    LOG.info("Analysis report loaded and uncompressed in " + (stopTime - startTime) + "ms (project=" + report.getProjectKey() + ")");
+    LOG.info("Analysis report loaded in " + (stopTime - startTime) + "ms (project=" + report.getProjectKey() + ")");
   }
 }
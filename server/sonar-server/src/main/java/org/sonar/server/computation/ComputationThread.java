@@ -27,8 +27,12 @@ import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.server.computation.step.ComputationSteps;
 import org.sonar.server.platform.Platform;
 
+import javax.annotation.CheckForNull;
+
 /**
- * This thread pops queue of reports and processes the report if present
+ * This thread pops queue of reports and processes the reports until the queue is empty.
+ * Several instances can be executed concurrently, the queue guarantees that reports of a same project
+ * are not processed at the same time.
  */
 public class ComputationThread implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(ComputationThread.class);
@@ -41,13 +45,8 @@ public class ComputationThread implements Runnable {
 
   @Override
   public void run() {
-    AnalysisReportDto report = null;
-    try {
-      report = queue.pop();
-    } catch (Exception e) {
-      LOG.error("Failed to pop the queue of analysis reports", e);
-    }
-    if (report != null) {
+    AnalysisReportDto report = popSilently();
+    while (report != null) {
       try {
         process(report);
       } catch (Exception e) {
@@ -56,6 +55,17 @@ public class ComputationThread implements Runnable {
       } finally {
         removeSilentlyFromQueue(report);
       }
+      report = popSilently();
+    }
+  }
+
+  @CheckForNull
+  private AnalysisReportDto popSilently() {
+    try {
+      return queue.pop();
+    } catch (Exception e) {
+      LOG.error("Failed to pop the queue of analysis reports", e);
+      return null;
     }
   }
 
@@ -77,9 +87,7 @@ public class ComputationThread implements Runnable {
       child.getComponentByType(ComputationService.class).process(report);
     } finally {
       child.stopComponents();
-      // TODO not possible to have multiple children -> will be
-      // a problem when we will have multiple concurrent computation workers
-      container.removeChild();
+      container.removeChild(child);
     }
   }
 }
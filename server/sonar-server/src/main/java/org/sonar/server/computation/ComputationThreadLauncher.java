@@ -24,6 +24,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.picocontainer.Startable;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.platform.ServerStartHandler;
 
@@ -36,32 +37,46 @@ public class ComputationThreadLauncher implements Startable, ServerComponent, Se
 
   public static final String THREAD_NAME_PREFIX = "computation-";
 
+  /**
+   * Number of analysis reports that can be processed concurrently. Reports of a same project
+   * are always processed sequentially.
+   */
+  public static final String WORKERS_PROPERTY = "sonar.computation.workers";
+  public static final int DEFAULT_WORKERS = 1;
+
   private final AnalysisReportQueue queue;
   private final ScheduledExecutorService executorService;
+  private final int workers;
 
   private final long delayBetweenTasks;
   private final long delayForFirstStart;
   private final TimeUnit timeUnit;
 
-  public ComputationThreadLauncher(AnalysisReportQueue queue) {
-    this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(threadFactoryWithSpecificNameForLogging());
-
-    this.delayBetweenTasks = 10;
-    this.delayForFirstStart = 0;
-    this.timeUnit = TimeUnit.SECONDS;
+  public ComputationThreadLauncher(AnalysisReportQueue queue, Settings settings) {
+    this(queue, workers(settings), 0, 10, TimeUnit.SECONDS);
   }
 
   @VisibleForTesting
   ComputationThreadLauncher(AnalysisReportQueue queue, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
+    this(queue, DEFAULT_WORKERS, delayForFirstStart, delayBetweenTasks, timeUnit);
+  }
+
+  @VisibleForTesting
+  ComputationThreadLauncher(AnalysisReportQueue queue, int workers, long delayForFirstStart, long delayBetweenTasks, TimeUnit timeUnit) {
     this.queue = queue;
-    this.executorService = Executors.newSingleThreadScheduledExecutor(threadFactoryWithSpecificNameForLogging());
+    this.workers = workers;
+    this.executorService = Executors.newScheduledThreadPool(workers, threadFactoryWithSpecificNameForLogging());
 
     this.delayBetweenTasks = delayBetweenTasks;
     this.delayForFirstStart = delayForFirstStart;
     this.timeUnit = timeUnit;
   }
 
+  private static int workers(Settings settings) {
+    int workers = settings.getInt(WORKERS_PROPERTY);
+    return workers > 0 ? workers : DEFAULT_WORKERS;
+  }
+
   @Override
   public void start() {
     // do nothing because we want to wait for the server to finish startup
@@ -72,13 +87,22 @@ public class ComputationThreadLauncher implements Startable, ServerComponent, Se
     executorService.shutdown();
   }
 
+  /**
+   * Wakes up a worker so that a newly submitted report does not wait for the next poll of the queue.
+   */
   public void startAnalysisTaskNow() {
     executorService.execute(new ComputationThread(queue));
   }
 
   @Override
   public void onServerStart(Server server) {
-    executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    for (int i = 0; i < workers; i++) {
+      executorService.scheduleAtFixedRate(new ComputationThread(queue), delayForFirstStart, delayBetweenTasks, timeUnit);
+    }
+  }
+
+  int getWorkers() {
+    return workers;
   }
 
   /**
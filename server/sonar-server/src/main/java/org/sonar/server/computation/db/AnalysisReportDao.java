@@ -22,9 +22,9 @@ package org.sonar.server.computation.db;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
-import org.sonar.api.utils.ZipUtils;
 import org.sonar.core.computation.db.AnalysisReportDto;
 import org.sonar.core.computation.db.AnalysisReportMapper;
 import org.sonar.core.persistence.DaoComponent;
@@ -38,7 +38,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.*;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.PENDING;
 import static org.sonar.core.computation.db.AnalysisReportDto.Status.WORKING;
@@ -78,13 +80,19 @@ public class AnalysisReportDao implements DaoComponent {
 
   @CheckForNull
   public AnalysisReportDto pop(DbSession session) {
-    List<Long> reportIds = mapper(session).selectAvailables(PENDING, WORKING);
-    if (reportIds.isEmpty()) {
-      return null;
+    List<AnalysisReportDto> candidates = mapper(session).selectAvailables(PENDING, WORKING);
+    // a candidate can be booked concurrently by another worker. In this case the next
+    // reports of the same project must not be popped, as reports of a project are processed in order.
+    Set<String> bookedProjectKeys = new HashSet<>();
+    for (AnalysisReportDto candidate : candidates) {
+      if (bookedProjectKeys.add(candidate.getProjectKey())) {
+        AnalysisReportDto report = tryToPop(session, candidate.getId());
+        if (report != null) {
+          return report;
+        }
+      }
     }
-
-    long reportId = reportIds.get(0);
-    return tryToPop(session, reportId);
+    return null;
   }
 
   @VisibleForTesting
@@ -151,8 +159,10 @@ public class AnalysisReportDao implements DaoComponent {
     }
   }
 
-  @CheckForNull
-  public void selectAndDecompressToDir(DbSession session, long id, File toDir) {
+  /**
+   * Copies the zipped report as-is, without decompressing it
+   */
+  public void selectAndCopyToFile(DbSession session, long id, File toFile) {
     Connection connection = session.getConnection();
     InputStream stream = null;
     PreparedStatement ps = null;
@@ -165,14 +175,13 @@ public class AnalysisReportDao implements DaoComponent {
       if (rs.next()) {
         stream = rs.getBinaryStream(1);
         if (stream != null) {
-          ZipUtils.unzip(stream, toDir);
+          FileUtils.copyInputStreamToFile(stream, toFile);
         }
       }
-      // TODO what to do if id not found or no stream ?
     } catch (SQLException e) {
       throw new IllegalStateException(String.format("Failed to read report '%d' in the database", id), e);
     } catch (IOException e) {
-      throw new IllegalStateException(String.format("Failed to decompress report '%d'", id), e);
+      throw new IllegalStateException(String.format("Failed to copy report '%d' to %s", id, toFile), e);
     } finally {
       IOUtils.closeQuietly(stream);
       DatabaseUtils.closeQuietly(rs);
@@ -0,0 +1,395 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.issue.IssueComment;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.Duration;
+import org.sonar.server.util.cache.DiskCodec;
+import org.sonar.server.util.cache.JavaSerializationCodec;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of {@link DefaultIssue}, much faster and more compact than Java serialization.
+ * Fields are written in a fixed order, so any change of {@link DefaultIssue} must be reflected
+ * in both {@link #write(DefaultIssue, DataOutput)} and {@link #read(DataInput)}.
+ */
+public class DefaultIssueCodec implements DiskCodec<DefaultIssue> {
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte LONG = 2;
+  private static final byte INTEGER = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte DATE = 6;
+  private static final byte SERIALIZED = 7;
+
+  private final JavaSerializationCodec<Serializable> fallbackCodec = new JavaSerializationCodec<>();
+
+  @Override
+  public void write(DefaultIssue issue, DataOutput output) throws IOException {
+    writeString(output, issue.key());
+    writeString(output, issue.componentUuid());
+    writeString(output, issue.componentKey());
+    writeString(output, issue.moduleUuid());
+    writeString(output, issue.moduleUuidPath());
+    writeString(output, issue.projectUuid());
+    writeString(output, issue.projectKey());
+    RuleKey ruleKey = issue.ruleKey();
+    output.writeBoolean(ruleKey != null);
+    if (ruleKey != null) {
+      writeString(output, ruleKey.repository());
+      writeString(output, ruleKey.rule());
+    }
+    writeString(output, issue.language());
+    writeString(output, issue.severity());
+    output.writeBoolean(issue.manualSeverity());
+    writeString(output, issue.message());
+    writeValue(output, issue.line());
+    writeValue(output, issue.effortToFix());
+    writeValue(output, issue.debtInMinutes());
+    writeString(output, issue.status());
+    writeString(output, issue.resolution());
+    writeString(output, issue.reporter());
+    writeString(output, issue.assignee());
+    writeString(output, issue.checksum());
+    writeStringMap(output, issue.attributes());
+    writeString(output, issue.authorLogin());
+    writeString(output, issue.actionPlanKey());
+    writeComments(output, issue.comments());
+    writeStrings(output, issue.tags());
+    writeDate(output, issue.creationDate());
+    writeDate(output, issue.updateDate());
+    writeDate(output, issue.closeDate());
+    writeChanges(output, issue.changes(), issue.currentChange());
+    output.writeBoolean(issue.isNew());
+    output.writeBoolean(issue.isEndOfLife());
+    output.writeBoolean(issue.isOnDisabledRule());
+    output.writeBoolean(issue.isChanged());
+    output.writeBoolean(issue.mustSendNotifications());
+    writeValue(output, issue.selectedAt());
+  }
+
+  @Override
+  public DefaultIssue read(DataInput input) throws IOException {
+    DefaultIssue issue = new DefaultIssue();
+    issue.setKey(readString(input));
+    issue.setComponentUuid(readString(input));
+    issue.setComponentKey(readString(input));
+    issue.setModuleUuid(readString(input));
+    issue.setModuleUuidPath(readString(input));
+    issue.setProjectUuid(readString(input));
+    issue.setProjectKey(readString(input));
+    if (input.readBoolean()) {
+      issue.setRuleKey(RuleKey.of(readString(input), readString(input)));
+    }
+    issue.setLanguage(readString(input));
+    issue.setSeverity(readString(input));
+    issue.setManualSeverity(input.readBoolean());
+    issue.setMessage(readString(input));
+    issue.setLine((Integer) readValue(input));
+    issue.setEffortToFix((Double) readValue(input));
+    Long debt = (Long) readValue(input);
+    issue.setDebt(debt != null ? Duration.create(debt) : null);
+    String status = readString(input);
+    if (status != null) {
+      issue.setStatus(status);
+    }
+    issue.setResolution(readString(input));
+    issue.setReporter(readString(input));
+    issue.setAssignee(readString(input));
+    issue.setChecksum(readString(input));
+    issue.setAttributes(readStringMap(input));
+    issue.setAuthorLogin(readString(input));
+    issue.setActionPlanKey(readString(input));
+    readComments(input, issue);
+    List<String> tags = readStrings(input);
+    if (tags != null) {
+      issue.setTags(tags);
+    }
+    issue.setCreationDate(readDate(input));
+    issue.setUpdateDate(readDate(input));
+    issue.setCloseDate(readDate(input));
+    readChanges(input, issue);
+    issue.setNew(input.readBoolean());
+    issue.setEndOfLife(input.readBoolean());
+    issue.setOnDisabledRule(input.readBoolean());
+    issue.setChanged(input.readBoolean());
+    issue.setSendNotifications(input.readBoolean());
+    issue.setSelectedAt((Long) readValue(input));
+    return issue;
+  }
+
+  private void writeComments(DataOutput output, List<IssueComment> comments) throws IOException {
+    output.writeInt(comments.size());
+    for (IssueComment comment : comments) {
+      DefaultIssueComment defaultComment = (DefaultIssueComment) comment;
+      writeString(output, defaultComment.issueKey());
+      writeString(output, defaultComment.userLogin());
+      writeDate(output, defaultComment.createdAt());
+      writeDate(output, defaultComment.updatedAt());
+      writeString(output, defaultComment.key());
+      writeString(output, defaultComment.markdownText());
+      output.writeBoolean(defaultComment.isNew());
+    }
+  }
+
+  private void readComments(DataInput input, DefaultIssue issue) throws IOException {
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      DefaultIssueComment comment = new DefaultIssueComment();
+      comment.setIssueKey(readString(input));
+      comment.setUserLogin(readString(input));
+      comment.setCreatedAt(readDate(input));
+      comment.setUpdatedAt(readDate(input));
+      comment.setKey(readString(input));
+      comment.setMarkdownText(readString(input));
+      comment.setNew(input.readBoolean());
+      issue.addComment(comment);
+    }
+  }
+
+  /**
+   * The list of changes can reference several times the same instance of {@link FieldDiffs}, including
+   * the current change, so distinct instances are written first, then the references to them.
+   */
+  private void writeChanges(DataOutput output, List<FieldDiffs> changes, @Nullable FieldDiffs currentChange) throws IOException {
+    Map<FieldDiffs, Integer> indices = new IdentityHashMap<>();
+    List<FieldDiffs> distinctChanges = Lists.newArrayList();
+    for (FieldDiffs change : changes) {
+      if (change != null && !indices.containsKey(change)) {
+        indices.put(change, distinctChanges.size());
+        distinctChanges.add(change);
+      }
+    }
+    if (currentChange != null && !indices.containsKey(currentChange)) {
+      indices.put(currentChange, distinctChanges.size());
+      distinctChanges.add(currentChange);
+    }
+
+    output.writeInt(distinctChanges.size());
+    for (FieldDiffs change : distinctChanges) {
+      writeFieldDiffs(output, change);
+    }
+    output.writeInt(changes.size());
+    for (FieldDiffs change : changes) {
+      output.writeInt(change == null ? -1 : indices.get(change));
+    }
+    output.writeInt(currentChange == null ? -1 : indices.get(currentChange));
+  }
+
+  private void readChanges(DataInput input, DefaultIssue issue) throws IOException {
+    int distinctSize = input.readInt();
+    List<FieldDiffs> distinctChanges = Lists.newArrayListWithCapacity(distinctSize);
+    for (int i = 0; i < distinctSize; i++) {
+      distinctChanges.add(readFieldDiffs(input));
+    }
+    int size = input.readInt();
+    List<FieldDiffs> changes = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      int index = input.readInt();
+      changes.add(index < 0 ? null : distinctChanges.get(index));
+    }
+    int currentIndex = input.readInt();
+    if (currentIndex >= 0) {
+      // setCurrentChange() also adds the change to the list, which is then replaced
+      issue.setCurrentChange(distinctChanges.get(currentIndex));
+    }
+    if (size > 0 || currentIndex >= 0) {
+      issue.setChanges(changes);
+    }
+  }
+
+  private void writeFieldDiffs(DataOutput output, FieldDiffs diffs) throws IOException {
+    writeString(output, diffs.issueKey());
+    writeString(output, diffs.userLogin());
+    writeDate(output, diffs.creationDate());
+    output.writeInt(diffs.diffs().size());
+    for (Map.Entry<String, FieldDiffs.Diff> entry : diffs.diffs().entrySet()) {
+      writeString(output, entry.getKey());
+      writeValue(output, entry.getValue().oldValue());
+      writeValue(output, entry.getValue().newValue());
+    }
+  }
+
+  private FieldDiffs readFieldDiffs(DataInput input) throws IOException {
+    FieldDiffs diffs = new FieldDiffs();
+    diffs.setIssueKey(readString(input));
+    diffs.setUserLogin(readString(input));
+    diffs.setCreationDate(readDate(input));
+    int size = input.readInt();
+    for (int i = 0; i < size; i++) {
+      String field = readString(input);
+      Serializable oldValue = readValue(input);
+      Serializable newValue = readValue(input);
+      diffs.setDiff(field, oldValue, newValue);
+    }
+    return diffs;
+  }
+
+  private static void writeString(DataOutput output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInput input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeStrings(DataOutput output, @Nullable Collection<String> strings) throws IOException {
+    if (strings == null) {
+      output.writeInt(-1);
+    } else {
+      output.writeInt(strings.size());
+      for (String s : strings) {
+        writeString(output, s);
+      }
+    }
+  }
+
+  @CheckForNull
+  private static List<String> readStrings(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size < 0) {
+      return null;
+    }
+    List<String> strings = Lists.newArrayListWithCapacity(size);
+    for (int i = 0; i < size; i++) {
+      strings.add(readString(input));
+    }
+    return strings;
+  }
+
+  private static void writeStringMap(DataOutput output, Map<String, String> map) throws IOException {
+    output.writeInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(output, entry.getKey());
+      writeString(output, entry.getValue());
+    }
+  }
+
+  @CheckForNull
+  private static Map<String, String> readStringMap(DataInput input) throws IOException {
+    int size = input.readInt();
+    if (size == 0) {
+      return null;
+    }
+    Map<String, String> map = Maps.newHashMapWithExpectedSize(size);
+    for (int i = 0; i < size; i++) {
+      map.put(readString(input), readString(input));
+    }
+    return map;
+  }
+
+  private static void writeDate(DataOutput output, @Nullable Date date) throws IOException {
+    output.writeBoolean(date != null);
+    if (date != null) {
+      output.writeLong(date.getTime());
+    }
+  }
+
+  @CheckForNull
+  private static Date readDate(DataInput input) throws IOException {
+    return input.readBoolean() ? new Date(input.readLong()) : null;
+  }
+
+  private void writeValue(DataOutput output, @Nullable Serializable value) throws IOException {
+    if (value == null) {
+      output.writeByte(NULL);
+    } else if (value instanceof String) {
+      output.writeByte(STRING);
+      writeString(output, (String) value);
+    } else if (value instanceof Long) {
+      output.writeByte(LONG);
+      output.writeLong((Long) value);
+    } else if (value instanceof Integer) {
+      output.writeByte(INTEGER);
+      output.writeInt((Integer) value);
+    } else if (value instanceof Double) {
+      output.writeByte(DOUBLE);
+      output.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      output.writeByte(BOOLEAN);
+      output.writeBoolean((Boolean) value);
+    } else if (value instanceof Date) {
+      output.writeByte(DATE);
+      output.writeLong(((Date) value).getTime());
+    } else {
+      output.writeByte(SERIALIZED);
+      fallbackCodec.write(value, output);
+    }
+  }
+
+  @CheckForNull
+  private Serializable readValue(DataInput input) throws IOException {
+    byte type = input.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(input);
+      case LONG:
+        return input.readLong();
+      case INTEGER:
+        return input.readInt();
+      case DOUBLE:
+        return input.readDouble();
+      case BOOLEAN:
+        return input.readBoolean();
+      case DATE:
+        return new Date(input.readLong());
+      case SERIALIZED:
+        return fallbackCodec.read(input);
+      default:
+        throw new IllegalStateException("Unsupported type of value: " + type);
+    }
+  }
+}
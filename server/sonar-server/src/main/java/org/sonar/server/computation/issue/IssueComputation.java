@@ -31,6 +31,7 @@ import org.sonar.server.computation.ComputationContext;
 import org.sonar.server.util.cache.DiskCache;
 
 import java.util.Date;
+import java.util.Iterator;
 
 public class IssueComputation {
 
@@ -47,9 +48,13 @@ public class IssueComputation {
     this.diskIssuesAppender = issueCache.newAppender();
   }
 
-  public void processComponentIssues(ComputationContext context, String componentUuid, Iterable<BatchOutput.ReportIssue> issues) {
+  /**
+   * Issues are consumed one by one, so memory does not depend on the number of issues of the component
+   */
+  public void processComponentIssues(ComputationContext context, String componentUuid, Iterator<BatchOutput.ReportIssue> issues) {
     linesCache.init(componentUuid);
-    for (BatchOutput.ReportIssue reportIssue : issues) {
+    while (issues.hasNext()) {
+      BatchOutput.ReportIssue reportIssue = issues.next();
       DefaultIssue issue = toDefaultIssue(context, componentUuid, reportIssue);
       if (issue.isNew()) {
         guessAuthor(issue);
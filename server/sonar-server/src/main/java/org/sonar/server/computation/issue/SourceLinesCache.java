@@ -26,6 +26,7 @@ import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.utils.DateUtils;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 
@@ -95,11 +96,36 @@ public class SourceLinesCache {
    */
   private void loadIfNeeded() {
     if (!loaded) {
-      dbClient.fileSourceDao().readDataStream(currentFileUuid, parserFunction);
+      byte[] binaryData = dbClient.fileSourceDao().selectBinaryData(currentFileUuid);
+      if (binaryData != null) {
+        loadBinaryData(binaryData);
+      } else {
+        dbClient.fileSourceDao().readDataStream(currentFileUuid, parserFunction);
+      }
       loaded = true;
     }
   }
 
+  /**
+   * Only the SCM columns are decompressed
+   */
+  private void loadBinaryData(byte[] binaryData) {
+    String[] lineAuthors = FileSourceData.decodeColumn(binaryData, FileSourceDto.CSV_INDEX_SCM_AUTHOR);
+    String[] lineDates = FileSourceData.decodeColumn(binaryData, FileSourceDto.CSV_INDEX_SCM_DATE);
+    for (int i = 0; i < lineAuthors.length; i++) {
+      addLine(lineAuthors[i], lineDates[i]);
+    }
+  }
+
+  private void addLine(@Nullable String author, @Nullable String date) {
+    authors.add(author);
+    Date revisionDate = DateUtils.parseDateTimeQuietly(date);
+    if (revisionDate != null && revisionDate.getTime() > lastCommitDate) {
+      lastCommitDate = revisionDate.getTime();
+      lastCommitAuthor = author;
+    }
+  }
+
   /**
    * Makes cache eligible to GC
    */
@@ -121,16 +147,8 @@ public class SourceLinesCache {
       try {
         csvParser = new CSVParser(input, CSVFormat.DEFAULT);
         for (CSVRecord csvRecord : csvParser) {
-          Date revisionDate = DateUtils.parseDateTimeQuietly(csvRecord.get(FileSourceDto.CSV_INDEX_SCM_DATE));
-
           // do not keep all fields in memory
-          String author = csvRecord.get(FileSourceDto.CSV_INDEX_SCM_AUTHOR);
-          authors.add(author);
-
-          if (revisionDate != null && revisionDate.getTime() > lastCommitDate) {
-            lastCommitDate = revisionDate.getTime();
-            lastCommitAuthor = author;
-          }
+          addLine(csvRecord.get(FileSourceDto.CSV_INDEX_SCM_AUTHOR), csvRecord.get(FileSourceDto.CSV_INDEX_SCM_DATE));
         }
         return null;
       } catch (Exception e) {
@@ -20,6 +20,7 @@
 
 package org.sonar.server.computation.step;
 
+import org.sonar.batch.protocol.MessageIterator;
 import org.sonar.batch.protocol.output.BatchOutputReader;
 import org.sonar.batch.protocol.output.BatchOutput;
 import org.sonar.server.computation.ComputationContext;
@@ -43,7 +44,12 @@ public class ParseReportStep implements ComputationStep {
   private void processComponent(ComputationContext context, int componentRef) {
     BatchOutputReader reader = context.getReportReader();
     BatchOutput.ReportComponent component = reader.readComponent(componentRef);
-    issueComputation.processComponentIssues(context, component.getUuid(), reader.readComponentIssues(componentRef));
+    MessageIterator<BatchOutput.ReportIssue> issues = reader.readComponentIssues(componentRef);
+    try {
+      issueComputation.processComponentIssues(context, component.getUuid(), issues);
+    } finally {
+      issues.close();
+    }
 
     for (Integer childRef : component.getChildRefsList()) {
       processComponent(context, childRef);
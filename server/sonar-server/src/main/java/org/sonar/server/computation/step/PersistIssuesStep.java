@@ -25,12 +25,10 @@ import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.DefaultIssueComment;
 import org.sonar.api.issue.internal.FieldDiffs;
 import org.sonar.api.utils.System2;
+import org.sonar.core.issue.db.IssueBulkWriter;
 import org.sonar.core.issue.db.IssueChangeDto;
-import org.sonar.core.issue.db.IssueChangeMapper;
 import org.sonar.core.issue.db.IssueDto;
-import org.sonar.core.issue.db.IssueMapper;
 import org.sonar.core.issue.db.UpdateConflictResolver;
-import org.sonar.core.persistence.BatchSession;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.server.computation.ComputationContext;
@@ -59,9 +57,7 @@ public class PersistIssuesStep implements ComputationStep {
   @Override
   public void execute(ComputationContext context) {
     DbSession session = dbClient.openSession(true);
-    IssueMapper mapper = session.getMapper(IssueMapper.class);
-    IssueChangeMapper changeMapper = session.getMapper(IssueChangeMapper.class);
-    int count = 0;
+    IssueBulkWriter writer = new IssueBulkWriter(session, conflictResolver);
 
     CloseableIterator<DefaultIssue> issues = issueCache.traverse();
     try {
@@ -70,60 +66,42 @@ public class PersistIssuesStep implements ComputationStep {
         boolean saved = false;
         if (issue.isNew()) {
           Integer ruleId = ruleCache.get(issue.ruleKey()).getId();
-          mapper.insert(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
-          count++;
+          writer.insert(IssueDto.toDtoForComputationInsert(issue, ruleId, system2.now()));
           saved = true;
         } else if (issue.isChanged()) {
           IssueDto dto = IssueDto.toDtoForUpdate(issue, system2.now());
           if (Issue.STATUS_CLOSED.equals(issue.status()) || issue.selectedAt() == null) {
             // Issue is closed by scan or changed by end-user
-            mapper.update(dto);
-            count++;
+            writer.update(dto);
           } else {
-            int updateCount = mapper.updateIfBeforeSelectedDate(dto);
-            count++;
-            if (updateCount == 0) {
-              // End-user and scan changed the issue at the same time.
-              // See https://jira.codehaus.org/browse/SONAR-4309
-              conflictResolver.resolve(issue, mapper);
-            }
+            // End-user and scan may change the issue at the same time.
+            // See https://jira.codehaus.org/browse/SONAR-4309
+            writer.updateIfBeforeSelectedDate(issue, dto);
           }
           saved = true;
         }
         if (saved) {
-          count += insertChanges(changeMapper, issue);
-          if (count > BatchSession.MAX_BATCH_SIZE) {
-            session.flushStatements();
-            session.commit();
-            count = 0;
-          }
+          insertChanges(writer, issue);
         }
       }
-      session.flushStatements();
-      session.commit();
+      writer.flush();
     } finally {
       MyBatis.closeQuietly(session);
       issues.close();
     }
   }
 
-  private int insertChanges(IssueChangeMapper mapper, DefaultIssue issue) {
-    int count = 0;
+  private void insertChanges(IssueBulkWriter writer, DefaultIssue issue) {
     for (IssueComment comment : issue.comments()) {
       DefaultIssueComment c = (DefaultIssueComment) comment;
       if (c.isNew()) {
-        IssueChangeDto changeDto = IssueChangeDto.of(c);
-        mapper.insert(changeDto);
-        count++;
+        writer.insertChange(IssueChangeDto.of(c));
       }
     }
     FieldDiffs diffs = issue.currentChange();
     if (!issue.isNew() && diffs != null) {
-      IssueChangeDto changeDto = IssueChangeDto.of(issue.key(), diffs);
-      mapper.insert(changeDto);
-      count++;
+      writer.insertChange(IssueChangeDto.of(issue.key(), diffs));
     }
-    return count;
   }
 
   @Override
@@ -0,0 +1,91 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.db.migrations.v51;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.IOUtils;
+import org.sonar.core.persistence.Database;
+import org.sonar.core.source.db.FileSourceData;
+import org.sonar.server.db.migrations.BaseDataChange;
+import org.sonar.server.db.migrations.MassUpdate;
+import org.sonar.server.db.migrations.Select;
+import org.sonar.server.db.migrations.SqlStatement;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Converts the CSV column FILE_SOURCES.DATA to the binary format of FILE_SOURCES.BINARY_DATA
+ *
+ * @since 5.1
+ */
+public class FeedFileSourcesBinaryData extends BaseDataChange {
+
+  public FeedFileSourcesBinaryData(Database db) {
+    super(db);
+  }
+
+  @Override
+  public void execute(Context context) throws SQLException {
+    MassUpdate update = context.prepareMassUpdate().rowPluralName("file sources");
+    update.select("SELECT id,data FROM file_sources WHERE data IS NOT NULL AND binary_data IS NULL");
+    update.update("UPDATE file_sources SET binary_data=?, data_hash=?, data=NULL WHERE id=?");
+    update.execute(new MassUpdate.Handler() {
+      @Override
+      public boolean handle(Select.Row row, SqlStatement update) throws SQLException {
+        Long fileSourceId = row.getLong(1);
+        FileSourceData data = toBinary(fileSourceId, row.getString(2));
+        update.setBytes(1, data.getBytes());
+        update.setString(2, data.getHash());
+        update.setLong(3, fileSourceId);
+        return true;
+      }
+    });
+  }
+
+  private FileSourceData toBinary(Long fileSourceId, String csvData) {
+    CSVParser parser = null;
+    try {
+      parser = new CSVParser(new StringReader(csvData), CSVFormat.DEFAULT);
+      List<CSVRecord> records = parser.getRecords();
+      FileSourceData.Builder builder = FileSourceData.newBuilder(records.size());
+      int line = 1;
+      for (CSVRecord record : records) {
+        String[] values = new String[FileSourceData.NB_COLUMNS];
+        // source is always the latest field
+        for (int i = 0; i < Math.min(FileSourceData.SOURCE_INDEX, record.size() - 1); i++) {
+          values[i] = record.get(i);
+        }
+        values[FileSourceData.SOURCE_INDEX] = record.get(record.size() - 1);
+        builder.setLine(line, values);
+        line++;
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to parse data of file source " + fileSourceId, e);
+    } finally {
+      IOUtils.closeQuietly(parser);
+    }
+  }
+}
@@ -22,6 +22,8 @@ package org.sonar.server.es;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
@@ -38,7 +40,12 @@ import org.sonar.server.util.ProgressLogger;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Helper to bulk requests in an efficient way :
@@ -46,6 +53,10 @@ import java.util.concurrent.atomic.AtomicLong;
  *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>{@link #add(ActionRequest)} can be called concurrently by several threads, each thread
+ *   sending the bulk requests that it fills</li>
+ *   <li>bulk requests can be sent asynchronously, see {@link #setConcurrentRequests(int)}</li>
+ *   <li>failed items are retried, with an exponential backoff between attempts</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
@@ -53,6 +64,8 @@ public class BulkIndexer implements Startable {
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(5, ByteSizeUnit.MB).bytes();
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final int MAX_RETRIES = 3;
+  private static final long INITIAL_BACKOFF_MS = 100L;
 
   private final EsClient client;
   private final String indexName;
@@ -61,6 +74,10 @@ public class BulkIndexer implements Startable {
   private long flushByteSize = FLUSH_BYTE_SIZE;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
+  private int concurrentRequests = 0;
+  private ExecutorService sender = null;
+  private Semaphore inFlightRequests = null;
+  private final AtomicReference<RuntimeException> asyncFailure = new AtomicReference<>();
 
   private final AtomicLong counter = new AtomicLong(0L);
   private final ProgressLogger progress;
@@ -89,6 +106,18 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Maximum number of bulk requests that are sent asynchronously while the caller goes on
+   * adding requests. The caller is blocked when this number of requests are in flight.
+   * Default value is 0, meaning that bulk requests are sent synchronously by {@link #add(ActionRequest)}.
+   */
+  public BulkIndexer setConcurrentRequests(int i) {
+    Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
+    Preconditions.checkArgument(i >= 0, "Number of concurrent requests must be positive or zero: " + i);
+    this.concurrentRequests = i;
+    return this;
+  }
+
   /**
    * Default value is {@link org.sonar.server.es.BulkIndexer#FLUSH_BYTE_SIZE}
    * @see org.elasticsearch.common.unit.ByteSizeValue
@@ -99,7 +128,7 @@ public class BulkIndexer implements Startable {
   }
 
   @Override
-  public void start() {
+  public synchronized void start() {
     Preconditions.checkState(bulkRequest == null, ALREADY_STARTED_MESSAGE);
     if (large) {
       largeInitialSettings = Maps.newHashMap();
@@ -120,29 +149,83 @@ public class BulkIndexer implements Startable {
 
       updateSettings(bulkSettings);
     }
+    if (concurrentRequests > 0) {
+      inFlightRequests = new Semaphore(concurrentRequests);
+      sender = Executors.newFixedThreadPool(concurrentRequests,
+        new ThreadFactoryBuilder().setNameFormat("BulkIndexer[" + indexName + "]-%d").setDaemon(true).build());
+    }
+    asyncFailure.set(null);
     bulkRequest = client.prepareBulk();
     counter.set(0L);
     progress.start();
   }
 
   public void add(ActionRequest request) {
-    bulkRequest.request().add(request);
+    BulkRequestBuilder fullRequest = null;
+    synchronized (this) {
+      bulkRequest.request().add(request);
+      if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
+        fullRequest = bulkRequest;
+        bulkRequest = client.prepareBulk();
+      }
+    }
     counter.getAndIncrement();
-    if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
-      executeBulk(bulkRequest);
-      bulkRequest = client.prepareBulk();
+    if (fullRequest != null) {
+      // sent outside the lock, so that other threads can go on filling the next request
+      send(fullRequest);
     }
   }
 
+  private void send(final BulkRequestBuilder request) {
+    checkAsyncFailure();
+    if (sender == null) {
+      executeBulk(request);
+      return;
+    }
+    inFlightRequests.acquireUninterruptibly();
+    sender.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          executeBulk(request);
+        } catch (RuntimeException e) {
+          asyncFailure.compareAndSet(null, e);
+        } finally {
+          inFlightRequests.release();
+        }
+      }
+    });
+  }
+
+  private void checkAsyncFailure() {
+    RuntimeException failure = asyncFailure.get();
+    if (failure != null) {
+      throw new IllegalStateException("Fail to execute bulk request on index " + indexName, failure);
+    }
+  }
+
+  /**
+   * Must be called once all the threads have finished to add requests
+   */
   @Override
-  public void stop() {
+  public synchronized void stop() {
     try {
       if (bulkRequest.numberOfActions() > 0) {
-        executeBulk(bulkRequest);
+        send(bulkRequest);
+      }
+      if (sender != null) {
+        // wait for the requests in flight
+        inFlightRequests.acquireUninterruptibly(concurrentRequests);
+        inFlightRequests.release(concurrentRequests);
       }
     } finally {
       progress.stop();
+      if (sender != null) {
+        sender.shutdown();
+        sender = null;
+      }
     }
+    checkAsyncFailure();
 
     if (refresh) {
       client.prepareRefresh(indexName).get();
@@ -165,37 +248,50 @@ public class BulkIndexer implements Startable {
   }
 
   private void executeBulk(BulkRequestBuilder bulkRequest) {
-    List<ActionRequest> retries = Lists.newArrayList();
     BulkResponse response = bulkRequest.get();
+    List<ActionRequest> retries = failedRequests(bulkRequest.request().requests(), response);
 
-    for (BulkItemResponse item : response.getItems()) {
-      if (item.isFailed()) {
-        ActionRequest retry = bulkRequest.request().requests().get(item.getItemId());
-        retries.add(retry);
-      }
-    }
+    long backoffMs = INITIAL_BACKOFF_MS;
+    for (int attempt = 1; !retries.isEmpty() && attempt <= MAX_RETRIES; attempt++) {
+      LOGGER.warn(String.format("%d index requests failed. Trying again in %d ms (attempt %d/%d).", retries.size(), backoffMs, attempt, MAX_RETRIES));
+      Uninterruptibles.sleepUninterruptibly(backoffMs, TimeUnit.MILLISECONDS);
+      backoffMs *= 2;
 
-    if (!retries.isEmpty()) {
-      LOGGER.warn(String.format("%d index requests failed. Trying again.", retries.size()));
       BulkRequestBuilder retryBulk = client.prepareBulk();
       for (ActionRequest retry : retries) {
         retryBulk.request().add(retry);
       }
       BulkResponse retryBulkResponse = retryBulk.get();
-      if (retryBulkResponse.hasFailures()) {
-        LOGGER.error("New attempt to index documents failed");
-        for (int index = 0; index < retryBulkResponse.getItems().length; index++) {
-          BulkItemResponse item = retryBulkResponse.getItems()[index];
-          if (item.isFailed()) {
-            StringBuilder sb = new StringBuilder();
-            String msg = sb.append("\n[").append(index)
-              .append("]: index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
-              .append("], message [").append(item.getFailureMessage()).append("]").toString();
-            LOGGER.error(msg);
-          }
-        }
-      } else {
+      List<ActionRequest> stillFailed = failedRequests(retries, retryBulkResponse);
+      if (stillFailed.isEmpty()) {
         LOGGER.info("New index attempt succeeded");
+      } else if (attempt == MAX_RETRIES) {
+        logFailures(retryBulkResponse);
+      }
+      retries = stillFailed;
+    }
+  }
+
+  private static List<ActionRequest> failedRequests(List<ActionRequest> requests, BulkResponse response) {
+    List<ActionRequest> failed = Lists.newArrayList();
+    for (BulkItemResponse item : response.getItems()) {
+      if (item.isFailed()) {
+        failed.add(requests.get(item.getItemId()));
+      }
+    }
+    return failed;
+  }
+
+  private static void logFailures(BulkResponse response) {
+    LOGGER.error("New attempts to index documents failed");
+    for (int index = 0; index < response.getItems().length; index++) {
+      BulkItemResponse item = response.getItems()[index];
+      if (item.isFailed()) {
+        StringBuilder sb = new StringBuilder();
+        String msg = sb.append("\n[").append(index)
+          .append("]: index [").append(item.getIndex()).append("], type [").append(item.getType()).append("], id [").append(item.getId())
+          .append("], message [").append(item.getFailureMessage()).append("]").toString();
+        LOGGER.error(msg);
       }
     }
   }
@@ -0,0 +1,228 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.apache.commons.dbutils.DbUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.util.ProgressLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Full indexing of a table split into partitions, generally the root projects. The rows of large
+ * projects are split again into ranges of ids, so that a single project is not indexed by a single thread.
+ * Partitions are read from db and sent to Elasticsearch by a pool of threads, so several
+ * JDBC result sets are scrolled and several bulk requests are in flight at the same time.
+ * <p/>
+ * The number of threads is defined by the property {@link #THREADS_PROPERTY}.
+ */
+public class PartitionedIndexing {
+
+  public static final String THREADS_PROPERTY = "sonar.search.indexing.threads";
+  public static final int DEFAULT_THREADS = 2;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedIndexing.class);
+
+  /**
+   * Indexes a single partition. Implementations must be thread-safe.
+   */
+  public interface PartitionIndexer {
+    /**
+     * @return the max technical update date of the indexed documents, 0 if no documents
+     */
+    long index(Partition partition);
+  }
+
+  /**
+   * Rows of a project with ids between {@link #minId()} and {@link #maxId()}, both inclusive
+   */
+  public static final class Partition {
+    private final String key;
+    private final long minId;
+    private final long maxId;
+
+    public Partition(String key, long minId, long maxId) {
+      this.key = key;
+      this.minId = minId;
+      this.maxId = maxId;
+    }
+
+    public String key() {
+      return key;
+    }
+
+    public long minId() {
+      return minId;
+    }
+
+    public long maxId() {
+      return maxId;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s[%d..%d]", key, minId, maxId);
+    }
+  }
+
+  private final String name;
+  private final int threads;
+
+  public PartitionedIndexing(String name, int threads) {
+    this.name = name;
+    this.threads = threads;
+  }
+
+  public static int threads(Settings settings) {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    return threads > 0 ? threads : DEFAULT_THREADS;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Selects the partitions, for example "select project_uuid, min(id), max(id), count(id) from issues group by project_uuid".
+   * The projects that have more than <code>maxRows</code> rows are split into several ranges of ids.
+   */
+  public static List<Partition> selectPartitions(DbClient dbClient, String sql, int maxRows) {
+    DbSession dbSession = dbClient.openSession(false);
+    Connection connection = dbSession.getConnection();
+    PreparedStatement stmt = null;
+    ResultSet rs = null;
+    try {
+      List<Partition> partitions = new ArrayList<>();
+      stmt = connection.prepareStatement(sql);
+      rs = stmt.executeQuery();
+      while (rs.next()) {
+        String key = rs.getString(1);
+        if (key != null) {
+          partitions.addAll(split(key, rs.getLong(2), rs.getLong(3), rs.getLong(4), maxRows));
+        }
+      }
+      return partitions;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select partitions: " + sql, e);
+    } finally {
+      DbUtils.closeQuietly(connection, stmt, rs);
+      dbSession.close();
+    }
+  }
+
+  /**
+   * Splits the ids of a project into ranges of the same width. Ids of a project are not contiguous,
+   * so the number of rows of each range is only approximately <code>maxRows</code>.
+   */
+  static List<Partition> split(String key, long minId, long maxId, long rows, int maxRows) {
+    List<Partition> partitions = new ArrayList<>();
+    long ranges = Math.max(1L, (rows + maxRows - 1) / maxRows);
+    long width = (maxId - minId + ranges) / ranges;
+    for (long from = minId; from <= maxId; from += width) {
+      partitions.add(new Partition(key, from, Math.min(maxId, from + width - 1)));
+    }
+    return partitions;
+  }
+
+  /**
+   * Blocks until all the partitions are indexed. Fails as soon as one partition fails. In this case
+   * the partitions that are not started are cancelled, and the method returns when the running ones
+   * are done, so that the caller can safely stop its bulk indexer.
+   * @return the max of the dates returned by {@link PartitionIndexer#index(Partition)}
+   */
+  public long execute(List<Partition> partitions, final PartitionIndexer indexer) {
+    final int total = partitions.size();
+    final AtomicLong counter = new AtomicLong(0L);
+    ProgressLogger progress = new ProgressLogger(String.format("Progress[PartitionedIndexing[%s]]", name), counter, LOGGER)
+      .setPluralLabel("partitions of " + name);
+    int poolSize = Math.max(1, Math.min(threads, total));
+    ExecutorService executor = Executors.newFixedThreadPool(poolSize,
+      new ThreadFactoryBuilder().setNameFormat("Indexer[" + name + "]-%d").setDaemon(true).build());
+    LOGGER.info(String.format("Index %s: %d partitions, %d threads", name, total, poolSize));
+    progress.start();
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (final Partition partition : partitions) {
+        futures.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() {
+            long start = System.currentTimeMillis();
+            long maxUpdatedAt = indexer.index(partition);
+            long done = counter.incrementAndGet();
+            LOGGER.debug("{} partition {} indexed in {} ms ({}/{})", name, partition, System.currentTimeMillis() - start, done, total);
+            return maxUpdatedAt;
+          }
+        }));
+      }
+      long maxUpdatedAt = 0L;
+      for (Future<Long> future : futures) {
+        maxUpdatedAt = Math.max(maxUpdatedAt, Uninterruptibles.getUninterruptibly(future));
+      }
+      return maxUpdatedAt;
+
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdown();
+      awaitTermination(executor);
+      progress.stop();
+    }
+  }
+
+  private void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          if (executor.awaitTermination(1L, TimeUnit.MINUTES)) {
+            return;
+          }
+          LOGGER.info("Wait for the termination of {} indexing threads", name);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -72,6 +72,14 @@ public abstract class Action implements ServerComponent {
 
   abstract boolean verify(Map<String, Object> properties, List<Issue> issues, UserSession userSession);
 
+  /**
+   * Whether {@link #verify(Map, List, UserSession)} checks the given issues. If so, a bulk change verifies
+   * all its issues before changing any of them.
+   */
+  boolean verifiesIssues(Map<String, Object> properties) {
+    return false;
+  }
+
   abstract boolean execute(Map<String, Object> properties, Context context);
 
   interface Context {
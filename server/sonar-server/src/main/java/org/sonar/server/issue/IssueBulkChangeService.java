@@ -23,11 +23,13 @@ package org.sonar.server.issue;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.internal.DefaultIssue;
 import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationManager;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rules.Rule;
@@ -45,8 +47,9 @@ import org.sonar.server.user.UserSession;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,10 +58,19 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 
+/**
+ * Issues are loaded, changed, saved and notified by pages of {@link #PAGE_SIZE} issues, so that the number of
+ * issues does not impact memory.
+ */
 public class IssueBulkChangeService {
 
   private static final Logger LOG = LoggerFactory.getLogger(IssueBulkChangeService.class);
 
+  /**
+   * Same as the max number of issues returned by a search in index
+   */
+  static final int PAGE_SIZE = QueryContext.MAX_LIMIT;
+
   private final DbClient dbClient;
   private final IssueService issueService;
   private final IssueStorage issueStorage;
@@ -83,12 +95,35 @@ public class IssueBulkChangeService {
 
     IssueBulkChangeResult result = new IssueBulkChangeResult();
 
-    List<Issue> issues = getByKeysForUpdate(issueBulkChangeQuery.issues());
-    Repository repository = new Repository(issues);
-
-    List<Action> bulkActions = getActionsToApply(issueBulkChangeQuery, issues, userSession);
+    List<Action> bulkActions = getActions(issueBulkChangeQuery);
     IssueChangeContext issueChangeContext = IssueChangeContext.createUser(new Date(), userSession.login());
-    Set<String> concernedProjects = new HashSet<String>();
+    List<List<String>> pages = Lists.partition(issueBulkChangeQuery.issues(), PAGE_SIZE);
+    if (pages.size() > 1 && verifiesIssues(bulkActions, issueBulkChangeQuery)) {
+      // Actions are verified on all the issues before changing any of them, so each page is loaded twice
+      List<String> authorizedIssueKeys = newArrayList();
+      for (List<String> issueKeys : pages) {
+        List<String> authorizedKeys = getAuthorizedKeys(issueKeys);
+        authorizedIssueKeys.addAll(authorizedKeys);
+        removeUnverifiedActions(bulkActions, issueBulkChangeQuery, getByKeysForUpdate(authorizedKeys), userSession);
+      }
+      for (List<String> issueKeys : Lists.partition(authorizedIssueKeys, PAGE_SIZE)) {
+        execute(getByKeysForUpdate(issueKeys), bulkActions, issueChangeContext, issueBulkChangeQuery, result);
+      }
+    } else {
+      // Verification does not depend on issues, so it fails on first page or never
+      for (List<String> issueKeys : pages) {
+        List<Issue> issues = getByKeysForUpdate(getAuthorizedKeys(issueKeys));
+        removeUnverifiedActions(bulkActions, issueBulkChangeQuery, issues, userSession);
+        execute(issues, bulkActions, issueChangeContext, issueBulkChangeQuery, result);
+      }
+    }
+    LOG.debug("BulkChange execution time : {} ms", System.currentTimeMillis() - start);
+    return result;
+  }
+
+  private void execute(List<Issue> issues, List<Action> bulkActions, IssueChangeContext issueChangeContext, IssueBulkChangeQuery issueBulkChangeQuery,
+    IssueBulkChangeResult result) {
+    List<DefaultIssue> changedIssues = newArrayList();
     for (Issue issue : issues) {
       ActionContext actionContext = new ActionContext(issue, issueChangeContext);
       for (Action action : bulkActions) {
@@ -99,39 +134,57 @@ public class IssueBulkChangeService {
         if (issueBulkChangeQuery.hasComment()) {
           applyAction(getAction(CommentAction.KEY), actionContext, issueBulkChangeQuery, result);
         }
-        issueStorage.save((DefaultIssue) issue);
-        if (issueBulkChangeQuery.sendNotifications()) {
-          String projectKey = issue.projectKey();
-          if (projectKey != null) {
-            Rule rule = repository.rule(issue.ruleKey());
-            notificationService.scheduleForSending(new IssueChangeNotification()
-              .setIssue((DefaultIssue) issue)
-              .setChangeAuthorLogin(issueChangeContext.login())
-              .setRuleName(rule != null ? rule.getName() : null)
-              .setProject(repository.project(projectKey))
-              .setComponent(repository.component(issue.componentKey())));
-          }
-        }
-        concernedProjects.add(issue.projectKey());
+        changedIssues.add((DefaultIssue) issue);
+      }
+    }
+    if (!changedIssues.isEmpty()) {
+      issueStorage.save(changedIssues);
+      if (issueBulkChangeQuery.sendNotifications()) {
+        scheduleNotifications(changedIssues, issueChangeContext);
       }
     }
-    LOG.debug("BulkChange execution time : {} ms", System.currentTimeMillis() - start);
-    return result;
   }
 
-  private List<Issue> getByKeysForUpdate(List<String> issueKeys) {
-    // Load from index to check permission
+  private void scheduleNotifications(List<DefaultIssue> changedIssues, IssueChangeContext issueChangeContext) {
+    Repository repository = new Repository(changedIssues);
+    List<Notification> notifications = newArrayList();
+    for (DefaultIssue issue : changedIssues) {
+      String projectKey = issue.projectKey();
+      if (projectKey != null) {
+        Rule rule = repository.rule(issue.ruleKey());
+        notifications.add(new IssueChangeNotification()
+          .setIssue(issue)
+          .setChangeAuthorLogin(issueChangeContext.login())
+          .setRuleName(rule != null ? rule.getName() : null)
+          .setProject(repository.project(projectKey))
+          .setComponent(repository.component(issue.componentKey())));
+      }
+    }
+    if (!notifications.isEmpty()) {
+      notificationService.scheduleForSending(notifications);
+    }
+  }
+
+  /**
+   * Load from index to check permission
+   */
+  private List<String> getAuthorizedKeys(List<String> issueKeys) {
     List<Issue> authorizedIndexIssues = issueService.search(IssueQuery.builder().issueKeys(issueKeys).build(), new QueryContext().setMaxLimit()).getHits();
-    List<String> authorizedIssueKeys = newArrayList(Iterables.transform(authorizedIndexIssues, new Function<Issue, String>() {
+    return newArrayList(Iterables.transform(authorizedIndexIssues, new Function<Issue, String>() {
       @Override
       public String apply(@Nullable Issue input) {
         return input != null ? input.key() : null;
       }
     }));
+  }
 
+  private List<Issue> getByKeysForUpdate(List<String> issueKeys) {
+    if (issueKeys.isEmpty()) {
+      return Collections.emptyList();
+    }
     DbSession session = dbClient.openSession(false);
     try {
-      List<IssueDto> issueDtos = dbClient.issueDao().selectByKeys(session, authorizedIssueKeys);
+      List<IssueDto> issueDtos = dbClient.issueDao().selectByKeys(session, issueKeys);
       return newArrayList(Iterables.transform(issueDtos, new Function<IssueDto, Issue>() {
         @Override
         public Issue apply(@Nullable IssueDto input) {
@@ -143,17 +196,33 @@ public class IssueBulkChangeService {
     }
   }
 
-  private List<Action> getActionsToApply(IssueBulkChangeQuery issueBulkChangeQuery, List<Issue> issues, UserSession userSession) {
+  private List<Action> getActions(IssueBulkChangeQuery issueBulkChangeQuery) {
     List<Action> bulkActions = newArrayList();
     for (String actionKey : issueBulkChangeQuery.actions()) {
-      Action action = getAction(actionKey);
-      if (action.verify(issueBulkChangeQuery.properties(actionKey), issues, userSession)) {
-        bulkActions.add(action);
-      }
+      bulkActions.add(getAction(actionKey));
     }
     return bulkActions;
   }
 
+  private static boolean verifiesIssues(List<Action> bulkActions, IssueBulkChangeQuery issueBulkChangeQuery) {
+    for (Action action : bulkActions) {
+      if (action.verifiesIssues(issueBulkChangeQuery.properties(action.key()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void removeUnverifiedActions(List<Action> bulkActions, IssueBulkChangeQuery issueBulkChangeQuery, List<Issue> issues, UserSession userSession) {
+    Iterator<Action> it = bulkActions.iterator();
+    while (it.hasNext()) {
+      Action action = it.next();
+      if (!action.verify(issueBulkChangeQuery.properties(action.key()), issues, userSession)) {
+        it.remove();
+      }
+    }
+  }
+
   private void applyAction(Action action, ActionContext actionContext, IssueBulkChangeQuery issueBulkChangeQuery, IssueBulkChangeResult result) {
     Issue issue = actionContext.issue();
     try {
@@ -207,12 +276,12 @@ public class IssueBulkChangeService {
     private final Map<String, ComponentDto> components = newHashMap();
     private final Map<String, ComponentDto> projects = newHashMap();
 
-    public Repository(List<Issue> issues) {
+    public Repository(List<DefaultIssue> issues) {
       Set<RuleKey> ruleKeys = newHashSet();
       Set<String> componentKeys = newHashSet();
       Set<String> projectKeys = newHashSet();
 
-      for (Issue issue : issues) {
+      for (DefaultIssue issue : issues) {
         ruleKeys.add(issue.ruleKey());
         componentKeys.add(issue.componentKey());
         String projectKey = issue.projectKey();
@@ -65,6 +65,11 @@ public class PlanAction extends Action implements ServerComponent {
     return true;
   }
 
+  @Override
+  boolean verifiesIssues(Map<String, Object> properties) {
+    return !Strings.isNullOrEmpty(planValue(properties));
+  }
+
   @Override
   public boolean execute(Map<String, Object> properties, Context context) {
     if(!properties.containsKey(VERIFIED_ACTION_PLAN)) {
@@ -24,38 +24,101 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexing;
 
 import java.sql.Connection;
 import java.util.Iterator;
+import java.util.List;
 
 public class IssueIndexer extends BaseIndexer {
 
+  private static final String SQL_PARTITIONS = "select project_uuid, min(id), max(id), count(id) from issues group by project_uuid";
+
+  // max number of issues per partition
+  private static final int PARTITION_SIZE = 100000;
+
   private final DbClient dbClient;
+  private final int indexingThreads;
 
-  public IssueIndexer(DbClient dbClient, EsClient esClient) {
+  public IssueIndexer(DbClient dbClient, EsClient esClient, Settings settings) {
     super(esClient, 300, IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE);
     this.dbClient = dbClient;
+    this.indexingThreads = PartitionedIndexing.threads(settings);
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    if (lastUpdatedAt == 0L) {
+      // index is empty
+      return doIndexAll();
+    }
     return doIndex(createBulkIndexer(false), lastUpdatedAt);
   }
 
+  /**
+   * Indexes all the issues. Projects are indexed in parallel,
+   * see {@link org.sonar.server.es.PartitionedIndexing}.
+   */
   public void indexAll() {
-    doIndex(createBulkIndexer(true), 0L);
+    doIndexAll();
   }
 
   /**
-   * For benchmarks
+   * For benchmarks. Bulk requests are sent asynchronously, as done when indexing all issues.
    */
   public void index(Iterator<IssueDoc> issues) {
-    doIndex(createBulkIndexer(false), issues);
+    index(issues, indexingThreads);
+  }
+
+  /**
+   * For benchmarks
+   * @param concurrentRequests see {@link BulkIndexer#setConcurrentRequests(int)}, 0 to send bulk requests synchronously
+   */
+  public void index(Iterator<IssueDoc> issues, int concurrentRequests) {
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.setConcurrentRequests(concurrentRequests);
+    bulk.start();
+    doIndex(bulk, issues);
+    bulk.stop();
+  }
+
+  private long doIndexAll() {
+    final BulkIndexer bulk = createBulkIndexer(true);
+    // reader threads do not wait for responses of Elasticsearch
+    bulk.setConcurrentRequests(indexingThreads);
+    bulk.start();
+    try {
+      List<PartitionedIndexing.Partition> partitions = PartitionedIndexing.selectPartitions(dbClient, SQL_PARTITIONS, PARTITION_SIZE);
+      return new PartitionedIndexing("issues", indexingThreads).execute(partitions, new PartitionedIndexing.PartitionIndexer() {
+        @Override
+        public long index(PartitionedIndexing.Partition partition) {
+          return doIndexPartition(bulk, partition);
+        }
+      });
+    } finally {
+      bulk.stop();
+    }
+  }
+
+  private long doIndexPartition(BulkIndexer bulk, PartitionedIndexing.Partition partition) {
+    DbSession dbSession = dbClient.openSession(false);
+    Connection dbConnection = dbSession.getConnection();
+    try {
+      IssueResultSetIterator rowIt = IssueResultSetIterator.createForPartition(dbClient, dbConnection, partition);
+      long maxDate = doIndex(bulk, rowIt);
+      rowIt.close();
+      return maxDate;
+
+    } finally {
+      DbUtils.closeQuietly(dbConnection);
+      dbSession.close();
+    }
   }
 
   private long doIndex(BulkIndexer bulk, long lastUpdatedAt) {
@@ -64,7 +127,9 @@ public class IssueIndexer extends BaseIndexer {
     long maxDate;
     try {
       IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbConnection, lastUpdatedAt);
+      bulk.start();
       maxDate = doIndex(bulk, rowIt);
+      bulk.stop();
       rowIt.close();
       return maxDate;
 
@@ -75,7 +140,6 @@ public class IssueIndexer extends BaseIndexer {
   }
 
   private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
-    bulk.start();
     long maxDate = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
@@ -84,7 +148,6 @@ public class IssueIndexer extends BaseIndexer {
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
       maxDate = Math.max(maxDate, issue.updateDate().getTime());
     }
-    bulk.stop();
     return maxDate;
   }
 
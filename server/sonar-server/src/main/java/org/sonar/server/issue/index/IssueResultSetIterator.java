@@ -28,6 +28,7 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.db.ResultSetIterator;
 import org.sonar.server.db.migrations.SqlUtil;
+import org.sonar.server.es.PartitionedIndexing;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -85,8 +86,25 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String SQL_AFTER_DATE = SQL_ALL + " where i.updated_at>?";
 
+  private static final String SQL_PARTITION = SQL_ALL + " where i.project_uuid=? and i.id>=? and i.id<=?";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
+  /**
+   * Issues of a range of ids of a project, used by partitioned indexing
+   */
+  static IssueResultSetIterator createForPartition(DbClient dbClient, Connection connection, PartitionedIndexing.Partition partition) {
+    try {
+      PreparedStatement stmt = dbClient.newScrollingSelectStatement(connection, SQL_PARTITION);
+      stmt.setString(1, partition.key());
+      stmt.setLong(2, partition.minId());
+      stmt.setLong(3, partition.maxId());
+      return new IssueResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select issues of partition " + partition, e);
+    }
+  }
+
   static IssueResultSetIterator create(DbClient dbClient, Connection connection, long afterDate) {
     try {
       String sql = afterDate > 0L ? SQL_AFTER_DATE : SQL_ALL;
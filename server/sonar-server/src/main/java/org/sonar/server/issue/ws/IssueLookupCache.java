@@ -0,0 +1,186 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.ws;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.utils.System2;
+import org.sonar.server.rule.Rule;
+import org.sonar.server.rule.RuleService;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Rules and users referenced by the issues returned by {@link SearchAction}. The same pages of issues are
+ * requested many times per minute by dashboards, so these lookups are shared between requests during
+ * a few seconds. Changes of rules and users can be seen late by at most this delay.
+ */
+public class IssueLookupCache implements ServerComponent {
+
+  /**
+   * Time to live of entries, in seconds. Zero disables the cache.
+   */
+  public static final String TTL_PROPERTY = "sonar.web.issues.lookupCacheTtl";
+  public static final int DEFAULT_TTL = 10;
+
+  private static final int MAX_ENTRIES = 10000;
+
+  private final RuleService ruleService;
+  private final UserFinder userFinder;
+  private final long ttlMs;
+  private final Ticker ticker;
+  private final Lookup<RuleKey, Rule> rules;
+  private final Lookup<String, User> users;
+
+  public IssueLookupCache(RuleService ruleService, UserFinder userFinder, Settings settings) {
+    this(ruleService, userFinder, settings, System2.INSTANCE);
+  }
+
+  @VisibleForTesting
+  IssueLookupCache(RuleService ruleService, UserFinder userFinder, Settings settings, final System2 system) {
+    this.ruleService = ruleService;
+    this.userFinder = userFinder;
+    int ttl = settings.hasKey(TTL_PROPERTY) ? settings.getInt(TTL_PROPERTY) : DEFAULT_TTL;
+    this.ttlMs = Math.max(ttl, 0) * 1000L;
+    this.ticker = new Ticker() {
+      @Override
+      public long read() {
+        return TimeUnit.MILLISECONDS.toNanos(system.now());
+      }
+    };
+    this.rules = new Lookup<RuleKey, Rule>() {
+      @Override
+      Map<RuleKey, Rule> loadAll(List<RuleKey> keys) {
+        Map<RuleKey, Rule> result = newHashMap();
+        for (Rule rule : ruleService.getByKeys(keys)) {
+          result.put(rule.key(), rule);
+        }
+        return result;
+      }
+    };
+    this.users = new Lookup<String, User>() {
+      @Override
+      Map<String, User> loadAll(List<String> logins) {
+        Map<String, User> result = newHashMap();
+        for (User user : userFinder.findByLogins(logins)) {
+          result.put(user.login(), user);
+        }
+        return result;
+      }
+    };
+  }
+
+  public Collection<Rule> getRulesByKeys(Collection<RuleKey> keys) {
+    return rules.getAll(keys).values();
+  }
+
+  public Map<String, User> getUsersByLogins(Collection<String> logins) {
+    return users.getAll(logins);
+  }
+
+  public void clear() {
+    rules.clear();
+    users.clear();
+  }
+
+  private boolean isEnabled() {
+    return ttlMs > 0L;
+  }
+
+  /**
+   * Keys missing from cache are loaded in a single request, then stored by the cache loader. Keys that
+   * do not exist are cached too.
+   */
+  private abstract class Lookup<K, V> {
+    // values of missing keys, loaded by the current thread
+    private final ThreadLocal<Map<K, V>> loaded = new ThreadLocal<Map<K, V>>();
+    private final Cache<K, Optional<V>> cache = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+      .ticker(ticker)
+      .build(new CacheLoader<K, Optional<V>>() {
+        @Override
+        public Optional<V> load(K key) {
+          Map<K, V> values = loaded.get();
+          if (values == null || !values.containsKey(key)) {
+            // expired since values were loaded
+            values = loadAll(Collections.singletonList(key));
+          }
+          return Optional.fromNullable(values.get(key));
+        }
+      });
+
+    abstract Map<K, V> loadAll(List<K> keys);
+
+    Map<K, V> getAll(Collection<K> keys) {
+      List<K> missingKeys = newArrayList();
+      for (K key : keys) {
+        if (!isEnabled() || !cache.asMap().containsKey(key)) {
+          missingKeys.add(key);
+        }
+      }
+      Map<K, V> values = newHashMap();
+      if (!missingKeys.isEmpty()) {
+        values.putAll(loadAll(missingKeys));
+      }
+      if (!isEnabled()) {
+        return values;
+      }
+      for (K key : missingKeys) {
+        if (!values.containsKey(key)) {
+          values.put(key, null);
+        }
+      }
+      loaded.set(values);
+      try {
+        Map<K, V> result = newHashMap();
+        for (K key : keys) {
+          Optional<V> value = cache.getUnchecked(key);
+          if (value.isPresent()) {
+            result.put(key, value.get());
+          }
+        }
+        return result;
+      } finally {
+        loaded.remove();
+      }
+    }
+
+    void clear() {
+      cache.invalidateAll();
+    }
+  }
+}
@@ -36,7 +36,6 @@ import org.sonar.api.rule.Severity;
 import org.sonar.api.server.ws.Request;
 import org.sonar.api.server.ws.WebService;
 import org.sonar.api.user.User;
-import org.sonar.api.user.UserFinder;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.Duration;
 import org.sonar.api.utils.Durations;
@@ -44,6 +43,8 @@ import org.sonar.api.utils.text.JsonWriter;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.core.issue.db.IssueChangeDao;
 import org.sonar.core.persistence.DbSession;
+import org.sonar.core.profiling.Profiling;
+import org.sonar.core.profiling.StopWatch;
 import org.sonar.markdown.Markdown;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.issue.IssueQuery;
@@ -53,7 +54,6 @@ import org.sonar.server.issue.actionplan.ActionPlanService;
 import org.sonar.server.issue.filter.IssueFilterParameters;
 import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.rule.Rule;
-import org.sonar.server.rule.RuleService;
 import org.sonar.server.search.FacetValue;
 import org.sonar.server.search.QueryContext;
 import org.sonar.server.search.Result;
@@ -82,6 +82,8 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
 
   private static final String EXTRA_FIELDS_PARAM = "extra_fields";
 
+  private static final String PROFILING_DOMAIN = "issues";
+
   private static final String INTERNAL_PARAMETER_DISCLAIMER = "This parameter is mostly used by the Issues page, please prefer usage of the componentKeys parameter. ";
 
   private final IssueChangeDao issueChangeDao;
@@ -89,28 +91,28 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
   private final IssueActionsWriter actionsWriter;
 
   private final IssueQueryService issueQueryService;
-  private final RuleService ruleService;
+  private final IssueLookupCache lookupCache;
   private final DbClient dbClient;
   private final ActionPlanService actionPlanService;
-  private final UserFinder userFinder;
   private final I18n i18n;
   private final Durations durations;
   private final Languages languages;
+  private final Profiling profiling;
 
   public SearchAction(DbClient dbClient, IssueChangeDao issueChangeDao, IssueService service, IssueActionsWriter actionsWriter, IssueQueryService issueQueryService,
-    RuleService ruleService, ActionPlanService actionPlanService, UserFinder userFinder, I18n i18n, Durations durations, Languages languages) {
+    IssueLookupCache lookupCache, ActionPlanService actionPlanService, I18n i18n, Durations durations, Languages languages, Profiling profiling) {
     super(SEARCH_ACTION);
     this.dbClient = dbClient;
     this.issueChangeDao = issueChangeDao;
     this.service = service;
     this.actionsWriter = actionsWriter;
     this.issueQueryService = issueQueryService;
-    this.ruleService = ruleService;
+    this.lookupCache = lookupCache;
     this.actionPlanService = actionPlanService;
-    this.userFinder = userFinder;
     this.i18n = i18n;
     this.durations = durations;
     this.languages = languages;
+    this.profiling = profiling;
   }
 
   @Override
@@ -341,13 +343,19 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
 
     DbSession session = dbClient.openSession(false);
     try {
+      StopWatch watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
       List<DefaultIssueComment> comments = issueChangeDao.selectCommentsByIssues(session, issueKeys);
       for (DefaultIssueComment issueComment : comments) {
         userLogins.add(issueComment.userLogin());
         commentsByIssues.put(issueComment.issueKey(), issueComment);
       }
-      usersByLogin = getUsersByLogin(userLogins);
+      watch.stop("load %d comments", comments.size());
+
+      watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
+      usersByLogin = lookupCache.getUsersByLogins(userLogins);
+      watch.stop("load %d users", usersByLogin.size());
 
+      watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
       List<ComponentDto> fileDtos = dbClient.componentDao().getByUuids(session, componentUuids);
       List<ComponentDto> subProjectDtos = dbClient.componentDao().findSubProjectsByComponentUuids(session, componentUuids);
       componentDtos.addAll(fileDtos);
@@ -362,6 +370,7 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
         componentsByUuid.put(componentDto.uuid(), componentDto);
       }
       projectsByComponentUuid = getProjectsByComponentUuid(componentDtos, projectDtos);
+      watch.stop("load %d components", componentDtos.size());
 
       writeProjects(json, projectDtos);
       writeComponents(json, componentDtos, projectsByComponentUuid);
@@ -369,11 +378,19 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
       session.close();
     }
 
+    StopWatch watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
     Map<String, ActionPlan> actionPlanByKeys = getActionPlanByKeys(actionPlanKeys);
+    watch.stop("load %d action plans", actionPlanByKeys.size());
 
+    watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
     writeIssues(result, commentsByIssues, usersByLogin, actionPlanByKeys, componentsByUuid, projectsByComponentUuid,
       request.paramAsStrings(EXTRA_FIELDS_PARAM), json);
-    writeRules(json, !request.mandatoryParamAsBoolean(IssueFilterParameters.HIDE_RULES) ? ruleService.getByKeys(ruleKeys) : Collections.<Rule>emptyList());
+    watch.stop("write %d issues", result.getHits().size());
+
+    watch = profiling.start(PROFILING_DOMAIN, Profiling.Level.FULL);
+    Collection<Rule> rules = !request.mandatoryParamAsBoolean(IssueFilterParameters.HIDE_RULES) ? lookupCache.getRulesByKeys(ruleKeys) : Collections.<Rule>emptyList();
+    watch.stop("load %d rules", rules.size());
+    writeRules(json, rules);
     writeUsers(json, usersByLogin);
     writeActionPlans(json, actionPlanByKeys.values());
     writeLanguages(json);
@@ -732,14 +749,6 @@ public class SearchAction extends SearchRequestHandler<IssueQuery, Issue> {
     }
   }
 
-  private Map<String, User> getUsersByLogin(List<String> userLogins) {
-    Map<String, User> usersByLogin = newHashMap();
-    for (User user : userFinder.findByLogins(userLogins)) {
-      usersByLogin.put(user.login(), user);
-    }
-    return usersByLogin;
-  }
-
   private Map<String, ActionPlan> getActionPlanByKeys(Collection<String> actionPlanKeys) {
     Map<String, ActionPlan> actionPlans = newHashMap();
     for (ActionPlan actionPlan : actionPlanService.findByKeys(actionPlanKeys)) {
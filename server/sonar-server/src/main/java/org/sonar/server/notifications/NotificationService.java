@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.picocontainer.Startable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,8 +43,16 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -61,6 +70,18 @@ import java.util.concurrent.TimeUnit;
     defaultValue = "600",
     name = "Delay before reporting notification status, in seconds",
     project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_BATCH_SIZE,
+    defaultValue = "100",
+    name = "Number of notifications read at once from queue",
+    project = false,
+    global = false),
+  @Property(
+    key = NotificationService.PROPERTY_WORKERS_PER_CHANNEL,
+    defaultValue = "1",
+    name = "Number of threads delivering notifications of each channel",
+    project = false,
     global = false)
 })
 public class NotificationService implements ServerComponent, Startable {
@@ -69,15 +90,23 @@ public class NotificationService implements ServerComponent, Startable {
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
   public static final String PROPERTY_DELAY_BEFORE_REPORTING_STATUS = "sonar.notifications.runningDelayBeforeReportingStatus";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_WORKERS_PER_CHANNEL = "sonar.notifications.workersPerChannel";
+  static final int DEFAULT_BATCH_SIZE = 100;
+  static final int DEFAULT_WORKERS_PER_CHANNEL = 1;
 
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(LOG).setLevelToDebug();
 
   private final long delayInSeconds;
   private final long delayBeforeReportingStatusInSeconds;
+  private final int batchSize;
+  private final int workersPerChannel;
   private final DefaultNotificationManager manager;
   private final List<NotificationDispatcher> dispatchers;
   private final DbClient dbClient;
 
+  private final Map<NotificationChannel, ExecutorService> channelExecutors = new ConcurrentHashMap<>();
+
   private ScheduledExecutorService executorService;
   private boolean stopping = false;
 
@@ -87,6 +116,8 @@ public class NotificationService implements ServerComponent, Startable {
   public NotificationService(Settings settings, DefaultNotificationManager manager, DbClient dbClient, NotificationDispatcher[] dispatchers) {
     this.delayInSeconds = settings.getLong(PROPERTY_DELAY);
     this.delayBeforeReportingStatusInSeconds = settings.getLong(PROPERTY_DELAY_BEFORE_REPORTING_STATUS);
+    this.batchSize = positiveInt(settings, PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+    this.workersPerChannel = positiveInt(settings, PROPERTY_WORKERS_PER_CHANNEL, DEFAULT_WORKERS_PER_CHANNEL);
     this.manager = manager;
     this.dbClient = dbClient;
     this.dispatchers = ImmutableList.copyOf(dispatchers);
@@ -99,6 +130,11 @@ public class NotificationService implements ServerComponent, Startable {
     this(settings, manager, dbClient, new NotificationDispatcher[0]);
   }
 
+  private static int positiveInt(Settings settings, String key, int defaultValue) {
+    int value = settings.hasKey(key) ? settings.getInt(key) : defaultValue;
+    return value > 0 ? value : defaultValue;
+  }
+
   @Override
   public void start() {
     executorService = Executors.newSingleThreadScheduledExecutor();
@@ -121,6 +157,7 @@ public class NotificationService implements ServerComponent, Startable {
       stopping = true;
       executorService.shutdown();
       executorService.awaitTermination(5, TimeUnit.SECONDS);
+      stopChannelExecutors();
     } catch (InterruptedException e) {
       LOG.error("Error during stop of notification service", e);
     }
@@ -134,21 +171,26 @@ public class NotificationService implements ServerComponent, Startable {
     long lastLog = start;
     long notifSentCount = 0;
 
-    Notification notifToSend = manager.getFromQueue();
-    while (notifToSend != null) {
-      deliver(notifToSend);
-      notifSentCount++;
+    List<Notification> notifsToSend = manager.getFromQueue(batchSize);
+    while (!notifsToSend.isEmpty()) {
+      List<Future<?>> deliveries = new ArrayList<>();
+      for (Notification notifToSend : notifsToSend) {
+        deliverConcurrently(notifToSend, deliveries);
+        notifSentCount++;
+        long now = now();
+        if (now - lastLog > delayBeforeReportingStatusInSeconds * 1000) {
+          long remainingNotifCount = manager.count();
+          lastLog = now;
+          long spentTimeInMinutes = (now - start) / (60 * 1000);
+          log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
+        }
+      }
+      // notifications are removed from queue, so the batch is fully delivered even when stopping
+      awaitDeliveries(deliveries);
       if (stopping) {
         break;
       }
-      long now = now();
-      if (now - lastLog > delayBeforeReportingStatusInSeconds * 1000) {
-        long remainingNotifCount = manager.count();
-        lastLog = now;
-        long spentTimeInMinutes = (now - start) / (60 * 1000);
-        log(notifSentCount, remainingNotifCount, spentTimeInMinutes);
-      }
-      notifToSend = manager.getFromQueue();
+      notifsToSend = manager.getFromQueue(batchSize);
     }
 
     TIME_PROFILER.stop();
@@ -165,6 +207,26 @@ public class NotificationService implements ServerComponent, Startable {
   }
 
   public void deliver(Notification notification) {
+    for (Map.Entry<String, NotificationChannel> recipient : findRecipients(notification).entries()) {
+      deliver(notification, recipient.getKey(), recipient.getValue());
+    }
+  }
+
+  /**
+   * Same as {@link #deliver(Notification)}, except that notification is delivered by the workers of each channel
+   */
+  private void deliverConcurrently(final Notification notification, List<Future<?>> deliveries) {
+    for (final Map.Entry<String, NotificationChannel> recipient : findRecipients(notification).entries()) {
+      deliveries.add(channelExecutor(recipient.getValue()).submit(new Runnable() {
+        @Override
+        public void run() {
+          deliver(notification, recipient.getKey(), recipient.getValue());
+        }
+      }));
+    }
+  }
+
+  private SetMultimap<String, NotificationChannel> findRecipients(Notification notification) {
     final SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
     for (NotificationDispatcher dispatcher : dispatchers) {
       NotificationDispatcher.Context context = new NotificationDispatcher.Context() {
@@ -187,23 +249,79 @@ public class NotificationService implements ServerComponent, Startable {
         LOG.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
       }
     }
-    dispatch(notification, recipients);
+    return recipients;
   }
 
-  private void dispatch(Notification notification, SetMultimap<String, NotificationChannel> recipients) {
-    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      LOG.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) {
-          // catch all exceptions in order to deliver via other channels
-          LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
-        }
+  private void deliver(Notification notification, String username, NotificationChannel channel) {
+    LOG.debug("For user {} via {}", username, channel);
+    try {
+      channel.deliver(notification, username);
+    } catch (Exception e) {
+      // catch all exceptions in order to deliver via other channels
+      LOG.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+    }
+  }
+
+  /**
+   * Deliveries of a channel are executed by a bounded pool of threads. When all the threads are busy and the
+   * queue of pending deliveries is full, the caller waits for a free slot in the queue.
+   */
+  private ExecutorService channelExecutor(NotificationChannel channel) {
+    ExecutorService executor = channelExecutors.get(channel);
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(workersPerChannel, workersPerChannel, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(batchSize),
+        new ThreadFactoryBuilder().setNameFormat("notifications-" + channel.getKey() + "-%d").setDaemon(true).build(),
+        new WaitForQueuePolicy());
+      channelExecutors.put(channel, executor);
+    }
+    return executor;
+  }
+
+  /**
+   * Channels are not required to be thread-safe, so deliveries must not be executed by the caller thread
+   * in addition to the workers of the channel.
+   */
+  private static class WaitForQueuePolicy implements RejectedExecutionHandler {
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+      if (executor.isShutdown()) {
+        throw new RejectedExecutionException("Notification service is stopped");
+      }
+      try {
+        executor.getQueue().put(task);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RejectedExecutionException("Interrupted while waiting for a notification worker", e);
+      }
+      // executor may have been shut down while waiting, the task would never be executed
+      if (executor.isShutdown() && executor.getQueue().remove(task)) {
+        throw new RejectedExecutionException("Notification service is stopped");
+      }
+    }
+  }
+
+  private static void awaitDeliveries(List<Future<?>> deliveries) {
+    try {
+      for (Future<?> delivery : deliveries) {
+        delivery.get();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      // exceptions are already logged by deliveries
+      LOG.warn("Unable to deliver notification", e.getCause());
+    }
+  }
+
+  private void stopChannelExecutors() throws InterruptedException {
+    for (ExecutorService executor : channelExecutors.values()) {
+      executor.shutdown();
+    }
+    for (ExecutorService executor : channelExecutors.values()) {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
     }
+    channelExecutors.clear();
   }
 
   @VisibleForTesting
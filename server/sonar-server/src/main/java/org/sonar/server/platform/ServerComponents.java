@@ -169,6 +169,7 @@ import org.sonar.server.issue.notification.NewIssuesEmailTemplate;
 import org.sonar.server.issue.notification.NewIssuesNotificationDispatcher;
 import org.sonar.server.issue.ws.ComponentTagsAction;
 import org.sonar.server.issue.ws.IssueActionsWriter;
+import org.sonar.server.issue.ws.IssueLookupCache;
 import org.sonar.server.issue.ws.IssueShowAction;
 import org.sonar.server.issue.ws.IssuesWs;
 import org.sonar.server.issue.ws.SetTagsAction;
@@ -271,6 +272,7 @@ import org.sonar.server.search.IndexQueue;
 import org.sonar.server.search.IndexSynchronizer;
 import org.sonar.server.search.SearchClient;
 import org.sonar.server.search.SearchHealth;
+import org.sonar.server.source.HtmlSourceCache;
 import org.sonar.server.source.HtmlSourceDecorator;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.index.SourceLineIndex;
@@ -675,6 +677,7 @@ class ServerComponents {
     pico.addSingleton(IssuesWs.class);
     pico.addSingleton(IssueShowAction.class);
     pico.addSingleton(org.sonar.server.issue.ws.SearchAction.class);
+    pico.addSingleton(IssueLookupCache.class);
     pico.addSingleton(org.sonar.server.issue.ws.TagsAction.class);
     pico.addSingleton(SetTagsAction.class);
     pico.addSingleton(ComponentTagsAction.class);
@@ -724,6 +727,7 @@ class ServerComponents {
 
     // source
     pico.addSingleton(HtmlSourceDecorator.class);
+    pico.addSingleton(HtmlSourceCache.class);
     pico.addSingleton(SourceService.class);
     pico.addSingleton(SourcesWs.class);
     pico.addSingleton(ShowAction.class);
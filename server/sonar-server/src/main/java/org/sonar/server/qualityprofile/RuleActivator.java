@@ -21,6 +21,7 @@ package org.sonar.server.qualityprofile;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.sonar.api.ServerComponent;
 import org.sonar.api.server.rule.RuleParamType;
 import org.sonar.core.activity.Activity;
@@ -48,6 +49,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -77,20 +79,28 @@ public class RuleActivator implements ServerComponent {
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, String profileKey) {
     RuleActivatorContext context = contextFactory.create(profileKey, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
+  }
+
+  private List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, String profileKey, @Nullable RuleActivatorCache cache) {
+    if (cache == null) {
+      return activate(dbSession, activation, profileKey);
+    }
+    RuleActivatorContext context = contextFactory.create(profileKey, activation.getRuleKey(), cache);
+    return doActivate(dbSession, activation, context, cache);
   }
 
   public List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QProfileName profileName) {
     RuleActivatorContext context = contextFactory.create(profileName, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
   }
 
   List<ActiveRuleChange> activate(DbSession dbSession, RuleActivation activation, QualityProfileDto profileDto) {
     RuleActivatorContext context = contextFactory.create(profileDto, activation.getRuleKey(), dbSession);
-    return doActivate(dbSession, activation, context);
+    return doActivate(dbSession, activation, context, null);
   }
 
-  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context) {
+  private List<ActiveRuleChange> doActivate(DbSession dbSession, RuleActivation activation, RuleActivatorContext context, @Nullable RuleActivatorCache cache) {
     context.verifyForActivation();
     List<ActiveRuleChange> changes = Lists.newArrayList();
     ActiveRuleChange change;
@@ -135,22 +145,27 @@ public class RuleActivator implements ServerComponent {
 
     if (change != null) {
       changes.add(change);
-      persist(change, context, dbSession);
+      persist(change, context, dbSession, cache);
     }
 
     if (!stopPropagation) {
-      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey()));
+      changes.addAll(cascadeActivation(dbSession, activation, context.profile().getKey(), cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDate(dbSession, context);
+      updateProfileDate(dbSession, context, cache);
     }
     return changes;
   }
 
-  private void updateProfileDate(DbSession dbSession, RuleActivatorContext context) {
-    context.profile().setRulesUpdatedAtAsDate(context.getInitDate());
-    db.qualityProfileDao().update(dbSession, context.profile());
+  private void updateProfileDate(DbSession dbSession, RuleActivatorContext context, @Nullable RuleActivatorCache cache) {
+    if (cache != null) {
+      // profiles are updated once at the end of bulk change
+      cache.markAsUpdated(context.profile());
+    } else {
+      context.profile().setRulesUpdatedAtAsDate(context.getInitDate());
+      db.qualityProfileDao().update(dbSession, context.profile());
+    }
   }
 
   /**
@@ -216,35 +231,41 @@ public class RuleActivator implements ServerComponent {
     return null;
   }
 
-  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey) {
+  private List<ActiveRuleChange> cascadeActivation(DbSession session, RuleActivation activation, String profileKey, @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
 
     // get all inherited profiles
-    List<QualityProfileDto> children = db.qualityProfileDao().findChildren(session, profileKey);
-    for (QualityProfileDto child : children) {
+    for (QualityProfileDto child : findChildren(session, profileKey, cache)) {
       RuleActivation childActivation = new RuleActivation(activation).setCascade(true);
-      changes.addAll(activate(session, childActivation, child.getKey()));
+      changes.addAll(activate(session, childActivation, child.getKey(), cache));
     }
     return changes;
   }
 
-  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private List<QualityProfileDto> findChildren(DbSession session, String profileKey, @Nullable RuleActivatorCache cache) {
+    return cache != null ? cache.children(profileKey) : db.qualityProfileDao().findChildren(session, profileKey);
+  }
+
+  private ActiveRuleDto persist(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule = null;
     if (change.getType() == ActiveRuleChange.Type.ACTIVATED) {
-      activeRule = doInsert(change, context, dbSession);
+      activeRule = doInsert(change, context, dbSession, cache);
 
     } else if (change.getType() == ActiveRuleChange.Type.DEACTIVATED) {
       ActiveRuleDao dao = db.activeRuleDao();
       dao.deleteByKey(dbSession, change.getKey());
+      if (cache != null) {
+        cache.remove(change.getKey());
+      }
 
     } else if (change.getType() == ActiveRuleChange.Type.UPDATED) {
-      activeRule = doUpdate(change, context, dbSession);
+      activeRule = doUpdate(change, context, dbSession, cache);
     }
     log.write(dbSession, Activity.Type.QPROFILE, change);
     return activeRule;
   }
 
-  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doInsert(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDto activeRule;
     ActiveRuleDao dao = db.activeRuleDao();
     activeRule = ActiveRuleDto.createFor(context.profile(), context.rule());
@@ -257,17 +278,22 @@ public class RuleActivator implements ServerComponent {
       activeRule.setInheritance(inheritance.name());
     }
     dao.insert(dbSession, activeRule);
+    List<ActiveRuleParamDto> params = Lists.newArrayList();
     for (Map.Entry<String, String> param : change.getParameters().entrySet()) {
       if (param.getValue() != null) {
         ActiveRuleParamDto paramDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
         paramDto.setValue(param.getValue());
         dao.addParam(dbSession, activeRule, paramDto);
+        params.add(paramDto);
       }
     }
+    if (cache != null) {
+      cache.put(activeRule, params);
+    }
     return activeRule;
   }
 
-  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession) {
+  private ActiveRuleDto doUpdate(ActiveRuleChange change, RuleActivatorContext context, DbSession dbSession, @Nullable RuleActivatorCache cache) {
     ActiveRuleDao dao = db.activeRuleDao();
     ActiveRuleDto activeRule = context.activeRule();
     String severity = change.getSeverity();
@@ -280,6 +306,7 @@ public class RuleActivator implements ServerComponent {
     }
     dao.update(dbSession, activeRule);
 
+    Map<String, ActiveRuleParamDto> params = Maps.newHashMap(context.activeRuleParamsAsMap());
     for (Map.Entry<String, String> param : change.getParameters().entrySet()) {
       ActiveRuleParamDto activeRuleParamDto = context.activeRuleParamsAsMap().get(param.getKey());
       if (activeRuleParamDto == null) {
@@ -288,6 +315,7 @@ public class RuleActivator implements ServerComponent {
           activeRuleParamDto = ActiveRuleParamDto.createFor(context.ruleParamsByKeys().get(param.getKey()));
           activeRuleParamDto.setValue(param.getValue());
           dao.addParam(dbSession, activeRule, activeRuleParamDto);
+          params.put(param.getKey(), activeRuleParamDto);
         }
       } else {
         if (param.getValue() != null) {
@@ -295,9 +323,13 @@ public class RuleActivator implements ServerComponent {
           dao.updateParam(dbSession, activeRule, activeRuleParamDto);
         } else {
           dao.deleteParam(dbSession, activeRule, activeRuleParamDto);
+          params.remove(param.getKey());
         }
       }
     }
+    if (cache != null) {
+      cache.put(activeRule, Lists.newArrayList(params.values()));
+    }
     return activeRule;
   }
 
@@ -339,12 +371,18 @@ public class RuleActivator implements ServerComponent {
    * @param force if true then inherited rules are deactivated
    */
   public List<ActiveRuleChange> deactivate(DbSession dbSession, ActiveRuleKey key, boolean force) {
-    return cascadeDeactivation(key, dbSession, false, force);
+    return cascadeDeactivation(key, dbSession, false, force, null);
   }
 
-  private List<ActiveRuleChange> cascadeDeactivation(ActiveRuleKey key, DbSession dbSession, boolean isCascade, boolean force) {
+  private List<ActiveRuleChange> cascadeDeactivation(ActiveRuleKey key, DbSession dbSession, boolean isCascade, boolean force,
+    @Nullable RuleActivatorCache cache) {
     List<ActiveRuleChange> changes = Lists.newArrayList();
-    RuleActivatorContext context = contextFactory.create(key.qProfile(), key.ruleKey(), dbSession);
+    RuleActivatorContext context;
+    if (cache != null) {
+      context = contextFactory.create(key.qProfile(), key.ruleKey(), cache);
+    } else {
+      context = contextFactory.create(key.qProfile(), key.ruleKey(), dbSession);
+    }
     ActiveRuleChange change;
     if (context.activeRule() == null) {
       return changes;
@@ -354,18 +392,16 @@ public class RuleActivator implements ServerComponent {
     }
     change = ActiveRuleChange.createFor(ActiveRuleChange.Type.DEACTIVATED, key);
     changes.add(change);
-    persist(change, context, dbSession);
+    persist(change, context, dbSession, cache);
 
     // get all inherited profiles
-    List<QualityProfileDto> profiles = db.qualityProfileDao().findChildren(dbSession, key.qProfile());
-
-    for (QualityProfileDto profile : profiles) {
+    for (QualityProfileDto profile : findChildren(dbSession, key.qProfile(), cache)) {
       ActiveRuleKey activeRuleKey = ActiveRuleKey.of(profile.getKey(), key.ruleKey());
-      changes.addAll(cascadeDeactivation(activeRuleKey, dbSession, true, force));
+      changes.addAll(cascadeDeactivation(activeRuleKey, dbSession, true, force, cache));
     }
 
     if (!changes.isEmpty()) {
-      updateProfileDate(dbSession, context);
+      updateProfileDate(dbSession, context, cache);
     }
 
     return changes;
@@ -385,11 +421,16 @@ public class RuleActivator implements ServerComponent {
     return value;
   }
 
+  /**
+   * Profiles, their active rules and the rules are loaded once for all the rules matching the query,
+   * then the changes are computed in memory. Profile dates are updated once at the end.
+   */
   BulkChangeResult bulkActivate(RuleQuery ruleQuery, String profileKey, @Nullable String severity) {
     BulkChangeResult result = new BulkChangeResult();
     RuleIndex ruleIndex = index.get(RuleIndex.class);
     DbSession dbSession = db.openSession(false);
     try {
+      RuleActivatorCache cache = contextFactory.createCache(profileKey, dbSession);
       Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext().setScroll(true)
         .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
       Iterator<Rule> rules = ruleSearchResult.scroll();
@@ -398,7 +439,7 @@ public class RuleActivator implements ServerComponent {
         try {
           RuleActivation activation = new RuleActivation(rule.key());
           activation.setSeverity(severity);
-          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey);
+          List<ActiveRuleChange> changes = activate(dbSession, activation, profileKey, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -410,6 +451,7 @@ public class RuleActivator implements ServerComponent {
           result.getErrors().add(e.errors());
         }
       }
+      updateProfileDates(dbSession, cache);
       dbSession.commit();
     } finally {
       dbSession.close();
@@ -417,11 +459,15 @@ public class RuleActivator implements ServerComponent {
     return result;
   }
 
+  /**
+   * See {@link #bulkActivate(RuleQuery, String, String)}
+   */
   BulkChangeResult bulkDeactivate(RuleQuery ruleQuery, String profile) {
     DbSession dbSession = db.openSession(false);
     try {
       RuleIndex ruleIndex = index.get(RuleIndex.class);
       BulkChangeResult result = new BulkChangeResult();
+      RuleActivatorCache cache = contextFactory.createCache(profile, dbSession);
       Result<Rule> ruleSearchResult = ruleIndex.search(ruleQuery, new QueryContext().setScroll(true)
         .setFieldsToReturn(Arrays.asList(RuleNormalizer.RuleField.KEY.field())));
       Iterator<Rule> rules = ruleSearchResult.scroll();
@@ -429,7 +475,7 @@ public class RuleActivator implements ServerComponent {
         try {
           Rule rule = rules.next();
           ActiveRuleKey key = ActiveRuleKey.of(profile, rule.key());
-          List<ActiveRuleChange> changes = deactivate(dbSession, key);
+          List<ActiveRuleChange> changes = cascadeDeactivation(key, dbSession, false, false, cache);
           result.addChanges(changes);
           if (!changes.isEmpty()) {
             result.incrementSucceeded();
@@ -440,6 +486,7 @@ public class RuleActivator implements ServerComponent {
           result.getErrors().add(e.errors());
         }
       }
+      updateProfileDates(dbSession, cache);
       dbSession.commit();
       return result;
     } finally {
@@ -447,6 +494,14 @@ public class RuleActivator implements ServerComponent {
     }
   }
 
+  private void updateProfileDates(DbSession dbSession, RuleActivatorCache cache) {
+    Date now = new Date();
+    for (QualityProfileDto profile : cache.updatedProfiles()) {
+      profile.setRulesUpdatedAtAsDate(now);
+      db.qualityProfileDao().update(dbSession, profile);
+    }
+  }
+
   void setParent(String key, @Nullable String parentKey) {
     DbSession dbSession = db.openSession(false);
     try {
@@ -0,0 +1,153 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.qualityprofile;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.qualityprofile.db.ActiveRuleDto;
+import org.sonar.core.qualityprofile.db.ActiveRuleKey;
+import org.sonar.core.qualityprofile.db.ActiveRuleParamDto;
+import org.sonar.core.qualityprofile.db.QualityProfileDto;
+import org.sonar.core.rule.RuleDto;
+import org.sonar.core.rule.RuleParamDto;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.exceptions.BadRequestException;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory state of a profile, of its parent and of its descendants, used by bulk changes of
+ * {@link RuleActivator} to avoid loading the profile hierarchy and its active rules once per rule.
+ * It's kept up-to-date with the changes persisted during the bulk change. Not thread-safe.
+ */
+class RuleActivatorCache {
+
+  private final DbClient db;
+  private final DbSession session;
+  private final Map<String, QualityProfileDto> profilesByKey = Maps.newHashMap();
+  private final ListMultimap<String, QualityProfileDto> childrenByKey = ArrayListMultimap.create();
+  private final Map<ActiveRuleKey, ActiveRuleDto> activeRules = Maps.newHashMap();
+  private final ListMultimap<ActiveRuleKey, ActiveRuleParamDto> activeRuleParams = ArrayListMultimap.create();
+  private final Map<RuleKey, RuleDto> rules = Maps.newHashMap();
+  private final ListMultimap<RuleKey, RuleParamDto> ruleParams = ArrayListMultimap.create();
+  private final Set<QualityProfileDto> updatedProfiles = Sets.newLinkedHashSet();
+
+  RuleActivatorCache(DbClient db, DbSession session, String profileKey) {
+    this.db = db;
+    this.session = session;
+    QualityProfileDto profile = db.qualityProfileDao().getByKey(session, profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    loadProfile(profile);
+    String parentKee = profile.getParentKee();
+    if (parentKee != null) {
+      QualityProfileDto parent = db.qualityProfileDao().getByKey(session, parentKee);
+      if (parent != null) {
+        loadProfile(parent);
+      }
+    }
+    for (QualityProfileDto descendant : db.qualityProfileDao().findDescendants(session, profileKey)) {
+      loadProfile(descendant);
+      childrenByKey.put(descendant.getParentKee(), descendant);
+    }
+  }
+
+  private void loadProfile(QualityProfileDto profile) {
+    profilesByKey.put(profile.getKey(), profile);
+    Map<Integer, ActiveRuleKey> keysById = Maps.newHashMap();
+    for (ActiveRuleDto activeRule : db.activeRuleDao().findByProfileKey(session, profile.getKey())) {
+      activeRules.put(activeRule.getKey(), activeRule);
+      keysById.put(activeRule.getId(), activeRule.getKey());
+    }
+    for (ActiveRuleParamDto param : db.activeRuleDao().findParamsByProfileKey(session, profile.getKey())) {
+      ActiveRuleKey key = keysById.get(param.getActiveRuleId());
+      if (key != null) {
+        activeRuleParams.put(key, param);
+      }
+    }
+  }
+
+  QualityProfileDto profile(String profileKey) {
+    QualityProfileDto profile = profilesByKey.get(profileKey);
+    if (profile == null) {
+      throw new BadRequestException("Quality profile not found: " + profileKey);
+    }
+    return profile;
+  }
+
+  List<QualityProfileDto> children(String profileKey) {
+    return childrenByKey.get(profileKey);
+  }
+
+  RuleDto rule(RuleKey ruleKey) {
+    RuleDto rule = rules.get(ruleKey);
+    if (rule == null) {
+      rule = db.ruleDao().getNullableByKey(session, ruleKey);
+      if (rule == null) {
+        throw new BadRequestException("Rule not found: " + ruleKey);
+      }
+      rules.put(ruleKey, rule);
+      ruleParams.putAll(ruleKey, db.ruleDao().findRuleParamsByRuleKey(session, ruleKey));
+    }
+    return rule;
+  }
+
+  Collection<RuleParamDto> ruleParams(RuleKey ruleKey) {
+    rule(ruleKey);
+    return ruleParams.get(ruleKey);
+  }
+
+  @CheckForNull
+  ActiveRuleDto activeRule(ActiveRuleKey key) {
+    return activeRules.get(key);
+  }
+
+  Collection<ActiveRuleParamDto> activeRuleParams(ActiveRuleKey key) {
+    return activeRuleParams.get(key);
+  }
+
+  void put(ActiveRuleDto activeRule, Collection<ActiveRuleParamDto> params) {
+    activeRules.put(activeRule.getKey(), activeRule);
+    activeRuleParams.replaceValues(activeRule.getKey(), params);
+  }
+
+  void remove(ActiveRuleKey key) {
+    activeRules.remove(key);
+    activeRuleParams.removeAll(key);
+  }
+
+  void markAsUpdated(QualityProfileDto profile) {
+    updatedProfiles.add(profile);
+  }
+
+  Collection<QualityProfileDto> updatedProfiles() {
+    return updatedProfiles;
+  }
+}
@@ -64,6 +64,33 @@ public class RuleActivatorContextFactory implements ServerComponent {
     return create(ruleKey, session, new RuleActivatorContext().setProfile(profile));
   }
 
+  /**
+   * Same as {@link #create(String, RuleKey, DbSession)} but reads profiles, active rules and rules
+   * from a cache loaded once for all the rules of a bulk change.
+   */
+  RuleActivatorContext create(String profileKey, RuleKey ruleKey, RuleActivatorCache cache) {
+    RuleActivatorContext context = new RuleActivatorContext();
+    context.setProfile(cache.profile(profileKey));
+    context.setRule(cache.rule(ruleKey));
+    context.setRuleParams(cache.ruleParams(ruleKey));
+    ActiveRuleKey key = ActiveRuleKey.of(profileKey, ruleKey);
+    ActiveRuleDto activeRule = cache.activeRule(key);
+    context.setActiveRule(activeRule);
+    context.setActiveRuleParams(activeRule != null ? cache.activeRuleParams(key) : null);
+    String parentKee = context.profile().getParentKee();
+    if (parentKee != null) {
+      ActiveRuleKey parentKey = ActiveRuleKey.of(parentKee, ruleKey);
+      ActiveRuleDto parentActiveRule = cache.activeRule(parentKey);
+      context.setParentActiveRule(parentActiveRule);
+      context.setParentActiveRuleParams(parentActiveRule != null ? cache.activeRuleParams(parentKey) : null);
+    }
+    return context;
+  }
+
+  RuleActivatorCache createCache(String profileKey, DbSession session) {
+    return new RuleActivatorCache(db, session, profileKey);
+  }
+
   private RuleActivatorContext create(RuleKey ruleKey, DbSession session, RuleActivatorContext context) {
     initRule(ruleKey, context, session);
     initActiveRules(context.profile().getKey(), ruleKey, context, session, false);
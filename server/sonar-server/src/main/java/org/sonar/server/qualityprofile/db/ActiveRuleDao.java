@@ -193,6 +193,10 @@ public class ActiveRuleDao extends BaseDao<ActiveRuleMapper, ActiveRuleDto, Acti
     return mapper(session).selectParamsByActiveRuleId(activeRule.getId());
   }
 
+  public List<ActiveRuleParamDto> findParamsByProfileKey(DbSession session, String profileKey) {
+    return mapper(session).selectParamsByProfileKey(profileKey);
+  }
+
   @CheckForNull
   public ActiveRuleParamDto getParamByKeyAndName(ActiveRuleKey key, String name, DbSession session) {
     Preconditions.checkNotNull(key, ACTIVE_RULE_KEY_CANNOT_BE_NULL);
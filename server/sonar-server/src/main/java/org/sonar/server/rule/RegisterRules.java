@@ -25,6 +25,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
@@ -37,6 +38,7 @@ import org.sonar.api.server.debt.DebtRemediationFunction;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.TimeProfiler;
+import org.sonar.core.persistence.DatabaseVersion;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.qualityprofile.db.ActiveRuleDto;
 import org.sonar.core.qualityprofile.db.ActiveRuleParamDto;
@@ -45,6 +47,7 @@ import org.sonar.core.rule.RuleDto.Format;
 import org.sonar.core.rule.RuleParamDto;
 import org.sonar.core.technicaldebt.db.CharacteristicDao;
 import org.sonar.core.technicaldebt.db.CharacteristicDto;
+import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.qualityprofile.RuleActivator;
 import org.sonar.server.startup.RegisterDebtModel;
@@ -62,6 +65,7 @@ import static com.google.common.collect.Lists.newArrayList;
 public class RegisterRules implements Startable {
 
   private static final Logger LOG = LoggerFactory.getLogger(RegisterRules.class);
+  private static final char FINGERPRINT_SEPARATOR = '@';
 
   private final RuleDefinitionsLoader defLoader;
   private final RuleActivator ruleActivator;
@@ -93,15 +97,34 @@ public class RegisterRules implements Startable {
     try {
       Map<RuleKey, RuleDto> allRules = loadRules(session);
       Map<String, CharacteristicDto> allCharacteristics = loadCharacteristics(session);
+      Map<String, String> fingerprints = loadFingerprints(session);
 
       RulesDefinition.Context context = defLoader.load();
-      for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
-        if (languages.get(repoDef.language()) != null) {
-          for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
-            registerRule(ruleDef, allRules, allCharacteristics, session);
+      for (Map.Entry<String, List<RulesDefinition.ExtendedRepository>> entry : getRepositoriesByKey(context).entrySet()) {
+        String repoKey = entry.getKey();
+        List<RulesDefinition.ExtendedRepository> repoDefs = entry.getValue();
+        String fingerprint = fingerprint(repoDefs, allCharacteristics);
+        if (fingerprint.equals(fingerprints.get(repoKey)) && isRegistered(repoDefs, allRules)) {
+          // definitions did not change since last startup
+          LOG.debug(String.format("Rules of repository %s are unchanged", repoKey));
+          for (RulesDefinition.ExtendedRepository repoDef : repoDefs) {
+            if (languages.get(repoDef.language()) != null) {
+              for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+                allRules.remove(RuleKey.of(ruleDef.repository().key(), ruleDef.key()));
+              }
+            }
           }
-          session.commit();
+          continue;
         }
+        for (RulesDefinition.ExtendedRepository repoDef : repoDefs) {
+          if (languages.get(repoDef.language()) != null) {
+            for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+              registerRule(ruleDef, allRules, allCharacteristics, session);
+            }
+          }
+        }
+        saveFingerprint(repoKey, fingerprint, fingerprints, session);
+        session.commit();
       }
       List<RuleDto> activeRules = processRemainingDbRules(allRules.values(), session);
       removeActiveRulesOnStillExistingRepositories(session, activeRules, context);
@@ -153,6 +176,100 @@ public class RegisterRules implements Startable {
     return rules;
   }
 
+  /**
+   * Fingerprints of repositories registered at last startup, by repository key
+   */
+  private Map<String, String> loadFingerprints(DbSession session) {
+    Map<String, String> fingerprints = new HashMap<String, String>();
+    for (LoadedTemplateDto template : dbClient.loadedTemplateDao().selectByType(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE)) {
+      String key = template.getKey();
+      int separator = key.lastIndexOf(FINGERPRINT_SEPARATOR);
+      if (separator > 0) {
+        fingerprints.put(key.substring(0, separator), key.substring(separator + 1));
+      }
+    }
+    return fingerprints;
+  }
+
+  private void saveFingerprint(String repoKey, String fingerprint, Map<String, String> fingerprints, DbSession session) {
+    String previous = fingerprints.get(repoKey);
+    if (!fingerprint.equals(previous)) {
+      if (previous != null) {
+        dbClient.loadedTemplateDao().delete(session, LoadedTemplateDto.RULE_REPOSITORY_TYPE, repoKey + FINGERPRINT_SEPARATOR + previous);
+      }
+      dbClient.loadedTemplateDao().insert(new LoadedTemplateDto(repoKey + FINGERPRINT_SEPARATOR + fingerprint, LoadedTemplateDto.RULE_REPOSITORY_TYPE), session);
+      fingerprints.put(repoKey, fingerprint);
+    }
+  }
+
+  /**
+   * Hash of everything that is merged into db by {@link #registerRule(RulesDefinition.Rule, Map, Map, DbSession)}. The db schema
+   * version is included so that rules are registered again after upgrades.
+   */
+  private String fingerprint(List<RulesDefinition.ExtendedRepository> repoDefs, Map<String, CharacteristicDto> allCharacteristics) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(DatabaseVersion.LAST_VERSION).append('\n');
+    for (RulesDefinition.ExtendedRepository repoDef : repoDefs) {
+      sb.append(repoDef.key()).append('|').append(repoDef.language()).append('|').append(languages.get(repoDef.language()) != null).append('\n');
+      List<RulesDefinition.Rule> ruleDefs = newArrayList(repoDef.rules());
+      Collections.sort(ruleDefs, RuleDefComparator.INSTANCE);
+      for (RulesDefinition.Rule ruleDef : ruleDefs) {
+        appendRule(sb, ruleDef, allCharacteristics);
+      }
+    }
+    return DigestUtils.md5Hex(sb.toString());
+  }
+
+  private static void appendRule(StringBuilder sb, RulesDefinition.Rule ruleDef, Map<String, CharacteristicDto> allCharacteristics) {
+    sb.append(ruleDef.key()).append('|')
+      .append(ruleDef.name()).append('|')
+      .append(ruleDef.htmlDescription()).append('|')
+      .append(ruleDef.markdownDescription()).append('|')
+      .append(ruleDef.severity()).append('|')
+      .append(ruleDef.template()).append('|')
+      .append(ruleDef.status()).append('|')
+      .append(ruleDef.internalKey()).append('|')
+      .append(new TreeSet<String>(ruleDef.tags())).append('|')
+      .append(ruleDef.effortToFixDescription()).append('|');
+    CharacteristicDto characteristic = ruleDef.debtSubCharacteristic() != null ? allCharacteristics.get(ruleDef.debtSubCharacteristic()) : null;
+    if (characteristic != null) {
+      sb.append(characteristic.getKey()).append('|').append(characteristic.getId()).append('|').append(characteristic.getParentId()).append('|');
+    }
+    DebtRemediationFunction function = ruleDef.debtRemediationFunction();
+    if (function != null) {
+      sb.append(function.type()).append('|').append(function.coefficient()).append('|').append(function.offset()).append('|');
+    }
+    sb.append('\n');
+    Map<String, RulesDefinition.Param> paramDefs = new TreeMap<String, RulesDefinition.Param>();
+    for (RulesDefinition.Param paramDef : ruleDef.params()) {
+      paramDefs.put(paramDef.key(), paramDef);
+    }
+    for (RulesDefinition.Param paramDef : paramDefs.values()) {
+      sb.append(paramDef.key()).append('|')
+        .append(paramDef.type()).append('|')
+        .append(paramDef.defaultValue()).append('|')
+        .append(paramDef.description()).append('\n');
+    }
+  }
+
+  /**
+   * Protects against changes done in db since the fingerprint was saved, for example rules
+   * disabled while the plugin was uninstalled.
+   */
+  private boolean isRegistered(List<RulesDefinition.ExtendedRepository> repoDefs, Map<RuleKey, RuleDto> allRules) {
+    for (RulesDefinition.ExtendedRepository repoDef : repoDefs) {
+      if (languages.get(repoDef.language()) != null) {
+        for (RulesDefinition.Rule ruleDef : repoDef.rules()) {
+          RuleDto rule = allRules.get(RuleKey.of(ruleDef.repository().key(), ruleDef.key()));
+          if (rule == null || rule.getStatus() != ruleDef.status()) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
   private Map<String, CharacteristicDto> loadCharacteristics(DbSession session) {
     Map<String, CharacteristicDto> characteristics = new HashMap<String, CharacteristicDto>();
     for (CharacteristicDto characteristicDto : characteristicDao.selectEnabledCharacteristics(session)) {
@@ -183,6 +300,22 @@ public class RegisterRules implements Startable {
     return characteristicDto;
   }
 
+  /**
+   * Repositories and their extensions, grouped by repository key
+   */
+  private Map<String, List<RulesDefinition.ExtendedRepository>> getRepositoriesByKey(RulesDefinition.Context context) {
+    Map<String, List<RulesDefinition.ExtendedRepository>> repositoriesByKey = new LinkedHashMap<String, List<RulesDefinition.ExtendedRepository>>();
+    for (RulesDefinition.ExtendedRepository repoDef : getRepositories(context)) {
+      List<RulesDefinition.ExtendedRepository> repoDefs = repositoriesByKey.get(repoDef.key());
+      if (repoDefs == null) {
+        repoDefs = newArrayList();
+        repositoriesByKey.put(repoDef.key(), repoDefs);
+      }
+      repoDefs.add(repoDef);
+    }
+    return repositoriesByKey;
+  }
+
   private List<RulesDefinition.ExtendedRepository> getRepositories(RulesDefinition.Context context) {
     List<RulesDefinition.ExtendedRepository> repositories = new ArrayList<RulesDefinition.ExtendedRepository>();
     for (RulesDefinition.Repository repoDef : context.repositories()) {
@@ -491,4 +624,13 @@ public class RegisterRules implements Startable {
       }
     }
   }
+
+  private enum RuleDefComparator implements Comparator<RulesDefinition.Rule> {
+    INSTANCE;
+
+    @Override
+    public int compare(RulesDefinition.Rule r1, RulesDefinition.Rule r2) {
+      return r1.key().compareTo(r2.key());
+    }
+  }
 }
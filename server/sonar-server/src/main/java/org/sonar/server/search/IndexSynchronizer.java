@@ -19,8 +19,12 @@
  */
 package org.sonar.server.search;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.activity.index.ActivityIndex;
 import org.sonar.server.db.Dao;
@@ -34,9 +38,34 @@ import org.sonar.server.user.index.UserIndexer;
 import org.sonar.server.view.index.ViewIndexer;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Synchronizes Elasticsearch indexes with db at server startup. Indexes are independent, so they are
+ * synchronized concurrently by a bounded pool of threads (see {@link #THREADS_PROPERTY}).
+ * <p/>
+ * The low-priority indexes (source lines and activities) can be synchronized in background,
+ * so that server is opened before they are up-to-date (see {@link #BACKGROUND_PROPERTY}).
+ */
 public class IndexSynchronizer {
 
+  /**
+   * Max number of indexes synchronized at the same time
+   */
+  public static final String THREADS_PROPERTY = "sonar.search.synchronization.threads";
+  public static final int DEFAULT_THREADS = 2;
+
+  /**
+   * If true, server does not wait for the synchronization of low-priority indexes. Default is false.
+   */
+  public static final String BACKGROUND_PROPERTY = "sonar.search.synchronization.background";
+
   private static final Logger LOG = LoggerFactory.getLogger(IndexSynchronizer.class);
 
   private final DbClient db;
@@ -46,9 +75,11 @@ public class IndexSynchronizer {
   private final IssueIndexer issueIndexer;
   private final UserIndexer userIndexer;
   private final ViewIndexer viewIndexer;
+  private final Settings settings;
 
   public IndexSynchronizer(DbClient db, IndexClient index, SourceLineIndexer sourceLineIndexer,
-    IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer, UserIndexer userIndexer, ViewIndexer viewIndexer) {
+    IssueAuthorizationIndexer issueAuthorizationIndexer, IssueIndexer issueIndexer, UserIndexer userIndexer, ViewIndexer viewIndexer,
+    Settings settings) {
     this.db = db;
     this.index = index;
     this.sourceLineIndexer = sourceLineIndexer;
@@ -56,31 +87,71 @@ public class IndexSynchronizer {
     this.issueIndexer = issueIndexer;
     this.userIndexer = userIndexer;
     this.viewIndexer = viewIndexer;
+    this.settings = settings;
   }
 
   public void execute() {
-    DbSession session = db.openSession(false);
+    List<Step> highPriority = ImmutableList.of(rulesStep(), issuesStep(), usersStep(), viewsStep());
+    List<Step> lowPriority = ImmutableList.of(sourceLinesStep(), activitiesStep());
+    if (settings.getBoolean(BACKGROUND_PROPERTY)) {
+      execute(highPriority);
+      executeInBackground(lowPriority);
+    } else {
+      execute(ImmutableList.<Step>builder().addAll(highPriority).addAll(lowPriority).build());
+    }
+  }
+
+  /**
+   * Executes the steps concurrently and waits for their completion. Fails as soon as a step fails, whatever
+   * the order of steps. The other steps are then interrupted.
+   */
+  void execute(List<Step> steps) {
+    int threads = settings.getInt(THREADS_PROPERTY) > 0 ? settings.getInt(THREADS_PROPERTY) : DEFAULT_THREADS;
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, steps.size()),
+      new ThreadFactoryBuilder().setNameFormat("index-synchronizer-%d").build());
+    AtomicInteger done = new AtomicInteger(0);
     try {
-      synchronize(session, db.ruleDao(), index.get(RuleIndex.class));
-      synchronize(session, db.activeRuleDao(), index.get(ActiveRuleIndex.class));
-      synchronize(session, db.activityDao(), index.get(ActivityIndex.class));
-      session.commit();
+      CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+      for (Step step : steps) {
+        completionService.submit(new StepRunnable(step, done, steps.size()), null);
+      }
+      for (int i = 0; i < steps.size(); i++) {
+        // steps are awaited in order of completion
+        completionService.take().get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during synchronization of indexes", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
     } finally {
-      session.close();
+      executor.shutdownNow();
     }
+  }
 
-    LOG.info("Index issues");
-    issueAuthorizationIndexer.index();
-    issueIndexer.index();
-
-    LOG.info("Index source files");
-    sourceLineIndexer.index();
-
-    LOG.info("Index users");
-    userIndexer.index();
-
-    LOG.info("Index views");
-    viewIndexer.index();
+  /**
+   * Executes the steps one after the other in a daemon thread. Failures are logged.
+   */
+  void executeInBackground(final List<Step> steps) {
+    LOG.info("Index {} in background", steps);
+    ExecutorService executor = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("index-synchronizer-background").setDaemon(true).build());
+    AtomicInteger done = new AtomicInteger(0);
+    for (Step step : steps) {
+      final StepRunnable runnable = new StepRunnable(step, done, steps.size());
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            runnable.run();
+          } catch (RuntimeException e) {
+            LOG.error("Fail to index " + runnable.step + " in background", e);
+          }
+        }
+      });
+    }
+    // submitted steps are still executed
+    executor.shutdown();
   }
 
   void synchronize(DbSession session, Dao dao, Index index) {
@@ -94,4 +165,111 @@ public class IndexSynchronizer {
       dao.synchronizeAfter(session, lastSynch);
     }
   }
+
+  private Step rulesStep() {
+    return new Step("rules") {
+      @Override
+      void execute() {
+        // active rules are children of rules
+        DbSession session = db.openSession(false);
+        try {
+          synchronize(session, db.ruleDao(), index.get(RuleIndex.class));
+          synchronize(session, db.activeRuleDao(), index.get(ActiveRuleIndex.class));
+          session.commit();
+        } finally {
+          session.close();
+        }
+      }
+    };
+  }
+
+  private Step activitiesStep() {
+    return new Step("activities") {
+      @Override
+      void execute() {
+        DbSession session = db.openSession(false);
+        try {
+          synchronize(session, db.activityDao(), index.get(ActivityIndex.class));
+          session.commit();
+        } finally {
+          session.close();
+        }
+      }
+    };
+  }
+
+  private Step issuesStep() {
+    return new Step("issues") {
+      @Override
+      void execute() {
+        issueAuthorizationIndexer.index();
+        issueIndexer.index();
+      }
+    };
+  }
+
+  private Step sourceLinesStep() {
+    return new Step("source files") {
+      @Override
+      void execute() {
+        sourceLineIndexer.index();
+      }
+    };
+  }
+
+  private Step usersStep() {
+    return new Step("users") {
+      @Override
+      void execute() {
+        userIndexer.index();
+      }
+    };
+  }
+
+  private Step viewsStep() {
+    return new Step("views") {
+      @Override
+      void execute() {
+        viewIndexer.index();
+      }
+    };
+  }
+
+  abstract static class Step {
+    private final String name;
+
+    Step(String name) {
+      this.name = name;
+    }
+
+    abstract void execute();
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Logs duration and progress of a step
+   */
+  private static class StepRunnable implements Runnable {
+    private final Step step;
+    private final AtomicInteger done;
+    private final int total;
+
+    StepRunnable(Step step, AtomicInteger done, int total) {
+      this.step = step;
+      this.done = done;
+      this.total = total;
+    }
+
+    @Override
+    public void run() {
+      LOG.info("Index {}", step);
+      long start = System.currentTimeMillis();
+      step.execute();
+      LOG.info("Index {} done in {} ms ({}/{})", step, System.currentTimeMillis() - start, done.incrementAndGet(), total);
+    }
+  }
 }
@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.picocontainer.Startable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
+import org.sonar.server.search.BaseNormalizer;
+import org.sonar.server.source.index.SourceLineDoc;
+
+import javax.annotation.CheckForNull;
+
+/**
+ * Cache of source lines decorated by {@link HtmlSourceDecorator}. Entries are identified by file, line
+ * and date of indexing of the line, so that they are not used anymore when a new analysis is indexed.
+ * The cache is bounded by a number of lines, computed from the max memory used by a decorated line.
+ * Lines longer than {@link #MAX_HTML_LENGTH} are not cached. Least recently used lines are evicted first.
+ */
+public class HtmlSourceCache implements ServerComponent, Startable {
+
+  /**
+   * Max size of cache, in Mb. Zero disables the cache.
+   */
+  public static final String SIZE_PROPERTY = "sonar.web.sourceCache.size";
+  public static final int DEFAULT_SIZE = 16;
+
+  /**
+   * Max length of a cached decorated line
+   */
+  static final int MAX_HTML_LENGTH = 1000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(HtmlSourceCache.class);
+  private static final long ONE_MB = 1024L * 1024L;
+  // chars of decorated line and file uuid, object headers and references of key and entry
+  private static final long MAX_ENTRY_BYTES = 2L * MAX_HTML_LENGTH + 256L;
+
+  private final HtmlSourceDecorator decorator;
+  private final long maxLines;
+  private final Cache<LineKey, Optional<String>> cache;
+  // line requested by the current thread, decorated by the cache loader
+  private final ThreadLocal<SourceLineDoc> requestedLine = new ThreadLocal<SourceLineDoc>();
+
+  public HtmlSourceCache(HtmlSourceDecorator decorator, Settings settings) {
+    this.decorator = decorator;
+    int size = settings.hasKey(SIZE_PROPERTY) ? settings.getInt(SIZE_PROPERTY) : DEFAULT_SIZE;
+    this.maxLines = Math.max(size * ONE_MB / MAX_ENTRY_BYTES, 0L);
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxLines).build(new CacheLoader<LineKey, Optional<String>>() {
+      @Override
+      public Optional<String> load(LineKey key) {
+        return Optional.fromNullable(decorate(requestedLine.get()));
+      }
+    });
+  }
+
+  @CheckForNull
+  public String getDecoratedSourceAsHtml(SourceLineDoc line) {
+    if (maxLines == 0L || line.source() == null || !line.getFields().containsKey(BaseNormalizer.UPDATED_AT_FIELD)) {
+      return decorate(line);
+    }
+    LineKey key = new LineKey(line.fileUuid(), line.line(), line.updateDate().getTime());
+    requestedLine.set(line);
+    try {
+      Optional<String> html = cache.getUnchecked(key);
+      if (html.isPresent() && html.get().length() > MAX_HTML_LENGTH) {
+        // too large to be cached
+        cache.invalidate(key);
+      }
+      return html.orNull();
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      requestedLine.remove();
+    }
+  }
+
+  /**
+   * Number of lines read from cache since startup
+   */
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Number of lines decorated since startup
+   */
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Number of cached lines
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  public void clear() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    if (maxLines > 0L) {
+      CacheStats stats = cache.stats();
+      LOG.info(String.format("Cache of HTML sources: %d hits, %d misses, %d evictions", stats.hitCount(), stats.missCount(), stats.evictionCount()));
+    }
+    clear();
+  }
+
+  @CheckForNull
+  private String decorate(SourceLineDoc line) {
+    return decorator.getDecoratedSourceAsHtml(line.source(), line.highlighting(), line.symbols());
+  }
+
+  private static final class LineKey {
+    private final String fileUuid;
+    private final int line;
+    private final long updatedAt;
+
+    LineKey(String fileUuid, int line, long updatedAt) {
+      this.fileUuid = fileUuid;
+      this.line = line;
+      this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      LineKey other = (LineKey) o;
+      return line == other.line && updatedAt == other.updatedAt && fileUuid.equals(other.fileUuid);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(fileUuid, line, updatedAt);
+    }
+
+    @Override
+    public String toString() {
+      return fileUuid + ":" + line;
+    }
+  }
+}
@@ -42,12 +42,12 @@ import java.util.List;
 public class SourceService implements ServerComponent {
 
   private final DbClient dbClient;
-  private final HtmlSourceDecorator sourceDecorator;
+  private final HtmlSourceCache htmlSourceCache;
   private final SourceLineIndex sourceLineIndex;
 
-  public SourceService(DbClient dbClient, HtmlSourceDecorator sourceDecorator, SourceLineIndex sourceLineIndex) {
+  public SourceService(DbClient dbClient, HtmlSourceCache htmlSourceCache, SourceLineIndex sourceLineIndex) {
     this.dbClient = dbClient;
-    this.sourceDecorator = sourceDecorator;
+    this.htmlSourceCache = htmlSourceCache;
     this.sourceLineIndex = sourceLineIndex;
   }
 
@@ -72,7 +72,7 @@ public class SourceService implements ServerComponent {
     int to = (Integer) ObjectUtils.defaultIfNull(toParam, Integer.MAX_VALUE);
     List<String> lines = Lists.newArrayList();
     for (SourceLineDoc lineDoc : sourceLineIndex.getLines(fileUuid, from, to)) {
-      lines.add(sourceDecorator.getDecoratedSourceAsHtml(lineDoc.source(), lineDoc.highlighting(), lineDoc.symbols()));
+      lines.add(htmlSourceCache.getDecoratedSourceAsHtml(lineDoc));
     }
     return lines;
   }
@@ -0,0 +1,130 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.index;
+
+import com.google.common.collect.Lists;
+import org.sonar.server.search.BaseDoc;
+import org.sonar.server.search.BaseNormalizer;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consecutive lines of a file, stored in a single document of type {@link SourceLineIndexDefinition#TYPE_CHUNK}
+ */
+public class SourceLineChunkDoc extends BaseDoc {
+
+  public SourceLineChunkDoc(Map<String, Object> fields) {
+    super(fields);
+  }
+
+  public SourceLineChunkDoc() {
+    this(new HashMap<String, Object>());
+    setField(SourceLineIndexDefinition.FIELD_LINES, Lists.newArrayList());
+  }
+
+  public String projectUuid() {
+    return getField(SourceLineIndexDefinition.FIELD_PROJECT_UUID);
+  }
+
+  public SourceLineChunkDoc setProjectUuid(String projectUuid) {
+    setField(SourceLineIndexDefinition.FIELD_PROJECT_UUID, projectUuid);
+    return this;
+  }
+
+  public String fileUuid() {
+    return getField(SourceLineIndexDefinition.FIELD_FILE_UUID);
+  }
+
+  public SourceLineChunkDoc setFileUuid(String fileUuid) {
+    setField(SourceLineIndexDefinition.FIELD_FILE_UUID, fileUuid);
+    return this;
+  }
+
+  public int fromLine() {
+    return ((Number) getField(SourceLineIndexDefinition.FIELD_FROM_LINE)).intValue();
+  }
+
+  public SourceLineChunkDoc setFromLine(int line) {
+    setField(SourceLineIndexDefinition.FIELD_FROM_LINE, line);
+    return this;
+  }
+
+  public int toLine() {
+    return ((Number) getField(SourceLineIndexDefinition.FIELD_TO_LINE)).intValue();
+  }
+
+  public SourceLineChunkDoc setToLine(int line) {
+    setField(SourceLineIndexDefinition.FIELD_TO_LINE, line);
+    return this;
+  }
+
+  public Date updateDate() {
+    return getFieldAsDate(BaseNormalizer.UPDATED_AT_FIELD);
+  }
+
+  public SourceLineChunkDoc setUpdateDate(Date updatedAt) {
+    setField(BaseNormalizer.UPDATED_AT_FIELD, updatedAt);
+    return this;
+  }
+
+  /**
+   * Number of lines added to the chunk
+   */
+  public int size() {
+    return rawLines().size();
+  }
+
+  /**
+   * Appends a line. Lines must be added in order.
+   */
+  public SourceLineChunkDoc addLine(SourceLineDoc line) {
+    if (rawLines().isEmpty()) {
+      setFromLine(line.line());
+    }
+    setToLine(line.line());
+    rawLines().add(line.getFields());
+    return this;
+  }
+
+  /**
+   * Lines of the chunk between <code>from</code> and <code>to</code> (both inclusive)
+   */
+  public List<SourceLineDoc> getLines(int from, int to) {
+    List<SourceLineDoc> result = Lists.newArrayList();
+    for (Map<String, Object> lineFields : rawLines()) {
+      SourceLineDoc line = new SourceLineDoc(lineFields);
+      if (line.line() >= from && line.line() <= to) {
+        result.add(line);
+      }
+    }
+    return result;
+  }
+
+  public String key() {
+    return String.format("%s_%d", fileUuid(), fromLine());
+  }
+
+  private List<Map<String, Object>> rawLines() {
+    return getField(SourceLineIndexDefinition.FIELD_LINES);
+  }
+}
@@ -26,6 +26,7 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.sort.SortOrder;
 import org.sonar.api.ServerComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.exceptions.NotFoundException;
 
@@ -36,9 +37,11 @@ public class SourceLineIndex implements ServerComponent {
   private static final int MAX_RESULT = 500000;
 
   private final EsClient esClient;
+  private final int chunkSize;
 
-  public SourceLineIndex(EsClient esClient) {
+  public SourceLineIndex(EsClient esClient, Settings settings) {
     this.esClient = esClient;
+    this.chunkSize = SourceLineIndexDefinition.chunkSize(settings);
   }
 
   /**
@@ -60,6 +63,9 @@ public class SourceLineIndex implements ServerComponent {
       size = MAX_RESULT;
     }
     int toLimited = size + from - 1;
+    if (chunkSize > 0) {
+      return getLinesFromChunks(fileUuid, from, toLimited);
+    }
 
     for (SearchHit hit : esClient.prepareSearch(SourceLineIndexDefinition.INDEX)
       .setTypes(SourceLineIndexDefinition.TYPE)
@@ -77,8 +83,36 @@ public class SourceLineIndex implements ServerComponent {
     return lines;
   }
 
+  /**
+   * Only the chunks overlapping the range of lines are loaded
+   */
+  private List<SourceLineDoc> getLinesFromChunks(String fileUuid, int from, int to) {
+    List<SourceLineDoc> lines = Lists.newArrayList();
+    // a range of n lines overlaps at most ceil((n - 1) / chunkSize) + 1 chunks
+    int maxChunks = (to - from + chunkSize - 1) / chunkSize + 1;
+    for (SearchHit hit : esClient.prepareSearch(SourceLineIndexDefinition.INDEX)
+      .setTypes(SourceLineIndexDefinition.TYPE_CHUNK)
+      .setSize(maxChunks)
+      .setQuery(QueryBuilders.boolQuery()
+        .must(QueryBuilders.termQuery(SourceLineIndexDefinition.FIELD_FILE_UUID, fileUuid))
+        .must(QueryBuilders.rangeQuery(SourceLineIndexDefinition.FIELD_FROM_LINE).lte(to))
+        .must(QueryBuilders.rangeQuery(SourceLineIndexDefinition.FIELD_TO_LINE).gte(from)))
+      .addSort(SourceLineIndexDefinition.FIELD_FROM_LINE, SortOrder.ASC)
+      .get().getHits().getHits()) {
+      lines.addAll(new SourceLineChunkDoc(hit.sourceAsMap()).getLines(from, to));
+    }
+    return lines;
+  }
+
   public SourceLineDoc getLine(String fileUuid, int line) {
     Preconditions.checkArgument(line > 0, "Line should be greater than 0");
+    if (chunkSize > 0) {
+      List<SourceLineDoc> lines = getLinesFromChunks(fileUuid, line, line);
+      if (lines.size() == 1) {
+        return lines.get(0);
+      }
+      throw new NotFoundException(String.format("No source found on line %s for file '%s'", line, fileUuid));
+    }
     SearchRequestBuilder request = esClient.prepareSearch(SourceLineIndexDefinition.INDEX)
       .setTypes(SourceLineIndexDefinition.TYPE)
       .setSize(1)
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.source.index;
 
+import com.google.common.collect.ImmutableMap;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.sonar.api.config.Settings;
 import org.sonar.process.ProcessConstants;
@@ -47,11 +48,28 @@ public class SourceLineIndexDefinition implements IndexDefinition {
   public static final String FIELD_OVERALL_COVERED_CONDITIONS = "overallCoveredConditions";
   public static final String FIELD_SYMBOLS = "symbols";
   public static final String FIELD_DUPLICATIONS = "duplications";
+  public static final String FIELD_FROM_LINE = "fromLine";
+  public static final String FIELD_TO_LINE = "toLine";
+  public static final String FIELD_LINES = "lines";
 
   public static final String INDEX = "sourcelines";
 
   public static final String TYPE = "sourceline";
 
+  /**
+   * Type used when {@link #CHUNK_SIZE_PROPERTY} is set. Each document stores a range of consecutive
+   * lines of a file. Lines are not searchable, they are only loaded by file and line range.
+   */
+  public static final String TYPE_CHUNK = "sourcelinechunk";
+
+  /**
+   * Number of lines stored in each document of type {@link #TYPE_CHUNK}. Default value is 0,
+   * which means one document of type {@link #TYPE} per line. The value is part of the index
+   * settings, so the index is dropped and re-populated when it is changed.
+   */
+  public static final String CHUNK_SIZE_PROPERTY = "sonar.search.sourceLines.chunkSize";
+
+  static final String SETTING_CHUNK_SIZE = "sonar_chunk_size";
 
   private final Settings settings;
 
@@ -70,6 +88,8 @@ public class SourceLineIndexDefinition implements IndexDefinition {
       index.getSettings().put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 1);
       // else keep defaults (one shard)
     }
+    // documents of the previous type or chunk size are removed when the definition changes
+    index.getSettings().put(SETTING_CHUNK_SIZE, chunkSize(settings));
 
     // type "sourceline"
     NewIndex.NewIndexType sourceLineMapping = index.createType(TYPE);
@@ -93,5 +113,25 @@ public class SourceLineIndexDefinition implements IndexDefinition {
     sourceLineMapping.stringFieldBuilder(FIELD_SYMBOLS).build();
     sourceLineMapping.createShortField(FIELD_DUPLICATIONS);
     sourceLineMapping.createDateTimeField(BaseNormalizer.UPDATED_AT_FIELD);
+
+    // type "sourcelinechunk"
+    NewIndex.NewIndexType chunkMapping = index.createType(TYPE_CHUNK);
+    chunkMapping.stringFieldBuilder(FIELD_PROJECT_UUID).build();
+    chunkMapping.stringFieldBuilder(FIELD_FILE_UUID).build();
+    chunkMapping.createIntegerField(FIELD_FROM_LINE);
+    chunkMapping.createIntegerField(FIELD_TO_LINE);
+    chunkMapping.setProperty(FIELD_LINES, ImmutableMap.of("type", "object", "enabled", false));
+    chunkMapping.createDateTimeField(BaseNormalizer.UPDATED_AT_FIELD);
+  }
+
+  public static int chunkSize(Settings settings) {
+    return Math.max(settings.getInt(CHUNK_SIZE_PROPERTY), 0);
+  }
+
+  /**
+   * Type of the documents containing source lines, depending on {@link #CHUNK_SIZE_PROPERTY}
+   */
+  public static String type(Settings settings) {
+    return chunkSize(settings) > 0 ? TYPE_CHUNK : TYPE;
   }
 }
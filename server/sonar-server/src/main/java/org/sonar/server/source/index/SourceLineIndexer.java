@@ -19,39 +19,100 @@
  */
 package org.sonar.server.source.index;
 
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.index.query.FilterBuilders;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.sonar.api.config.Settings;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.PartitionedIndexing;
 
 import java.sql.Connection;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_FILE_UUID;
+import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_FROM_LINE;
+import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_LINE;
 import static org.sonar.server.source.index.SourceLineIndexDefinition.FIELD_PROJECT_UUID;
 
+/**
+ * Lines are indexed as they are parsed. Depending on {@link SourceLineIndexDefinition#CHUNK_SIZE_PROPERTY},
+ * each line is a document or lines are grouped in documents of fixed size.
+ */
 public class SourceLineIndexer extends BaseIndexer {
 
+  private static final String SQL_PARTITIONS = "select project_uuid, min(id), max(id), count(id) from file_sources group by project_uuid";
+
+  // max number of files per partition
+  private static final int PARTITION_SIZE = 5000;
+
   private final DbClient dbClient;
+  private final int indexingThreads;
+  private final int chunkSize;
 
-  public SourceLineIndexer(DbClient dbClient, EsClient esClient) {
-    super(esClient, 0L, SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE);
+  public SourceLineIndexer(DbClient dbClient, EsClient esClient, Settings settings) {
+    super(esClient, 0L, SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.type(settings));
     this.dbClient = dbClient;
+    this.indexingThreads = PartitionedIndexing.threads(settings);
+    this.chunkSize = SourceLineIndexDefinition.chunkSize(settings);
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    if (lastUpdatedAt == 0L) {
+      // index is empty
+      return doIndexAll();
+    }
     final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    bulk.setLarge(lastUpdatedAt == 0L);
 
     DbSession dbSession = dbClient.openSession(false);
     Connection dbConnection = dbSession.getConnection();
     try {
       SourceLineResultSetIterator rowIt = SourceLineResultSetIterator.create(dbClient, dbConnection, lastUpdatedAt);
+      bulk.start();
+      long maxUpdatedAt = doIndex(bulk, rowIt);
+      bulk.stop();
+      rowIt.close();
+      return maxUpdatedAt;
+
+    } finally {
+      dbSession.close();
+    }
+  }
+
+  /**
+   * Projects are indexed in parallel, see {@link org.sonar.server.es.PartitionedIndexing}
+   */
+  private long doIndexAll() {
+    final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
+    bulk.setLarge(true);
+    // reader threads do not wait for responses of Elasticsearch
+    bulk.setConcurrentRequests(indexingThreads);
+    bulk.start();
+    try {
+      List<PartitionedIndexing.Partition> partitions = PartitionedIndexing.selectPartitions(dbClient, SQL_PARTITIONS, PARTITION_SIZE);
+      return new PartitionedIndexing("source lines", indexingThreads).execute(partitions, new PartitionedIndexing.PartitionIndexer() {
+        @Override
+        public long index(PartitionedIndexing.Partition partition) {
+          return doIndexPartition(bulk, partition);
+        }
+      });
+    } finally {
+      bulk.stop();
+    }
+  }
+
+  private long doIndexPartition(BulkIndexer bulk, PartitionedIndexing.Partition partition) {
+    DbSession dbSession = dbClient.openSession(false);
+    Connection dbConnection = dbSession.getConnection();
+    try {
+      SourceLineResultSetIterator rowIt = SourceLineResultSetIterator.createForPartition(dbClient, dbConnection, partition);
       long maxUpdatedAt = doIndex(bulk, rowIt);
       rowIt.close();
       return maxUpdatedAt;
@@ -63,24 +124,58 @@ public class SourceLineIndexer extends BaseIndexer {
 
   public long index(Iterator<SourceLineResultSetIterator.SourceFile> sourceFiles) {
     final BulkIndexer bulk = new BulkIndexer(esClient, SourceLineIndexDefinition.INDEX);
-    return doIndex(bulk, sourceFiles);
+    bulk.start();
+    long maxUpdatedAt = doIndex(bulk, sourceFiles);
+    bulk.stop();
+    return maxUpdatedAt;
   }
 
   private long doIndex(BulkIndexer bulk, Iterator<SourceLineResultSetIterator.SourceFile> files) {
     long maxUpdatedAt = 0L;
-    bulk.start();
     while (files.hasNext()) {
       SourceLineResultSetIterator.SourceFile file = files.next();
-      for (SourceLineDoc line : file.getLines()) {
-        bulk.add(newUpsertRequest(line));
-      }
-      deleteLinesFromFileAbove(file.getFileUuid(), file.getLines().size());
+      int nbLines = chunkSize > 0 ? indexChunks(bulk, file) : indexLines(bulk, file);
+      deleteLinesFromFileAbove(file.getFileUuid(), nbLines);
       maxUpdatedAt = Math.max(maxUpdatedAt, file.getUpdatedAt());
     }
-    bulk.stop();
     return maxUpdatedAt;
   }
 
+  private int indexLines(BulkIndexer bulk, SourceLineResultSetIterator.SourceFile file) {
+    int nbLines = 0;
+    Iterator<SourceLineDoc> lines = file.lineIterator();
+    while (lines.hasNext()) {
+      bulk.add(newUpsertRequest(lines.next()));
+      nbLines++;
+    }
+    return nbLines;
+  }
+
+  private int indexChunks(BulkIndexer bulk, SourceLineResultSetIterator.SourceFile file) {
+    int nbLines = 0;
+    SourceLineChunkDoc chunk = null;
+    Iterator<SourceLineDoc> lines = file.lineIterator();
+    while (lines.hasNext()) {
+      SourceLineDoc line = lines.next();
+      if (chunk == null) {
+        chunk = new SourceLineChunkDoc()
+          .setProjectUuid(line.projectUuid())
+          .setFileUuid(line.fileUuid())
+          .setUpdateDate(new Date(file.getUpdatedAt()));
+      }
+      chunk.addLine(line);
+      nbLines++;
+      if (chunk.size() == chunkSize) {
+        bulk.add(newIndexRequest(chunk));
+        chunk = null;
+      }
+    }
+    if (chunk != null) {
+      bulk.add(newIndexRequest(chunk));
+    }
+    return nbLines;
+  }
+
   private UpdateRequest newUpsertRequest(SourceLineDoc lineDoc) {
     String projectUuid = lineDoc.projectUuid();
     return new UpdateRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE, lineDoc.key())
@@ -89,21 +184,29 @@ public class SourceLineIndexer extends BaseIndexer {
       .upsert(lineDoc.getFields());
   }
 
+  private IndexRequest newIndexRequest(SourceLineChunkDoc chunkDoc) {
+    return new IndexRequest(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE_CHUNK, chunkDoc.key())
+      .routing(chunkDoc.projectUuid())
+      .source(chunkDoc.getFields());
+  }
+
   /**
    * Unindex all lines in file with UUID <code>fileUuid</code> above line <code>lastLine</code>
    */
   private void deleteLinesFromFileAbove(String fileUuid, int lastLine) {
+    String type = chunkSize > 0 ? SourceLineIndexDefinition.TYPE_CHUNK : SourceLineIndexDefinition.TYPE;
+    String lineField = chunkSize > 0 ? FIELD_FROM_LINE : FIELD_LINE;
     esClient.prepareDeleteByQuery(SourceLineIndexDefinition.INDEX)
-      .setTypes(SourceLineIndexDefinition.TYPE)
+      .setTypes(type)
       .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), FilterBuilders.boolFilter()
         .must(FilterBuilders.termFilter(FIELD_FILE_UUID, fileUuid).cache(false))
-        .must(FilterBuilders.rangeFilter(SourceLineIndexDefinition.FIELD_LINE).gt(lastLine).cache(false))
+        .must(FilterBuilders.rangeFilter(lineField).gt(lastLine).cache(false))
         )).get();
   }
 
   public void deleteByFile(String fileUuid) {
     esClient.prepareDeleteByQuery(SourceLineIndexDefinition.INDEX)
-      .setTypes(SourceLineIndexDefinition.TYPE)
+      .setTypes(SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.TYPE_CHUNK)
       .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
         FilterBuilders.termFilter(FIELD_FILE_UUID, fileUuid).cache(false)))
       .get();
@@ -111,7 +214,7 @@ public class SourceLineIndexer extends BaseIndexer {
 
   public void deleteByProject(String projectUuid) {
     esClient.prepareDeleteByQuery(SourceLineIndexDefinition.INDEX)
-      .setTypes(SourceLineIndexDefinition.TYPE)
+      .setTypes(SourceLineIndexDefinition.TYPE, SourceLineIndexDefinition.TYPE_CHUNK)
       .setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(),
         FilterBuilders.termFilter(FIELD_PROJECT_UUID, projectUuid).cache(false)))
       .get();
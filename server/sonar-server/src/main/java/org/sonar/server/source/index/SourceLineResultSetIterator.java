@@ -19,6 +19,8 @@
  */
 package org.sonar.server.source.index;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.commons.csv.CSVFormat;
@@ -28,27 +30,33 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.NumberUtils;
 import org.sonar.api.utils.DateUtils;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.db.ResultSetIterator;
 import org.sonar.server.db.migrations.SqlUtil;
+import org.sonar.server.es.PartitionedIndexing;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
 
 /**
- * Scroll over table FILE_SOURCES and directly parse CSV field required to
- * populate the index sourcelines
+ * Scroll over table FILE_SOURCES and directly parse binary data (or CSV data of rows not
+ * migrated yet) required to populate the index sourcelines. Lines of a file are parsed
+ * lazily, when iterating {@link SourceFile#lineIterator()}, so that no list of documents
+ * is built for big files.
  */
 public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineResultSetIterator.SourceFile> {
 
@@ -56,12 +64,18 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     private final String fileUuid;
     private final long updatedAt;
     private final List<SourceLineDoc> lines = Lists.newArrayList();
+    private Iterator<SourceLineDoc> parsedLines = null;
 
     public SourceFile(String fileUuid, long updatedAt) {
       this.fileUuid = fileUuid;
       this.updatedAt = updatedAt;
     }
 
+    private SourceFile(String fileUuid, long updatedAt, Iterator<SourceLineDoc> parsedLines) {
+      this(fileUuid, updatedAt);
+      this.parsedLines = parsedLines;
+    }
+
     public String getFileUuid() {
       return fileUuid;
     }
@@ -70,7 +84,22 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
       return updatedAt;
     }
 
+    /**
+     * Lines ordered by line number. Lines read from database are parsed on the fly, so
+     * the returned iterator can be consumed only once.
+     */
+    public Iterator<SourceLineDoc> lineIterator() {
+      return parsedLines == null ? lines.iterator() : parsedLines;
+    }
+
+    /**
+     * All the lines loaded in memory. Prefer {@link #lineIterator()} on big files.
+     */
     public List<SourceLineDoc> getLines() {
+      if (parsedLines != null) {
+        Iterators.addAll(lines, parsedLines);
+        parsedLines = null;
+      }
       return lines;
     }
 
@@ -84,13 +113,19 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     "project_uuid",
     "file_uuid",
     "updated_at",
-    "data"
+    "data",
+    "binary_data"
   };
 
+  // project, file, line, updatedAt and the columns of file_sources data but the hash
+  private static final int EXPECTED_FIELDS = 4 + FileSourceData.NB_COLUMNS - 1;
+
   private static final String SQL_ALL = "select " + StringUtils.join(FIELDS, ",") + " from file_sources";
 
   private static final String SQL_AFTER_DATE = SQL_ALL + " where updated_at>?";
 
+  private static final String SQL_PARTITION = SQL_ALL + " where project_uuid=? and id>=? and id<=?";
+
   public static SourceLineResultSetIterator create(DbClient dbClient, Connection connection, long afterDate) {
     try {
       String sql = afterDate > 0L ? SQL_AFTER_DATE : SQL_ALL;
@@ -105,6 +140,21 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
     }
   }
 
+  /**
+   * Files of a range of ids of a project, used by partitioned indexing
+   */
+  public static SourceLineResultSetIterator createForPartition(DbClient dbClient, Connection connection, PartitionedIndexing.Partition partition) {
+    try {
+      PreparedStatement stmt = dbClient.newScrollingSingleRowSelectStatement(connection, SQL_PARTITION);
+      stmt.setString(1, partition.key());
+      stmt.setLong(2, partition.minId());
+      stmt.setLong(3, partition.maxId());
+      return new SourceLineResultSetIterator(stmt);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to prepare SQL request to select file sources of partition " + partition, e);
+    }
+  }
+
   private SourceLineResultSetIterator(PreparedStatement stmt) throws SQLException {
     super(stmt);
   }
@@ -118,66 +168,137 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
       updatedAt = System.currentTimeMillis();
     }
     Date updatedDate = new Date(updatedAt);
-    SourceFile result = new SourceFile(fileUuid, updatedAt);
 
-    Reader csv = rs.getCharacterStream(4);
-    if (csv == null) {
-      return result;
+    // raw data must be read before moving to next row, but lines are parsed only when iterated
+    Iterator<SourceLineDoc> lines;
+    byte[] binaryData = rs.getBytes(5);
+    if (binaryData != null) {
+      lines = new BinaryLineIterator(projectUuid, fileUuid, updatedDate, FileSourceData.decodeColumns(binaryData));
+    } else {
+      String csv = readCsvData(fileUuid, rs.getCharacterStream(4));
+      lines = csv == null ? Iterators.<SourceLineDoc>emptyIterator() : new CsvLineIterator(projectUuid, fileUuid, updatedDate, csv);
     }
+    return new SourceFile(fileUuid, updatedAt, lines);
+  }
 
-    int line = 1;
-    CSVParser csvParser = null;
+  @CheckForNull
+  private static String readCsvData(String fileUuid, @Nullable Reader csv) {
+    if (csv == null) {
+      return null;
+    }
     try {
-      csvParser = new CSVParser(csv, CSVFormat.DEFAULT);
-
-      for (CSVRecord csvRecord : csvParser) {
-        SourceLineDoc doc = new SourceLineDoc(Maps.<String, Object>newHashMap());
-
-        doc.setProjectUuid(projectUuid);
-        doc.setFileUuid(fileUuid);
-        doc.setLine(line);
-        doc.setUpdateDate(updatedDate);
-        doc.setScmRevision(csvRecord.get(FileSourceDto.CSV_INDEX_SCM_REVISION));
-        doc.setScmAuthor(csvRecord.get(FileSourceDto.CSV_INDEX_SCM_AUTHOR));
-        doc.setScmDate(DateUtils.parseDateTimeQuietly(csvRecord.get(FileSourceDto.CSV_INDEX_SCM_DATE)));
-        // UT
-        doc.setUtLineHits(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_UT_LINE_HITS)));
-        doc.setUtConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_UT_CONDITIONS)));
-        doc.setUtCoveredConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_UT_COVERED_CONDITIONS)));
-        // IT
-        doc.setItLineHits(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_IT_LINE_HITS)));
-        doc.setItConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_IT_CONDITIONS)));
-        doc.setItCoveredConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_IT_COVERED_CONDITIONS)));
-        // OVERALL
-        doc.setOverallLineHits(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_OVERALL_LINE_HITS)));
-        doc.setOverallConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_OVERALL_CONDITIONS)));
-        doc.setOverallCoveredConditions(parseIntegerFromRecord(csvRecord.get(FileSourceDto.CSV_INDEX_OVERALL_COVERED_CONDITIONS)));
-
-        doc.setHighlighting(csvRecord.get(FileSourceDto.CSV_INDEX_HIGHLIGHTING));
-        doc.setSymbols(csvRecord.get(FileSourceDto.CSV_INDEX_SYMBOLS));
-        doc.setDuplications(parseDuplications(csvRecord.get(FileSourceDto.CSV_INDEX_DUPLICATIONS)));
+      return IOUtils.toString(csv);
+    } catch (IOException ioError) {
+      throw new IllegalStateException("Impossible to open stream for file_sources.data with file_uuid " + fileUuid, ioError);
+    } finally {
+      IOUtils.closeQuietly(csv);
+    }
+  }
 
-        // source is always the latest field. All future fields will be added between duplications (14) and source.
-        doc.setSource(csvRecord.get(csvRecord.size()-1));
+  private static class BinaryLineIterator extends AbstractIterator<SourceLineDoc> {
+    private final String projectUuid;
+    private final String fileUuid;
+    private final Date updatedDate;
+    private final String[][] columns;
+    private final String[] values = new String[FileSourceData.NB_COLUMNS];
+    private int lineIndex = 0;
 
-        result.addLine(doc);
+    BinaryLineIterator(String projectUuid, String fileUuid, Date updatedDate, String[][] columns) {
+      this.projectUuid = projectUuid;
+      this.fileUuid = fileUuid;
+      this.updatedDate = updatedDate;
+      this.columns = columns;
+    }
 
+    @Override
+    protected SourceLineDoc computeNext() {
+      if (lineIndex >= columns[FileSourceData.SOURCE_INDEX].length) {
+        return endOfData();
+      }
+      for (int column = 0; column < FileSourceData.NB_COLUMNS; column++) {
+        values[column] = columns[column][lineIndex];
+      }
+      lineIndex++;
+      return newDoc(projectUuid, fileUuid, updatedDate, lineIndex, values);
+    }
+  }
+
+  private static class CsvLineIterator extends AbstractIterator<SourceLineDoc> {
+    private final String projectUuid;
+    private final String fileUuid;
+    private final Date updatedDate;
+    private final CSVParser csvParser;
+    private final Iterator<CSVRecord> records;
+    private final String[] values = new String[FileSourceData.NB_COLUMNS];
+    private int line = 1;
+
+    CsvLineIterator(String projectUuid, String fileUuid, Date updatedDate, String csv) {
+      this.projectUuid = projectUuid;
+      this.fileUuid = fileUuid;
+      this.updatedDate = updatedDate;
+      try {
+        this.csvParser = new CSVParser(new StringReader(csv), CSVFormat.DEFAULT);
+      } catch (IOException ioError) {
+        throw new IllegalStateException("Impossible to open stream for file_sources.data with file_uuid " + fileUuid, ioError);
+      }
+      this.records = csvParser.iterator();
+    }
+
+    @Override
+    protected SourceLineDoc computeNext() {
+      if (!records.hasNext()) {
+        IOUtils.closeQuietly(csvParser);
+        return endOfData();
+      }
+      try {
+        CSVRecord csvRecord = records.next();
+        for (int column = 0; column < FileSourceData.SOURCE_INDEX; column++) {
+          values[column] = csvRecord.get(column);
+        }
+        // source is always the latest field. All future fields will be added between duplications (14) and source.
+        values[FileSourceData.SOURCE_INDEX] = csvRecord.get(csvRecord.size() - 1);
+        SourceLineDoc doc = newDoc(projectUuid, fileUuid, updatedDate, line, values);
         line++;
+        return doc;
+      } catch (ArrayIndexOutOfBoundsException lineError) {
+        IOUtils.closeQuietly(csvParser);
+        throw new IllegalStateException(
+          String.format("Impossible to parse source line data, stuck at line %d", line), lineError);
       }
-    } catch (IOException ioError) {
-      throw new IllegalStateException("Impossible to open stream for file_sources.data with file_uuid " + fileUuid, ioError);
-    } catch (ArrayIndexOutOfBoundsException lineError) {
-      throw new IllegalStateException(
-        String.format("Impossible to parse source line data, stuck at line %d", line), lineError);
-    } finally {
-      IOUtils.closeQuietly(csv);
-      IOUtils.closeQuietly(csvParser);
     }
+  }
+
+  private static SourceLineDoc newDoc(String projectUuid, String fileUuid, Date updatedDate, int line, String[] values) {
+    SourceLineDoc doc = new SourceLineDoc(Maps.<String, Object>newHashMapWithExpectedSize(EXPECTED_FIELDS));
+
+    doc.setProjectUuid(projectUuid);
+    doc.setFileUuid(fileUuid);
+    doc.setLine(line);
+    doc.setUpdateDate(updatedDate);
+    doc.setScmRevision(values[FileSourceDto.CSV_INDEX_SCM_REVISION]);
+    doc.setScmAuthor(values[FileSourceDto.CSV_INDEX_SCM_AUTHOR]);
+    doc.setScmDate(DateUtils.parseDateTimeQuietly(values[FileSourceDto.CSV_INDEX_SCM_DATE]));
+    // UT
+    doc.setUtLineHits(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_UT_LINE_HITS]));
+    doc.setUtConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_UT_CONDITIONS]));
+    doc.setUtCoveredConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_UT_COVERED_CONDITIONS]));
+    // IT
+    doc.setItLineHits(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_IT_LINE_HITS]));
+    doc.setItConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_IT_CONDITIONS]));
+    doc.setItCoveredConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_IT_COVERED_CONDITIONS]));
+    // OVERALL
+    doc.setOverallLineHits(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_OVERALL_LINE_HITS]));
+    doc.setOverallConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_OVERALL_CONDITIONS]));
+    doc.setOverallCoveredConditions(parseIntegerFromRecord(values[FileSourceDto.CSV_INDEX_OVERALL_COVERED_CONDITIONS]));
 
-    return result;
+    doc.setHighlighting(values[FileSourceDto.CSV_INDEX_HIGHLIGHTING]);
+    doc.setSymbols(values[FileSourceDto.CSV_INDEX_SYMBOLS]);
+    doc.setDuplications(parseDuplications(values[FileSourceDto.CSV_INDEX_DUPLICATIONS]));
+    doc.setSource(values[FileSourceData.SOURCE_INDEX]);
+    return doc;
   }
 
-  private List<Integer> parseDuplications(@Nullable String duplications) {
+  private static List<Integer> parseDuplications(@Nullable String duplications) {
     List<Integer> dups = Lists.newArrayList();
     if (StringUtils.isNotEmpty(duplications)) {
       StringTokenizer tokenizer = new StringTokenizer(duplications, ",", false);
@@ -189,7 +310,7 @@ public class SourceLineResultSetIterator extends ResultSetIterator<SourceLineRes
   }
 
   @CheckForNull
-  private Integer parseIntegerFromRecord(@Nullable String cellValue) {
+  private static Integer parseIntegerFromRecord(@Nullable String cellValue) {
     if (cellValue == null || cellValue.isEmpty()) {
       return null;
     } else {
@@ -31,7 +31,7 @@ import org.sonar.api.web.UserRole;
 import org.sonar.core.component.ComponentDto;
 import org.sonar.server.component.ComponentService;
 import org.sonar.server.exceptions.NotFoundException;
-import org.sonar.server.source.HtmlSourceDecorator;
+import org.sonar.server.source.HtmlSourceCache;
 import org.sonar.server.source.index.SourceLineDoc;
 import org.sonar.server.source.index.SourceLineIndex;
 import org.sonar.server.user.UserSession;
@@ -42,12 +42,12 @@ import java.util.List;
 public class LinesAction implements RequestHandler {
 
   private final SourceLineIndex sourceLineIndex;
-  private final HtmlSourceDecorator htmlSourceDecorator;
+  private final HtmlSourceCache htmlSourceCache;
   private final ComponentService componentService;
 
-  public LinesAction(SourceLineIndex sourceLineIndex, HtmlSourceDecorator htmlSourceDecorator, ComponentService componentService) {
+  public LinesAction(SourceLineIndex sourceLineIndex, HtmlSourceCache htmlSourceCache, ComponentService componentService) {
     this.sourceLineIndex = sourceLineIndex;
-    this.htmlSourceDecorator = htmlSourceDecorator;
+    this.htmlSourceCache = htmlSourceCache;
     this.componentService = componentService;
   }
 
@@ -110,7 +110,7 @@ public class LinesAction implements RequestHandler {
     for (SourceLineDoc line: lines) {
       json.beginObject()
         .prop("line", line.line())
-        .prop("code", htmlSourceDecorator.getDecoratedSourceAsHtml(line.source(), line.highlighting(), line.symbols()))
+        .prop("code", htmlSourceCache.getDecoratedSourceAsHtml(line))
         .prop("scmAuthor", line.scmAuthor())
         .prop("scmRevision", line.scmRevision());
       Date scmDate = line.scmDate();
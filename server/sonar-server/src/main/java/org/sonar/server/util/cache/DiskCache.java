@@ -23,32 +23,114 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
-import org.sonar.server.util.ObjectInputStreamIterator;
 
+import javax.annotation.CheckForNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Serialize and deserialize objects on disk. No search capabilities, only traversal (full scan).
+ * <p/>
+ * Objects are encoded by a {@link DiskCodec}, Java serialization by default. They are grouped in
+ * blocks of about {@link #BLOCK_SIZE} bytes, that can be compressed. Each block is stored as:
+ * <ul>
+ *   <li>the size in bytes of the uncompressed block (int)</li>
+ *   <li>the size in bytes of the stored block (int)</li>
+ *   <li>the stored bytes</li>
+ * </ul>
  */
 public class DiskCache<O extends Serializable> {
 
+  public enum Compression {
+    NONE {
+      @Override
+      byte[] compress(byte[] bytes) {
+        return bytes;
+      }
+
+      @Override
+      byte[] decompress(byte[] bytes, int uncompressedSize) {
+        return bytes;
+      }
+    },
+
+    DEFLATE {
+      @Override
+      byte[] compress(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+          deflater.setInput(bytes);
+          deflater.finish();
+          ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 2);
+          byte[] buffer = new byte[8192];
+          while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            output.write(buffer, 0, count);
+          }
+          return output.toByteArray();
+        } finally {
+          deflater.end();
+        }
+      }
+
+      @Override
+      byte[] decompress(byte[] bytes, int uncompressedSize) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+          inflater.setInput(bytes);
+          byte[] result = new byte[uncompressedSize];
+          int count = 0;
+          while (count < uncompressedSize && !inflater.finished()) {
+            count += inflater.inflate(result, count, uncompressedSize - count);
+          }
+          return result;
+        } catch (DataFormatException e) {
+          throw new IOException("Corrupted block", e);
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+
+    abstract byte[] compress(byte[] bytes);
+
+    abstract byte[] decompress(byte[] bytes, int uncompressedSize) throws IOException;
+  }
+
+  static final int BLOCK_SIZE = 64 * 1024;
+
   private final File file;
   private final System2 system2;
+  private final DiskCodec<O> codec;
+  private final Compression compression;
 
   public DiskCache(File file, System2 system2) {
+    this(file, system2, new JavaSerializationCodec<O>(), Compression.NONE);
+  }
+
+  public DiskCache(File file, System2 system2, DiskCodec<O> codec, Compression compression) {
     this.system2 = system2;
     this.file = file;
+    this.codec = codec;
+    this.compression = compression;
     OutputStream output = null;
     try {
-      // writes the serialization stream header required when calling "traverse()"
-      // on empty stream. Moreover it allows to call multiple times "newAppender()"
-      output = new ObjectOutputStream(new FileOutputStream(file));
-      output.flush();
+      // creates or truncates the file, so that "traverse()" can be called before "newAppender()"
+      output = new FileOutputStream(file);
 
       // raise an exception if can't close
       system2.close(output);
@@ -65,23 +147,20 @@ public class DiskCache<O extends Serializable> {
 
   public CloseableIterator<O> traverse() {
     try {
-      return new ObjectInputStreamIterator<>(FileUtils.openInputStream(file));
+      return new DiskIterator(new DataInputStream(new BufferedInputStream(FileUtils.openInputStream(file))));
     } catch (IOException e) {
       throw new IllegalStateException("Fail to traverse file: " + file, e);
     }
   }
 
   public class DiskAppender implements AutoCloseable {
-    private final ObjectOutputStream output;
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE);
+    private final DataOutputStream blockOutput = new DataOutputStream(block);
 
     private DiskAppender() {
       try {
-        this.output = new ObjectOutputStream(new FileOutputStream(file, true)) {
-          @Override
-          protected void writeStreamHeader() throws IOException {
-            // do not write stream headers as it's already done in constructor of DiskCache
-          }
-        };
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
       } catch (IOException e) {
         throw new IllegalStateException("Fail to open file " + file, e);
       }
@@ -89,16 +168,75 @@ public class DiskCache<O extends Serializable> {
 
     public DiskAppender append(O object) {
       try {
-        output.writeObject(object);
+        codec.write(object, blockOutput);
+        if (block.size() >= BLOCK_SIZE) {
+          writeBlock();
+        }
         return this;
       } catch (IOException e) {
         throw new IllegalStateException("Fail to write into file " + file, e);
       }
     }
 
+    private void writeBlock() throws IOException {
+      if (block.size() > 0) {
+        byte[] stored = compression.compress(block.toByteArray());
+        output.writeInt(block.size());
+        output.writeInt(stored.length);
+        output.write(stored);
+        block.reset();
+      }
+    }
+
     @Override
     public void close() {
+      try {
+        writeBlock();
+      } catch (IOException e) {
+        IOUtils.closeQuietly(output);
+        throw new IllegalStateException("Fail to write into file " + file, e);
+      }
       system2.close(output);
     }
   }
+
+  private class DiskIterator extends CloseableIterator<O> {
+    private final DataInputStream input;
+    private DataInputStream block = null;
+
+    private DiskIterator(DataInputStream input) {
+      this.input = input;
+    }
+
+    @Override
+    @CheckForNull
+    protected O doNext() {
+      try {
+        if ((block == null || block.available() == 0) && !readBlock()) {
+          return null;
+        }
+        return codec.read(block);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to read file " + file, e);
+      }
+    }
+
+    private boolean readBlock() throws IOException {
+      int uncompressedSize;
+      try {
+        uncompressedSize = input.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      byte[] stored = new byte[input.readInt()];
+      input.readFully(stored);
+      block = new DataInputStream(new ByteArrayInputStream(compression.decompress(stored, uncompressedSize)));
+      return true;
+    }
+
+    @Override
+    protected void doClose() {
+      IOUtils.closeQuietly(input);
+    }
+  }
 }
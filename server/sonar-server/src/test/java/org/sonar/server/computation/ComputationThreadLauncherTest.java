@@ -27,10 +27,16 @@ import org.junit.Test;
 import org.junit.rules.DisableOnDebug;
 import org.junit.rules.TestRule;
 import org.junit.rules.Timeout;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
 import org.sonar.api.platform.Server;
+import org.sonar.core.computation.db.AnalysisReportDto;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 public class ComputationThreadLauncherTest {
@@ -74,6 +80,42 @@ public class ComputationThreadLauncherTest {
     verify(queue, atLeastOnce()).pop();
   }
 
+  @Test
+  public void configure_number_of_workers() throws Exception {
+    Settings settings = new Settings();
+    settings.setProperty(ComputationThreadLauncher.WORKERS_PROPERTY, 4);
+
+    sut = new ComputationThreadLauncher(queue, settings);
+
+    assertThat(sut.getWorkers()).isEqualTo(4);
+  }
+
+  @Test
+  public void one_worker_by_default() throws Exception {
+    sut = new ComputationThreadLauncher(queue, new Settings());
+
+    assertThat(sut.getWorkers()).isEqualTo(1);
+  }
+
+  @Test
+  public void workers_pop_the_queue_concurrently() throws Exception {
+    // each call to pop() waits for the two other workers, so the latch is released only if the 3 workers run at the same time
+    final CountDownLatch allWorkersPopping = new CountDownLatch(3);
+    when(queue.pop()).thenAnswer(new Answer<AnalysisReportDto>() {
+      @Override
+      public AnalysisReportDto answer(InvocationOnMock invocation) throws InterruptedException {
+        allWorkersPopping.countDown();
+        allWorkersPopping.await(3, TimeUnit.SECONDS);
+        return null;
+      }
+    });
+    sut = new ComputationThreadLauncher(queue, 3, 0, 1, TimeUnit.MILLISECONDS);
+
+    sut.onServerStart(mock(Server.class));
+
+    assertThat(allWorkersPopping.await(3, TimeUnit.SECONDS)).isTrue();
+  }
+
   private void sleep() throws InterruptedException {
     TimeUnit.MILLISECONDS.sleep(500L);
   }
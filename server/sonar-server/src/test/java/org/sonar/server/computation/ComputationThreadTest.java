@@ -47,11 +47,25 @@ public class ComputationThreadTest {
   @Test
   public void call_findAndBook_and_then_analyze_if_there_is_a_report() {
     AnalysisReportDto report = AnalysisReportDto.newForTests(1L);
-    when(queue.pop()).thenReturn(report);
+    when(queue.pop()).thenReturn(report, (AnalysisReportDto) null);
 
     sut.run();
 
-    verify(queue).pop();
+    verify(queue, times(2)).pop();
+    verify(queue).remove(report);
+  }
+
+  @Test
+  public void process_reports_until_queue_is_empty() {
+    AnalysisReportDto report1 = AnalysisReportDto.newForTests(1L);
+    AnalysisReportDto report2 = AnalysisReportDto.newForTests(2L);
+    when(queue.pop()).thenReturn(report1, report2, null);
+
+    sut.run();
+
+    verify(queue, times(3)).pop();
+    verify(queue).remove(report1);
+    verify(queue).remove(report2);
   }
 
   @Test
@@ -0,0 +1,180 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.issue;
+
+import org.junit.Test;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.issue.internal.DefaultIssueComment;
+import org.sonar.api.issue.internal.FieldDiffs;
+import org.sonar.api.issue.internal.IssueChangeContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.utils.Duration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultIssueCodecTest {
+
+  DefaultIssueCodec codec = new DefaultIssueCodec();
+
+  @Test
+  public void encode_and_decode_all_fields() throws Exception {
+    Date date = new Date(1420000000000L);
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABCDE")
+      .setComponentUuid("FILE1")
+      .setComponentKey("struts:Action.java")
+      .setModuleUuid("MODULE1")
+      .setModuleUuidPath(".PROJECT1.MODULE1.")
+      .setProjectUuid("PROJECT1")
+      .setProjectKey("struts")
+      .setRuleKey(RuleKey.of("squid", "AvoidCycle"))
+      .setLanguage("java")
+      .setSeverity(Severity.BLOCKER)
+      .setManualSeverity(true)
+      .setMessage("the message")
+      .setLine(42)
+      .setEffortToFix(3.14)
+      .setDebt(Duration.create(10L))
+      .setStatus("OPEN")
+      .setResolution("FIXED")
+      .setReporter("simon")
+      .setAssignee("julien")
+      .setChecksum("c7b5db46591806455cf082bb348631e8")
+      .setAttribute("jira", "SONAR-1234")
+      .setAuthorLogin("henry")
+      .setActionPlanKey("PLAN1")
+      .setTags(Arrays.asList("bug", "performance"))
+      .setCreationDate(date)
+      .setUpdateDate(date)
+      .setCloseDate(date)
+      .setNew(false)
+      .setEndOfLife(true)
+      .setOnDisabledRule(true)
+      .setChanged(true)
+      .setSendNotifications(true)
+      .setSelectedAt(1400000000000L);
+    issue.addComment(DefaultIssueComment.create("ABCDE", "simon", "a comment"));
+    issue.addChange(new FieldDiffs().setIssueKey("ABCDE").setUserLogin("simon").setCreationDate(date).setDiff("severity", "INFO", "MAJOR"));
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    assertThat(decoded.key()).isEqualTo("ABCDE");
+    assertThat(decoded.componentUuid()).isEqualTo("FILE1");
+    assertThat(decoded.componentKey()).isEqualTo("struts:Action.java");
+    assertThat(decoded.moduleUuid()).isEqualTo("MODULE1");
+    assertThat(decoded.moduleUuidPath()).isEqualTo(".PROJECT1.MODULE1.");
+    assertThat(decoded.projectUuid()).isEqualTo("PROJECT1");
+    assertThat(decoded.projectKey()).isEqualTo("struts");
+    assertThat(decoded.ruleKey()).isEqualTo(RuleKey.of("squid", "AvoidCycle"));
+    assertThat(decoded.language()).isEqualTo("java");
+    assertThat(decoded.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(decoded.manualSeverity()).isTrue();
+    assertThat(decoded.message()).isEqualTo("the message");
+    assertThat(decoded.line()).isEqualTo(42);
+    assertThat(decoded.effortToFix()).isEqualTo(3.14);
+    assertThat(decoded.debtInMinutes()).isEqualTo(10L);
+    assertThat(decoded.status()).isEqualTo("OPEN");
+    assertThat(decoded.resolution()).isEqualTo("FIXED");
+    assertThat(decoded.reporter()).isEqualTo("simon");
+    assertThat(decoded.assignee()).isEqualTo("julien");
+    assertThat(decoded.checksum()).isEqualTo("c7b5db46591806455cf082bb348631e8");
+    assertThat(decoded.attributes()).containsEntry("jira", "SONAR-1234").hasSize(1);
+    assertThat(decoded.authorLogin()).isEqualTo("henry");
+    assertThat(decoded.actionPlanKey()).isEqualTo("PLAN1");
+    assertThat(decoded.tags()).containsExactly("bug", "performance");
+    assertThat(decoded.creationDate()).isEqualTo(date);
+    assertThat(decoded.updateDate()).isEqualTo(date);
+    assertThat(decoded.closeDate()).isEqualTo(date);
+    assertThat(decoded.isNew()).isFalse();
+    assertThat(decoded.isEndOfLife()).isTrue();
+    assertThat(decoded.isOnDisabledRule()).isTrue();
+    assertThat(decoded.isChanged()).isTrue();
+    assertThat(decoded.mustSendNotifications()).isTrue();
+    assertThat(decoded.selectedAt()).isEqualTo(1400000000000L);
+
+    assertThat(decoded.comments()).hasSize(1);
+    DefaultIssueComment comment = (DefaultIssueComment) decoded.comments().get(0);
+    assertThat(comment.issueKey()).isEqualTo("ABCDE");
+    assertThat(comment.userLogin()).isEqualTo("simon");
+    assertThat(comment.markdownText()).isEqualTo("a comment");
+    assertThat(comment.isNew()).isTrue();
+
+    assertThat(decoded.changes()).hasSize(1);
+    FieldDiffs change = decoded.changes().get(0);
+    assertThat(change.issueKey()).isEqualTo("ABCDE");
+    assertThat(change.userLogin()).isEqualTo("simon");
+    assertThat(change.creationDate()).isEqualTo(date);
+    assertThat(change.get("severity").oldValue()).isEqualTo("INFO");
+    assertThat(change.get("severity").newValue()).isEqualTo("MAJOR");
+    assertThat(decoded.currentChange()).isNull();
+  }
+
+  @Test
+  public void encode_and_decode_null_fields() throws Exception {
+    DefaultIssue decoded = encodeAndDecode(new DefaultIssue().setKey("ABCDE"));
+
+    assertThat(decoded.key()).isEqualTo("ABCDE");
+    assertThat(decoded.ruleKey()).isNull();
+    assertThat(decoded.status()).isNull();
+    assertThat(decoded.line()).isNull();
+    assertThat(decoded.debt()).isNull();
+    assertThat(decoded.creationDate()).isNull();
+    assertThat(decoded.attributes()).isEmpty();
+    assertThat(decoded.comments()).isEmpty();
+    assertThat(decoded.changes()).isEmpty();
+    assertThat(decoded.currentChange()).isNull();
+    assertThat(decoded.selectedAt()).isNull();
+  }
+
+  @Test
+  public void keep_current_change_and_typed_values() throws Exception {
+    IssueChangeContext context = IssueChangeContext.createUser(new Date(), "simon");
+    DefaultIssue issue = new DefaultIssue().setKey("ABCDE");
+    issue.setFieldChange(context, "technicalDebt", 10L, 20L);
+    issue.setFieldChange(context, "severity", "INFO", "MAJOR");
+
+    DefaultIssue decoded = encodeAndDecode(issue);
+
+    FieldDiffs currentChange = decoded.currentChange();
+    assertThat(currentChange).isNotNull();
+    assertThat(currentChange.get("technicalDebt").oldValue()).isEqualTo(10L);
+    assertThat(currentChange.get("technicalDebt").newValue()).isEqualTo(20L);
+    assertThat(currentChange.get("severity").newValue()).isEqualTo("MAJOR");
+    // same instance is referenced twice, as in the original issue
+    assertThat(decoded.changes()).hasSize(2);
+    assertThat(decoded.changes().get(0)).isSameAs(currentChange);
+    assertThat(decoded.changes().get(1)).isSameAs(currentChange);
+  }
+
+  private DefaultIssue encodeAndDecode(DefaultIssue issue) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    codec.write(issue, new DataOutputStream(bytes));
+    return codec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+}
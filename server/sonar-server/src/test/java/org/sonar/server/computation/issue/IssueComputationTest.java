@@ -173,7 +173,7 @@ public class IssueComputationTest {
   }
 
   private void process() {
-    sut.processComponentIssues(mock(ComputationContext.class, Mockito.RETURNS_DEEP_STUBS), "FILE_A", Arrays.asList(inputIssue.build()));
+    sut.processComponentIssues(mock(ComputationContext.class, Mockito.RETURNS_DEEP_STUBS), "FILE_A", Arrays.asList(inputIssue.build()).iterator());
     sut.afterReportProcessing();
   }
 }
@@ -24,6 +24,8 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.sonar.core.persistence.DbTester;
 import org.sonar.core.source.db.FileSourceDao;
+import org.sonar.core.source.db.FileSourceData;
+import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.test.DbTests;
 
@@ -62,5 +64,27 @@ public class SourceLinesCacheTest {
     assertThat(cache.countLines()).isEqualTo(0);
   }
 
+  @Test
+  public void line_author_from_binary_data() throws Exception {
+    FileSourceData data = FileSourceData.newBuilder(3)
+      .setLine(1, "rev1", "charb", "2015-01-07T10:00:00+0100")
+      .setLine(2, "rev2", "cabu", "2015-01-08T10:00:00+0100")
+      .setLine(3, "rev3", "", "")
+      .build();
+    FileSourceDao fileSourceDao = new FileSourceDao(dbTester.myBatis());
+    fileSourceDao.insert(new FileSourceDto().setProjectUuid("PROJECT_A").setFileUuid("FILE_B")
+      .setBinaryData(data.getBytes()).setDataHash(data.getHash()).setCreatedAt(1L).setUpdatedAt(1L));
+    DbClient dbClient = new DbClient(dbTester.database(), dbTester.myBatis(), fileSourceDao);
+    SourceLinesCache cache = new SourceLinesCache(dbClient);
+    cache.init("FILE_B");
+
+    assertThat(cache.lineAuthor(1)).isEqualTo("charb");
+    assertThat(cache.lineAuthor(2)).isEqualTo("cabu");
+    // blank author -> return last committer on file
+    assertThat(cache.lineAuthor(3)).isEqualTo("cabu");
+    assertThat(cache.lineAuthor(null)).isEqualTo("cabu");
+    assertThat(cache.countLines()).isEqualTo(3);
+  }
+
 
 }
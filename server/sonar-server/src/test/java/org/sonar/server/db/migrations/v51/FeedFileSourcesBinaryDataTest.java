@@ -0,0 +1,103 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.db.migrations.v51;
+
+import org.apache.commons.dbutils.DbUtils;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.sonar.core.persistence.DbTester;
+import org.sonar.core.source.db.FileSourceData;
+import org.sonar.core.source.db.FileSourceDto;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FeedFileSourcesBinaryDataTest {
+
+  @ClassRule
+  public static DbTester db = new DbTester().schema(FeedFileSourcesBinaryDataTest.class, "schema.sql");
+
+  FeedFileSourcesBinaryData migration;
+
+  @Before
+  public void setUp() throws Exception {
+    db.truncateTables();
+
+    migration = new FeedFileSourcesBinaryData(db.database());
+  }
+
+  @Test
+  public void migrate_empty_db() throws Exception {
+    migration.execute();
+  }
+
+  @Test
+  public void convert_csv_to_binary_data() throws Exception {
+    db.prepareDbUnit(getClass(), "before.xml");
+
+    migration.execute();
+
+    db.assertDbUnit(getClass(), "after-result.xml", "file_sources");
+
+    byte[] binaryData = selectBinaryData(1L);
+    String[][] columns = FileSourceData.decodeColumns(binaryData);
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_REVISION]).containsExactly("aef12a", "abe465");
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_AUTHOR]).containsExactly("alice", "bob");
+    assertThat(columns[FileSourceDto.CSV_INDEX_UT_LINE_HITS]).containsExactly("1", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_OVERALL_LINE_HITS]).containsExactly("3", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_HIGHLIGHTING]).containsExactly("0,3,a", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_SYMBOLS]).containsExactly("palap", "");
+    assertThat(columns[FileSourceData.SOURCE_INDEX]).containsExactly("class Foo {", "}");
+
+    // empty file is not converted
+    assertThat(selectBinaryData(2L)).isNull();
+  }
+
+  @Test
+  public void migration_is_reentrant() throws Exception {
+    db.prepareDbUnit(getClass(), "before.xml");
+
+    migration.execute();
+    byte[] binaryData = selectBinaryData(1L);
+    migration.execute();
+
+    db.assertDbUnit(getClass(), "after-result.xml", "file_sources");
+    assertThat(selectBinaryData(1L)).isEqualTo(binaryData);
+  }
+
+  private byte[] selectBinaryData(long id) throws Exception {
+    Connection connection = db.openConnection();
+    PreparedStatement pstmt = null;
+    ResultSet rs = null;
+    try {
+      pstmt = connection.prepareStatement("SELECT binary_data FROM file_sources WHERE id=?");
+      pstmt.setLong(1, id);
+      rs = pstmt.executeQuery();
+      rs.next();
+      return rs.getBytes(1);
+    } finally {
+      DbUtils.closeQuietly(connection, pstmt, rs);
+    }
+  }
+}
@@ -20,6 +20,7 @@
 package org.sonar.server.es;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
@@ -28,7 +29,10 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.junit.Rule;
 import org.junit.Test;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class BulkIndexerTest {
 
@@ -84,6 +88,59 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void send_requests_asynchronously() throws Exception {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setConcurrentRequests(2)
+      .setFlushByteSize(new ByteSizeValue(1, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+    for (int i = 0; i < 50; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    // wait for the requests in flight
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(50);
+  }
+
+  @Test
+  public void fail_if_negative_concurrent_requests() throws Exception {
+    try {
+      new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX).setConcurrentRequests(-1);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Number of concurrent requests must be positive or zero: -1");
+    }
+  }
+
+  @Test
+  public void add_requests_from_several_threads() throws Exception {
+    final BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(new ByteSizeValue(100, ByteSizeUnit.BYTES).bytes());
+    indexer.start();
+
+    List<Thread> threads = Lists.newArrayList();
+    for (int t = 0; t < 4; t++) {
+      final int offset = t * 25;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 25; i++) {
+            indexer.add(newIndexRequest(offset + i));
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    indexer.stop();
+
+    assertThat(count()).isEqualTo(100);
+  }
+
   private long count() {
     return esTester.countDocuments("fakes", "fake");
   }
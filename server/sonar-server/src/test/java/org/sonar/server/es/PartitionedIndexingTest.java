@@ -0,0 +1,158 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class PartitionedIndexingTest {
+
+  @Test
+  public void index_all_partitions() throws Exception {
+    final Set<String> indexed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    PartitionedIndexing indexing = new PartitionedIndexing("fakes", 3);
+
+    long maxDate = indexing.execute(partitions("P1", "P2", "P3", "P4", "P5"), new PartitionedIndexing.PartitionIndexer() {
+      @Override
+      public long index(PartitionedIndexing.Partition partition) {
+        indexed.add(partition.key());
+        return Long.parseLong(partition.key().substring(1)) * 1000L;
+      }
+    });
+
+    assertThat(indexed).containsOnly("P1", "P2", "P3", "P4", "P5");
+    assertThat(maxDate).isEqualTo(5000L);
+  }
+
+  @Test
+  public void index_no_partitions() throws Exception {
+    PartitionedIndexing indexing = new PartitionedIndexing("fakes", 3);
+
+    long maxDate = indexing.execute(Collections.<PartitionedIndexing.Partition>emptyList(), new PartitionedIndexing.PartitionIndexer() {
+      @Override
+      public long index(PartitionedIndexing.Partition partition) {
+        throw new IllegalStateException("No partitions to index");
+      }
+    });
+
+    assertThat(maxDate).isEqualTo(0L);
+  }
+
+  @Test
+  public void fail_if_a_partition_fails() throws Exception {
+    PartitionedIndexing indexing = new PartitionedIndexing("fakes", 2);
+    List<PartitionedIndexing.Partition> partitions = partitions("P1", "P2", "P3");
+
+    try {
+      indexing.execute(partitions, new PartitionedIndexing.PartitionIndexer() {
+        @Override
+        public long index(PartitionedIndexing.Partition partition) {
+          if ("P2".equals(partition.key())) {
+            throw new IllegalStateException("Fail to index " + partition.key());
+          }
+          return 0L;
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index P2");
+    }
+  }
+
+  @Test
+  public void wait_for_running_partitions_when_a_partition_fails() throws Exception {
+    PartitionedIndexing indexing = new PartitionedIndexing("fakes", 2);
+    final CountDownLatch bothStarted = new CountDownLatch(2);
+    final Set<String> done = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    try {
+      indexing.execute(partitions("P1", "P2"), new PartitionedIndexing.PartitionIndexer() {
+        @Override
+        public long index(PartitionedIndexing.Partition partition) {
+          bothStarted.countDown();
+          Uninterruptibles.awaitUninterruptibly(bothStarted);
+          if ("P1".equals(partition.key())) {
+            throw new IllegalStateException("Fail to index P1");
+          }
+          Uninterruptibles.sleepUninterruptibly(200L, TimeUnit.MILLISECONDS);
+          done.add(partition.key());
+          return 0L;
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Fail to index P1");
+      // P2 was running, so it is done when execute() returns
+      assertThat(done).containsOnly("P2");
+    }
+  }
+
+  @Test
+  public void split_large_projects_into_ranges_of_ids() throws Exception {
+    List<PartitionedIndexing.Partition> partitions = PartitionedIndexing.split("P1", 1L, 10L, 10L, 3);
+
+    assertThat(partitions).hasSize(4);
+    assertThat(partitions.get(0).toString()).isEqualTo("P1[1..3]");
+    assertThat(partitions.get(1).toString()).isEqualTo("P1[4..6]");
+    assertThat(partitions.get(2).toString()).isEqualTo("P1[7..9]");
+    assertThat(partitions.get(3).toString()).isEqualTo("P1[10..10]");
+  }
+
+  @Test
+  public void do_not_split_small_projects() throws Exception {
+    List<PartitionedIndexing.Partition> partitions = PartitionedIndexing.split("P1", 5L, 100L, 3L, 10);
+
+    assertThat(partitions).hasSize(1);
+    assertThat(partitions.get(0).minId()).isEqualTo(5L);
+    assertThat(partitions.get(0).maxId()).isEqualTo(100L);
+  }
+
+  @Test
+  public void threads_are_configurable() throws Exception {
+    Settings settings = new Settings();
+    assertThat(PartitionedIndexing.threads(settings)).isEqualTo(PartitionedIndexing.DEFAULT_THREADS);
+
+    settings.setProperty(PartitionedIndexing.THREADS_PROPERTY, 6);
+    assertThat(PartitionedIndexing.threads(settings)).isEqualTo(6);
+
+    settings.setProperty(PartitionedIndexing.THREADS_PROPERTY, 0);
+    assertThat(PartitionedIndexing.threads(settings)).isEqualTo(PartitionedIndexing.DEFAULT_THREADS);
+  }
+
+  private static List<PartitionedIndexing.Partition> partitions(String... keys) {
+    ImmutableList.Builder<PartitionedIndexing.Partition> partitions = ImmutableList.builder();
+    for (String key : keys) {
+      partitions.add(new PartitionedIndexing.Partition(key, 0L, Long.MAX_VALUE));
+    }
+    return partitions.build();
+  }
+}
@@ -20,12 +20,16 @@
 
 package org.sonar.server.issue;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.condition.Condition;
 import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationManager;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Scopes;
@@ -39,7 +43,6 @@ import org.sonar.server.db.DbClient;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.UnauthorizedException;
 import org.sonar.server.issue.db.IssueDao;
-import org.sonar.server.issue.notification.IssueChangeNotification;
 import org.sonar.server.rule.DefaultRuleFinder;
 import org.sonar.server.rule.RuleTesting;
 import org.sonar.server.search.QueryContext;
@@ -57,7 +60,6 @@ import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyMap;
-import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class IssueBulkChangeServiceTest {
@@ -132,9 +134,9 @@ public class IssueBulkChangeServiceTest {
     assertThat(result.issuesChanged()).hasSize(1);
     assertThat(result.issuesNotChanged()).isEmpty();
 
-    verify(issueStorage).save(eq(issue));
+    verify(issueStorage).save(Lists.<DefaultIssue>newArrayList(issue));
     verifyNoMoreInteractions(issueStorage);
-    verify(notificationService).scheduleForSending(any(IssueChangeNotification.class));
+    verify(notificationService).scheduleForSending(anyListOf(Notification.class));
     verifyNoMoreInteractions(notificationService);
   }
 
@@ -151,7 +153,7 @@ public class IssueBulkChangeServiceTest {
     assertThat(result.issuesChanged()).hasSize(1);
     assertThat(result.issuesNotChanged()).isEmpty();
 
-    verify(issueStorage).save(eq(issue));
+    verify(issueStorage).save(Lists.<DefaultIssue>newArrayList(issue));
     verifyNoMoreInteractions(issueStorage);
     verifyZeroInteractions(notificationService);
   }
@@ -177,7 +179,7 @@ public class IssueBulkChangeServiceTest {
     assertThat(result.issuesNotChanged()).isEmpty();
 
     verify(commentAction).execute(anyMap(), any(IssueBulkChangeService.ActionContext.class));
-    verify(issueStorage).save(eq(issue));
+    verify(issueStorage).save(Lists.<DefaultIssue>newArrayList(issue));
   }
 
   @Test
@@ -217,7 +219,7 @@ public class IssueBulkChangeServiceTest {
 
     // Only one issue will receive the comment
     verify(assignAction, times(1)).execute(anyMap(), any(IssueBulkChangeService.ActionContext.class));
-    verify(issueStorage).save(eq(issueDto1.toDefaultIssue()));
+    verify(issueStorage).save(Lists.<DefaultIssue>newArrayList(issueDto1.toDefaultIssue()));
   }
 
   @Test
@@ -236,12 +238,48 @@ public class IssueBulkChangeServiceTest {
     assertThat(result.issuesChanged()).hasSize(1);
     assertThat(result.issuesNotChanged()).isEmpty();
 
-    verify(issueStorage, times(1)).save(eq(issue));
+    verify(issueStorage, times(1)).save(Lists.<DefaultIssue>newArrayList(issue));
     verifyNoMoreInteractions(issueStorage);
-    verify(notificationService).scheduleForSending(any(IssueChangeNotification.class));
+    verify(notificationService).scheduleForSending(anyListOf(Notification.class));
     verifyNoMoreInteractions(notificationService);
   }
 
+  @Test
+  public void should_change_issues_by_pages() {
+    Map<String, Object> properties = propertiesOfTwoPages();
+    properties.put("actions", "assign");
+    properties.put("assign.assignee", "fred");
+    actions.add(new MockAction("assign"));
+
+    IssueBulkChangeResult result = service.execute(new IssueBulkChangeQuery(properties, true), userSession);
+
+    assertThat(result.issuesChanged()).hasSize(IssueBulkChangeService.PAGE_SIZE + 1);
+    verify(issueService, times(2)).search(any(IssueQuery.class), any(QueryContext.class));
+    // pages are loaded once as verification does not depend on issues
+    verify(issueDao, times(2)).selectByKeys(eq(dbSession), anyListOf(String.class));
+    verify(issueStorage, times(2)).save(anyListOf(DefaultIssue.class));
+    verify(notificationService, times(2)).scheduleForSending(anyListOf(Notification.class));
+  }
+
+  @Test
+  public void should_verify_all_pages_before_changing_issues() {
+    Map<String, Object> properties = propertiesOfTwoPages();
+    properties.put("actions", "plan");
+    properties.put("plan.plan", "ACTION-PLAN");
+    actions.add(new MockAction("plan") {
+      @Override
+      boolean verifiesIssues(Map<String, Object> properties) {
+        return true;
+      }
+    });
+
+    IssueBulkChangeResult result = service.execute(new IssueBulkChangeQuery(properties, true), userSession);
+
+    assertThat(result.issuesChanged()).hasSize(IssueBulkChangeService.PAGE_SIZE + 1);
+    verify(issueDao, times(4)).selectByKeys(eq(dbSession), anyListOf(String.class));
+    verify(issueStorage, times(2)).save(anyListOf(DefaultIssue.class));
+  }
+
   @Test
   public void should_not_execute_bulk_if_issue_does_not_support_action() {
     Map<String, Object> properties = newHashMap();
@@ -352,6 +390,39 @@ public class IssueBulkChangeServiceTest {
     verifyZeroInteractions(notificationService);
   }
 
+  private Map<String, Object> propertiesOfTwoPages() {
+    List<String> issueKeys = newArrayList();
+    for (int i = 0; i <= IssueBulkChangeService.PAGE_SIZE; i++) {
+      issueKeys.add("ISSUE-" + i);
+    }
+    when(issueService.search(any(IssueQuery.class), any(QueryContext.class))).thenAnswer(new Answer<org.sonar.server.search.Result<Issue>>() {
+      @Override
+      public org.sonar.server.search.Result<Issue> answer(InvocationOnMock invocation) {
+        List<Issue> hits = newArrayList();
+        for (String key : ((IssueQuery) invocation.getArguments()[0]).issueKeys()) {
+          hits.add(new DefaultIssue().setKey(key));
+        }
+        org.sonar.server.search.Result<Issue> result = mock(org.sonar.server.search.Result.class);
+        when(result.getHits()).thenReturn(hits);
+        return result;
+      }
+    });
+    when(issueDao.selectByKeys(eq(dbSession), anyListOf(String.class))).thenAnswer(new Answer<List<IssueDto>>() {
+      @Override
+      public List<IssueDto> answer(InvocationOnMock invocation) {
+        List<IssueDto> dtos = newArrayList();
+        for (String key : (List<String>) invocation.getArguments()[1]) {
+          dtos.add(IssueTesting.newDto(RuleTesting.newDto(rule.ruleKey()).setId(50), file, project).setKee(key));
+        }
+        return dtos;
+      }
+    });
+
+    Map<String, Object> properties = newHashMap();
+    properties.put("issues", Joiner.on(",").join(issueKeys));
+    return properties;
+  }
+
   class MockAction extends Action {
 
     private boolean verify;
@@ -109,6 +109,16 @@ public class PlanActionTest {
     assertThat(properties.get(PlanAction.VERIFIED_ACTION_PLAN)).isEqualTo(actionPlan);
   }
 
+  @Test
+  public void should_verify_issues_only_when_planning() {
+    Map<String, Object> properties = newHashMap();
+    properties.put("plan", "ABCD");
+    assertThat(action.verifiesIssues(properties)).isTrue();
+
+    properties.put("plan", "");
+    assertThat(action.verifiesIssues(properties)).isFalse();
+  }
+
   @Test
   public void should_fail_if_action_plan_does_not_exist(){
     throwable.expect(IllegalArgumentException.class);
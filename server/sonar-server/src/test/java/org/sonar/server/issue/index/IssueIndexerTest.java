@@ -75,6 +75,6 @@ public class IssueIndexerTest {
   }
 
   private IssueIndexer createIndexer() {
-    return new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client());
+    return new IssueIndexer(new DbClient(dbTester.database(), dbTester.myBatis()), esTester.client(), new Settings());
   }
 }
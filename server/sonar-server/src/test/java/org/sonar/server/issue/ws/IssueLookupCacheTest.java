@@ -0,0 +1,150 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.ws;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.user.User;
+import org.sonar.api.user.UserFinder;
+import org.sonar.api.utils.System2;
+import org.sonar.core.user.DefaultUser;
+import org.sonar.server.rule.Rule;
+import org.sonar.server.rule.RuleService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueLookupCacheTest {
+
+  static final long NOW = 1400000000000L;
+
+  RuleService ruleService = mock(RuleService.class);
+  UserFinder userFinder = mock(UserFinder.class);
+  System2 system = mock(System2.class);
+  Settings settings = new Settings();
+
+  @Before
+  public void setUp() {
+    when(system.now()).thenReturn(NOW);
+    when(userFinder.findByLogins(anyListOf(String.class))).thenReturn(Arrays.<User>asList(
+      new DefaultUser().setLogin("simon").setName("Simon"),
+      new DefaultUser().setLogin("fabrice").setName("Fabrice")));
+  }
+
+  @Test
+  public void load_users_once() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+
+    Map<String, User> users = cache.getUsersByLogins(Arrays.asList("simon", "fabrice"));
+    assertThat(users).hasSize(2);
+    assertThat(users.get("simon").name()).isEqualTo("Simon");
+
+    users = cache.getUsersByLogins(Arrays.asList("simon", "fabrice"));
+    assertThat(users).hasSize(2);
+    verify(userFinder, times(1)).findByLogins(anyListOf(String.class));
+  }
+
+  @Test
+  public void load_only_missing_users() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+    cache.getUsersByLogins(Arrays.asList("simon", "fabrice"));
+
+    cache.getUsersByLogins(Arrays.asList("simon", "julien"));
+
+    verify(userFinder).findByLogins(Arrays.asList("julien"));
+  }
+
+  @Test
+  public void reload_expired_users() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+    cache.getUsersByLogins(Arrays.asList("simon"));
+
+    when(system.now()).thenReturn(NOW + IssueLookupCache.DEFAULT_TTL * 1000L + 1L);
+    cache.getUsersByLogins(Arrays.asList("simon"));
+
+    verify(userFinder, times(2)).findByLogins(Arrays.asList("simon"));
+  }
+
+  @Test
+  public void do_not_reload_unknown_users() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+
+    assertThat(cache.getUsersByLogins(Arrays.asList("unknown"))).isEmpty();
+    assertThat(cache.getUsersByLogins(Arrays.asList("unknown"))).isEmpty();
+
+    verify(userFinder, times(1)).findByLogins(Arrays.asList("unknown"));
+  }
+
+  @Test
+  public void load_rules_once() {
+    Rule rule = mock(Rule.class);
+    when(rule.key()).thenReturn(RuleKey.of("squid", "S001"));
+    List<RuleKey> keys = Arrays.asList(RuleKey.of("squid", "S001"));
+    when(ruleService.getByKeys(keys)).thenReturn(Arrays.asList(rule));
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+
+    assertThat(cache.getRulesByKeys(keys)).containsOnly(rule);
+    assertThat(cache.getRulesByKeys(keys)).containsOnly(rule);
+
+    verify(ruleService, times(1)).getByKeys(keys);
+  }
+
+  @Test
+  public void do_not_load_rules_if_no_keys() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+
+    assertThat(cache.getRulesByKeys(Collections.<RuleKey>emptyList())).isEmpty();
+
+    verify(ruleService, times(0)).getByKeys(anyListOf(RuleKey.class));
+  }
+
+  @Test
+  public void disable_cache() {
+    settings.setProperty(IssueLookupCache.TTL_PROPERTY, 0);
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+
+    cache.getUsersByLogins(Arrays.asList("simon"));
+    cache.getUsersByLogins(Arrays.asList("simon"));
+
+    verify(userFinder, times(2)).findByLogins(Arrays.asList("simon"));
+  }
+
+  @Test
+  public void clear() {
+    IssueLookupCache cache = new IssueLookupCache(ruleService, userFinder, settings, system);
+    cache.getUsersByLogins(Arrays.asList("simon"));
+
+    cache.clear();
+    cache.getUsersByLogins(Arrays.asList("simon"));
+
+    verify(userFinder, times(2)).findByLogins(Arrays.asList("simon"));
+  }
+}
@@ -44,6 +44,7 @@ import org.sonar.core.issue.DefaultActionPlan;
 import org.sonar.core.issue.db.IssueChangeDao;
 import org.sonar.core.issue.workflow.Transition;
 import org.sonar.core.persistence.DbSession;
+import org.sonar.core.profiling.Profiling;
 import org.sonar.core.user.DefaultUser;
 import org.sonar.server.component.ComponentTesting;
 import org.sonar.server.component.db.ComponentDao;
@@ -148,8 +149,8 @@ public class IssueShowActionTest {
       new IssueShowAction(dbClient, issueService, issueChangelogService, commentService,
         new IssueActionsWriter(issueService, actionService), actionPlanService, userFinder, debtModel, ruleService, i18n, durations),
       new SearchAction(mock(DbClient.class), mock(IssueChangeDao.class), mock(IssueService.class), mock(IssueActionsWriter.class), mock(IssueQueryService.class),
-        mock(RuleService.class),
-        mock(ActionPlanService.class), mock(UserFinder.class), mock(I18n.class), mock(Durations.class), mock(Languages.class)),
+        mock(IssueLookupCache.class),
+        mock(ActionPlanService.class), mock(I18n.class), mock(Durations.class), mock(Languages.class), mock(Profiling.class)),
       new TagsAction(null), new SetTagsAction(null), new ComponentTagsAction(null)
       ));
   }
@@ -28,6 +28,7 @@ import org.sonar.api.server.ws.WebService;
 import org.sonar.api.user.UserFinder;
 import org.sonar.api.utils.Durations;
 import org.sonar.core.issue.db.IssueChangeDao;
+import org.sonar.core.profiling.Profiling;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.debt.DebtModelService;
 import org.sonar.server.issue.IssueChangelogService;
@@ -59,8 +60,8 @@ public class IssuesWsTest {
       mock(ActionPlanService.class), mock(UserFinder.class),
       debtModelService, mock(RuleService.class), i18n, durations);
     SearchAction searchAction = new SearchAction(mock(DbClient.class), mock(IssueChangeDao.class), mock(IssueService.class), mock(IssueActionsWriter.class),
-      mock(IssueQueryService.class), mock(RuleService.class),
-      mock(ActionPlanService.class), mock(UserFinder.class), mock(I18n.class), mock(Durations.class), mock(Languages.class));
+      mock(IssueQueryService.class), mock(IssueLookupCache.class),
+      mock(ActionPlanService.class), mock(I18n.class), mock(Durations.class), mock(Languages.class), mock(Profiling.class));
     tester = new WsTester(new IssuesWs(showAction, searchAction, new TagsAction(null), new SetTagsAction(null), new ComponentTagsAction(null)));
   }
 
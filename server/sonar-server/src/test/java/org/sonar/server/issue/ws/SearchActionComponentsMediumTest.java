@@ -65,6 +65,8 @@ public class SearchActionComponentsMediumTest {
   @Before
   public void setUp() throws Exception {
     tester.clearDbAndIndexes();
+    // rules and users of previous tests must not be read from cache
+    tester.get(IssueLookupCache.class).clear();
     db = tester.get(DbClient.class);
     wsTester = tester.get(WsTester.class);
     session = db.openSession(false);
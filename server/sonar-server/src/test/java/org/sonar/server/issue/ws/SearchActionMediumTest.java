@@ -67,6 +67,8 @@ public class SearchActionMediumTest {
   @Before
   public void setUp() throws Exception {
     tester.clearDbAndIndexes();
+    // rules and users of previous tests must not be read from cache
+    tester.get(IssueLookupCache.class).clear();
     db = tester.get(DbClient.class);
     wsTester = tester.get(WsTester.class);
     session = db.openSession(false);
@@ -32,9 +32,16 @@ import org.sonar.core.properties.PropertiesDao;
 import org.sonar.server.db.DbClient;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static java.util.Collections.singletonList;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.*;
@@ -64,7 +71,7 @@ public class NotificationServiceTest {
     when(commentOnIssueCreatedByMe.getType()).thenReturn("issue-changes");
     when(qualityGateChange.getKey()).thenReturn("QGateChange");
     when(qualityGateChange.getType()).thenReturn("qgate-changes");
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(Collections.<Notification>emptyList());
 
     Settings settings = new Settings().setProperty("sonar.notifications.delay", 1L);
 
@@ -171,7 +178,8 @@ public class NotificationServiceTest {
   @Test
   public void shouldNotStopWhenException() {
     setUpMocks();
-    when(manager.getFromQueue()).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenThrow(new RuntimeException("Unexpected exception")).thenReturn(singletonList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
     doAnswer(addUser(CREATOR_SIMON, emailChannel)).when(commentOnIssueCreatedByMe).dispatch(same(notification), any(NotificationDispatcher.Context.class));
 
@@ -213,7 +221,8 @@ public class NotificationServiceTest {
   public void shouldLogEvery10Minutes() throws InterruptedException {
     setUpMocks();
     // Emulate 2 notifications in DB
-    when(manager.getFromQueue()).thenReturn(notification).thenReturn(notification).thenReturn(null);
+    when(manager.getFromQueue(anyInt())).thenReturn(singletonList(notification)).thenReturn(singletonList(notification))
+      .thenReturn(Collections.<Notification>emptyList());
     when(manager.count()).thenReturn(1L).thenReturn(0L);
     service = spy(service);
     // Emulate processing of each notification take 10 min to have a log each time
@@ -224,6 +233,65 @@ public class NotificationServiceTest {
     service.stop();
   }
 
+  @Test
+  public void read_queue_by_batches() {
+    setUpMocks();
+    Notification otherNotification = mock(Notification.class);
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(notification, otherNotification)).thenReturn(Collections.<Notification>emptyList());
+    doAnswer(addUser(ASSIGNEE_SIMON, emailChannel)).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    Settings settings = new Settings()
+      .setProperty(NotificationService.PROPERTY_BATCH_SIZE, 50)
+      .setProperty(NotificationService.PROPERTY_WORKERS_PER_CHANNEL, 4);
+    service = new NotificationService(settings, manager, dbClient, new NotificationDispatcher[] {commentOnIssueAssignedToMe});
+
+    service.processQueue();
+
+    verify(manager, times(2)).getFromQueue(50);
+    verify(emailChannel).deliver(notification, ASSIGNEE_SIMON);
+    verify(emailChannel).deliver(otherNotification, ASSIGNEE_SIMON);
+  }
+
+  @Test
+  public void wait_for_workers_when_batch_has_more_deliveries_than_batch_size() throws Exception {
+    setUpMocks();
+    final String[] users = {"user1", "user2", "user3", "user4", "user5"};
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) {
+        for (String user : users) {
+          ((NotificationDispatcher.Context) invocation.getArguments()[1]).addUser(user, emailChannel);
+        }
+        return null;
+      }
+    }).when(commentOnIssueAssignedToMe).dispatch(any(Notification.class), any(NotificationDispatcher.Context.class));
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicBoolean concurrent = new AtomicBoolean(false);
+    final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) throws InterruptedException {
+        if (running.incrementAndGet() > 1) {
+          concurrent.set(true);
+        }
+        threads.add(Thread.currentThread().getName());
+        Thread.sleep(20L);
+        running.decrementAndGet();
+        return null;
+      }
+    }).when(emailChannel).deliver(any(Notification.class), anyString());
+    Settings settings = new Settings()
+      .setProperty(NotificationService.PROPERTY_BATCH_SIZE, 1)
+      .setProperty(NotificationService.PROPERTY_WORKERS_PER_CHANNEL, 1);
+    service = new NotificationService(settings, manager, dbClient, new NotificationDispatcher[] {commentOnIssueAssignedToMe});
+
+    service.processQueue();
+
+    for (String user : users) {
+      verify(emailChannel).deliver(notification, user);
+    }
+    // deliveries are executed one at a time by the single worker of channel, never by the caller
+    assertThat(concurrent.get()).isFalse();
+    assertThat(threads).containsOnly("notifications-email-0");
+  }
+
   @Test
   public void hasProjectSubscribersForType() {
     setUpMocks();
@@ -854,6 +854,36 @@ public class RuleActivatorMediumTest {
     assertThat(result.countFailed()).isEqualTo(0);
   }
 
+  @Test
+  public void bulk_activation_propagates_to_child_profiles() {
+    createChildProfiles();
+    for (int i = 0; i < 3; i++) {
+      db.ruleDao().insert(dbSession, RuleTesting.newDto(RuleKey.of("bulk", "r_" + i)).setLanguage("xoo"));
+    }
+    dbSession.commit();
+
+    BulkChangeResult result = ruleActivator.bulkActivate(
+      new RuleQuery().setRepositories(Arrays.asList("bulk")), XOO_P1_KEY, "MINOR");
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isEqualTo(3);
+    assertThat(result.getChanges()).hasSize(9);
+    assertThat(countActiveRules(XOO_P1_KEY)).isEqualTo(3);
+    assertThat(countActiveRules(XOO_P2_KEY)).isEqualTo(3);
+    assertThat(countActiveRules(XOO_P3_KEY)).isEqualTo(3);
+    verifyHasActiveRule(ActiveRuleKey.of(XOO_P3_KEY, RuleKey.of("bulk", "r_0")), Severity.MINOR, ActiveRuleDto.INHERITED, Collections.<String, String>emptyMap());
+    assertThat(db.qualityProfileDao().getByKey(dbSession, XOO_P3_KEY).getRulesUpdatedAt()).isNotNull();
+
+    // deactivation is propagated too
+    result = ruleActivator.bulkDeactivate(new RuleQuery().setRepositories(Arrays.asList("bulk")), XOO_P1_KEY);
+
+    dbSession.clearCache();
+    assertThat(result.countSucceeded()).isEqualTo(3);
+    verifyZeroActiveRules(XOO_P1_KEY);
+    verifyZeroActiveRules(XOO_P2_KEY);
+    verifyZeroActiveRules(XOO_P3_KEY);
+  }
+
   @Test
   public void bulk_activation_ignores_errors() {
     // 1. bulk activate all the rules, even non xoo-rules and xoo templates
@@ -37,6 +37,8 @@ import org.sonar.core.qualityprofile.db.QualityProfileDao;
 import org.sonar.core.rule.RuleDto;
 import org.sonar.core.rule.RuleParamDto;
 import org.sonar.core.technicaldebt.db.CharacteristicDao;
+import org.sonar.core.template.LoadedTemplateDao;
+import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.qualityprofile.RuleActivator;
 import org.sonar.server.qualityprofile.db.ActiveRuleDao;
@@ -67,7 +69,7 @@ public class RegisterRulesTest extends AbstractDaoTestCase {
     RuleDao ruleDao = new RuleDao(system);
     ActiveRuleDao activeRuleDao = new ActiveRuleDao(new QualityProfileDao(getMyBatis(), system), ruleDao, system);
     dbClient = new DbClient(getDatabase(), getMyBatis(), ruleDao, activeRuleDao,
-      new QualityProfileDao(getMyBatis(), system), new CharacteristicDao(getMyBatis()));
+      new QualityProfileDao(getMyBatis(), system), new CharacteristicDao(getMyBatis()), new LoadedTemplateDao(getMyBatis()));
     dbSession = dbClient.openSession(false);
   }
 
@@ -116,6 +118,49 @@ public class RegisterRulesTest extends AbstractDaoTestCase {
     assertThat(rule1.getUpdatedAt()).isEqualTo(DATE1);
   }
 
+  @Test
+  public void skip_repository_when_definitions_are_unchanged() {
+    execute(new FakeRepositoryV1());
+    assertThat(dbClient.loadedTemplateDao().selectByType(dbSession, LoadedTemplateDto.RULE_REPOSITORY_TYPE)).hasSize(1);
+
+    RuleKey ruleKey1 = RuleKey.of("fake", "rule1");
+    RuleDto rule1 = dbClient.ruleDao().getNullableByKey(dbSession, ruleKey1);
+    rule1.setName("Changed in db");
+    dbClient.ruleDao().update(dbSession, rule1);
+    dbSession.commit();
+
+    execute(new FakeRepositoryV1());
+
+    // repository is not registered again
+    dbSession.clearCache();
+    rule1 = dbClient.ruleDao().getNullableByKey(dbSession, ruleKey1);
+    assertThat(rule1.getName()).isEqualTo("Changed in db");
+    assertThat(dbClient.ruleDao().getNullableByKey(dbSession, RuleKey.of("fake", "rule2")).getStatus()).isEqualTo(RuleStatus.READY);
+
+    execute(new FakeRepositoryV2());
+
+    dbSession.clearCache();
+    rule1 = dbClient.ruleDao().getNullableByKey(dbSession, ruleKey1);
+    assertThat(rule1.getName()).isEqualTo("One v2");
+    assertThat(dbClient.loadedTemplateDao().selectByType(dbSession, LoadedTemplateDto.RULE_REPOSITORY_TYPE)).hasSize(1);
+  }
+
+  @Test
+  public void register_unchanged_repository_if_rules_have_been_disabled_in_db() {
+    execute(new FakeRepositoryV1());
+    RuleKey ruleKey2 = RuleKey.of("fake", "rule2");
+    RuleDto rule2 = dbClient.ruleDao().getNullableByKey(dbSession, ruleKey2);
+    rule2.setStatus(RuleStatus.REMOVED);
+    dbClient.ruleDao().update(dbSession, rule2);
+    dbSession.commit();
+
+    // same fingerprint, but rule2 is disabled in db
+    execute(new FakeRepositoryV1());
+
+    dbSession.clearCache();
+    assertThat(dbClient.ruleDao().getNullableByKey(dbSession, ruleKey2).getStatus()).isEqualTo(RuleStatus.READY);
+  }
+
   @Test
   public void update_and_remove_rules_on_changes() {
     execute(new FakeRepositoryV1());
@@ -0,0 +1,166 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.server.activity.db.ActivityDao;
+import org.sonar.server.activity.index.ActivityIndex;
+import org.sonar.server.db.DbClient;
+import org.sonar.server.issue.index.IssueAuthorizationIndexer;
+import org.sonar.server.issue.index.IssueIndexer;
+import org.sonar.server.qualityprofile.db.ActiveRuleDao;
+import org.sonar.server.qualityprofile.index.ActiveRuleIndex;
+import org.sonar.server.rule.db.RuleDao;
+import org.sonar.server.rule.index.RuleIndex;
+import org.sonar.server.source.index.SourceLineIndexer;
+import org.sonar.server.user.index.UserIndexer;
+import org.sonar.server.view.index.ViewIndexer;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IndexSynchronizerTest {
+
+  DbClient db = mock(DbClient.class);
+  DbSession session = mock(DbSession.class);
+  IndexClient indexClient = mock(IndexClient.class);
+  RuleDao ruleDao = mock(RuleDao.class);
+  ActiveRuleDao activeRuleDao = mock(ActiveRuleDao.class);
+  ActivityDao activityDao = mock(ActivityDao.class);
+  SourceLineIndexer sourceLineIndexer = mock(SourceLineIndexer.class);
+  IssueAuthorizationIndexer issueAuthorizationIndexer = mock(IssueAuthorizationIndexer.class);
+  IssueIndexer issueIndexer = mock(IssueIndexer.class);
+  UserIndexer userIndexer = mock(UserIndexer.class);
+  ViewIndexer viewIndexer = mock(ViewIndexer.class);
+  Settings settings = new Settings();
+
+  @Before
+  public void setUp() {
+    when(db.openSession(false)).thenReturn(session);
+    when(db.ruleDao()).thenReturn(ruleDao);
+    when(db.activeRuleDao()).thenReturn(activeRuleDao);
+    when(db.activityDao()).thenReturn(activityDao);
+    mockIndex(RuleIndex.class);
+    mockIndex(ActiveRuleIndex.class);
+    mockIndex(ActivityIndex.class);
+  }
+
+  @Test
+  public void synchronize_all_indexes() {
+    settings.setProperty(IndexSynchronizer.THREADS_PROPERTY, 3);
+
+    newSynchronizer().execute();
+
+    verify(ruleDao).synchronizeAfter(session);
+    verify(activeRuleDao).synchronizeAfter(session);
+    verify(activityDao).synchronizeAfter(session);
+    verify(issueIndexer).index();
+    verify(sourceLineIndexer).index();
+    verify(userIndexer).index();
+    verify(viewIndexer).index();
+    // authorization is required to index issues
+    InOrder inOrder = inOrder(issueAuthorizationIndexer, issueIndexer);
+    inOrder.verify(issueAuthorizationIndexer).index();
+    inOrder.verify(issueIndexer).index();
+  }
+
+  @Test
+  public void fail_if_an_index_fails() {
+    IllegalStateException failure = new IllegalStateException("Fail to index users");
+    doThrow(failure).when(userIndexer).index();
+
+    try {
+      newSynchronizer().execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(failure);
+    }
+  }
+
+  @Test
+  public void fail_as_soon_as_an_index_fails() throws Exception {
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    // issues are synchronized before users, but never finish
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        try {
+          new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+        return null;
+      }
+    }).when(issueIndexer).index();
+    IllegalStateException failure = new IllegalStateException("Fail to index users");
+    doThrow(failure).when(userIndexer).index();
+
+    try {
+      newSynchronizer().execute();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(failure);
+    }
+    // synchronization of issues is stopped
+    assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void synchronize_low_priority_indexes_in_background() {
+    settings.setProperty(IndexSynchronizer.BACKGROUND_PROPERTY, true);
+    doThrow(new IllegalStateException("Background failure is only logged")).when(activityDao).synchronizeAfter(any(DbSession.class));
+
+    newSynchronizer().execute();
+
+    verify(issueIndexer).index();
+    verify(userIndexer).index();
+    verify(viewIndexer).index();
+    verify(sourceLineIndexer, timeout(5000)).index();
+    verify(activityDao, timeout(5000)).synchronizeAfter(session);
+  }
+
+  private IndexSynchronizer newSynchronizer() {
+    return new IndexSynchronizer(db, indexClient, sourceLineIndexer, issueAuthorizationIndexer, issueIndexer, userIndexer, viewIndexer, settings);
+  }
+
+  private <I extends Index> void mockIndex(Class<I> indexClass) {
+    I index = mock(indexClass);
+    when(index.getIndexStat()).thenReturn(new IndexStat(new Date(), 0L));
+    when(indexClient.get(indexClass)).thenReturn(index);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.server.source.index.SourceLineDoc;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HtmlSourceCacheTest {
+
+  HtmlSourceDecorator decorator = mock(HtmlSourceDecorator.class);
+
+  @Test
+  public void decorate_line_once() throws Exception {
+    when(decorator.getDecoratedSourceAsHtml("class Foo {", "k", "s")).thenReturn("<span>class</span> Foo {");
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings());
+    SourceLineDoc line = newLine("FILE1", 1, new Date(1000L));
+
+    assertThat(cache.getDecoratedSourceAsHtml(line)).isEqualTo("<span>class</span> Foo {");
+    assertThat(cache.getDecoratedSourceAsHtml(line)).isEqualTo("<span>class</span> Foo {");
+
+    verify(decorator, times(1)).getDecoratedSourceAsHtml("class Foo {", "k", "s");
+    assertThat(cache.hitCount()).isEqualTo(1L);
+    assertThat(cache.missCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void decorate_again_when_line_is_reindexed() throws Exception {
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings());
+
+    cache.getDecoratedSourceAsHtml(newLine("FILE1", 1, new Date(1000L)));
+    cache.getDecoratedSourceAsHtml(newLine("FILE1", 1, new Date(2000L)));
+    cache.getDecoratedSourceAsHtml(newLine("FILE1", 2, new Date(2000L)));
+
+    verify(decorator, times(3)).getDecoratedSourceAsHtml("class Foo {", "k", "s");
+    assertThat(cache.hitCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void evict_lines_when_size_is_exceeded() throws Exception {
+    when(decorator.getDecoratedSourceAsHtml("class Foo {", "k", "s")).thenReturn(Strings.repeat("a", HtmlSourceCache.MAX_HTML_LENGTH));
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings().setProperty(HtmlSourceCache.SIZE_PROPERTY, 1));
+
+    // 1Mb can not contain 1000 lines of max length
+    for (int i = 1; i <= 1000; i++) {
+      cache.getDecoratedSourceAsHtml(newLine("FILE1", i, new Date(1000L)));
+    }
+    assertThat(cache.size()).isGreaterThan(0L).isLessThan(1000L);
+
+    // most recent line is kept
+    cache.getDecoratedSourceAsHtml(newLine("FILE1", 1000, new Date(1000L)));
+    assertThat(cache.hitCount()).isEqualTo(1L);
+    assertThat(cache.missCount()).isEqualTo(1000L);
+  }
+
+  @Test
+  public void do_not_cache_long_lines() throws Exception {
+    when(decorator.getDecoratedSourceAsHtml("class Foo {", "k", "s")).thenReturn(Strings.repeat("a", HtmlSourceCache.MAX_HTML_LENGTH + 1));
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings());
+    SourceLineDoc line = newLine("FILE1", 1, new Date(1000L));
+
+    cache.getDecoratedSourceAsHtml(line);
+    cache.getDecoratedSourceAsHtml(line);
+
+    verify(decorator, times(2)).getDecoratedSourceAsHtml("class Foo {", "k", "s");
+    assertThat(cache.size()).isEqualTo(0L);
+  }
+
+  @Test
+  public void do_not_cache_lines_without_date() throws Exception {
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings());
+    SourceLineDoc line = new SourceLineDoc().setFileUuid("FILE1").setLine(1).setSource("class Foo {").setHighlighting("k").setSymbols("s");
+
+    cache.getDecoratedSourceAsHtml(line);
+    cache.getDecoratedSourceAsHtml(line);
+
+    verify(decorator, times(2)).getDecoratedSourceAsHtml("class Foo {", "k", "s");
+  }
+
+  @Test
+  public void disable_cache() throws Exception {
+    HtmlSourceCache cache = new HtmlSourceCache(decorator, new Settings().setProperty(HtmlSourceCache.SIZE_PROPERTY, 0));
+    SourceLineDoc line = newLine("FILE1", 1, new Date(1000L));
+
+    cache.getDecoratedSourceAsHtml(line);
+    cache.getDecoratedSourceAsHtml(line);
+
+    verify(decorator, times(2)).getDecoratedSourceAsHtml("class Foo {", "k", "s");
+    cache.stop();
+  }
+
+  private SourceLineDoc newLine(String fileUuid, int line, Date updatedAt) {
+    return new SourceLineDoc()
+      .setFileUuid(fileUuid)
+      .setLine(line)
+      .setSource("class Foo {")
+      .setHighlighting("k")
+      .setSymbols("s")
+      .setUpdateDate(updatedAt);
+  }
+}
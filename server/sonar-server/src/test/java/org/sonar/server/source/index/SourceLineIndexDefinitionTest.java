@@ -39,13 +39,23 @@ public class SourceLineIndexDefinitionTest {
     assertThat(context.getIndices()).hasSize(1);
     NewIndex index = context.getIndices().get("sourcelines");
     assertThat(index).isNotNull();
-    assertThat(index.getTypes().keySet()).containsOnly("sourceline");
+    assertThat(index.getTypes().keySet()).containsOnly("sourceline", "sourcelinechunk");
+    assertThat(index.getSettings().get(SourceLineIndexDefinition.SETTING_CHUNK_SIZE)).isEqualTo("0");
 
     // no cluster by default
     assertThat(index.getSettings().get("index.number_of_shards")).isEqualTo("1");
     assertThat(index.getSettings().get("index.number_of_replicas")).isEqualTo("0");
   }
 
+  @Test
+  public void chunk_size_is_part_of_index_settings() throws Exception {
+    IndexDefinition def = new SourceLineIndexDefinition(new Settings().setProperty(SourceLineIndexDefinition.CHUNK_SIZE_PROPERTY, 100));
+    def.define(context);
+
+    NewIndex index = context.getIndices().get("sourcelines");
+    assertThat(index.getSettings().get(SourceLineIndexDefinition.SETTING_CHUNK_SIZE)).isEqualTo("100");
+  }
+
   @Test
   public void enable_cluster() throws Exception {
     Settings settings = new Settings();
@@ -26,6 +26,9 @@ import org.sonar.api.config.Settings;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.NotFoundException;
 
+import java.util.Date;
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SourceLineIndexTest {
@@ -37,7 +40,7 @@ public class SourceLineIndexTest {
 
   @Before
   public void setUp() {
-    index = new SourceLineIndex(es.client());
+    index = new SourceLineIndex(es.client(), new Settings());
   }
 
   @Test
@@ -55,6 +58,36 @@ public class SourceLineIndexTest {
     assertThat(index.getLines("file1", 2, 2)).hasSize(1);
   }
 
+  @Test
+  public void should_retrieve_line_range_from_chunks() throws Exception {
+    index = new SourceLineIndex(es.client(), new Settings().setProperty(SourceLineIndexDefinition.CHUNK_SIZE_PROPERTY, 2));
+    putChunk("file1", 1, 2);
+    putChunk("file1", 3, 4);
+    putChunk("file1", 5, 5);
+    putChunk("file2", 1, 2);
+
+    assertThat(index.getLines("file1", 1, Integer.MAX_VALUE)).hasSize(5);
+    List<SourceLineDoc> lines = index.getLines("file1", 2, 3);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0).line()).isEqualTo(2);
+    assertThat(lines.get(1).line()).isEqualTo(3);
+    assertThat(index.getLine("file1", 5).source()).isEqualTo("line 5");
+    assertThat(index.getLines("file1", 6, 10)).isEmpty();
+  }
+
+  @Test
+  public void should_retrieve_line_range_spanning_two_chunks() throws Exception {
+    index = new SourceLineIndex(es.client(), new Settings().setProperty(SourceLineIndexDefinition.CHUNK_SIZE_PROPERTY, 10));
+    putChunk("file1", 1, 10);
+    putChunk("file1", 11, 20);
+
+    List<SourceLineDoc> lines = index.getLines("file1", 10, 11);
+    assertThat(lines).hasSize(2);
+    assertThat(lines.get(0).line()).isEqualTo(10);
+    assertThat(lines.get(1).line()).isEqualTo(11);
+    assertThat(index.getLines("file1", 5, 14)).hasSize(10);
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void should_reject_from_less_than_1() {
     index.getLines("polop", 0, 0);
@@ -107,4 +140,19 @@ public class SourceLineIndexTest {
       assertThat(e).isInstanceOf(NotFoundException.class).hasMessage("No source found on line 1 for file 'file1'");
     }
   }
+
+  private void putChunk(String fileUuid, int from, int to) {
+    SourceLineChunkDoc chunk = new SourceLineChunkDoc()
+      .setProjectUuid("project1")
+      .setFileUuid(fileUuid)
+      .setUpdateDate(new Date());
+    for (int line = from; line <= to; line++) {
+      chunk.addLine(new SourceLineDoc().setFileUuid(fileUuid).setLine(line).setSource("line " + line));
+    }
+    es.client().prepareIndex(SourceLineIndexDefinition.INDEX, SourceLineIndexDefinition.TYPE_CHUNK)
+      .setId(chunk.key())
+      .setSource(chunk.getFields())
+      .setRefresh(true)
+      .get();
+  }
 }
@@ -37,6 +37,7 @@ import org.sonar.api.utils.DateUtils;
 import org.sonar.core.persistence.DbTester;
 import org.sonar.server.db.DbClient;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.es.PartitionedIndexing;
 import org.sonar.server.search.BaseNormalizer;
 import org.sonar.test.DbTests;
 import org.sonar.test.TestUtils;
@@ -63,7 +64,7 @@ public class SourceLineIndexerTest {
 
   @Before
   public void setUp() {
-    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client());
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client(), new Settings());
   }
 
   @Test
@@ -73,6 +74,40 @@ public class SourceLineIndexerTest {
     assertThat(countDocuments()).isEqualTo(2);
   }
 
+  @Test
+  public void index_projects_in_parallel() throws Exception {
+    db.prepareDbUnit(getClass(), "several_projects.xml");
+    Settings settings = new Settings().setProperty(PartitionedIndexing.THREADS_PROPERTY, 2);
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client(), settings);
+
+    indexer.index();
+
+    assertThat(countDocuments()).isEqualTo(5);
+    assertThat(prepareSearch().setQuery(QueryBuilders.termQuery(FIELD_PROJECT_UUID, "uuid-P2")).get().getHits().getTotalHits()).isEqualTo(2L);
+  }
+
+  @Test
+  public void index_chunks_of_lines() throws Exception {
+    db.prepareDbUnit(getClass(), "db.xml");
+    Settings settings = new Settings().setProperty(CHUNK_SIZE_PROPERTY, 10);
+    indexer = new SourceLineIndexer(new DbClient(db.database(), db.myBatis()), es.client(), settings);
+
+    indexer.index();
+
+    assertThat(countDocuments()).isEqualTo(0);
+    List<SearchHit> chunks = es.getDocuments(INDEX, TYPE_CHUNK);
+    assertThat(chunks).hasSize(1);
+    SourceLineChunkDoc chunk = new SourceLineChunkDoc(chunks.get(0).sourceAsMap());
+    assertThat(chunk.fileUuid()).isEqualTo("uuid-MyFile.xoo");
+    assertThat(chunk.fromLine()).isEqualTo(1);
+    assertThat(chunk.toLine()).isEqualTo(2);
+
+    List<SourceLineDoc> lines = new SourceLineIndex(es.client(), settings).getLines("uuid-MyFile.xoo", 2, 2);
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0).line()).isEqualTo(2);
+    assertThat(lines.get(0).source()).isEqualTo("}");
+  }
+
   @Test
   public void update_already_indexed_lines() throws Exception {
     prepareIndex()
@@ -25,11 +25,13 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.sonar.core.persistence.DbTester;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.server.db.DbClient;
 import org.sonar.test.DbTests;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.util.Iterator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -92,6 +94,67 @@ public class SourceLineResultSetIteratorTest {
     iterator.close();
   }
 
+  @Test
+  public void should_generate_source_line_documents_from_binary_data() throws Exception {
+    db.prepareDbUnit(getClass(), "shared.xml");
+    FileSourceData data = FileSourceData.newBuilder(2)
+      .setLine(1, "aef12a", "alice", "2014-04-25T12:34:56+0100", "1", "0", "0", "2", "0", "0", "3", "0", "0", "polop", "palap", "1,2", "class Foo {")
+      .setLine(2, "abe465", "bob", "2014-07-25T12:34:56+0100", null, null, null, null, null, null, null, null, null, null, null, null, "}")
+      .build();
+    PreparedStatement stmt = connection.prepareStatement("UPDATE file_sources SET data = NULL, binary_data = ? WHERE id=1");
+    stmt.setBytes(1, data.getBytes());
+    stmt.executeUpdate();
+    stmt.close();
+
+    SourceLineResultSetIterator iterator = SourceLineResultSetIterator.create(dbClient, connection, 0L);
+    assertThat(iterator.hasNext()).isTrue();
+    SourceLineResultSetIterator.SourceFile file = iterator.next();
+    assertThat(file.getLines()).hasSize(2);
+    SourceLineDoc firstLine = file.getLines().get(0);
+    assertThat(firstLine.projectUuid()).isEqualTo("uuid-MyProject");
+    assertThat(firstLine.fileUuid()).isEqualTo("uuid-MyFile.xoo");
+    assertThat(firstLine.line()).isEqualTo(1);
+    assertThat(firstLine.scmRevision()).isEqualTo("aef12a");
+    assertThat(firstLine.scmAuthor()).isEqualTo("alice");
+    assertThat(firstLine.highlighting()).isEqualTo("polop");
+    assertThat(firstLine.symbols()).isEqualTo("palap");
+    assertThat(firstLine.duplications()).containsExactly(1, 2);
+    assertThat(firstLine.source()).isEqualTo("class Foo {");
+    assertThat(firstLine.utLineHits()).isEqualTo(1);
+    assertThat(firstLine.itLineHits()).isEqualTo(2);
+    assertThat(firstLine.overallLineHits()).isEqualTo(3);
+    SourceLineDoc secondLine = file.getLines().get(1);
+    assertThat(secondLine.line()).isEqualTo(2);
+    assertThat(secondLine.scmAuthor()).isEqualTo("bob");
+    assertThat(secondLine.utLineHits()).isNull();
+    assertThat(secondLine.duplications()).isEmpty();
+    assertThat(secondLine.source()).isEqualTo("}");
+    iterator.close();
+  }
+
+  @Test
+  public void parse_lines_on_demand() throws Exception {
+    db.prepareDbUnit(getClass(), "shared.xml");
+    FileSourceData data = FileSourceData.newBuilder(2)
+      .setLine(1, "aef12a", "alice", "2014-04-25T12:34:56+0100", null, null, null, null, null, null, null, null, null, null, null, null, "class Foo {")
+      .setLine(2, "abe465", "bob", "2014-07-25T12:34:56+0100", null, null, null, null, null, null, null, null, null, null, null, null, "}")
+      .build();
+    PreparedStatement stmt = connection.prepareStatement("UPDATE file_sources SET data = NULL, binary_data = ? WHERE id=1");
+    stmt.setBytes(1, data.getBytes());
+    stmt.executeUpdate();
+    stmt.close();
+
+    SourceLineResultSetIterator iterator = SourceLineResultSetIterator.create(dbClient, connection, 0L);
+    SourceLineResultSetIterator.SourceFile file = iterator.next();
+    iterator.close();
+
+    // row is already read, lines are parsed while iterating
+    Iterator<SourceLineDoc> lines = file.lineIterator();
+    assertThat(lines.next().source()).isEqualTo("class Foo {");
+    assertThat(lines.next().source()).isEqualTo("}");
+    assertThat(lines.hasNext()).isFalse();
+  }
+
   @Test
   public void should_ignore_lines_already_handled() throws Exception {
     db.prepareDbUnit(getClass(), "shared.xml");
@@ -136,7 +199,8 @@ public class SourceLineResultSetIteratorTest {
     SourceLineResultSetIterator iterator = SourceLineResultSetIterator.create(dbClient, connection, 0L);
     try {
       assertThat(iterator.hasNext()).isTrue();
-      iterator.next();
+      // lines are parsed lazily
+      iterator.next().getLines();
       fail();
     } catch (IllegalStateException e) {
       // ok
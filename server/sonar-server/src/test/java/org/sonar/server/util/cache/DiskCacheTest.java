@@ -25,6 +25,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.utils.System2;
 import org.sonar.server.util.CloseableIterator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
@@ -53,6 +54,47 @@ public class DiskCacheTest {
     }
   }
 
+  @Test
+  public void write_and_read_several_blocks() throws Exception {
+    for (DiskCache.Compression compression : DiskCache.Compression.values()) {
+      DiskCache<String> cache = new DiskCache<>(temp.newFile(), System2.INSTANCE, new JavaSerializationCodec<String>(), compression);
+      int count = 10000;
+      try (DiskCache<String>.DiskAppender appender = cache.newAppender()) {
+        for (int i = 0; i < count; i++) {
+          appender.append("value " + i);
+        }
+      }
+      // append to existing file
+      cache.newAppender().append("last").close();
+
+      try (CloseableIterator<String> traverse = cache.traverse()) {
+        for (int i = 0; i < count; i++) {
+          assertThat(traverse.next()).isEqualTo("value " + i);
+        }
+        assertThat(traverse.next()).isEqualTo("last");
+        assertThat(traverse.hasNext()).isFalse();
+      }
+    }
+  }
+
+  @Test
+  public void compression_reduces_file_size() throws Exception {
+    File uncompressed = temp.newFile();
+    File compressed = temp.newFile();
+    writeRepetitiveValues(new DiskCache<>(uncompressed, System2.INSTANCE, new JavaSerializationCodec<String>(), DiskCache.Compression.NONE));
+    writeRepetitiveValues(new DiskCache<>(compressed, System2.INSTANCE, new JavaSerializationCodec<String>(), DiskCache.Compression.DEFLATE));
+
+    assertThat(compressed.length()).isLessThan(uncompressed.length() / 2);
+  }
+
+  private void writeRepetitiveValues(DiskCache<String> cache) {
+    try (DiskCache<String>.DiskAppender appender = cache.newAppender()) {
+      for (int i = 0; i < 1000; i++) {
+        appender.append("this is a repetitive value");
+      }
+    }
+  }
+
   @Test
   public void fail_if_file_is_not_writable() throws Exception {
     try {
@@ -0,0 +1,12 @@
+CREATE TABLE "FILE_SOURCES" (
+  "ID" INTEGER NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1, INCREMENT BY 1),
+  "PROJECT_UUID" VARCHAR(50) NOT NULL,
+  "FILE_UUID" VARCHAR(50) NOT NULL,
+  "DATA" CLOB(2147483647),
+  "BINARY_DATA" BLOB(2147483647),
+  "LINE_HASHES" CLOB(2147483647),
+  "DATA_HASH" VARCHAR(50) NOT NULL,
+  "SRC_HASH" VARCHAR(50) NULL,
+  "CREATED_AT" BIGINT NOT NULL,
+  "UPDATED_AT" BIGINT NOT NULL
+);
@@ -4,6 +4,7 @@ CREATE TABLE "FILE_SOURCES" (
   "PROJECT_UUID" VARCHAR(50) NOT NULL,
   "FILE_UUID" VARCHAR(50) NOT NULL,
   "DATA" CLOB(2147483647),
+  "BINARY_DATA" BLOB(2147483647),
   "DATA_HASH" VARCHAR(50) NOT NULL,
   "CREATED_AT" BIGINT NOT NULL,
   "UPDATED_AT" BIGINT NOT NULL
@@ -0,0 +1,126 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over protocol buffer messages. Messages written with
+ * {@link ProtobufUtil#writeDelimitedToFile(Iterable, java.io.File)} are parsed one by one,
+ * so that only the current message is kept in memory. The iterator must be closed
+ * when not fully consumed.
+ */
+public class MessageIterator<T extends Message> implements Iterator<T>, Closeable {
+
+  private final InputStream input;
+  private final Parser<T> parser;
+  private final Iterator<T> loaded;
+  private T nextMessage = null;
+  private boolean endOfStream = false;
+
+  private MessageIterator(@Nullable InputStream input, @Nullable Parser<T> parser, Iterator<T> loaded) {
+    this.input = input;
+    this.parser = parser;
+    this.loaded = loaded;
+  }
+
+  /**
+   * Lazily reads the length-delimited messages of the stream, which is closed when all the messages have been read.
+   */
+  public static <T extends Message> MessageIterator<T> delimited(InputStream input, Parser<T> parser) {
+    return new MessageIterator<T>(new BufferedInputStream(input), parser, Collections.<T>emptyIterator());
+  }
+
+  /**
+   * Iterates over messages that are already loaded in memory
+   */
+  public static <T extends Message> MessageIterator<T> of(Iterable<T> messages) {
+    return new MessageIterator<T>(null, null, messages.iterator());
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextMessage == null) {
+      nextMessage = doNext();
+    }
+    return nextMessage != null;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    T message = nextMessage;
+    nextMessage = null;
+    return message;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("Messages can not be removed");
+  }
+
+  @CheckForNull
+  private T doNext() {
+    if (input == null) {
+      return loaded.hasNext() ? loaded.next() : null;
+    }
+    if (endOfStream) {
+      return null;
+    }
+    try {
+      // null at end of stream
+      T message = parser.parseDelimitedFrom(input);
+      if (message == null) {
+        close();
+      }
+      return message;
+    } catch (InvalidProtocolBufferException e) {
+      close();
+      throw new IllegalStateException("Failed to read protocol buffer data", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    endOfStream = true;
+    if (input != null) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to close protocol buffer stream", e);
+      }
+    }
+  }
+}
@@ -44,6 +44,28 @@ public class ProtobufUtil {
     }
   }
 
+  public static <T extends Message> T readStream(InputStream input, Parser<T> parser) {
+    try (InputStream bufferedInput = new BufferedInputStream(input)) {
+      return parser.parseFrom(bufferedInput);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read protocol buffer data", e);
+    }
+  }
+
+  /**
+   * Writes the messages one after the other, each one prefixed by its size, so that they can be
+   * read back one by one with {@link MessageIterator#delimited(InputStream, Parser)}.
+   */
+  public static void writeDelimitedToFile(Iterable<? extends Message> messages, File toFile) {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(toFile, false))) {
+      for (Message message : messages) {
+        message.writeDelimitedTo(out);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to write protocol buffer data to file " + toFile, e);
+    }
+  }
+
   public static void writeToFile(Message message, File toFile) {
     try (OutputStream out = new BufferedOutputStream(new FileOutputStream(toFile, false))) {
       message.writeTo(out);
@@ -19,44 +19,122 @@
  */
 package org.sonar.batch.protocol.output;
 
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import org.apache.commons.io.IOUtils;
+import org.sonar.batch.protocol.MessageIterator;
 import org.sonar.batch.protocol.ProtobufUtil;
 
 import javax.annotation.CheckForNull;
+
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
-public class BatchOutputReader {
+/**
+ * Reads an analysis report, either from a directory or directly from the zip file
+ * sent by batch. In the latter case entries are decompressed on demand, so the report
+ * does not need to be extracted on disk.
+ */
+public class BatchOutputReader implements Closeable {
 
   private final FileStructure fileStructure;
+  private final ZipFile zip;
 
   public BatchOutputReader(File dir) {
     this.fileStructure = new FileStructure(dir);
+    this.zip = null;
+  }
+
+  private BatchOutputReader(ZipFile zip) {
+    this.fileStructure = null;
+    this.zip = zip;
+  }
+
+  /**
+   * Reads the entries of the zipped report without extracting them. The reader must be closed.
+   */
+  public static BatchOutputReader fromZip(File zipFile) {
+    try {
+      return new BatchOutputReader(new ZipFile(zipFile));
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to open zipped analysis report: " + zipFile, e);
+    }
   }
 
   public BatchOutput.ReportMetadata readMetadata() {
-    File file = fileStructure.metadataFile();
-    if (!file.exists() || !file.isFile()) {
-      throw new IllegalStateException("Metadata file is missing in analysis report: " + file);
+    BatchOutput.ReportMetadata metadata = read(FileStructure.metadataFileName(), BatchOutput.ReportMetadata.PARSER);
+    if (metadata == null) {
+      throw new IllegalStateException("Metadata file is missing in analysis report: " + FileStructure.metadataFileName());
     }
-    return ProtobufUtil.readFile(file, BatchOutput.ReportMetadata.PARSER);
+    return metadata;
   }
 
   @CheckForNull
   public BatchOutput.ReportComponent readComponent(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.COMPONENT, componentRef);
-    if (file.exists() && file.isFile()) {
-      return ProtobufUtil.readFile(file, BatchOutput.ReportComponent.PARSER);
+    return read(FileStructure.fileNameFor(FileStructure.Domain.COMPONENT, componentRef), BatchOutput.ReportComponent.PARSER);
+  }
+
+  /**
+   * Issues are parsed on demand, one at a time. The returned iterator must be closed
+   * if it's not fully consumed.
+   */
+  public MessageIterator<BatchOutput.ReportIssue> readComponentIssues(int componentRef) {
+    InputStream stream = open(FileStructure.fileNameFor(FileStructure.Domain.ISSUE_STREAM, componentRef));
+    if (stream != null) {
+      return MessageIterator.delimited(stream, BatchOutput.ReportIssue.PARSER);
+    }
+    // report generated by an older batch, all the issues are loaded in memory
+    BatchOutput.ReportIssues issues = read(FileStructure.fileNameFor(FileStructure.Domain.ISSUES, componentRef), BatchOutput.ReportIssues.PARSER);
+    if (issues != null) {
+      return MessageIterator.of(issues.getListList());
+    }
+    return MessageIterator.of(Collections.<BatchOutput.ReportIssue>emptyList());
+  }
+
+  @CheckForNull
+  private <T extends Message> T read(String fileName, Parser<T> parser) {
+    InputStream stream = open(fileName);
+    if (stream == null) {
+      return null;
+    }
+    return ProtobufUtil.readStream(stream, parser);
+  }
+
+  @CheckForNull
+  private InputStream open(String fileName) {
+    if (zip == null) {
+      File file = new File(fileStructure.dir(), fileName);
+      if (file.exists() && file.isFile()) {
+        try {
+          return new FileInputStream(file);
+        } catch (FileNotFoundException e) {
+          throw new IllegalStateException("Failed to read file: " + file, e);
+        }
+      }
+      return null;
+    }
+    ZipEntry entry = zip.getEntry(fileName);
+    if (entry == null || entry.isDirectory()) {
+      return null;
+    }
+    try {
+      return zip.getInputStream(entry);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to read entry " + fileName + " of zipped analysis report: " + zip.getName(), e);
     }
-    return null;
   }
 
-  public Iterable<BatchOutput.ReportIssue> readComponentIssues(int componentRef) {
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    if (file.exists() && file.isFile()) {
-      // all the issues are loaded in memory
-      BatchOutput.ReportIssues issues = ProtobufUtil.readFile(file, BatchOutput.ReportIssues.PARSER);
-      return issues.getListList();
+  @Override
+  public void close() {
+    if (zip != null) {
+      IOUtils.closeQuietly(zip);
     }
-    return Collections.emptyList();
   }
 }
@@ -55,11 +55,12 @@ public class BatchOutputWriter {
     ProtobufUtil.writeToFile(component, file);
   }
 
+  /**
+   * Issues are written one by one, so that neither the batch nor the server need to load
+   * all the issues of the component in memory.
+   */
   public void writeComponentIssues(int componentRef, Iterable<BatchOutput.ReportIssue> issues) {
-    BatchOutput.ReportIssues.Builder issuesBuilder = BatchOutput.ReportIssues.newBuilder();
-    issuesBuilder.setComponentRef(componentRef);
-    issuesBuilder.addAllList(issues);
-    File file = fileStructure.fileFor(FileStructure.Domain.ISSUES, componentRef);
-    ProtobufUtil.writeToFile(issuesBuilder.build(), file);
+    File file = fileStructure.fileFor(FileStructure.Domain.ISSUE_STREAM, componentRef);
+    ProtobufUtil.writeDelimitedToFile(issues, file);
   }
 }
@@ -27,7 +27,18 @@ import java.io.File;
 public class FileStructure {
 
   public static enum Domain {
-    ISSUES("issues-"), COMPONENT("component-");
+    /**
+     * Legacy format of issues, a single {@link BatchOutput.ReportIssues} message per component. Still
+     * read for the reports generated by older batches.
+     */
+    ISSUES("issues-"),
+
+    /**
+     * Length-delimited {@link BatchOutput.ReportIssue} messages, that can be read one by one
+     */
+    ISSUE_STREAM("issue-stream-"),
+
+    COMPONENT("component-");
 
     private final String filePrefix;
 
@@ -45,12 +56,30 @@ public class FileStructure {
     this.dir = dir;
   }
 
+  File dir() {
+    return dir;
+  }
+
   public File metadataFile() {
-    return new File(dir, "metadata.pb");
+    return new File(dir, metadataFileName());
   }
 
   public File fileFor(Domain domain, int componentRef) {
-    return new File(dir, domain.filePrefix + componentRef + ".pb");
+    return new File(dir, fileNameFor(domain, componentRef));
+  }
+
+  /**
+   * Name of the metadata file, relative to the root of the report
+   */
+  public static String metadataFileName() {
+    return "metadata.pb";
+  }
+
+  /**
+   * Name of the file of the given component, relative to the root of the report
+   */
+  public static String fileNameFor(Domain domain, int componentRef) {
+    return domain.filePrefix + componentRef + ".pb";
   }
 
 }
@@ -0,0 +1,97 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.protocol;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.protocol.output.BatchOutput;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class MessageIteratorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void read_delimited_messages() throws Exception {
+    File file = temp.newFile();
+    ProtobufUtil.writeDelimitedToFile(Arrays.asList(issue("A"), issue("B")), file);
+
+    MessageIterator<BatchOutput.ReportIssue> it = MessageIterator.delimited(new FileInputStream(file), BatchOutput.ReportIssue.PARSER);
+    assertThat(it.hasNext()).isTrue();
+    assertThat(it.hasNext()).isTrue();
+    assertThat(it.next().getUuid()).isEqualTo("A");
+    assertThat(it.next().getUuid()).isEqualTo("B");
+    assertThat(it.hasNext()).isFalse();
+    // stream is already closed
+    assertThat(it.hasNext()).isFalse();
+    it.close();
+  }
+
+  @Test
+  public void read_empty_stream() throws Exception {
+    MessageIterator<BatchOutput.ReportIssue> it = MessageIterator.delimited(new ByteArrayInputStream(new byte[0]), BatchOutput.ReportIssue.PARSER);
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test
+  public void iterate_loaded_messages() throws Exception {
+    MessageIterator<BatchOutput.ReportIssue> it = MessageIterator.of(Arrays.asList(issue("A")));
+    assertThat(it.next().getUuid()).isEqualTo("A");
+    assertThat(it.hasNext()).isFalse();
+    it.close();
+  }
+
+  @Test
+  public void fail_if_no_more_messages() throws Exception {
+    MessageIterator<BatchOutput.ReportIssue> it = MessageIterator.of(Collections.<BatchOutput.ReportIssue>emptyList());
+    try {
+      it.next();
+      fail();
+    } catch (NoSuchElementException e) {
+      // expected
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_corrupted_stream() throws Exception {
+    MessageIterator<BatchOutput.ReportIssue> it = MessageIterator.delimited(new ByteArrayInputStream(new byte[] {10, 1, 2, 3}), BatchOutput.ReportIssue.PARSER);
+    it.next();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void remove_is_not_supported() throws Exception {
+    MessageIterator.of(Arrays.asList(issue("A"))).remove();
+  }
+
+  private static BatchOutput.ReportIssue issue(String uuid) {
+    return BatchOutput.ReportIssue.newBuilder().setUuid(uuid).build();
+  }
+}
@@ -19,12 +19,21 @@
  */
 package org.sonar.batch.protocol.output;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.batch.protocol.MessageIterator;
+import org.sonar.batch.protocol.ProtobufUtil;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -48,6 +57,86 @@ public class BatchOutputReaderTest {
 
   }
 
+  @Test
+  public void read_zipped_report_without_extracting_it() throws Exception {
+    File dir = temp.newFolder();
+    initFiles(dir);
+    File zip = temp.newFile();
+    zip(dir, zip);
+
+    BatchOutputReader reader = BatchOutputReader.fromZip(zip);
+    try {
+      assertThat(reader.readMetadata().getAnalysisDate()).isEqualTo(15000000L);
+      assertThat(reader.readComponentIssues(1)).hasSize(1);
+      assertThat(reader.readComponentIssues(200)).isEmpty();
+      assertThat(reader.readComponent(1).getUuid()).isEqualTo("UUID_A");
+      assertThat(reader.readComponent(200)).isNull();
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void read_issues_of_report_generated_by_older_batch() throws Exception {
+    File dir = temp.newFolder();
+    BatchOutput.ReportIssues issues = BatchOutput.ReportIssues.newBuilder()
+      .setComponentRef(1)
+      .addList(BatchOutput.ReportIssue.newBuilder().setUuid("ISSUE_A"))
+      .addList(BatchOutput.ReportIssue.newBuilder().setUuid("ISSUE_B"))
+      .build();
+    ProtobufUtil.writeToFile(issues, new File(dir, FileStructure.fileNameFor(FileStructure.Domain.ISSUES, 1)));
+
+    BatchOutputReader reader = new BatchOutputReader(dir);
+    MessageIterator<BatchOutput.ReportIssue> it = reader.readComponentIssues(1);
+    assertThat(it.next().getUuid()).isEqualTo("ISSUE_A");
+    assertThat(it.next().getUuid()).isEqualTo("ISSUE_B");
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test
+  public void stream_issues() throws Exception {
+    File dir = temp.newFolder();
+    List<BatchOutput.ReportIssue> issues = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      issues.add(BatchOutput.ReportIssue.newBuilder().setUuid("ISSUE_" + i).setLine(i).build());
+    }
+    new BatchOutputWriter(dir).writeComponentIssues(1, issues);
+
+    MessageIterator<BatchOutput.ReportIssue> it = new BatchOutputReader(dir).readComponentIssues(1);
+    try {
+      int count = 0;
+      while (it.hasNext()) {
+        BatchOutput.ReportIssue issue = it.next();
+        assertThat(issue.getUuid()).isEqualTo("ISSUE_" + count);
+        assertThat(issue.getLine()).isEqualTo(count);
+        count++;
+      }
+      assertThat(count).isEqualTo(1000);
+    } finally {
+      it.close();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void fail_if_missing_metadata_in_zipped_report() throws Exception {
+    File dir = temp.newFolder();
+    FileUtils.write(new File(dir, "other.txt"), "other");
+    File zip = temp.newFile();
+    zip(dir, zip);
+
+    BatchOutputReader.fromZip(zip).readMetadata();
+  }
+
+  private void zip(File dir, File zip) throws IOException {
+    try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+      for (File file : dir.listFiles()) {
+        output.putNextEntry(new ZipEntry(file.getName()));
+        FileUtils.copyFile(file, output);
+        output.closeEntry();
+      }
+    }
+  }
+
   private void initFiles(File dir) {
     BatchOutputWriter writer = new BatchOutputWriter(dir);
 
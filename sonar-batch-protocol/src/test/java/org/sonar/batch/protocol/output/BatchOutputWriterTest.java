@@ -24,9 +24,11 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.batch.protocol.Constants;
+import org.sonar.batch.protocol.MessageIterator;
 import org.sonar.batch.protocol.ProtobufUtil;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -99,7 +101,7 @@ public class BatchOutputWriterTest {
     BatchOutputWriter writer = new BatchOutputWriter(dir);
 
     // no data yet
-    assertThat(writer.hasComponentData(FileStructure.Domain.ISSUES, 1)).isFalse();
+    assertThat(writer.hasComponentData(FileStructure.Domain.ISSUE_STREAM, 1)).isFalse();
 
     // write data
     BatchOutput.ReportIssue issue = BatchOutput.ReportIssue.newBuilder()
@@ -110,11 +112,12 @@ public class BatchOutputWriterTest {
 
     writer.writeComponentIssues(1, Arrays.asList(issue));
 
-    assertThat(writer.hasComponentData(FileStructure.Domain.ISSUES, 1)).isTrue();
-    File file = writer.getFileStructure().fileFor(FileStructure.Domain.ISSUES, 1);
+    assertThat(writer.hasComponentData(FileStructure.Domain.ISSUE_STREAM, 1)).isTrue();
+    assertThat(writer.hasComponentData(FileStructure.Domain.ISSUES, 1)).isFalse();
+    File file = writer.getFileStructure().fileFor(FileStructure.Domain.ISSUE_STREAM, 1);
     assertThat(file).exists().isFile();
-    BatchOutput.ReportIssues read = ProtobufUtil.readFile(file, BatchOutput.ReportIssues.PARSER);
-    assertThat(read.getComponentRef()).isEqualTo(1);
-    assertThat(read.getListCount()).isEqualTo(1);
+    MessageIterator<BatchOutput.ReportIssue> read = MessageIterator.delimited(new FileInputStream(file), BatchOutput.ReportIssue.PARSER);
+    assertThat(read.next().getMsg()).isEqualTo("the message");
+    assertThat(read.hasNext()).isFalse();
   }
 }
@@ -63,11 +63,15 @@ public class DefaultDecoratorContext implements DecoratorContext {
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
   private final CoverageExclusions coverageFilter;
+  // guards the components shared by all the contexts (index and caches) when resources are decorated concurrently
+  private final Object sharedLock;
 
   public DefaultDecoratorContext(Resource resource,
     SonarIndex index,
     List<DecoratorContext> childrenContexts,
-    MeasureCache measureCache, MetricFinder metricFinder, DuplicationCache duplicationCache, CoverageExclusions coverageFilter) {
+    MeasureCache measureCache, MetricFinder metricFinder, DuplicationCache duplicationCache, CoverageExclusions coverageFilter,
+    Object sharedLock) {
+    this.sharedLock = sharedLock;
     this.sonarIndex = index;
     this.resource = resource;
     this.childrenContexts = childrenContexts;
@@ -78,17 +82,21 @@ public class DefaultDecoratorContext implements DecoratorContext {
   }
 
   public void init() {
-    Iterable<Measure> unfiltered = measureCache.byResource(resource);
-    for (Measure measure : unfiltered) {
-      measuresByMetric.put(measure.getMetricKey(), measure);
+    synchronized (sharedLock) {
+      Iterable<Measure> unfiltered = measureCache.byResource(resource);
+      for (Measure measure : unfiltered) {
+        measuresByMetric.put(measure.getMetricKey(), measure);
+      }
     }
   }
 
   public DefaultDecoratorContext end() {
     readOnly = true;
     childrenContexts = null;
-    for (Measure measure : measuresByMetric.values()) {
-      measureCache.put(resource, measure);
+    synchronized (sharedLock) {
+      for (Measure measure : measuresByMetric.values()) {
+        measureCache.put(resource, measure);
+      }
     }
     return this;
   }
@@ -126,7 +134,10 @@ public class DefaultDecoratorContext implements DecoratorContext {
     String metricKey = ((MeasuresFilters.MetricFilter<M>) filter).filterOnMetricKey();
     if (CoreMetrics.DUPLICATIONS_DATA_KEY.equals(metricKey)) {
       // Hack for SONAR-5765
-      List<DuplicationGroup> group = duplicationCache.byComponent(resource.getEffectiveKey());
+      List<DuplicationGroup> group;
+      synchronized (sharedLock) {
+        group = duplicationCache.byComponent(resource.getEffectiveKey());
+      }
       if (group != null) {
         unfiltered = Arrays.asList(new Measure(CoreMetrics.DUPLICATIONS_DATA, DuplicationUtils.toXml(group)));
       } else {
@@ -209,37 +220,51 @@ public class DefaultDecoratorContext implements DecoratorContext {
   @Override
   public Dependency saveDependency(Dependency dependency) {
     checkReadOnly("addDependency");
-    return sonarIndex.addDependency(dependency);
+    synchronized (sharedLock) {
+      return sonarIndex.addDependency(dependency);
+    }
   }
 
   @Override
   public Set<Dependency> getDependencies() {
-    return sonarIndex.getDependencies();
+    synchronized (sharedLock) {
+      return sonarIndex.getDependencies();
+    }
   }
 
   @Override
   public Collection<Dependency> getIncomingDependencies() {
-    return sonarIndex.getIncomingEdges(resource);
+    synchronized (sharedLock) {
+      return sonarIndex.getIncomingEdges(resource);
+    }
   }
 
   @Override
   public Collection<Dependency> getOutgoingDependencies() {
-    return sonarIndex.getOutgoingEdges(resource);
+    synchronized (sharedLock) {
+      return sonarIndex.getOutgoingEdges(resource);
+    }
   }
 
   @Override
   public List<Event> getEvents() {
-    return sonarIndex.getEvents(resource);
+    synchronized (sharedLock) {
+      return sonarIndex.getEvents(resource);
+    }
   }
 
   @Override
   public Event createEvent(String name, String description, String category, Date date) {
-    return sonarIndex.addEvent(resource, name, description, category, date);
+    synchronized (sharedLock) {
+      return sonarIndex.addEvent(resource, name, description, category, date);
+    }
   }
 
   @Override
   public void deleteEvent(Event event) {
-    sonarIndex.deleteEvent(event);
+    synchronized (sharedLock) {
+      sonarIndex.deleteEvent(event);
+    }
   }
 
   @Override
@@ -247,7 +272,9 @@ public class DefaultDecoratorContext implements DecoratorContext {
     if (violation.getResource() == null) {
       violation.setResource(resource);
     }
-    sonarIndex.addViolation(violation, force);
+    synchronized (sharedLock) {
+      sonarIndex.addViolation(violation, force);
+    }
     return this;
   }
 
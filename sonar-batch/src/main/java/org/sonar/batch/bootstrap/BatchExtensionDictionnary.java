@@ -21,7 +21,11 @@ package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.ClassUtils;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.CheckProject;
@@ -44,10 +48,14 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @since 2.6
@@ -139,6 +147,51 @@ public class BatchExtensionDictionnary {
     return Collections2.filter(sortedList, Predicates.in(extensions));
   }
 
+  /**
+   * For each extension, the extensions that must be executed before it. It's the partial order
+   * used by {@link #sort(Collection)}, based on dependency annotations and phases.
+   *
+   * @since 5.1
+   */
+  public <T> Map<T, Set<T>> getPredecessors(Collection<T> extensions) {
+    // edges from each node to the nodes it depends upon
+    SetMultimap<Object, Object> edges = HashMultimap.create();
+    for (T extension : extensions) {
+      edges.putAll(extension, getDependencies(extension));
+      for (Object generates : getDependents(extension)) {
+        edges.put(generates, extension);
+      }
+      Phase.Name phase = evaluatePhase(extension);
+      edges.put(extension, phase);
+      for (Phase.Name name : Phase.Name.values()) {
+        if (phase.compareTo(name) < 0) {
+          edges.put(name, extension);
+        } else if (phase.compareTo(name) > 0) {
+          edges.put(extension, name);
+        }
+      }
+    }
+
+    Set<Object> extensionSet = Sets.<Object>newHashSet(extensions);
+    Map<T, Set<T>> result = Maps.newLinkedHashMap();
+    for (T extension : extensions) {
+      Set<T> predecessors = Sets.newLinkedHashSet();
+      Set<Object> visited = Sets.newHashSet();
+      Deque<Object> toVisit = new ArrayDeque<Object>(edges.get(extension));
+      while (!toVisit.isEmpty()) {
+        Object node = toVisit.pop();
+        if (visited.add(node)) {
+          if (extensionSet.contains(node) && !node.equals(extension)) {
+            predecessors.add((T) node);
+          }
+          toVisit.addAll(edges.get(node));
+        }
+      }
+      result.put(extension, predecessors);
+    }
+    return result;
+  }
+
   /**
    * Extension dependencies
    */
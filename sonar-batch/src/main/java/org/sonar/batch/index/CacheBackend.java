@@ -0,0 +1,66 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Set;
+
+/**
+ * Storage of the entries of a {@link Cache}. Keys are arrays of segments, for example
+ * {componentKey, metricKey}. A prefix of segments defines a group of entries.
+ *
+ * @see PersistitCacheBackend
+ * @see MappedCacheBackend
+ * @since 5.1
+ */
+interface CacheBackend<V> {
+
+  void put(Object[] key, V value);
+
+  @CheckForNull
+  V get(Object[] key);
+
+  boolean containsKey(Object[] key);
+
+  boolean remove(Object[] key);
+
+  /**
+   * Removes the entry of the given key and all the entries of its sub-keys
+   */
+  void clear(Object[] prefix);
+
+  void clear();
+
+  /**
+   * Distinct segments that follow the given prefix
+   */
+  Set<Object> keySet(Object[] prefix);
+
+  /**
+   * Lazy-loading values of the sub-keys of the given prefix, all values if prefix is empty
+   */
+  Iterable<V> values(Object[] prefix);
+
+  /**
+   * Lazy-loading entries of the sub-keys of the given prefix, all entries if prefix is empty
+   */
+  Iterable<Cache.Entry<V>> entries(Object[] prefix);
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.index;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Sets;
 import com.persistit.Exchange;
@@ -34,6 +35,7 @@ import org.picocontainer.Startable;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.batch.bootstrap.BootstrapProperties;
 
 import java.io.File;
 import java.util.Properties;
@@ -46,15 +48,33 @@ import java.util.Set;
  */
 public class Caches implements BatchComponent, Startable {
 
+  /**
+   * Storage of caches: "persistit" (default) or "mapped". The latter keeps values in memory-mapped
+   * files and supports concurrent access.
+   * @since 5.1
+   */
+  public static final String BACKEND_PROPERTY = "sonar.batch.cache.backend";
+  static final String PERSISTIT_BACKEND = "persistit";
+  static final String MAPPED_BACKEND = "mapped";
+
   private final Set<String> cacheNames = Sets.newHashSet();
   private File tempDir;
   private Persistit persistit;
   private Volume volume;
+  private MappedValueLog valueLog;
   private final TempFolder tempFolder;
+  private final String backend;
 
-  public Caches(TempFolder tempFolder) {
+  public Caches(TempFolder tempFolder, BootstrapProperties bootstrapProperties) {
     this.tempFolder = tempFolder;
+    this.backend = Objects.firstNonNull(bootstrapProperties.property(BACKEND_PROPERTY), PERSISTIT_BACKEND);
+    Preconditions.checkArgument(PERSISTIT_BACKEND.equals(backend) || MAPPED_BACKEND.equals(backend),
+      "Unsupported value of property %s: %s", BACKEND_PROPERTY, backend);
     initPersistit();
+    if (MAPPED_BACKEND.equals(backend)) {
+      // Persistit is still used to encode keys and values
+      valueLog = new MappedValueLog(tempDir, MappedValueLog.DEFAULT_SEGMENT_SIZE);
+    }
   }
 
   private void initPersistit() {
@@ -88,9 +108,14 @@ public class Caches implements BatchComponent, Startable {
     Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
     Preconditions.checkState(!cacheNames.contains(cacheName), "Cache is already created: " + cacheName);
     try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Cache<V> cache = new Cache<V>(cacheName, exchange);
+      Cache<V> cache;
+      if (valueLog != null) {
+        cache = new Cache<V>(new MappedCacheBackend<V>(cacheName, persistit, valueLog));
+      } else {
+        Exchange exchange = persistit.getExchange(volume, cacheName, true);
+        exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
+        cache = new Cache<V>(new PersistitCacheBackend<V>(cacheName, exchange));
+      }
       cacheNames.add(cacheName);
       return cache;
     } catch (Exception e) {
@@ -105,6 +130,10 @@ public class Caches implements BatchComponent, Startable {
 
   @Override
   public void stop() {
+    if (valueLog != null) {
+      valueLog.close();
+      valueLog = null;
+    }
     if (persistit != null) {
       try {
         persistit.close(false);
@@ -0,0 +1,244 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.primitives.UnsignedBytes;
+import com.persistit.Key;
+import com.persistit.Persistit;
+import com.persistit.Value;
+
+import javax.annotation.CheckForNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Thread-safe backend. Values are encoded with the Persistit value coders registered in {@link Caches}
+ * then appended to a {@link MappedValueLog}, so they are stored out of the heap. The heap contains only the
+ * sorted index of encoded keys and addresses of values.
+ * <p/>
+ * Keys are encoded by Persistit, so order of entries is the same as in {@link PersistitCacheBackend}
+ * and a group of entries is a range of encoded keys sharing the same prefix.
+ *
+ * @since 5.1
+ */
+class MappedCacheBackend<V> implements CacheBackend<V> {
+
+  private final String name;
+  private final Persistit persistit;
+  private final MappedValueLog log;
+  private final ConcurrentSkipListMap<byte[], Long> index = new ConcurrentSkipListMap<>(UnsignedBytes.lexicographicalComparator());
+
+  // Persistit keys and values are not thread-safe
+  private final ThreadLocal<Key> keyEncoders = new ThreadLocal<Key>() {
+    @Override
+    protected Key initialValue() {
+      return new Key(persistit);
+    }
+  };
+  private final ThreadLocal<Value> valueEncoders = new ThreadLocal<Value>() {
+    @Override
+    protected Value initialValue() {
+      Value value = new Value(persistit);
+      value.setMaximumSize(Value.MAXIMUM_SIZE);
+      return value;
+    }
+  };
+
+  MappedCacheBackend(String name, Persistit persistit, MappedValueLog log) {
+    this.name = name;
+    this.persistit = persistit;
+    this.log = log;
+  }
+
+  @Override
+  public void put(Object[] key, V value) {
+    try {
+      index.put(encodeKey(key), log.append(encodeValue(value)));
+    } catch (RuntimeException e) {
+      throw new IllegalStateException("Fail to put element in the cache " + name, e);
+    }
+  }
+
+  @Override
+  @CheckForNull
+  public V get(Object[] key) {
+    try {
+      Long address = index.get(encodeKey(key));
+      return address == null ? null : this.<V>decodeValue(address);
+    } catch (RuntimeException e) {
+      throw new IllegalStateException("Fail to get element from cache " + name, e);
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object[] key) {
+    return index.containsKey(encodeKey(key));
+  }
+
+  @Override
+  public boolean remove(Object[] key) {
+    return index.remove(encodeKey(key)) != null;
+  }
+
+  @Override
+  public void clear(Object[] prefix) {
+    byte[] encodedPrefix = encodeKey(prefix);
+    Iterator<byte[]> keys = index.tailMap(encodedPrefix, true).keySet().iterator();
+    while (keys.hasNext() && startsWith(keys.next(), encodedPrefix)) {
+      keys.remove();
+    }
+  }
+
+  @Override
+  public void clear() {
+    index.clear();
+  }
+
+  @Override
+  public Set<Object> keySet(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    byte[] currentSubPrefix = null;
+    for (Iterator<Map.Entry<byte[], Long>> it = subEntries(prefix); it.hasNext();) {
+      byte[] encodedKey = it.next().getKey();
+      if (currentSubPrefix != null && startsWith(encodedKey, currentSubPrefix)) {
+        // deeper key of the last returned segment
+        continue;
+      }
+      Object segment = decodeKey(encodedKey)[prefix.length];
+      keys.add(segment);
+      Object[] subPrefix = Arrays.copyOf(prefix, prefix.length + 1);
+      subPrefix[prefix.length] = segment;
+      currentSubPrefix = encodeKey(subPrefix);
+    }
+    return keys;
+  }
+
+  @Override
+  public Iterable<V> values(final Object[] prefix) {
+    return new Iterable<V>() {
+      @Override
+      public Iterator<V> iterator() {
+        final Iterator<Map.Entry<byte[], Long>> it = subEntries(prefix);
+        return new AbstractIterator<V>() {
+          @Override
+          protected V computeNext() {
+            return it.hasNext() ? MappedCacheBackend.this.<V>decodeValue(it.next().getValue()) : endOfData();
+          }
+        };
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Cache.Entry<V>> entries(final Object[] prefix) {
+    return new Iterable<Cache.Entry<V>>() {
+      @Override
+      public Iterator<Cache.Entry<V>> iterator() {
+        final Iterator<Map.Entry<byte[], Long>> it = subEntries(prefix);
+        return new AbstractIterator<Cache.Entry<V>>() {
+          @Override
+          protected Cache.Entry<V> computeNext() {
+            if (!it.hasNext()) {
+              return endOfData();
+            }
+            Map.Entry<byte[], Long> entry = it.next();
+            return new Cache.Entry<V>(decodeKey(entry.getKey()), MappedCacheBackend.this.<V>decodeValue(entry.getValue()));
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Entries of the sub-keys of the prefix, in key order. The entry of the prefix itself is excluded.
+   * Iteration is weakly consistent, so the cache can be updated during iteration.
+   */
+  private Iterator<Map.Entry<byte[], Long>> subEntries(Object[] prefix) {
+    final byte[] encodedPrefix = encodeKey(prefix);
+    final Iterator<Map.Entry<byte[], Long>> it = index.tailMap(encodedPrefix, false).entrySet().iterator();
+    return new AbstractIterator<Map.Entry<byte[], Long>>() {
+      @Override
+      protected Map.Entry<byte[], Long> computeNext() {
+        if (it.hasNext()) {
+          Map.Entry<byte[], Long> entry = it.next();
+          if (startsWith(entry.getKey(), encodedPrefix)) {
+            return entry;
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
+
+  private byte[] encodeKey(Object[] key) {
+    Key encoder = keyEncoders.get();
+    encoder.clear();
+    for (Object o : key) {
+      encoder.append(o);
+    }
+    return Arrays.copyOf(encoder.getEncodedBytes(), encoder.getEncodedSize());
+  }
+
+  private Object[] decodeKey(byte[] encodedKey) {
+    Key decoder = keyEncoders.get();
+    decoder.clear();
+    System.arraycopy(encodedKey, 0, decoder.getEncodedBytes(), 0, encodedKey.length);
+    decoder.setEncodedSize(encodedKey.length);
+    Object[] key = new Object[decoder.getDepth()];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = decoder.indexTo(i).decode();
+    }
+    return key;
+  }
+
+  private byte[] encodeValue(V value) {
+    Value encoder = valueEncoders.get();
+    encoder.clear();
+    encoder.put(value);
+    return Arrays.copyOf(encoder.getEncodedBytes(), encoder.getEncodedSize());
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T decodeValue(long address) {
+    byte[] bytes = log.read(address);
+    Value decoder = valueEncoders.get();
+    decoder.clear();
+    decoder.putEncodedBytes(bytes, 0, bytes.length);
+    return (T) decoder.get();
+  }
+
+  private static boolean startsWith(byte[] bytes, byte[] prefix) {
+    if (bytes.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (bytes[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Append-only log of values, stored in memory-mapped files. Values are never overwritten,
+ * so they can be read concurrently without locking. Space of removed or replaced values is
+ * not reclaimed, which is acceptable as the log lives only during the analysis.
+ * <p/>
+ * Address of a value is the index of its segment (high 32 bits) and its offset in the segment (low 32 bits).
+ *
+ * @since 5.1
+ */
+class MappedValueLog {
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private final File dir;
+  private final int segmentSize;
+  // buffers are never read or written directly, only through duplicates
+  private final List<ByteBuffer> segments = new CopyOnWriteArrayList<>();
+  private ByteBuffer writeBuffer = null;
+
+  MappedValueLog(File dir, int segmentSize) {
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+  }
+
+  synchronized long append(byte[] bytes) {
+    int requiredSize = 4 + bytes.length;
+    if (writeBuffer == null || writeBuffer.remaining() < requiredSize) {
+      // values larger than a segment get their own segment
+      newSegment(Math.max(segmentSize, requiredSize));
+    }
+    int offset = writeBuffer.position();
+    writeBuffer.putInt(bytes.length);
+    writeBuffer.put(bytes);
+    return ((long) (segments.size() - 1) << 32) | offset;
+  }
+
+  byte[] read(long address) {
+    ByteBuffer buffer = segments.get((int) (address >>> 32)).duplicate();
+    buffer.position((int) address);
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  int countSegments() {
+    return segments.size();
+  }
+
+  synchronized void close() {
+    writeBuffer = null;
+    segments.clear();
+  }
+
+  private void newSegment(int size) {
+    File file = new File(dir, "values-" + segments.size());
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      // mapping is still valid when channel is closed
+      ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+      segments.add(buffer);
+      writeBuffer = buffer.duplicate();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create cache file " + file, e);
+    }
+  }
+}
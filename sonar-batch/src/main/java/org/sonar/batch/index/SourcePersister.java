@@ -21,9 +21,7 @@ package org.sonar.batch.index;
 
 import com.google.common.base.CharMatcher;
 import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.slf4j.Logger;
@@ -38,7 +36,6 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.System2;
-import org.sonar.api.utils.text.CsvWriter;
 import org.sonar.batch.ProjectTree;
 import org.sonar.batch.duplication.DuplicationCache;
 import org.sonar.batch.highlighting.SyntaxHighlightingData;
@@ -50,6 +47,7 @@ import org.sonar.batch.symbol.SymbolData;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.source.SnapshotDataTypes;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.core.source.db.FileSourceDto;
 import org.sonar.core.source.db.FileSourceMapper;
 
@@ -57,7 +55,6 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -132,15 +129,16 @@ public class SourcePersister implements ScanPersister {
     org.sonar.api.resources.File file = (org.sonar.api.resources.File) resourceCache.get(inputFile.key()).resource();
     String fileUuid = file.getUuid();
     FileSourceDto previous = fileSourceDtoByFileUuid.get(fileUuid);
-    String newData = getSourceData(inputFile);
-    String newDataHash = newData != null ? DigestUtils.md5Hex(newData) : "0";
+    FileSourceData newData = getSourceData(inputFile);
+    byte[] newBinaryData = newData != null ? newData.getBytes() : null;
+    String newDataHash = newData != null ? newData.getHash() : "0";
     Date now = system2.newDate();
     try {
       if (previous == null) {
         FileSourceDto newFileSource = new FileSourceDto()
           .setProjectUuid(projectTree.getRootProject().getUuid())
           .setFileUuid(fileUuid)
-          .setData(newData)
+          .setBinaryData(newBinaryData)
           .setDataHash(newDataHash)
           .setSrcHash(inputFile.hash())
           .setLineHashes(lineHashesAsMd5Hex(inputFile))
@@ -152,7 +150,9 @@ public class SourcePersister implements ScanPersister {
         // Update only if data_hash has changed or if src_hash is missing (progressive migration)
         if (!newDataHash.equals(previous.getDataHash()) || !inputFile.hash().equals(previous.getSrcHash())) {
           previous
-            .setData(newData)
+            // CSV format is replaced by binary format
+            .setData(null)
+            .setBinaryData(newBinaryData)
             .setLineHashes(lineHashesAsMd5Hex(inputFile))
             .setDataHash(newDataHash)
             .setSrcHash(inputFile.hash())
@@ -183,7 +183,7 @@ public class SourcePersister implements ScanPersister {
   }
 
   @CheckForNull
-  String getSourceData(DefaultInputFile file) {
+  FileSourceData getSourceData(DefaultInputFile file) {
     if (file.lines() == 0) {
       return null;
     }
@@ -214,10 +214,9 @@ public class SourcePersister implements ScanPersister {
     String[] symbolReferencesPerLine = computeSymbolReferencesPerLine(file, loadSymbolReferences(file));
     String[] duplicationsPerLine = computeDuplicationsPerLine(file, duplicationCache.byComponent(file.key()));
 
-    StringWriter writer = new StringWriter(file.lines() * 16);
-    CsvWriter csv = CsvWriter.of(writer);
+    FileSourceData.Builder data = FileSourceData.newBuilder(file.lines());
     for (int lineIdx = 1; lineIdx <= file.lines(); lineIdx++) {
-      csv.values(revisionsByLine.get(lineIdx), authorsByLine.get(lineIdx), datesByLine.get(lineIdx),
+      data.setLine(lineIdx, revisionsByLine.get(lineIdx), authorsByLine.get(lineIdx), datesByLine.get(lineIdx),
         utHitsByLine.get(lineIdx), utCondByLine.get(lineIdx), utCoveredCondByLine.get(lineIdx),
         itHitsByLine.get(lineIdx), itCondByLine.get(lineIdx), itCoveredCondByLine.get(lineIdx),
         overallHitsByLine.get(lineIdx), overallCondByLine.get(lineIdx), overallCoveredCondByLine.get(lineIdx),
@@ -241,8 +240,7 @@ public class SourcePersister implements ScanPersister {
       duplicationsPerLine[lineIdx - 1] = null;
       lines.set(lineIdx - 1, null);
     }
-    csv.close();
-    return StringUtils.defaultIfEmpty(writer.toString(), null);
+    return data.build();
   }
 
   private String[] computeDuplicationsPerLine(DefaultInputFile file, List<DuplicationGroup> duplicationGroups) {
@@ -20,13 +20,19 @@
 package org.sonar.batch.phases;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DecoratorsSelector;
@@ -39,9 +45,23 @@ import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to decorate the resources of a module. Default value is 1, so resources are decorated sequentially.
+   * When greater than 1, sibling resources are decorated concurrently. Only the decorators annotated
+   * with {@link ThreadSafe} are executed in parallel, the others are still executed one at a time.
+   *
+   * @since 5.1
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.decorators.threads";
+
+  private static final Logger LOG = LoggerFactory.getLogger(DecoratorsExecutor.class);
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
@@ -50,10 +70,13 @@ public class DecoratorsExecutor implements BatchComponent {
   private MeasureCache measureCache;
   private MetricFinder metricFinder;
   private final DuplicationCache duplicationCache;
+  private final int threads;
+  // guards index, caches and event bus, which are not thread-safe
+  private final Object sharedLock = new Object();
 
   public DecoratorsExecutor(BatchExtensionDictionnary batchExtDictionnary,
     Project project, SonarIndex index, EventBus eventBus, CoverageExclusions coverageFilter, MeasureCache measureCache, MetricFinder metricFinder,
-    DuplicationCache duplicationCache) {
+    DuplicationCache duplicationCache, Settings settings) {
     this.measureCache = measureCache;
     this.metricFinder = metricFinder;
     this.duplicationCache = duplicationCache;
@@ -62,12 +85,19 @@ public class DecoratorsExecutor implements BatchComponent {
     this.eventBus = eventBus;
     this.project = project;
     this.coverageFilter = coverageFilter;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    ((DefaultDecoratorContext) decorateResource(project, decorators, true)).end();
+    DefaultDecoratorContext context;
+    if (threads > 1) {
+      context = decorateConcurrently(decorators);
+    } else {
+      context = (DefaultDecoratorContext) decorateResource(project, decorators, true);
+    }
+    context.end();
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
@@ -79,8 +109,7 @@ public class DecoratorsExecutor implements BatchComponent {
       childrenContexts.add(childContext.end());
     }
 
-    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter);
-    context.init();
+    DefaultDecoratorContext context = newContext(resource, childrenContexts);
     if (executeDecorators) {
       for (Decorator decorator : decorators) {
         executeDecorator(decorator, context, resource);
@@ -89,6 +118,22 @@ public class DecoratorsExecutor implements BatchComponent {
     return context;
   }
 
+  DefaultDecoratorContext decorateConcurrently(Collection<Decorator> decorators) {
+    LOG.debug("Decorate resources with {} threads", threads);
+    Set<Decorator> threadSafeDecorators = Sets.newIdentityHashSet();
+    for (Decorator decorator : decorators) {
+      if (AnnotationUtils.getAnnotation(decorator, ThreadSafe.class) != null) {
+        threadSafeDecorators.add(decorator);
+      }
+    }
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      return pool.invoke(new DecorateTask(project, decorators, threadSafeDecorators, true));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
     try {
       eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
@@ -104,4 +149,72 @@ public class DecoratorsExecutor implements BatchComponent {
     }
   }
 
+  /**
+   * Execution events are not fired, as the profiler of decorators can not measure concurrent executions.
+   */
+  void executeThreadSafeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
+    try {
+      decorator.decorate(resource, context);
+
+    } catch (MessageException e) {
+      throw e;
+
+    } catch (Exception e) {
+      throw new SonarException("Fail to decorate '" + resource + "'", e);
+    }
+  }
+
+  private DefaultDecoratorContext newContext(Resource resource, List<DecoratorContext> childrenContexts) {
+    DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts, measureCache, metricFinder, duplicationCache, coverageFilter,
+      sharedLock);
+    context.init();
+    return context;
+  }
+
+  /**
+   * Decorates the children of the resource concurrently, then the resource itself once all the children are done.
+   */
+  private class DecorateTask extends RecursiveTask<DefaultDecoratorContext> {
+    private final Resource resource;
+    private final Collection<Decorator> decorators;
+    private final Set<Decorator> threadSafeDecorators;
+    private final boolean executeDecorators;
+
+    DecorateTask(Resource resource, Collection<Decorator> decorators, Set<Decorator> threadSafeDecorators, boolean executeDecorators) {
+      this.resource = resource;
+      this.decorators = decorators;
+      this.threadSafeDecorators = threadSafeDecorators;
+      this.executeDecorators = executeDecorators;
+    }
+
+    @Override
+    protected DefaultDecoratorContext compute() {
+      List<DecorateTask> childTasks = Lists.newArrayList();
+      synchronized (sharedLock) {
+        for (Resource child : index.getChildren(resource)) {
+          boolean isModule = child instanceof Project;
+          childTasks.add(new DecorateTask(child, decorators, threadSafeDecorators, !isModule));
+        }
+      }
+      invokeAll(childTasks);
+
+      List<DecoratorContext> childrenContexts = Lists.newArrayList();
+      for (DecorateTask childTask : childTasks) {
+        childrenContexts.add(childTask.join().end());
+      }
+      DefaultDecoratorContext context = newContext(resource, childrenContexts);
+      if (executeDecorators) {
+        for (Decorator decorator : decorators) {
+          if (threadSafeDecorators.contains(decorator)) {
+            executeThreadSafeDecorator(decorator, context, resource);
+          } else {
+            synchronized (sharedLock) {
+              executeDecorator(decorator, context, resource);
+            }
+          }
+        }
+      }
+      return context;
+    }
+  }
 }
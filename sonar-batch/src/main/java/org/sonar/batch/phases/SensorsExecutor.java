@@ -19,36 +19,82 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.events.BatchEvent;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.scan.SensorWrapper;
+import org.sonar.batch.sensor.DefaultSensorStorage;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SensorsExecutor implements BatchComponent {
 
+  /**
+   * Number of threads used to execute sensors. Default value is 1, so sensors are executed sequentially.
+   * When greater than 1, a sensor starts as soon as all the sensors it depends upon (see {@link org.sonar.api.batch.DependsUpon},
+   * {@link org.sonar.api.batch.DependedUpon} and {@link org.sonar.api.batch.Phase}) are done. Only the sensors annotated
+   * with {@link ThreadSafe} are executed in parallel, the others are still executed one at a time.
+   *
+   * @since 5.1
+   */
+  public static final String THREADS_PROPERTY = "sonar.batch.sensors.threads";
+
+  private static final Logger LOG = LoggerFactory.getLogger(SensorsExecutor.class);
+
   private EventBus eventBus;
   private Project module;
   private BatchExtensionDictionnary selector;
   private final SensorMatcher sensorMatcher;
+  private final int threads;
+  // serializes the sensors that are not thread-safe, the calls of thread-safe sensors to the context and
+  // the data they save through the storage
+  private final Object sharedLock;
+  private final Object eventLock = new Object();
 
-  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus, SensorMatcher sensorMatcher) {
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus, SensorMatcher sensorMatcher, Settings settings,
+    DefaultSensorStorage sensorStorage) {
     this.selector = selector;
     this.eventBus = eventBus;
     this.module = project;
     this.sensorMatcher = sensorMatcher;
+    this.threads = Math.max(1, settings.getInt(THREADS_PROPERTY));
+    this.sharedLock = sensorStorage.lock();
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, module, true, sensorMatcher);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+    if (threads > 1) {
+      executeConcurrently(context, sensors);
+    } else {
+      for (Sensor sensor : sensors) {
+        executeSensor(context, sensor);
+      }
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
@@ -59,4 +105,84 @@ public class SensorsExecutor implements BatchComponent {
     sensor.analyse(module, context);
     eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
   }
+
+  private void executeConcurrently(final SensorContext context, Collection<Sensor> sensors) {
+    LOG.debug("Execute sensors with {} threads", threads);
+    Map<Sensor, Set<Sensor>> predecessors = selector.getPredecessors(sensors);
+    Map<Sensor, Future<Void>> futures = Maps.newLinkedHashMap();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      // sensors are sorted, so predecessors are submitted first and a task never waits for a task queued after it
+      for (final Sensor sensor : sensors) {
+        final List<Future<Void>> predecessorFutures = Lists.newArrayList();
+        for (Sensor predecessor : predecessors.get(sensor)) {
+          predecessorFutures.add(futures.get(predecessor));
+        }
+        futures.put(sensor, executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (Future<Void> predecessorFuture : predecessorFutures) {
+              predecessorFuture.get();
+            }
+            executeSensorConcurrently(context, sensor);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures.values()) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while executing sensors", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void executeSensorConcurrently(SensorContext context, Sensor sensor) {
+    fireEvent(new SensorExecutionEvent(sensor, true));
+    if (sensor instanceof SensorWrapper && isThreadSafe(((SensorWrapper) sensor).wrappedSensor())) {
+      SensorWrapper wrapper = (SensorWrapper) sensor;
+      wrapper.wrappedSensor().execute(synchronizedContext(org.sonar.api.batch.sensor.SensorContext.class, wrapper.adaptor()));
+    } else if (!(sensor instanceof SensorWrapper) && isThreadSafe(sensor)) {
+      sensor.analyse(module, synchronizedContext(SensorContext.class, context));
+    } else {
+      synchronized (sharedLock) {
+        sensor.analyse(module, context);
+      }
+    }
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  private void fireEvent(BatchEvent event) {
+    synchronized (eventLock) {
+      eventBus.fireEvent(event);
+    }
+  }
+
+  private static boolean isThreadSafe(Object sensor) {
+    return AnnotationUtils.getAnnotation(sensor, ThreadSafe.class) != null;
+  }
+
+  /**
+   * Proxy that serializes the calls to the context, which is not thread-safe. Measures, issues and other
+   * objects created by the context are saved through {@link DefaultSensorStorage}, which takes the same lock.
+   */
+  private <C> C synchronizedContext(Class<C> contextClass, final C context) {
+    return contextClass.cast(Proxy.newProxyInstance(contextClass.getClassLoader(), new Class<?>[] {contextClass}, new InvocationHandler() {
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        synchronized (sharedLock) {
+          try {
+            return method.invoke(context, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        }
+      }
+    }));
+  }
 }
@@ -20,6 +20,7 @@
 package org.sonar.batch.profiling;
 
 import org.sonar.api.utils.System2;
+import org.sonar.api.utils.TimeUtils;
 import org.sonar.batch.phases.Phases.Phase;
 
 import java.util.HashMap;
@@ -76,8 +77,14 @@ public class PhaseProfiling extends AbstractTimeProfiling {
 
   public void dump(Properties props) {
     double percent = this.totalTime() / 100.0;
+    long cumulatedTime = 0L;
     for (ItemProfiling itemProfiling : profilingPerItem.values()) {
       props.setProperty(itemProfiling.itemName(), "" + itemProfiling.totalTime());
+      cumulatedTime += itemProfiling.totalTime();
+    }
+    if (cumulatedTime > totalTime()) {
+      // items have been executed concurrently. Percentages are relative to the wall-clock time of the phase.
+      println("   Wall-clock time: " + totalTimeAsString() + ", cumulated time of items: " + TimeUtils.formatDuration(cumulatedTime));
     }
     for (ItemProfiling itemProfiling : truncate(sortByDescendingTotalTime(profilingPerItem).values())) {
       println("   o " + itemProfiling.itemName() + ": ", percent, itemProfiling);
@@ -69,6 +69,7 @@ import org.sonar.batch.profiling.PhasesSumUpTimeProfiler;
 import org.sonar.batch.repository.ProjectRepositoriesProvider;
 import org.sonar.batch.rule.ActiveRulesProvider;
 import org.sonar.batch.rule.RulesProvider;
+import org.sonar.batch.scan.filesystem.FileMetadataCaches;
 import org.sonar.batch.scan.filesystem.InputPathCache;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.source.CodeColorizers;
@@ -150,6 +151,7 @@ public class ProjectScanContainer extends ComponentContainer {
       // file system
       InputPathCache.class,
       PathResolver.class,
+      FileMetadataCaches.class,
 
       // rules
       new ActiveRulesProvider(),
@@ -49,6 +49,10 @@ public class SensorWrapper implements org.sonar.api.batch.Sensor {
     return wrappedSensor;
   }
 
+  public SensorContext adaptor() {
+    return adaptor;
+  }
+
   @Override
   public boolean shouldExecuteOnProject(Project project) {
     return optimizer.shouldExecute(descriptor);
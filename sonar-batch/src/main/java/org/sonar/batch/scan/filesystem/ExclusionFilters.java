@@ -43,16 +43,23 @@ public class ExclusionFilters implements BatchComponent {
   }
 
   public void prepare() {
-    mainInclusions = prepareMainInclusions();
-    mainExclusions = prepareMainExclusions();
-    testInclusions = prepareTestInclusions();
-    testExclusions = prepareTestExclusions();
+    preparePatterns();
     log("Included sources: ", mainInclusions);
     log("Excluded sources: ", mainExclusions);
     log("Included tests: ", testInclusions);
     log("Excluded tests: ", testExclusions);
   }
 
+  /**
+   * Same as {@link #prepare()}, but patterns are not logged
+   */
+  void preparePatterns() {
+    mainInclusions = prepareMainInclusions();
+    mainExclusions = prepareMainExclusions();
+    testInclusions = prepareTestInclusions();
+    testExclusions = prepareTestExclusions();
+  }
+
   private void log(String title, PathPattern[] patterns) {
     if (patterns.length > 0) {
       LOG.info(title);
@@ -55,8 +55,8 @@ public class FileIndexer implements BatchComponent {
 
   private static final Logger LOG = LoggerFactory.getLogger(FileIndexer.class);
 
-  private static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
-  private static final IOFileFilter FILE_FILTER = HiddenFileFilter.VISIBLE;
+  static final IOFileFilter DIR_FILTER = FileFilterUtils.and(HiddenFileFilter.VISIBLE, FileFilterUtils.notFileFilter(FileFilterUtils.prefixFileFilter(".")));
+  static final IOFileFilter FILE_FILTER = HiddenFileFilter.VISIBLE;
 
   private final List<InputFileFilter> filters;
   private final boolean isAggregator;
@@ -91,6 +91,7 @@ public class FileIndexer implements BatchComponent {
     indexFiles(fileSystem, progress, inputFileBuilder, fileSystem.tests(), InputFile.Type.TEST);
 
     indexAllConcurrently(progress);
+    inputFileBuilder.metadataCache().save();
 
     // Populate FS in a synchronous way because PersistIt Exchange is not concurrent
     for (InputFile indexed : progress.indexed) {
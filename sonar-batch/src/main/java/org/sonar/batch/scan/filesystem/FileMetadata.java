@@ -19,6 +19,7 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.primitives.Longs;
 import org.apache.commons.codec.binary.Hex;
@@ -32,8 +33,10 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -184,6 +187,30 @@ class FileMetadata {
    * Maximum performance is needed.
    */
   Metadata read(File file, Charset encoding) {
+    boolean ascii = Charsets.US_ASCII.equals(encoding);
+    if (ascii || Charsets.UTF_8.equals(encoding)) {
+      Metadata metadata = new ByteScanner(readBytes(file, encoding), ascii).scan();
+      if (metadata != null) {
+        return metadata;
+      }
+      // not supported by the optimized scanner, for example 4-bytes UTF-8 characters
+    }
+    return readChars(file, encoding);
+  }
+
+  private static byte[] readBytes(File file, Charset encoding) {
+    try {
+      return Files.readAllBytes(file.toPath());
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
+    }
+  }
+
+  /**
+   * Decodes characters. Supports all the encodings.
+   */
+  @VisibleForTesting
+  Metadata readChars(File file, Charset encoding) {
     char c = (char) 0;
     LineCounter lineCounter = new LineCounter();
     FileHashComputer fileHashComputer = new FileHashComputer();
@@ -248,6 +275,188 @@ class FileMetadata {
     }
   }
 
+  /**
+   * Single pass over the bytes of a UTF-8 or ASCII file, equivalent to the {@link CharHandler}s
+   * but without decoding characters. Digests are updated with ranges of bytes and line offsets are
+   * stored in a primitive array. Returns null if the file contains bytes that are not decoded
+   * one-to-one into chars (null chars, UTF-8 sequences of 4 bytes or malformed sequences).
+   */
+  private static class ByteScanner {
+    private static final boolean[] ASCII_WHITESPACES = new boolean[128];
+
+    static {
+      for (int c = 0; c < ASCII_WHITESPACES.length; c++) {
+        ASCII_WHITESPACES[c] = Character.isWhitespace(c);
+      }
+    }
+
+    private final byte[] bytes;
+    private final boolean ascii;
+    private final MessageDigest fileDigest = DigestUtils.getMd5Digest();
+    private final MessageDigest lineDigest = DigestUtils.getMd5Digest();
+
+    // pending ranges of bytes to be added to digests
+    private int fileRangeStart = -1;
+    private int fileRangeEnd;
+    private int lineRangeStart = -1;
+    private int lineRangeEnd;
+
+    private long currentOriginalOffset = 0L;
+    private long[] originalLineOffsets = new long[64];
+    private byte[][] lineHashes = new byte[64][];
+    private int lines = 0;
+    private int nonBlankLines = 0;
+    private boolean blankLine = true;
+
+    ByteScanner(byte[] bytes, boolean ascii) {
+      this.bytes = bytes;
+      this.ascii = ascii;
+    }
+
+    @CheckForNull
+    Metadata scan() {
+      int start = hasUtf8Bom() ? 3 : 0;
+      originalLineOffsets[0] = 0L;
+      int i = start;
+      boolean afterCR = false;
+      while (i < bytes.length) {
+        int c = bytes[i] & 0xFF;
+        int next;
+        boolean whitespace;
+        if (c < 0x80) {
+          if (c == 0) {
+            return null;
+          }
+          next = i + 1;
+          whitespace = ASCII_WHITESPACES[c];
+        } else {
+          next = ascii ? -1 : endOfUtf8Char(i);
+          if (next < 0) {
+            return null;
+          }
+          whitespace = Character.isWhitespace(utf8CodePoint(i, next));
+        }
+        if (afterCR) {
+          if (c != CARRIAGE_RETURN && c != LINE_FEED) {
+            append(i, next, whitespace);
+          }
+          currentOriginalOffset++;
+          newLine();
+          afterCR = c == CARRIAGE_RETURN;
+        } else if (c == LINE_FEED) {
+          currentOriginalOffset++;
+          newLine();
+        } else if (c == CARRIAGE_RETURN) {
+          afterCR = true;
+          currentOriginalOffset++;
+        } else {
+          append(i, next, whitespace);
+          currentOriginalOffset++;
+        }
+        i = next;
+      }
+      endOfLine();
+      flushFileRange();
+      return new Metadata(lines, nonBlankLines, Hex.encodeHexString(fileDigest.digest()), Arrays.copyOf(originalLineOffsets, lines),
+        Arrays.copyOf(lineHashes, lines), start == bytes.length);
+    }
+
+    private boolean hasUtf8Bom() {
+      return bytes.length >= 3 && bytes[0] == (byte) 0xEF && bytes[1] == (byte) 0xBB && bytes[2] == (byte) 0xBF;
+    }
+
+    /**
+     * @return the index following the 2 or 3 bytes UTF-8 character starting at the given index, or -1
+     * if the sequence is not supported.
+     */
+    private int endOfUtf8Char(int i) {
+      int c = bytes[i] & 0xFF;
+      if (c >= 0xC2 && c <= 0xDF) {
+        return isContinuation(i + 1) ? i + 2 : -1;
+      }
+      if (c >= 0xE0 && c <= 0xEF && isContinuation(i + 1) && isContinuation(i + 2)) {
+        int c1 = bytes[i + 1] & 0xFF;
+        if ((c == 0xE0 && c1 < 0xA0) || (c == 0xED && c1 >= 0xA0)) {
+          // overlong encoding or surrogate
+          return -1;
+        }
+        return i + 3;
+      }
+      return -1;
+    }
+
+    private boolean isContinuation(int i) {
+      return i < bytes.length && (bytes[i] & 0xC0) == 0x80;
+    }
+
+    private int utf8CodePoint(int start, int end) {
+      if (end - start == 2) {
+        return ((bytes[start] & 0x1F) << 6) | (bytes[start + 1] & 0x3F);
+      }
+      return ((bytes[start] & 0x0F) << 12) | ((bytes[start + 1] & 0x3F) << 6) | (bytes[start + 2] & 0x3F);
+    }
+
+    /**
+     * Character, excluding end of line, located between the given indexes
+     */
+    private void append(int start, int end, boolean whitespace) {
+      if (fileRangeStart >= 0 && fileRangeEnd == start) {
+        fileRangeEnd = end;
+      } else {
+        flushFileRange();
+        fileRangeStart = start;
+        fileRangeEnd = end;
+      }
+      if (!whitespace) {
+        blankLine = false;
+        if (lineRangeStart >= 0 && lineRangeEnd == start) {
+          lineRangeEnd = end;
+        } else {
+          flushLineRange();
+          lineRangeStart = start;
+          lineRangeEnd = end;
+        }
+      }
+    }
+
+    private void newLine() {
+      flushFileRange();
+      fileDigest.update((byte) LINE_FEED);
+      endOfLine();
+      if (lines == originalLineOffsets.length) {
+        originalLineOffsets = Arrays.copyOf(originalLineOffsets, lines * 2);
+      }
+      originalLineOffsets[lines] = currentOriginalOffset;
+    }
+
+    private void endOfLine() {
+      flushLineRange();
+      if (lines == lineHashes.length) {
+        lineHashes = Arrays.copyOf(lineHashes, lines * 2);
+      }
+      lineHashes[lines] = blankLine ? null : lineDigest.digest();
+      if (!blankLine) {
+        nonBlankLines++;
+      }
+      lines++;
+      blankLine = true;
+    }
+
+    private void flushFileRange() {
+      if (fileRangeStart >= 0) {
+        fileDigest.update(bytes, fileRangeStart, fileRangeEnd - fileRangeStart);
+        fileRangeStart = -1;
+      }
+    }
+
+    private void flushLineRange() {
+      if (lineRangeStart >= 0) {
+        lineDigest.update(bytes, lineRangeStart, lineRangeEnd - lineRangeStart);
+        lineRangeStart = -1;
+      }
+    }
+  }
+
   static class Metadata {
     final int lines;
     final int nonBlankLines;
@@ -257,11 +466,15 @@ class FileMetadata {
     final boolean empty;
 
     private Metadata(int lines, int nonBlankLines, String hash, List<Long> originalLineOffsets, byte[][] lineHashes, boolean empty) {
+      this(lines, nonBlankLines, hash, Longs.toArray(originalLineOffsets), lineHashes, empty);
+    }
+
+    Metadata(int lines, int nonBlankLines, String hash, long[] originalLineOffsets, byte[][] lineHashes, boolean empty) {
       this.lines = lines;
       this.nonBlankLines = nonBlankLines;
       this.hash = hash;
       this.empty = empty;
-      this.originalLineOffsets = Longs.toArray(originalLineOffsets);
+      this.originalLineOffsets = originalLineOffsets;
       this.lineHashes = lineHashes;
     }
   }
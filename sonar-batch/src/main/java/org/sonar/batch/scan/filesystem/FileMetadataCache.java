@@ -0,0 +1,254 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.System2;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metadata of files ({@link FileMetadata.Metadata}) computed by the previous analysis of the module, so
+ * that unchanged files are not read again. The cache is stored in the user home (see sonar.userHome).
+ * <p/>
+ * Invalidation rules :
+ * <ul>
+ *   <li>the metadata of a file is reused only if its size, its last modification date and the
+ *   source encoding did not change since the previous analysis</li>
+ *   <li>files modified less than {@link #MTIME_GRANULARITY_MS} ms before being read are not cached, because
+ *   they could be modified again without any change of their last modification date</li>
+ *   <li>files that are not indexed anymore are removed from the cache</li>
+ *   <li>the whole cache is ignored if its format changed, if it can't be read or if the
+ *   property {@link #FORCE_REFRESH_PROPERTY} is true</li>
+ * </ul>
+ * Thread-safe, files are indexed concurrently.
+ */
+class FileMetadataCache {
+
+  static final String FORCE_REFRESH_PROPERTY = "sonar.fileMetadata.forceRefresh";
+
+  /**
+   * Precision of last modification dates is 2 seconds on some file systems (FAT)
+   */
+  static final long MTIME_GRANULARITY_MS = 2000L;
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCache.class);
+  private static final int FORMAT_VERSION = 1;
+
+  private final File cacheFile;
+  private final FileMetadata fileMetadata;
+  private final System2 system2;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final Map<String, Entry> prefetched = new ConcurrentHashMap<String, Entry>();
+
+  FileMetadataCache(File cacheFile, boolean forceRefresh, FileMetadata fileMetadata, System2 system2) {
+    this.cacheFile = cacheFile;
+    this.fileMetadata = fileMetadata;
+    this.system2 = system2;
+    this.previousEntries = forceRefresh ? new ConcurrentHashMap<String, Entry>() : load(cacheFile);
+  }
+
+  File cacheFile() {
+    return cacheFile;
+  }
+
+  FileMetadata.Metadata read(String relativePath, File file, Charset encoding) {
+    // file is checked before being read, so that a modification during read invalidates the entry
+    long size = file.length();
+    long lastModified = file.lastModified();
+    Entry previous = previousEntries.remove(relativePath);
+    if (previous == null || !previous.matches(size, lastModified, encoding)) {
+      previous = prefetched.remove(relativePath);
+    }
+    if (previous != null && previous.matches(size, lastModified, encoding)) {
+      entries.put(relativePath, previous);
+      return previous.metadata;
+    }
+    FileMetadata.Metadata metadata = fileMetadata.read(file, encoding);
+    if (lastModified + MTIME_GRANULARITY_MS < system2.now()) {
+      entries.put(relativePath, new Entry(size, lastModified, encoding.name(), metadata));
+    }
+    return metadata;
+  }
+
+  /**
+   * Computes in advance the metadata of a file that is going to be read by {@link #read(String, java.io.File, java.nio.charset.Charset)}.
+   * Prefetched metadata is not saved if the file is not read later, for example when it is excluded.
+   */
+  void prefetch(String relativePath, File file, Charset encoding) {
+    long size = file.length();
+    long lastModified = file.lastModified();
+    Entry previous = previousEntries.get(relativePath);
+    if ((previous != null && previous.matches(size, lastModified, encoding)) || lastModified + MTIME_GRANULARITY_MS >= system2.now()) {
+      return;
+    }
+    prefetched.put(relativePath, new Entry(size, lastModified, encoding.name(), fileMetadata.read(file, encoding)));
+  }
+
+  /**
+   * Replaces the cache file by the entries of the files read during this analysis
+   */
+  void save() {
+    File tempFile = null;
+    DataOutputStream output = null;
+    try {
+      FileUtils.forceMkdir(cacheFile.getParentFile());
+      tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      output.writeInt(FORMAT_VERSION);
+      output.writeInt(entries.size());
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        output.writeUTF(entry.getKey());
+        entry.getValue().writeTo(output);
+      }
+      output.close();
+      Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // the cache is only an optimization
+      LOG.warn("Fail to save metadata of files in " + cacheFile, e);
+    } finally {
+      IOUtils.closeQuietly(output);
+      FileUtils.deleteQuietly(tempFile);
+    }
+  }
+
+  private static Map<String, Entry> load(File cacheFile) {
+    Map<String, Entry> result = new ConcurrentHashMap<String, Entry>();
+    if (!cacheFile.isFile()) {
+      return result;
+    }
+    DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+      if (input.readInt() != FORMAT_VERSION) {
+        LOG.debug("Ignore metadata of files in {}, format has changed", cacheFile);
+        return result;
+      }
+      int count = input.readInt();
+      for (int i = 0; i < count; i++) {
+        String relativePath = input.readUTF();
+        result.put(relativePath, Entry.readFrom(input));
+      }
+      return result;
+    } catch (IOException e) {
+      LOG.debug("Ignore metadata of files in " + cacheFile, e);
+      return new ConcurrentHashMap<String, Entry>();
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String encoding;
+    private final FileMetadata.Metadata metadata;
+
+    Entry(long size, long lastModified, String encoding, FileMetadata.Metadata metadata) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.encoding = encoding;
+      this.metadata = metadata;
+    }
+
+    boolean matches(long size, long lastModified, Charset encoding) {
+      return this.size == size && this.lastModified == lastModified && this.encoding.equals(encoding.name());
+    }
+
+    void writeTo(DataOutputStream output) throws IOException {
+      output.writeLong(size);
+      output.writeLong(lastModified);
+      output.writeUTF(encoding);
+      output.writeInt(metadata.lines);
+      output.writeInt(metadata.nonBlankLines);
+      output.writeUTF(metadata.hash);
+      output.writeBoolean(metadata.empty);
+      output.writeInt(metadata.originalLineOffsets.length);
+      for (long offset : metadata.originalLineOffsets) {
+        output.writeLong(offset);
+      }
+      output.writeInt(metadata.lineHashes.length);
+      for (byte[] lineHash : metadata.lineHashes) {
+        writeBytes(output, lineHash);
+      }
+    }
+
+    static Entry readFrom(DataInputStream input) throws IOException {
+      long size = input.readLong();
+      long lastModified = input.readLong();
+      String encoding = input.readUTF();
+      int lines = input.readInt();
+      int nonBlankLines = input.readInt();
+      String hash = input.readUTF();
+      boolean empty = input.readBoolean();
+      long[] offsets = new long[input.readInt()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = input.readLong();
+      }
+      byte[][] lineHashes = new byte[input.readInt()][];
+      for (int i = 0; i < lineHashes.length; i++) {
+        lineHashes[i] = readBytes(input);
+      }
+      return new Entry(size, lastModified, encoding, new FileMetadata.Metadata(lines, nonBlankLines, hash, offsets, lineHashes, empty));
+    }
+
+    /**
+     * Hash of blank lines is null
+     */
+    private static void writeBytes(DataOutputStream output, @Nullable byte[] bytes) throws IOException {
+      if (bytes == null) {
+        output.writeInt(-1);
+      } else {
+        output.writeInt(bytes.length);
+        output.write(bytes);
+      }
+    }
+
+    @CheckForNull
+    private static byte[] readBytes(DataInputStream input) throws IOException {
+      int length = input.readInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      input.readFully(bytes);
+      return bytes;
+    }
+  }
+}
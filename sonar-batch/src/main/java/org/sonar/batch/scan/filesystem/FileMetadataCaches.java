@@ -0,0 +1,273 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.FileExclusions;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.System2;
+import org.sonar.batch.bootstrap.DefaultAnalysisMode;
+import org.sonar.batch.bootstrap.GlobalSettings;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.batch.scan.ModuleSettings;
+import org.sonar.home.cache.FileCache;
+
+import javax.annotation.CheckForNull;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Provides the {@link FileMetadataCache} of each module.
+ * <p/>
+ * When the property {@link #PARALLEL_MODULES_PROPERTY} is greater than zero, the metadata of the files of the next
+ * modules (in the order of analysis) is computed in background threads while the current module is analyzed.
+ * Only reading of files is done concurrently : sensors, decorators and persisters are still executed module after module.
+ * Files are prefetched from the source and test directories of the module, with the encoding, inclusions and exclusions
+ * of the module settings. Metadata that is not used when the module is indexed is dropped.
+ */
+public class FileMetadataCaches implements BatchComponent {
+
+  /**
+   * Number of modules prefetched concurrently. Zero (default) disables prefetching.
+   */
+  public static final String PARALLEL_MODULES_PROPERTY = "sonar.scan.parallelModules";
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileMetadataCaches.class);
+
+  private final FileCache fileCache;
+  private final Settings settings;
+  private final GlobalSettings globalSettings;
+  private final ProjectRepositories projectRepositories;
+  private final DefaultAnalysisMode analysisMode;
+  private final PathResolver pathResolver;
+  private final FileMetadata fileMetadata;
+  private final System2 system2;
+  private final int parallelModules;
+  private final List<ProjectDefinition> modules;
+  private final Map<String, Future<FileMetadataCache>> prefetchedByModuleKey = new HashMap<String, Future<FileMetadataCache>>();
+  private ExecutorService executor;
+  private int nextModuleToPrefetch = 0;
+
+  public FileMetadataCaches(ProjectReactor reactor, Settings settings, GlobalSettings globalSettings, ProjectRepositories projectRepositories,
+    DefaultAnalysisMode analysisMode, FileCache fileCache, PathResolver pathResolver) {
+    this(reactor, settings, globalSettings, projectRepositories, analysisMode, fileCache, pathResolver, new FileMetadata(), System2.INSTANCE);
+  }
+
+  @VisibleForTesting
+  FileMetadataCaches(ProjectReactor reactor, Settings settings, GlobalSettings globalSettings, ProjectRepositories projectRepositories,
+    DefaultAnalysisMode analysisMode, FileCache fileCache, PathResolver pathResolver, FileMetadata fileMetadata, System2 system2) {
+    this.settings = settings;
+    this.globalSettings = globalSettings;
+    this.projectRepositories = projectRepositories;
+    this.analysisMode = analysisMode;
+    this.fileCache = fileCache;
+    this.pathResolver = pathResolver;
+    this.fileMetadata = fileMetadata;
+    this.system2 = system2;
+    this.parallelModules = Math.max(0, settings.getInt(PARALLEL_MODULES_PROPERTY));
+    this.modules = new ArrayList<ProjectDefinition>();
+    if (parallelModules > 0) {
+      addModulesInAnalysisOrder(reactor.getRoot(), modules);
+    }
+  }
+
+  /**
+   * Same order than the analysis of modules : sub-modules before their parent
+   */
+  private static void addModulesInAnalysisOrder(ProjectDefinition module, List<ProjectDefinition> result) {
+    for (ProjectDefinition subProject : module.getSubProjects()) {
+      addModulesInAnalysisOrder(subProject, result);
+    }
+    if (module.getSubProjects().isEmpty()) {
+      // aggregators have no files
+      result.add(module);
+    }
+  }
+
+  /**
+   * One cache file per module, stored in the user cache. Waits for the prefetching of the module if it's in progress.
+   */
+  synchronized FileMetadataCache forModule(String moduleKey, File baseDir) {
+    prefetchUntil(moduleKey);
+    Future<FileMetadataCache> prefetched = prefetchedByModuleKey.remove(moduleKey);
+    if (prefetched != null) {
+      FileMetadataCache cache = awaitQuietly(moduleKey, prefetched);
+      if (cache != null && cache.cacheFile().equals(cacheFile(moduleKey, baseDir))) {
+        return cache;
+      }
+    }
+    return newCache(moduleKey, baseDir);
+  }
+
+  /**
+   * Starts the prefetching of the next {@link #PARALLEL_MODULES_PROPERTY} modules. The given module is not prefetched
+   * if it was not already, as its files are about to be indexed concurrently.
+   */
+  private void prefetchUntil(String moduleKey) {
+    int index = indexOf(moduleKey);
+    if (index < 0) {
+      return;
+    }
+    int last = Math.min(modules.size() - 1, index + parallelModules);
+    while (nextModuleToPrefetch <= last) {
+      ProjectDefinition module = modules.get(nextModuleToPrefetch);
+      if (nextModuleToPrefetch > index) {
+        prefetchedByModuleKey.put(module.getKeyWithBranch(), executor().submit(new PrefetchTask(module, moduleSettings(module))));
+      }
+      nextModuleToPrefetch++;
+    }
+  }
+
+  private int indexOf(String moduleKey) {
+    for (int i = 0; i < modules.size(); i++) {
+      if (modules.get(i).getKeyWithBranch().equals(moduleKey)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private ExecutorService executor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(parallelModules,
+        new ThreadFactoryBuilder().setNameFormat("prefetch-files-%d").setDaemon(true).build());
+    }
+    return executor;
+  }
+
+  @CheckForNull
+  private static FileMetadataCache awaitQuietly(String moduleKey, Future<FileMetadataCache> prefetched) {
+    try {
+      return prefetched.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Prefetching of files of module " + moduleKey + " was interrupted", e);
+    } catch (ExecutionException e) {
+      // prefetching is only an optimization, files are read again during indexing
+      LOG.warn("Fail to prefetch files of module " + moduleKey, e.getCause());
+      return null;
+    }
+  }
+
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    prefetchedByModuleKey.clear();
+  }
+
+  private FileMetadataCache newCache(String moduleKey, File baseDir) {
+    return new FileMetadataCache(cacheFile(moduleKey, baseDir), settings.getBoolean(FileMetadataCache.FORCE_REFRESH_PROPERTY), fileMetadata, system2);
+  }
+
+  private File cacheFile(String moduleKey, File baseDir) {
+    String cacheKey = DigestUtils.md5Hex(moduleKey + "|" + baseDir.getAbsolutePath());
+    return new File(new File(fileCache.getDir(), "_metadata"), cacheKey);
+  }
+
+  /**
+   * Module settings are loaded again when the module is analyzed. They are built here as the module container
+   * does not exist yet.
+   */
+  private Settings moduleSettings(ProjectDefinition module) {
+    return new ModuleSettings(globalSettings, module, projectRepositories, analysisMode);
+  }
+
+  /**
+   * Same resolution than {@link DefaultModuleFileSystem#encoding()}
+   */
+  private static Charset encoding(Settings moduleSettings) {
+    String encoding = moduleSettings.getString(CoreProperties.ENCODING_PROPERTY);
+    return StringUtils.isNotEmpty(encoding) ? Charset.forName(StringUtils.trim(encoding)) : Charset.defaultCharset();
+  }
+
+  private class PrefetchTask implements Callable<FileMetadataCache> {
+    private final ProjectDefinition module;
+    private final Charset encoding;
+    private final ExclusionFilters exclusionFilters;
+
+    PrefetchTask(ProjectDefinition module, Settings moduleSettings) {
+      this.module = module;
+      this.encoding = encoding(moduleSettings);
+      this.exclusionFilters = new ExclusionFilters(new FileExclusions(moduleSettings));
+      exclusionFilters.preparePatterns();
+    }
+
+    @Override
+    public FileMetadataCache call() {
+      FileMetadataCache cache = newCache(module.getKeyWithBranch(), module.getBaseDir());
+      prefetch(cache, module.sources(), InputFile.Type.MAIN);
+      prefetch(cache, module.tests(), InputFile.Type.TEST);
+      return cache;
+    }
+
+    private void prefetch(FileMetadataCache cache, List<String> paths, InputFile.Type type) {
+      File baseDir = module.getBaseDir();
+      for (String path : paths) {
+        for (File file : listFiles(pathResolver.relativeFile(baseDir, path))) {
+          if (Thread.currentThread().isInterrupted()) {
+            return;
+          }
+          String relativePath = pathResolver.relativePath(baseDir, file);
+          if (relativePath != null && accept(file, relativePath, type)) {
+            cache.prefetch(relativePath, file, encoding);
+          }
+        }
+      }
+    }
+
+    private boolean accept(File file, String relativePath, InputFile.Type type) {
+      return exclusionFilters.accept(new DefaultInputFile(module.getKeyWithBranch(), relativePath).setFile(file), type);
+    }
+
+    private Collection<File> listFiles(File dirOrFile) {
+      if (dirOrFile.isDirectory()) {
+        return FileUtils.listFiles(dirOrFile, FileIndexer.FILE_FILTER, FileIndexer.DIR_FILTER);
+      }
+      return dirOrFile.isFile() ? Collections.singletonList(dirOrFile) : Collections.<File>emptyList();
+    }
+  }
+}
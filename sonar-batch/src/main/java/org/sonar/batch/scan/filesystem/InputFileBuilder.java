@@ -47,9 +47,11 @@ class InputFileBuilder {
   private final DefaultModuleFileSystem fs;
   private final DefaultAnalysisMode analysisMode;
   private final Settings settings;
+  private final FileMetadataCache metadataCache;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, DefaultAnalysisMode analysisMode, Settings settings) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, DefaultAnalysisMode analysisMode, Settings settings,
+    FileMetadataCache metadataCache) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
@@ -57,6 +59,7 @@ class InputFileBuilder {
     this.fs = fs;
     this.analysisMode = analysisMode;
     this.settings = settings;
+    this.metadataCache = metadataCache;
   }
 
   String moduleKey() {
@@ -79,6 +82,10 @@ class InputFileBuilder {
     return fs;
   }
 
+  FileMetadataCache metadataCache() {
+    return metadataCache;
+  }
+
   @CheckForNull
   DeprecatedDefaultInputFile create(File file) {
     String relativePath = pathResolver.relativePath(fs.baseDir(), file);
@@ -107,7 +114,7 @@ class InputFileBuilder {
     }
     inputFile.setLanguage(lang);
 
-    FileMetadata.Metadata metadata = new FileMetadata().read(inputFile.file(), fs.encoding());
+    FileMetadata.Metadata metadata = metadataCache.read(inputFile.relativePath(), inputFile.file(), fs.encoding());
     inputFile.setLines(metadata.lines);
     inputFile.setNonBlankLines(metadata.nonBlankLines);
     inputFile.setHash(metadata.hash);
@@ -68,6 +68,7 @@ public class DefaultSensorStorage implements SensorStorage {
   private final ResourcePerspectives perspectives;
   private final DefaultIndex sonarIndex;
   private final CoverageExclusions coverageExclusions;
+  private final Object lock = new Object();
 
   public DefaultSensorStorage(MetricFinder metricFinder, Project project,
     ResourcePerspectives perspectives,
@@ -80,6 +81,49 @@ public class DefaultSensorStorage implements SensorStorage {
     this.coverageExclusions = coverageExclusions;
   }
 
+  /**
+   * Monitor held while data is stored. Sensors that are executed concurrently share it, so that the
+   * caches, which are not thread-safe, are written by a single thread at a time.
+   */
+  public Object lock() {
+    return lock;
+  }
+
+  @Override
+  public void store(Measure measure) {
+    synchronized (lock) {
+      doStore(measure);
+    }
+  }
+
+  @Override
+  public void store(Issue issue) {
+    synchronized (lock) {
+      doStore(issue);
+    }
+  }
+
+  @Override
+  public void store(TestCaseExecution testCaseExecution) {
+    synchronized (lock) {
+      doStore(testCaseExecution);
+    }
+  }
+
+  @Override
+  public void store(TestCaseCoverage testCaseCoverage) {
+    synchronized (lock) {
+      doStore(testCaseCoverage);
+    }
+  }
+
+  @Override
+  public void store(org.sonar.api.batch.sensor.dependency.Dependency dependency) {
+    synchronized (lock) {
+      doStore(dependency);
+    }
+  }
+
   private Metric findMetricOrFail(String metricKey) {
     Metric m = (Metric) metricFinder.findByKey(metricKey);
     if (m == null) {
@@ -88,8 +132,7 @@ public class DefaultSensorStorage implements SensorStorage {
     return m;
   }
 
-  @Override
-  public void store(Measure newMeasure) {
+  private void doStore(Measure newMeasure) {
     DefaultMeasure measure = (DefaultMeasure) newMeasure;
     org.sonar.api.measures.Metric m = findMetricOrFail(measure.metric().key());
     org.sonar.api.measures.Measure measureToSave = new org.sonar.api.measures.Measure(m);
@@ -140,8 +183,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  @Override
-  public void store(Issue issue) {
+  private void doStore(Issue issue) {
     Resource r;
     InputPath inputPath = issue.inputPath();
     if (inputPath != null) {
@@ -173,8 +215,7 @@ public class DefaultSensorStorage implements SensorStorage {
       .build();
   }
 
-  @Override
-  public void store(TestCaseExecution testCase) {
+  private void doStore(TestCaseExecution testCase) {
     File testRes = getTestResource(((DefaultTestCaseExecution) testCase).testFile());
     MutableTestPlan testPlan = perspectives.as(MutableTestPlan.class, testRes);
     if (testPlan != null) {
@@ -188,8 +229,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  @Override
-  public void store(TestCaseCoverage testCaseCoverage) {
+  private void doStore(TestCaseCoverage testCaseCoverage) {
     File testRes = getTestResource(testCaseCoverage.testFile());
     File mainRes = getMainResource(testCaseCoverage.coveredFile());
     Testable testAbleFile = perspectives.as(MutableTestable.class, mainRes);
@@ -236,8 +276,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  @Override
-  public void store(org.sonar.api.batch.sensor.dependency.Dependency dep) {
+  private void doStore(org.sonar.api.batch.sensor.dependency.Dependency dep) {
     File fromResource = getFile(dep.from());
     File toResource = getFile(dep.to());
     if (sonarIndex.getEdge(fromResource, toResource) != null) {
@@ -39,6 +39,8 @@ import org.sonar.batch.sensor.DefaultSensorContext;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
@@ -284,6 +286,24 @@ public class BatchExtensionDictionnaryTest {
     assertThat(extensions.get(2)).isEqualTo(post);
   }
 
+  @Test
+  public void getPredecessors() {
+    BatchExtension pre = new PreSensor();
+    BatchExtension a = new GeneratesSomething("foo");
+    BatchExtension b = new MethodDependentOf("foo");
+    BatchExtension independent = new GeneratesSomething("bar");
+    BatchExtension post = new PostSensor();
+
+    BatchExtensionDictionnary selector = newSelector();
+    Map<BatchExtension, Set<BatchExtension>> predecessors = selector.getPredecessors(Arrays.asList(pre, a, b, independent, post));
+
+    assertThat(predecessors.get(pre)).isEmpty();
+    assertThat(predecessors.get(a)).containsOnly(pre);
+    assertThat(predecessors.get(b)).containsOnly(pre, a);
+    assertThat(predecessors.get(independent)).containsOnly(pre);
+    assertThat(predecessors.get(post)).containsOnly(pre, a, b, independent);
+  }
+
   @Test
   public void dependsUponInheritedPhase() {
     BatchExtension pre = new PreSensorSubclass();
@@ -42,9 +42,15 @@ public class CachesTest {
   public static TemporaryFolder temp = new TemporaryFolder();
 
   public static Caches createCacheOnTemp(TemporaryFolder temp) {
+    return createCacheOnTemp(temp, Caches.PERSISTIT_BACKEND);
+  }
+
+  public static Caches createCacheOnTemp(TemporaryFolder temp, String backend) {
     try {
-      BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath()));
-      return new Caches(new TempFolderProvider().provide(bootstrapProps));
+      BootstrapProperties bootstrapProps = new BootstrapProperties(ImmutableMap.of(
+        CoreProperties.WORKING_DIRECTORY, temp.newFolder().getAbsolutePath(),
+        Caches.BACKEND_PROPERTY, backend));
+      return new Caches(new TempFolderProvider().provide(bootstrapProps), bootstrapProps);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -95,6 +101,26 @@ public class CachesTest {
     }
   }
 
+  @Test
+  public void should_fail_if_unknown_backend() throws Exception {
+    try {
+      createCacheOnTemp(temp, "unknown");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("Unsupported value of property sonar.batch.cache.backend: unknown");
+    }
+  }
+
+  @Test
+  public void should_create_mapped_cache() throws Exception {
+    caches.stop();
+    caches = createCacheOnTemp(temp, Caches.MAPPED_BACKEND);
+    caches.start();
+    Cache<Element> cache = caches.createCache("foo");
+    cache.put("key", new Element());
+    assertThat(cache.get("key")).isInstanceOf(Element.class);
+  }
+
   static class Element implements Serializable {
 
   }
@@ -0,0 +1,88 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.index;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Same behavior as {@link CacheTest}, with the memory-mapped backend
+ */
+public class MappedCacheTest extends CacheTest {
+
+  @Override
+  protected Caches createCaches() {
+    return CachesTest.createCacheOnTemp(temp, Caches.MAPPED_BACKEND);
+  }
+
+  @Test
+  public void put_and_get_concurrently() throws Exception {
+    final Cache<String> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        final String group = "group" + thread;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() {
+            for (int i = 0; i < 1000; i++) {
+              cache.put(group, i, "value" + i);
+              assertThat(cache.get(group, i)).isEqualTo("value" + i);
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(cache.keySet()).containsOnly("group0", "group1", "group2", "group3");
+    assertThat(cache.keySet("group2")).hasSize(1000);
+    assertThat(cache.values("group3")).hasSize(1000);
+    assertThat(cache.get("group1", 999)).isEqualTo("value999");
+  }
+
+  @Test
+  public void store_values_larger_than_segment() throws Exception {
+    MappedValueLog log = new MappedValueLog(temp.newFolder(), 16);
+    long small = log.append(new byte[] {1, 2});
+    long big = log.append(new byte[100]);
+    long next = log.append(new byte[] {3});
+
+    assertThat(log.read(small)).isEqualTo(new byte[] {1, 2});
+    assertThat(log.read(big)).hasSize(100);
+    assertThat(log.read(next)).isEqualTo(new byte[] {3});
+    assertThat(log.countSegments()).isEqualTo(3);
+    log.close();
+  }
+}
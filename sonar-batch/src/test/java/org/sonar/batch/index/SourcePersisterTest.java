@@ -47,6 +47,7 @@ import org.sonar.batch.symbol.DefaultSymbolTableBuilder;
 import org.sonar.core.persistence.AbstractDaoTestCase;
 import org.sonar.core.source.SnapshotDataTypes;
 import org.sonar.core.source.db.FileSourceDao;
+import org.sonar.core.source.db.FileSourceData;
 import org.sonar.core.source.db.FileSourceDto;
 
 import java.io.IOException;
@@ -165,10 +166,12 @@ public class SourcePersisterTest extends AbstractDaoTestCase {
     FileSourceDto fileSourceDto = new FileSourceDao(getMyBatis()).select("uuidsame");
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(DateUtils.parseDateTime("2014-10-10T16:44:02+0200").getTime());
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(now.getTime());
-    assertThat(fileSourceDto.getData()).isEqualTo(
-      ",,,,,,,,,,,,,,,changed\r\n,,,,,,,,,,,,,,,content\r\n");
+    // CSV data is replaced by binary data
+    assertThat(fileSourceDto.getData()).isNull();
+    assertThat(FileSourceData.decodeColumn(fileSourceDto.getBinaryData(), FileSourceData.SOURCE_INDEX)).containsExactly("changed", "content");
+    assertThat(FileSourceData.decodeColumn(fileSourceDto.getBinaryData(), FileSourceDto.CSV_INDEX_SCM_AUTHOR)).containsExactly("", "");
     assertThat(fileSourceDto.getLineHashes()).isEqualTo(md5Hex("changed") + "\n" + md5Hex("content"));
-    assertThat(fileSourceDto.getDataHash()).isEqualTo("d1a4dd62422639f665a8d80b37c59f8d");
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("9f9335390ebd80d8bde6a3142be37512");
     assertThat(fileSourceDto.getSrcHash()).isEqualTo("123456");
   }
 
@@ -211,10 +214,11 @@ public class SourcePersisterTest extends AbstractDaoTestCase {
     FileSourceDto fileSourceDto = new FileSourceDao(getMyBatis()).select("uuidnew");
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(now.getTime());
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(now.getTime());
-    assertThat(fileSourceDto.getData()).isEqualTo(
-      ",,,,,,,,,,,,,,,foo\r\n,,,,,,,,,,,,,,,bar\r\n,,,,,,,,,,,,,,,biz\r\n");
+    assertThat(fileSourceDto.getData()).isNull();
+    assertThat(FileSourceData.countLines(fileSourceDto.getBinaryData())).isEqualTo(3);
+    assertThat(FileSourceData.decodeColumn(fileSourceDto.getBinaryData(), FileSourceData.SOURCE_INDEX)).containsExactly("foo", "bar", "biz");
     assertThat(fileSourceDto.getLineHashes()).isEqualTo(md5Hex("foo") + "\n" + md5Hex("bar") + "\n" + md5Hex("biz"));
-    assertThat(fileSourceDto.getDataHash()).isEqualTo("a34ed99cc7d27150c82f5cba2b22b665");
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("ec2cd1260109984b9d5275bbf1688f36");
 
   }
 
@@ -296,11 +300,25 @@ public class SourcePersisterTest extends AbstractDaoTestCase {
     assertThat(fileSourceDto.getCreatedAt()).isEqualTo(now.getTime());
     assertThat(fileSourceDto.getUpdatedAt()).isEqualTo(now.getTime());
     assertThat(fileSourceDto.getLineHashes()).isEqualTo(md5Hex("foo") + "\n" + md5Hex("bar") + "\n" + md5Hex("biz"));
-    assertThat(fileSourceDto.getData()).isEqualTo(
-      "123,julien,2014-10-11T16:44:02+0100,1,4,2,2,5,3,3,6,4,\"0,3,a\",\"1,2,1;0,2,2\",\"1,3\",foo\r\n"
-        + "234,simon,2014-10-12T16:44:02+0100,,,,,,,,,,\"0,1,cd\",\"0,1,1;0,2,2\",3,bar\r\n"
-        + "345,julien,2014-10-13T16:44:02+0100,0,,,0,,,0,,,\"0,9,c\",\"4,5,1;0,2,2\",2,biz\r\n");
-    assertThat(fileSourceDto.getDataHash()).isEqualTo("26930cf0250d525b04083185ff24a046");
+    assertThat(fileSourceDto.getData()).isNull();
+    String[][] columns = FileSourceData.decodeColumns(fileSourceDto.getBinaryData());
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_REVISION]).containsExactly("123", "234", "345");
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_AUTHOR]).containsExactly("julien", "simon", "julien");
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_DATE]).containsExactly("2014-10-11T16:44:02+0100", "2014-10-12T16:44:02+0100", "2014-10-13T16:44:02+0100");
+    assertThat(columns[FileSourceDto.CSV_INDEX_UT_LINE_HITS]).containsExactly("1", "", "0");
+    assertThat(columns[FileSourceDto.CSV_INDEX_UT_CONDITIONS]).containsExactly("4", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_UT_COVERED_CONDITIONS]).containsExactly("2", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_IT_LINE_HITS]).containsExactly("2", "", "0");
+    assertThat(columns[FileSourceDto.CSV_INDEX_IT_CONDITIONS]).containsExactly("5", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_IT_COVERED_CONDITIONS]).containsExactly("3", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_OVERALL_LINE_HITS]).containsExactly("3", "", "0");
+    assertThat(columns[FileSourceDto.CSV_INDEX_OVERALL_CONDITIONS]).containsExactly("6", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_OVERALL_COVERED_CONDITIONS]).containsExactly("4", "", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_HIGHLIGHTING]).containsExactly("0,3,a", "0,1,cd", "0,9,c");
+    assertThat(columns[FileSourceDto.CSV_INDEX_SYMBOLS]).containsExactly("1,2,1;0,2,2", "0,1,1;0,2,2", "4,5,1;0,2,2");
+    assertThat(columns[FileSourceDto.CSV_INDEX_DUPLICATIONS]).containsExactly("1,3", "3", "2");
+    assertThat(columns[FileSourceData.SOURCE_INDEX]).containsExactly("foo", "bar", "biz");
+    assertThat(fileSourceDto.getDataHash()).isEqualTo("5cabe8b376c63043e35e77b903178b4e");
   }
 
   @Test
@@ -19,11 +19,16 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.config.Settings;
+import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
@@ -35,11 +40,18 @@ import org.sonar.batch.events.EventBus;
 import org.sonar.batch.scan.measure.MeasureCache;
 import org.sonar.batch.sensor.coverage.CoverageExclusions;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -67,7 +79,7 @@ public class DecoratorsExecutorTest {
     doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
 
     DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class),
-      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class));
+      mock(EventBus.class), mock(CoverageExclusions.class), mock(MeasureCache.class), mock(MetricFinder.class), mock(DuplicationCache.class), new Settings());
     try {
       executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), File.create("src/org/foo/Bar.java", "org/foo/Bar.java", null, false));
       fail("Exception has not been thrown");
@@ -77,6 +89,70 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void decorate_concurrently() {
+    Project project = new Project("key");
+    SonarIndex index = mock(SonarIndex.class);
+    List<Resource> dirs = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      Directory dir = Directory.create("src/dir" + i);
+      dirs.add(dir);
+      List<Resource> files = Lists.newArrayList();
+      for (int j = 0; j < 10; j++) {
+        files.add(File.create("src/dir" + i + "/File" + j + ".java"));
+      }
+      when(index.getChildren(dir)).thenReturn(files);
+    }
+    when(index.getChildren(project)).thenReturn(dirs);
+    MeasureCache measureCache = mock(MeasureCache.class);
+    when(measureCache.byResource(any(Resource.class))).thenReturn(Collections.<Measure>emptyList());
+
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), project, index,
+      mock(EventBus.class), mock(CoverageExclusions.class), measureCache, mock(MetricFinder.class), mock(DuplicationCache.class),
+      new Settings().setProperty(DecoratorsExecutor.THREADS_PROPERTY, 4));
+    ChildrenCounterDecorator threadSafeDecorator = new ChildrenCounterDecorator();
+    SerialDecorator serialDecorator = new SerialDecorator();
+    DefaultDecoratorContext context = executor.decorateConcurrently(Lists.<Decorator>newArrayList(threadSafeDecorator, serialDecorator));
+
+    assertThat(context.getResource()).isEqualTo(project);
+    assertThat(threadSafeDecorator.childrenByResource).hasSize(1 + 4 + 40);
+    assertThat(threadSafeDecorator.childrenByResource.get(project)).isEqualTo(4);
+    assertThat(threadSafeDecorator.childrenByResource.get(dirs.get(2))).isEqualTo(10);
+    assertThat(serialDecorator.executions).isEqualTo(1 + 4 + 40);
+    assertThat(serialDecorator.concurrentExecution).isFalse();
+  }
+
+  @ThreadSafe
+  static class ChildrenCounterDecorator implements Decorator {
+    Map<Resource, Integer> childrenByResource = new ConcurrentHashMap<Resource, Integer>();
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      childrenByResource.put(resource, context.getChildren().size());
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  static class SerialDecorator implements Decorator {
+    AtomicBoolean running = new AtomicBoolean(false);
+    boolean concurrentExecution = false;
+    int executions = 0;
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      if (!running.compareAndSet(false, true)) {
+        concurrentExecution = true;
+      }
+      executions++;
+      running.set(false);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
@@ -0,0 +1,267 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.AnalysisMode;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.ThreadSafe;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
+import org.sonar.api.issue.Issuable;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.MetricFinder;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.batch.bootstrap.BatchExtensionDictionnary;
+import org.sonar.batch.duplication.BlockCache;
+import org.sonar.batch.duplication.DuplicationCache;
+import org.sonar.batch.events.EventBus;
+import org.sonar.batch.index.ComponentDataCache;
+import org.sonar.batch.index.DefaultIndex;
+import org.sonar.batch.scan.SensorWrapper;
+import org.sonar.batch.sensor.AnalyzerOptimizer;
+import org.sonar.batch.sensor.DefaultSensorContext;
+import org.sonar.batch.sensor.DefaultSensorStorage;
+import org.sonar.batch.sensor.coverage.CoverageExclusions;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+
+  Project project = new Project("key");
+  BatchExtensionDictionnary selector = mock(BatchExtensionDictionnary.class);
+  SensorContext context = mock(SensorContext.class);
+  DefaultIndex index = mock(DefaultIndex.class);
+  ResourcePerspectives perspectives = mock(ResourcePerspectives.class);
+  DefaultSensorStorage storage = newStorage();
+
+  @Test
+  public void execute_sensors_sequentially_by_default() {
+    Sensor sensor1 = mock(Sensor.class);
+    Sensor sensor2 = mock(Sensor.class);
+    mockSensors(Arrays.asList(sensor1, sensor2), Collections.<Sensor, Set<Sensor>>emptyMap());
+
+    newExecutor(new Settings()).execute(context);
+
+    verify(sensor1).analyse(project, context);
+    verify(sensor2).analyse(project, context);
+  }
+
+  @Test
+  public void execute_independent_sensors_concurrently() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    LatchSensor sensor1 = new LatchSensor(bothStarted);
+    LatchSensor sensor2 = new LatchSensor(bothStarted);
+    DependentSensor dependent = new DependentSensor(sensor1, sensor2);
+    Map<Sensor, Set<Sensor>> predecessors = ImmutableMap.<Sensor, Set<Sensor>>of(
+      sensor1, Collections.<Sensor>emptySet(),
+      sensor2, Collections.<Sensor>emptySet(),
+      dependent, ImmutableSet.<Sensor>of(sensor1, sensor2));
+    mockSensors(Arrays.<Sensor>asList(sensor1, sensor2, dependent), predecessors);
+
+    newExecutor(new Settings().setProperty(SensorsExecutor.THREADS_PROPERTY, 3)).execute(context);
+
+    // each latch sensor waits for the other one, so they can only succeed if executed concurrently
+    assertThat(sensor1.concurrent).isTrue();
+    assertThat(sensor2.concurrent).isTrue();
+    assertThat(dependent.predecessorsDone).isTrue();
+  }
+
+  @Test
+  public void fail_if_a_sensor_fails_concurrently() {
+    Sensor sensor = mock(Sensor.class);
+    IllegalStateException exception = new IllegalStateException("Sensor failure");
+    doThrow(exception).when(sensor).analyse(any(Project.class), any(SensorContext.class));
+    mockSensors(Arrays.asList(sensor), ImmutableMap.<Sensor, Set<Sensor>>of(sensor, Collections.<Sensor>emptySet()));
+
+    try {
+      newExecutor(new Settings().setProperty(SensorsExecutor.THREADS_PROPERTY, 2)).execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).isSameAs(exception);
+    }
+  }
+
+  @Test
+  public void serialize_data_saved_by_thread_safe_sensors() {
+    ConcurrencyDetector detector = new ConcurrencyDetector();
+    when(index.addMeasure(any(Resource.class), any(Measure.class))).thenAnswer(detector);
+    Issuable issuable = mock(Issuable.class);
+    when(issuable.addIssue(any(org.sonar.api.issue.Issue.class))).thenAnswer(detector);
+    when(perspectives.as(eq(Issuable.class), any(Resource.class))).thenReturn(issuable);
+    org.sonar.api.batch.sensor.SensorContext adaptor = new DefaultSensorContext(new Settings(), mock(FileSystem.class), mock(ActiveRules.class),
+      mock(AnalysisMode.class), mock(ComponentDataCache.class), mock(BlockCache.class), mock(DuplicationCache.class), storage);
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    Sensor sensor1 = new SensorWrapper(new SavingSensor(bothStarted), adaptor, mock(AnalyzerOptimizer.class));
+    Sensor sensor2 = new SensorWrapper(new SavingSensor(bothStarted), adaptor, mock(AnalyzerOptimizer.class));
+    mockSensors(Arrays.asList(sensor1, sensor2), ImmutableMap.<Sensor, Set<Sensor>>of(
+      sensor1, Collections.<Sensor>emptySet(),
+      sensor2, Collections.<Sensor>emptySet()));
+
+    newExecutor(new Settings().setProperty(SensorsExecutor.THREADS_PROPERTY, 2)).execute(context);
+
+    verify(index, times(2 * SavingSensor.SAVES)).addMeasure(any(Resource.class), any(Measure.class));
+    verify(issuable, times(2 * SavingSensor.SAVES)).addIssue(any(org.sonar.api.issue.Issue.class));
+    assertThat(detector.concurrent).isFalse();
+  }
+
+  private void mockSensors(Collection<Sensor> sensors, Map<Sensor, Set<Sensor>> predecessors) {
+    when(selector.select(eq(Sensor.class), eq(project), anyBoolean(), any(SensorMatcher.class))).thenReturn(sensors);
+    when(selector.getPredecessors(sensors)).thenReturn(predecessors);
+  }
+
+  private SensorsExecutor newExecutor(Settings settings) {
+    return new SensorsExecutor(selector, project, mock(EventBus.class), mock(SensorMatcher.class), settings, storage);
+  }
+
+  private DefaultSensorStorage newStorage() {
+    MetricFinder metricFinder = mock(MetricFinder.class);
+    when(metricFinder.findByKey(CoreMetrics.NCLOC_KEY)).thenReturn(CoreMetrics.NCLOC);
+    return new DefaultSensorStorage(metricFinder, project, perspectives, new Settings(), mock(FileSystem.class), mock(ActiveRules.class),
+      mock(ComponentDataCache.class), mock(BlockCache.class), mock(DuplicationCache.class), index, mock(CoverageExclusions.class));
+  }
+
+  /**
+   * Fails if two threads write at the same time
+   */
+  static class ConcurrencyDetector implements Answer<Object> {
+    final AtomicInteger writers = new AtomicInteger();
+    volatile boolean concurrent = false;
+
+    @Override
+    public Object answer(InvocationOnMock invocation) throws Throwable {
+      if (writers.incrementAndGet() > 1) {
+        concurrent = true;
+      }
+      Thread.sleep(1L);
+      writers.decrementAndGet();
+      return invocation.getMethod().getReturnType() == boolean.class ? Boolean.TRUE : null;
+    }
+  }
+
+  @ThreadSafe
+  static class SavingSensor implements org.sonar.api.batch.sensor.Sensor {
+    static final int SAVES = 20;
+    final CountDownLatch latch;
+
+    SavingSensor(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name("Saving sensor");
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      latch.countDown();
+      try {
+        latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      for (int i = 0; i < SAVES; i++) {
+        context.<Integer>newMeasure().onProject().forMetric(CoreMetrics.NCLOC).withValue(i).save();
+        context.newIssue().onProject().ruleKey(RuleKey.of("foo", "bar")).save();
+      }
+    }
+  }
+
+  @ThreadSafe
+  static class LatchSensor implements Sensor {
+    final CountDownLatch latch;
+    volatile boolean concurrent = false;
+    volatile boolean done = false;
+
+    LatchSensor(CountDownLatch latch) {
+      this.latch = latch;
+    }
+
+    @Override
+    public void analyse(Project module, SensorContext context) {
+      latch.countDown();
+      try {
+        concurrent = latch.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      done = true;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  static class DependentSensor implements Sensor {
+    final List<LatchSensor> predecessors;
+    volatile boolean predecessorsDone = false;
+
+    DependentSensor(LatchSensor... predecessors) {
+      this.predecessors = Arrays.asList(predecessors);
+    }
+
+    @Override
+    public void analyse(Project module, SensorContext context) {
+      boolean done = true;
+      for (LatchSensor predecessor : predecessors) {
+        done &= predecessor.done;
+      }
+      predecessorsDone = done;
+    }
+
+    @Override
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the scanner of bytes used for UTF-8 files with the generic implementation decoding chars.
+ * The size of the generated file can be increased with -DfileMetadataBenchmark.lines=1000000
+ */
+public class FileMetadataBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger("benchmarkFileMetadata");
+  private static final int LINES = Integer.getInteger("fileMetadataBenchmark.lines", 20000);
+  private static final int ROUNDS = 3;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void benchmark() throws Exception {
+    File file = generateFile();
+    FileMetadata fileMetadata = new FileMetadata();
+
+    long scanTime = Long.MAX_VALUE;
+    long decodeTime = Long.MAX_VALUE;
+    FileMetadata.Metadata scanned = null;
+    FileMetadata.Metadata decoded = null;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.currentTimeMillis();
+      scanned = fileMetadata.read(file, Charsets.UTF_8);
+      scanTime = Math.min(scanTime, System.currentTimeMillis() - start);
+
+      start = System.currentTimeMillis();
+      decoded = fileMetadata.readChars(file, Charsets.UTF_8);
+      decodeTime = Math.min(decodeTime, System.currentTimeMillis() - start);
+    }
+    LOGGER.info(String.format("Metadata of %d lines (%d KB) : %d ms with scanner of bytes, %d ms with decoding of chars",
+      LINES, file.length() / 1024, scanTime, decodeTime));
+
+    assertThat(scanned.lines).isEqualTo(decoded.lines).isEqualTo(2 * LINES + 1);
+    assertThat(scanned.hash).isEqualTo(decoded.hash);
+    assertThat(scanned.originalLineOffsets).isEqualTo(decoded.originalLineOffsets);
+    assertThat(scanned.lineHashes).isEqualTo(decoded.lineHashes);
+  }
+
+  private File generateFile() throws Exception {
+    File file = temp.newFile();
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8)) {
+      for (int i = 0; i < LINES; i++) {
+        writer.write("    public String method" + i + "(String élément) { return élément; }\r\n\n");
+      }
+    }
+    return file;
+  }
+}
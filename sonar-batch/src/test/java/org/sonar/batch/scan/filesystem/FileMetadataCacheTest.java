@@ -0,0 +1,198 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.utils.System2;
+
+import java.io.File;
+import java.nio.charset.Charset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCacheTest {
+
+  static final long LAST_MODIFIED = 1400000000000L;
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  System2 system2 = mock(System2.class);
+  FileMetadata fileMetadata = spy(new FileMetadata());
+  File cacheFile;
+  File sourceFile;
+
+  @Before
+  public void setUp() throws Exception {
+    when(system2.now()).thenReturn(LAST_MODIFIED + 60000L);
+    cacheFile = new File(temp.newFolder(), "metadata/cache");
+    sourceFile = writeSource("Foo.java", "foo\n\nbar");
+  }
+
+  @Test
+  public void reuse_metadata_of_unchanged_file() throws Exception {
+    FileMetadata.Metadata computed = readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    FileMetadata.Metadata cached = readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+    assertThat(cached.lines).isEqualTo(3).isEqualTo(computed.lines);
+    assertThat(cached.nonBlankLines).isEqualTo(2);
+    assertThat(cached.hash).isEqualTo(computed.hash);
+    assertThat(cached.empty).isFalse();
+    assertThat(cached.originalLineOffsets).containsExactly(0L, 4L, 5L);
+    assertThat(cached.lineHashes[0]).isEqualTo(computed.lineHashes[0]);
+    // blank line
+    assertThat(cached.lineHashes[1]).isNull();
+    assertThat(cached.lineHashes[2]).isEqualTo(computed.lineHashes[2]);
+  }
+
+  @Test
+  public void recompute_metadata_of_modified_file() throws Exception {
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    writeSource("Foo.java", "foo\nbaz\nbar");
+    FileMetadata.Metadata metadata = readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+    assertThat(metadata.nonBlankLines).isEqualTo(3);
+  }
+
+  @Test
+  public void recompute_metadata_if_encoding_changed() throws Exception {
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+    readAndSave(false, "Foo.java", sourceFile, Charsets.ISO_8859_1);
+
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void do_not_cache_recently_modified_file() throws Exception {
+    when(system2.now()).thenReturn(LAST_MODIFIED + FileMetadataCache.MTIME_GRANULARITY_MS - 1L);
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void force_refresh() throws Exception {
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+    readAndSave(true, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void remove_files_that_are_not_read_anymore() throws Exception {
+    File barFile = writeSource("Bar.java", "bar");
+    FileMetadataCache cache = newCache(false);
+    cache.read("Foo.java", sourceFile, Charsets.UTF_8);
+    cache.read("Bar.java", barFile, Charsets.UTF_8);
+    cache.save();
+
+    // Bar.java is not analyzed anymore
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+
+    readAndSave(false, "Bar.java", barFile, Charsets.UTF_8);
+    verify(fileMetadata, times(3)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void use_prefetched_metadata() throws Exception {
+    FileMetadataCache cache = newCache(false);
+    cache.prefetch("Foo.java", sourceFile, Charsets.UTF_8);
+    FileMetadata.Metadata metadata = cache.read("Foo.java", sourceFile, Charsets.UTF_8);
+
+    assertThat(metadata.lines).isEqualTo(3);
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void do_not_prefetch_cached_file() throws Exception {
+    readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    FileMetadataCache cache = newCache(false);
+    cache.prefetch("Foo.java", sourceFile, Charsets.UTF_8);
+    cache.read("Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void recompute_prefetched_metadata_if_encoding_changed() throws Exception {
+    FileMetadataCache cache = newCache(false);
+    cache.prefetch("Foo.java", sourceFile, Charsets.ISO_8859_1);
+    cache.read("Foo.java", sourceFile, Charsets.UTF_8);
+
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void do_not_save_prefetched_files_that_are_not_read() throws Exception {
+    File barFile = writeSource("Bar.java", "bar");
+    FileMetadataCache cache = newCache(false);
+    cache.prefetch("Bar.java", barFile, Charsets.UTF_8);
+    cache.save();
+
+    readAndSave(false, "Bar.java", barFile, Charsets.UTF_8);
+    verify(fileMetadata, times(2)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void ignore_corrupted_cache() throws Exception {
+    FileUtils.write(cacheFile, "not a cache");
+
+    FileMetadata.Metadata metadata = readAndSave(false, "Foo.java", sourceFile, Charsets.UTF_8);
+
+    assertThat(metadata.lines).isEqualTo(3);
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+  }
+
+  private File writeSource(String name, String content) throws Exception {
+    File file = new File(temp.getRoot(), name);
+    FileUtils.write(file, content, Charsets.UTF_8);
+    file.setLastModified(LAST_MODIFIED);
+    return file;
+  }
+
+  private FileMetadataCache newCache(boolean forceRefresh) {
+    return new FileMetadataCache(cacheFile, forceRefresh, fileMetadata, system2);
+  }
+
+  private FileMetadata.Metadata readAndSave(boolean forceRefresh, String relativePath, File file, Charset encoding) {
+    FileMetadataCache cache = newCache(forceRefresh);
+    FileMetadata.Metadata metadata = cache.read(relativePath, file, encoding);
+    cache.save();
+    return metadata;
+  }
+}
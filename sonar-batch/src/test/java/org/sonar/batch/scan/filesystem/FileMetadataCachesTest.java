@@ -0,0 +1,165 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.batch.scan.filesystem;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.api.utils.System2;
+import org.sonar.batch.bootstrap.DefaultAnalysisMode;
+import org.sonar.batch.bootstrap.GlobalSettings;
+import org.sonar.batch.protocol.input.ProjectRepositories;
+import org.sonar.home.cache.FileCache;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileMetadataCachesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  FileMetadata fileMetadata = spy(new FileMetadata());
+  System2 system2 = mock(System2.class);
+  FileCache fileCache = mock(FileCache.class);
+  Settings settings = new Settings();
+  GlobalSettings globalSettings = mock(GlobalSettings.class);
+  ProjectDefinition root;
+  ProjectDefinition moduleA;
+  ProjectDefinition moduleB;
+  File fileOfB;
+  File userCache;
+  FileMetadataCaches caches;
+
+  @Before
+  public void setUp() throws Exception {
+    userCache = temp.newFolder();
+    when(fileCache.getDir()).thenReturn(userCache);
+    when(system2.now()).thenReturn(System.currentTimeMillis() + 60000L);
+    when(globalSettings.getDefinitions()).thenReturn(new PropertyDefinitions());
+    when(globalSettings.getProperties()).thenReturn(Collections.<String, String>emptyMap());
+
+    root = ProjectDefinition.create().setKey("root").setBaseDir(temp.newFolder());
+    moduleA = newModule("a");
+    moduleB = newModule("b");
+    root.addSubProject(moduleA).addSubProject(moduleB);
+    fileOfB = new File(moduleB.getBaseDir(), "src/Foo.java");
+    FileUtils.write(fileOfB, "foo\nbar", Charsets.UTF_8);
+    FileUtils.write(new File(moduleB.getBaseDir(), "src/.hidden/Bar.java"), "bar", Charsets.UTF_8);
+  }
+
+  @After
+  public void tearDown() {
+    if (caches != null) {
+      caches.stop();
+    }
+  }
+
+  @Test
+  public void one_cache_file_per_module() {
+    caches = newCaches();
+
+    FileMetadataCache cache = caches.forModule("a", moduleA.getBaseDir());
+
+    assertThat(cache.cacheFile().getParentFile()).isEqualTo(new File(userCache, "_metadata"));
+    assertThat(cache.cacheFile()).isNotEqualTo(caches.forModule("b", moduleB.getBaseDir()).cacheFile());
+  }
+
+  @Test
+  public void no_prefetching_by_default() {
+    caches = newCaches();
+
+    caches.forModule("a", moduleA.getBaseDir());
+    FileMetadataCache cache = caches.forModule("b", moduleB.getBaseDir());
+    verify(fileMetadata, never()).read(any(File.class), any(Charset.class));
+
+    cache.read("src/Foo.java", fileOfB, Charsets.UTF_8);
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void prefetch_next_modules() {
+    settings.setProperty(FileMetadataCaches.PARALLEL_MODULES_PROPERTY, 1);
+    root.setProperty(CoreProperties.ENCODING_PROPERTY, "UTF-8");
+    caches = newCaches();
+
+    // files of b are read while a is analyzed
+    caches.forModule("a", moduleA.getBaseDir());
+    FileMetadataCache cache = caches.forModule("b", moduleB.getBaseDir());
+    verify(fileMetadata, times(1)).read(any(File.class), eq(Charsets.UTF_8));
+
+    FileMetadata.Metadata metadata = cache.read("src/Foo.java", fileOfB, Charsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(2);
+    verify(fileMetadata, times(1)).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void do_not_prefetch_excluded_files() {
+    settings.setProperty(FileMetadataCaches.PARALLEL_MODULES_PROPERTY, 1);
+    moduleB.setProperty(CoreProperties.PROJECT_EXCLUSIONS_PROPERTY, "**/Foo.java");
+    caches = newCaches();
+
+    caches.forModule("a", moduleA.getBaseDir());
+    caches.forModule("b", moduleB.getBaseDir());
+
+    verify(fileMetadata, never()).read(any(File.class), any(Charset.class));
+  }
+
+  @Test
+  public void do_not_prefetch_module_being_analyzed() {
+    settings.setProperty(FileMetadataCaches.PARALLEL_MODULES_PROPERTY, 1);
+    caches = newCaches();
+
+    caches.forModule("b", moduleB.getBaseDir());
+
+    verify(fileMetadata, never()).read(any(File.class), any(Charset.class));
+  }
+
+  private ProjectDefinition newModule(String key) throws Exception {
+    File baseDir = temp.newFolder(key);
+    return ProjectDefinition.create().setKey(key).setBaseDir(baseDir).addSources("src");
+  }
+
+  private FileMetadataCaches newCaches() {
+    return new FileMetadataCaches(new ProjectReactor(root), settings, globalSettings, new ProjectRepositories(), mock(DefaultAnalysisMode.class),
+      fileCache, new PathResolver(), fileMetadata, system2);
+  }
+}
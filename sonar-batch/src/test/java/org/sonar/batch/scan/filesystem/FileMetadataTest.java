@@ -255,4 +255,34 @@ public class FileMetadataTest {
     assertThat(hash1).isNotEqualTo(hash2);
   }
 
+  @Test
+  public void same_metadata_with_or_without_decoding_chars() throws Exception {
+    String[] contents = {"", "\uFEFF", "foo\r\nbar", "foo\rbar\r", "\r\r\n\n", " f\u00f6o \u3000\r\n\t\u00e0\n", "a\u0000b", "f\uD83D\uDE00o\nbar"};
+    for (String content : contents) {
+      File file = temp.newFile();
+      FileUtils.write(file, content, Charsets.UTF_8);
+
+      FileMetadata.Metadata scanned = new FileMetadata().read(file, Charsets.UTF_8);
+      FileMetadata.Metadata decoded = new FileMetadata().readChars(file, Charsets.UTF_8);
+      assertThat(scanned.lines).as(content).isEqualTo(decoded.lines);
+      assertThat(scanned.nonBlankLines).as(content).isEqualTo(decoded.nonBlankLines);
+      assertThat(scanned.hash).as(content).isEqualTo(decoded.hash);
+      assertThat(scanned.originalLineOffsets).as(content).isEqualTo(decoded.originalLineOffsets);
+      assertThat(scanned.lineHashes).as(content).isEqualTo(decoded.lineHashes);
+      assertThat(scanned.empty).as(content).isEqualTo(decoded.empty);
+    }
+  }
+
+  @Test
+  public void non_ascii_chars_of_ascii_file() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "f\u00f6o\nbar", Charsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().read(tempFile, Charsets.US_ASCII);
+    assertThat(metadata.lines).isEqualTo(2);
+    // 2 bytes of \u00f6 are replaced by 2 chars
+    assertThat(metadata.originalLineOffsets).containsOnly(0, 5);
+    assertThat(metadata.hash).isEqualTo(new FileMetadata().readChars(tempFile, Charsets.US_ASCII).hash);
+  }
+
 }
@@ -19,27 +19,41 @@
  */
 package org.sonar.batch.scan.filesystem;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.batch.bootstrap.DefaultAnalysisMode;
 
+import java.io.File;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class InputFileBuilderFactoryTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void create_builder() throws Exception {
     PathResolver pathResolver = new PathResolver();
     LanguageDetectionFactory langDetectionFactory = mock(LanguageDetectionFactory.class, Mockito.RETURNS_MOCKS);
     StatusDetectionFactory statusDetectionFactory = mock(StatusDetectionFactory.class, Mockito.RETURNS_MOCKS);
     DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
+    File baseDir = temp.newFolder();
+    when(fs.baseDir()).thenReturn(baseDir);
     DefaultAnalysisMode analysisMode = mock(DefaultAnalysisMode.class);
+    FileMetadataCaches metadataCaches = mock(FileMetadataCaches.class);
+    FileMetadataCache metadataCache = mock(FileMetadataCache.class);
+    when(metadataCaches.forModule("struts", baseDir)).thenReturn(metadataCache);
 
     InputFileBuilderFactory factory = new InputFileBuilderFactory(ProjectDefinition.create().setKey("struts"), pathResolver, langDetectionFactory,
-      statusDetectionFactory, analysisMode, new Settings());
+      statusDetectionFactory, analysisMode, new Settings(), metadataCaches);
     InputFileBuilder builder = factory.create(fs);
 
     assertThat(builder.langDetection()).isNotNull();
@@ -47,5 +61,6 @@ public class InputFileBuilderFactoryTest {
     assertThat(builder.pathResolver()).isSameAs(pathResolver);
     assertThat(builder.fs()).isSameAs(fs);
     assertThat(builder.moduleKey()).isEqualTo("struts");
+    assertThat(builder.metadataCache()).isSameAs(metadataCache);
   }
 }
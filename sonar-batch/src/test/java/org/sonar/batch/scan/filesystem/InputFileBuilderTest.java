@@ -29,6 +29,7 @@ import org.sonar.api.batch.fs.internal.DeprecatedDefaultInputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.utils.PathUtils;
+import org.sonar.api.utils.System2;
 import org.sonar.batch.bootstrap.DefaultAnalysisMode;
 
 import java.io.File;
@@ -67,7 +68,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode, new Settings());
+      langDetection, statusDetection, fs, analysisMode, new Settings(), metadataCache());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -93,7 +94,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode, new Settings());
+      langDetection, statusDetection, fs, analysisMode, new Settings(), metadataCache());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
 
     assertThat(inputFile).isNull();
@@ -113,7 +114,7 @@ public class InputFileBuilderTest {
     when(langDetection.language(any(InputFile.class))).thenReturn(null);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode, new Settings());
+      langDetection, statusDetection, fs, analysisMode, new Settings(), metadataCache());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -140,7 +141,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode, new Settings());
+      langDetection, statusDetection, fs, analysisMode, new Settings(), metadataCache());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -169,7 +170,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, analysisMode, new Settings());
+      langDetection, statusDetection, fs, analysisMode, new Settings(), metadataCache());
     DeprecatedDefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.complete(inputFile, InputFile.Type.MAIN);
 
@@ -178,4 +179,8 @@ public class InputFileBuilderTest {
     assertThat(inputFile.deprecatedKey()).isEqualTo("struts:foo/Bar.php");
 
   }
+
+  private FileMetadataCache metadataCache() throws Exception {
+    return new FileMetadataCache(new File(temp.newFolder(), "metadata"), false, new FileMetadata(), System2.INSTANCE);
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.db;
+
+import com.google.common.collect.Lists;
+import org.apache.ibatis.executor.BatchResult;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.core.persistence.BatchSession;
+import org.sonar.core.persistence.DbSession;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ * Persists issues and their changes in bulk. Rows are buffered by type of statement, so that each
+ * flush sends a few large JDBC batches instead of switching of prepared statement on every row,
+ * which is the case when inserts and updates of issues and changes are interleaved.
+ * <p/>
+ * Updates that must not override the changes made by end-users in the meantime
+ * (see {@link #updateIfBeforeSelectedDate(DefaultIssue, IssueDto)}) are verified with the
+ * row counts of the JDBC batch, then the conflicts are resolved together.
+ * <p/>
+ * Call {@link #flush()} to persist the remaining rows. The session is committed by this class.
+ */
+public class IssueBulkWriter {
+
+  /**
+   * {@link BatchSession} is committed when reaching {@link BatchSession#MAX_BATCH_SIZE} statements, and
+   * the row counts of the statements are then lost. Optimistic updates are executed by smaller chunks.
+   */
+  static final int CHECKED_UPDATES_PER_FLUSH = BatchSession.MAX_BATCH_SIZE - 1;
+
+  private static final String CHECKED_UPDATE_STATEMENT = IssueMapper.class.getName() + ".updateIfBeforeSelectedDate";
+
+  private final DbSession session;
+  private final IssueMapper issueMapper;
+  private final IssueChangeMapper changeMapper;
+  private final UpdateConflictResolver conflictResolver;
+  private final int bufferSize;
+
+  private final List<IssueDto> inserts = Lists.newArrayList();
+  private final List<IssueDto> updates = Lists.newArrayList();
+  private final List<IssueDto> checkedUpdates = Lists.newArrayList();
+  private final Map<String, DefaultIssue> checkedIssuesByKey = newHashMap();
+  private final List<IssueChangeDto> changes = Lists.newArrayList();
+  private int bufferedRows = 0;
+
+  public IssueBulkWriter(DbSession session, UpdateConflictResolver conflictResolver) {
+    this(session, conflictResolver, BatchSession.MAX_BATCH_SIZE);
+  }
+
+  IssueBulkWriter(DbSession session, UpdateConflictResolver conflictResolver, int bufferSize) {
+    this.session = session;
+    this.issueMapper = session.getMapper(IssueMapper.class);
+    this.changeMapper = session.getMapper(IssueChangeMapper.class);
+    this.conflictResolver = conflictResolver;
+    this.bufferSize = bufferSize;
+  }
+
+  public void insert(IssueDto issue) {
+    inserts.add(issue);
+    buffered();
+  }
+
+  public void update(IssueDto issue) {
+    updates.add(issue);
+    buffered();
+  }
+
+  /**
+   * The issue is not updated if it has been changed by end-user after being selected. In this
+   * case the fields are merged by {@link UpdateConflictResolver}.
+   */
+  public void updateIfBeforeSelectedDate(DefaultIssue issue, IssueDto dto) {
+    checkedUpdates.add(dto);
+    checkedIssuesByKey.put(dto.getKee(), issue);
+    buffered();
+  }
+
+  public void insertChange(IssueChangeDto change) {
+    changes.add(change);
+    buffered();
+  }
+
+  public void flush() {
+    for (IssueDto dto : inserts) {
+      issueMapper.insert(dto);
+    }
+    for (IssueDto dto : updates) {
+      issueMapper.update(dto);
+    }
+    for (IssueChangeDto dto : changes) {
+      changeMapper.insert(dto);
+    }
+    // results of these statements are not needed
+    session.flushStatements();
+
+    for (List<IssueDto> chunk : Lists.partition(checkedUpdates, CHECKED_UPDATES_PER_FLUSH)) {
+      executeCheckedUpdates(chunk);
+    }
+    session.commit();
+
+    inserts.clear();
+    updates.clear();
+    changes.clear();
+    checkedUpdates.clear();
+    checkedIssuesByKey.clear();
+    bufferedRows = 0;
+  }
+
+  private void executeCheckedUpdates(List<IssueDto> dtos) {
+    List<DefaultIssue> conflicts = Lists.newArrayList();
+    for (IssueDto dto : dtos) {
+      // the real number of updated rows is returned only if session is not in batch mode
+      if (issueMapper.updateIfBeforeSelectedDate(dto) == 0) {
+        conflicts.add(checkedIssuesByKey.get(dto.getKee()));
+      }
+    }
+    for (BatchResult result : session.flushStatements()) {
+      if (CHECKED_UPDATE_STATEMENT.equals(result.getMappedStatement().getId())) {
+        int[] updateCounts = result.getUpdateCounts();
+        List<Object> parameters = result.getParameterObjects();
+        for (int i = 0; i < updateCounts.length; i++) {
+          if (updateCounts[i] == 0) {
+            conflicts.add(checkedIssuesByKey.get(((IssueDto) parameters.get(i)).getKee()));
+          }
+        }
+      }
+    }
+    if (!conflicts.isEmpty()) {
+      // End-user and scan changed the issues at the same time.
+      conflictResolver.resolve(conflicts, issueMapper);
+    }
+  }
+
+  private void buffered() {
+    bufferedRows++;
+    if (bufferedRows >= bufferSize) {
+      flush();
+    }
+  }
+}
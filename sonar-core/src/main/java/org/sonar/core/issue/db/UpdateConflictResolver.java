@@ -20,10 +20,15 @@
 package org.sonar.core.issue.db;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.issue.internal.DefaultIssue;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * Support concurrent modifications on issues made by analysis and users at the same time
  * See https://jira.codehaus.org/browse/SONAR-4309
@@ -42,6 +47,27 @@ public class UpdateConflictResolver {
     }
   }
 
+  /**
+   * Same as {@link #resolve(DefaultIssue, IssueMapper)} but issues are reloaded in a single request.
+   * The number of issues must be compatible with the maximum size of SQL IN clauses.
+   */
+  public void resolve(Collection<DefaultIssue> issues, IssueMapper mapper) {
+    Map<String, DefaultIssue> issuesByKey = Maps.newHashMap();
+    for (DefaultIssue issue : issues) {
+      LOG.debug("Resolve conflict on issue " + issue.key());
+      issuesByKey.put(issue.key(), issue);
+    }
+    if (issuesByKey.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    for (IssueDto dbIssue : mapper.selectByKeys(Lists.newArrayList(issuesByKey.keySet()))) {
+      DefaultIssue issue = issuesByKey.get(dbIssue.getKee());
+      mergeFields(dbIssue, issue);
+      mapper.update(IssueDto.toDtoForUpdate(issue, now));
+    }
+  }
+
   @VisibleForTesting
   void mergeFields(IssueDto dbIssue, DefaultIssue issue) {
     resolveAssignee(dbIssue, issue);
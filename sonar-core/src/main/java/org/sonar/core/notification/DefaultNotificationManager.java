@@ -31,16 +31,17 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.api.notifications.NotificationManager;
-import org.sonar.api.utils.SonarException;
 import org.sonar.core.notification.db.NotificationQueueDao;
 import org.sonar.core.notification.db.NotificationQueueDto;
 import org.sonar.core.properties.PropertiesDao;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -97,20 +98,40 @@ public class DefaultNotificationManager implements NotificationManager {
    * Give the notification queue so that it can be processed
    */
   public Notification getFromQueue() {
-    int batchSize = 1;
-    List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(batchSize);
+    List<Notification> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Give the oldest notifications of the queue so that they can be processed. They are removed from
+   * the queue with a single select and a single batch of deletes.
+   *
+   * @param count maximum number of notifications
+   * @return the notifications, in the order they were scheduled. Notifications that can't be read anymore
+   * are ignored, so the list may be empty although the queue is not.
+   * @since 5.1
+   */
+  public List<Notification> getFromQueue(int count) {
+    List<NotificationQueueDto> notificationDtos = notificationQueueDao.findOldest(count);
     if (notificationDtos.isEmpty()) {
-      return null;
+      return Collections.emptyList();
     }
     notificationQueueDao.delete(notificationDtos);
 
-    return convertToNotification(notificationDtos);
+    List<Notification> notifications = Lists.newArrayListWithCapacity(notificationDtos.size());
+    for (NotificationQueueDto notificationDto : notificationDtos) {
+      Notification notification = convertToNotification(notificationDto);
+      if (notification != null) {
+        notifications.add(notification);
+      }
+    }
+    return notifications;
   }
 
-  private Notification convertToNotification(List<NotificationQueueDto> notifications) {
+  @CheckForNull
+  private Notification convertToNotification(NotificationQueueDto notification) {
     try {
-      // If batchSize is increased then we should return a list instead of a single element
-      return notifications.get(0).toNotification();
+      return notification.toNotification();
     } catch (InvalidClassException e) {
       // SONAR-4739
       if (!alreadyLoggedDeserializationIssue) {
@@ -118,11 +139,10 @@ public class DefaultNotificationManager implements NotificationManager {
         alreadyLoggedDeserializationIssue = true;
       }
       return null;
-    } catch (IOException e) {
-      throw new SonarException(UNABLE_TO_READ_NOTIFICATION, e);
-
-    } catch (ClassNotFoundException e) {
-      throw new SonarException(UNABLE_TO_READ_NOTIFICATION, e);
+    } catch (IOException | ClassNotFoundException e) {
+      // do not fail, other notifications of the batch are already removed from queue
+      LOG.error(UNABLE_TO_READ_NOTIFICATION + " " + notification.getId(), e);
+      return null;
     }
   }
 
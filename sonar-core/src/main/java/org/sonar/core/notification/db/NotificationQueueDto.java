@@ -20,23 +20,44 @@
 
 package org.sonar.core.notification.db;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.sonar.api.notifications.Notification;
 import org.sonar.api.utils.SonarException;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
+ * Notification waiting in queue. Since 5.1 the notifications that are only made of a type and of fields are
+ * stored in a compact and versioned format, which does not depend on the serialized form of the Java class, so
+ * that pending notifications are not lost during upgrades (see SONAR-4739). Other notifications, for example
+ * subclasses with their own attributes, are still stored with Java serialization.
+ *
  * @since 3.7.1
  */
 public class NotificationQueueDto {
 
+  private static final byte[] FORMAT_HEADER = {'N', 'Q', 'D'};
+
+  @VisibleForTesting
+  static final int FORMAT_VERSION = 1;
+
   private Long id;
   private byte[] data;
 
@@ -66,9 +87,13 @@ public class NotificationQueueDto {
   public static NotificationQueueDto toNotificationQueueDto(Notification notification) {
     ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
     try {
-      ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
-      objectOutputStream.writeObject(notification);
-      objectOutputStream.close();
+      if (hasOnlyFields(notification.getClass())) {
+        writeCompact(notification, new DataOutputStream(byteArrayOutputStream));
+      } else {
+        ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream);
+        objectOutputStream.writeObject(notification);
+        objectOutputStream.close();
+      }
       return new NotificationQueueDto().setData(byteArrayOutputStream.toByteArray());
 
     } catch (IOException e) {
@@ -83,6 +108,9 @@ public class NotificationQueueDto {
     if (this.data == null) {
       return null;
     }
+    if (isCompact(this.data)) {
+      return readCompact(new DataInputStream(new ByteArrayInputStream(this.data, FORMAT_HEADER.length, this.data.length - FORMAT_HEADER.length)));
+    }
     ByteArrayInputStream byteArrayInputStream = null;
     try {
       byteArrayInputStream = new ByteArrayInputStream(this.data);
@@ -95,4 +123,93 @@ public class NotificationQueueDto {
     }
   }
 
+  /**
+   * The compact format can be used only if the state of the notification is fully stored in its fields
+   */
+  private static boolean hasOnlyFields(Class<?> notificationClass) {
+    for (Class<?> c = notificationClass; !Notification.class.equals(c); c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  private static boolean isCompact(byte[] data) {
+    return data.length > FORMAT_HEADER.length && Arrays.equals(FORMAT_HEADER, Arrays.copyOf(data, FORMAT_HEADER.length));
+  }
+
+  private static void writeCompact(Notification notification, DataOutputStream output) throws IOException {
+    output.write(FORMAT_HEADER);
+    output.writeByte(FORMAT_VERSION);
+    writeString(output, notification.getClass().getName());
+    writeString(output, notification.getType());
+    Map<String, String> fields = notification.getFieldValues();
+    output.writeInt(fields.size());
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      writeString(output, field.getKey());
+      writeString(output, field.getValue());
+    }
+    output.close();
+  }
+
+  private static Notification readCompact(DataInputStream input) throws IOException {
+    int version = input.readUnsignedByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported format of notification: " + version);
+    }
+    String className = readString(input);
+    String type = readString(input);
+    Notification notification = newNotification(className, type);
+    int fields = input.readInt();
+    for (int i = 0; i < fields; i++) {
+      notification.setFieldValue(readString(input), readString(input));
+    }
+    return notification;
+  }
+
+  /**
+   * The class of the notification is restored when it still exists. Otherwise, as channels
+   * only rely on type and fields, a plain {@link Notification} is delivered.
+   */
+  private static Notification newNotification(@Nullable String className, String type) {
+    if (className != null && !Notification.class.getName().equals(className)) {
+      try {
+        Class<?> notificationClass = Class.forName(className, true, NotificationQueueDto.class.getClassLoader());
+        if (Notification.class.isAssignableFrom(notificationClass)) {
+          Notification notification = (Notification) notificationClass.getConstructor().newInstance();
+          if (type.equals(notification.getType())) {
+            return notification;
+          }
+        }
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // class has been removed or changed
+      }
+    }
+    return new Notification(type);
+  }
+
+  private static void writeString(DataOutputStream output, @Nullable String s) throws IOException {
+    if (s == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  @CheckForNull
+  private static String readString(DataInputStream input) throws IOException {
+    int length = input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
 }
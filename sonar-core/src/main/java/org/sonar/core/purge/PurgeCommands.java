@@ -163,32 +163,32 @@ class PurgeCommands {
 
     List<List<Long>> snapshotIdsPartition = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
 
-    deleteSnapshotDependencies(snapshotIdsPartition);
+    deleteSnapshotDependencies(snapshotIds, snapshotIdsPartition);
 
-    deleteSnapshotDuplications(snapshotIdsPartition);
+    deleteSnapshotDuplications(snapshotIds, snapshotIdsPartition);
 
     profiler.start("deleteSnapshotEvents (events)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       purgeMapper.deleteSnapshotEvents(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
 
     profiler.start("deleteSnapshotMeasures (project_measures)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       purgeMapper.deleteSnapshotMeasures(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
 
-    deleteSnapshotGraphs(snapshotIdsPartition);
+    deleteSnapshotGraphs(snapshotIds, snapshotIdsPartition);
 
     profiler.start("deleteSnapshot (snapshots)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       purgeMapper.deleteSnapshot(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
   }
 
   void purgeSnapshots(final PurgeSnapshotQuery query) {
@@ -200,11 +200,11 @@ class PurgeCommands {
     // note that events are not deleted
     List<List<Long>> snapshotIdsPartition = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
 
-    deleteSnapshotDependencies(snapshotIdsPartition);
+    deleteSnapshotDependencies(snapshotIds, snapshotIdsPartition);
 
-    deleteSnapshotDuplications(snapshotIdsPartition);
+    deleteSnapshotDuplications(snapshotIds, snapshotIdsPartition);
 
-    deleteSnapshotGraphs(snapshotIdsPartition);
+    deleteSnapshotGraphs(snapshotIds, snapshotIdsPartition);
 
     profiler.start("deleteSnapshotWastedMeasures (project_measures)");
     List<Long> metricIdsWithoutHistoricalData = purgeMapper.selectMetricIdsWithoutHistoricalData();
@@ -212,35 +212,35 @@ class PurgeCommands {
       purgeMapper.deleteSnapshotWastedMeasures(partSnapshotIds, metricIdsWithoutHistoricalData);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
 
     profiler.start("updatePurgeStatusToOne (snapshots)");
-    for (Long snapshotId : snapshotIds) {
-      purgeMapper.updatePurgeStatusToOne(snapshotId);
+    for (List<Long> partSnapshotIds : snapshotIdsPartition) {
+      purgeMapper.updatePurgeStatusToOne(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
   }
 
-  private void deleteSnapshotGraphs(final List<List<Long>> snapshotIdsPartition) {
+  private void deleteSnapshotGraphs(final List<Long> snapshotIds, final List<List<Long>> snapshotIdsPartition) {
     profiler.start("deleteSnapshotGraphs (graphs)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       purgeMapper.deleteSnapshotGraphs(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
   }
 
-  private void deleteSnapshotDuplications(final List<List<Long>> snapshotIdsPartition) {
+  private void deleteSnapshotDuplications(final List<Long> snapshotIds, final List<List<Long>> snapshotIdsPartition) {
     profiler.start("deleteSnapshotDuplications (duplications_index)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       purgeMapper.deleteSnapshotDuplications(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
   }
 
-  private void deleteSnapshotDependencies(final List<List<Long>> snapshotIdsPartition) {
+  private void deleteSnapshotDependencies(final List<Long> snapshotIds, final List<List<Long>> snapshotIdsPartition) {
     profiler.start("deleteSnapshotDependencies (dependencies)");
     for (List<Long> partSnapshotIds : snapshotIdsPartition) {
       // SONAR-4586
@@ -251,7 +251,7 @@ class PurgeCommands {
       purgeMapper.deleteSnapshotDependenciesProjectSnapshotId(partSnapshotIds);
     }
     session.commit();
-    profiler.stop();
+    profiler.stop(snapshotIds.size());
   }
 
   public void deleteFileSources(String rootUuid) {
@@ -42,6 +42,13 @@ import java.util.List;
  */
 public class PurgeDao {
   private static final Logger LOG = LoggerFactory.getLogger(PurgeDao.class);
+
+  /**
+   * Number of project snapshots purged together. It bounds the number of component snapshot ids
+   * loaded in memory at the same time.
+   */
+  private static final int PROJECT_SNAPSHOTS_PER_BATCH = 100;
+
   private final MyBatis mybatis;
   private final ResourceDao resourceDao;
   private final System2 system2;
@@ -112,21 +119,23 @@ public class PurgeDao {
         .setIslast(false)
         .setNotPurged(true)
     );
-    for (final Long projectSnapshotId : projectSnapshotIds) {
-      LOG.info("<- Clean snapshot " + projectSnapshotId);
+    // Snapshots are purged by batches instead of one by one, so that each delete
+    // statement applies to the component snapshots of many analyses
+    for (List<Long> batch : Lists.partition(projectSnapshotIds, PROJECT_SNAPSHOTS_PER_BATCH)) {
+      LOG.info("<- Clean " + batch.size() + " snapshots");
       if (!ArrayUtils.isEmpty(scopesWithoutHistoricalData)) {
         PurgeSnapshotQuery query = PurgeSnapshotQuery.create()
           .setIslast(false)
           .setScopes(scopesWithoutHistoricalData)
-          .setRootSnapshotId(projectSnapshotId);
+          .setRootSnapshotIds(batch);
         purgeCommands.deleteSnapshots(query);
       }
 
-      PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(projectSnapshotId).setNotPurged(true);
+      PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotIds(batch).setNotPurged(true);
       purgeCommands.purgeSnapshots(query);
 
       // must be executed at the end for reentrance
-      purgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true));
+      purgeCommands.purgeSnapshots(batch);
     }
   }
 
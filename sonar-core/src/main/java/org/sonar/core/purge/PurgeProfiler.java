@@ -34,6 +34,7 @@ import java.util.Map.Entry;
 public class PurgeProfiler {
 
   private Map<String, Long> durations = new HashMap<String, Long>();
+  private Map<String, Long> counts = new HashMap<String, Long>();
   private long startTime;
   private String currentTable;
   private final Clock clock;
@@ -49,6 +50,7 @@ public class PurgeProfiler {
 
   public void reset() {
     durations.clear();
+    counts.clear();
   }
 
   void start(String table) {
@@ -66,6 +68,16 @@ public class PurgeProfiler {
     durations.put(currentTable, cumulatedDuration + (clock.now() - startTime));
   }
 
+  /**
+   * Same as {@link #stop()}, but also records the number of ids (snapshots, components) processed by the
+   * step, in order to report throughput. Number of deleted rows is not available in JDBC batch mode.
+   */
+  void stop(long processedIds) {
+    stop();
+    Long cumulatedCount = counts.get(currentTable);
+    counts.put(currentTable, (cumulatedCount == null ? 0L : cumulatedCount) + processedIds);
+  }
+
   public void dump(long totalTime, Logger logger) {
     List<Entry<String, Long>> data = new ArrayList<Map.Entry<String, Long>>(durations.entrySet());
     Collections.sort(data, new Comparator<Entry<String, Long>>() {
@@ -79,6 +91,10 @@ public class PurgeProfiler {
       StringBuilder sb = new StringBuilder();
       sb.append("   o ").append(entry.getKey()).append(": ").append(TimeUtils.formatDuration(entry.getValue()))
           .append(" (").append((int) (entry.getValue() / percent)).append("%)");
+      Long count = counts.get(entry.getKey());
+      if (count != null && count > 0L) {
+        sb.append(" - ").append(count).append(" ids, ").append(1000L * count / Math.max(entry.getValue(), 1L)).append(" ids/s");
+      }
       logger.info(sb.toString());
     }
   }
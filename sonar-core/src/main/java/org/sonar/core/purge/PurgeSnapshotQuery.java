@@ -19,10 +19,13 @@
  */
 package org.sonar.core.purge;
 
+import java.util.List;
+
 public final class PurgeSnapshotQuery {
   private Long id;
   private Long rootProjectId;
   private Long rootSnapshotId;
+  private List<Long> rootSnapshotIds;
   private Long resourceId;
   private String[] scopes;
   private String[] qualifiers;
@@ -110,6 +113,18 @@ public final class PurgeSnapshotQuery {
     return this;
   }
 
+  public List<Long> getRootSnapshotIds() {
+    return rootSnapshotIds;
+  }
+
+  /**
+   * Maximum size is 1000 ids, because of limitations of Oracle and MsSQL on the number of parameters
+   */
+  public PurgeSnapshotQuery setRootSnapshotIds(List<Long> rootSnapshotIds) {
+    this.rootSnapshotIds = rootSnapshotIds;
+    return this;
+  }
+
   public Long getResourceId() {
     return resourceId;
   }
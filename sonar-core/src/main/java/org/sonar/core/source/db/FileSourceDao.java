@@ -65,6 +65,30 @@ public class FileSourceDao implements BatchComponent, ServerComponent, DaoCompon
     }
   }
 
+  /**
+   * Content of FILE_SOURCES.BINARY_DATA, null if the file does not exist or if its
+   * sources are still stored in the CSV format of FILE_SOURCES.DATA.
+   * @see FileSourceData
+   */
+  @CheckForNull
+  public byte[] selectBinaryData(String fileUuid) {
+    DbSession dbSession = mybatis.openSession(false);
+    Connection connection = dbSession.getConnection();
+    PreparedStatement pstmt = null;
+    ResultSet rs = null;
+    try {
+      pstmt = connection.prepareStatement("SELECT binary_data FROM file_sources WHERE file_uuid = ?");
+      pstmt.setString(1, fileUuid);
+      rs = pstmt.executeQuery();
+      return rs.next() ? rs.getBytes(1) : null;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to read FILE_SOURCES.BINARY_DATA of file " + fileUuid, e);
+    } finally {
+      DbUtils.closeQuietly(connection, pstmt, rs);
+      MyBatis.closeQuietly(dbSession);
+    }
+  }
+
   public <T> void readLineHashesStream(DbSession dbSession, String fileUuid, Function<Reader, T> function) {
     readColumnStream(dbSession, fileUuid, function, "line_hashes");
   }
@@ -0,0 +1,265 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source.db;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary columnar format of FILE_SOURCES.BINARY_DATA. It replaces the CSV format of FILE_SOURCES.DATA.
+ * <p/>
+ * Each column (SCM author, coverage, highlighting, source, ...) is encoded and compressed independently, so
+ * that a single column can be read without decoding the others. The columns are identified by the
+ * indices {@link FileSourceDto#CSV_INDEX_SCM_REVISION}, ..., {@link FileSourceDto#CSV_INDEX_DUPLICATIONS}
+ * and {@link #SOURCE_INDEX}.
+ * <p/>
+ * Layout:
+ * <ul>
+ *   <li>version of format (byte)</li>
+ *   <li>number of lines (int)</li>
+ *   <li>number of columns (int)</li>
+ *   <li>size in bytes of each compressed column (int)</li>
+ *   <li>the compressed columns</li>
+ * </ul>
+ * An uncompressed column is the sequence of the values of the lines, each value being written as its
+ * number of UTF-8 bytes (int) followed by the bytes. Null values are stored as empty strings.
+ *
+ * @since 5.1
+ */
+public class FileSourceData {
+
+  public static final byte VERSION = 1;
+  public static final int SOURCE_INDEX = 15;
+  public static final int NB_COLUMNS = 16;
+
+  private static final int HEADER_SIZE = 1 + 4 + 4;
+
+  private final byte[] bytes;
+  private final String hash;
+
+  private FileSourceData(byte[] bytes, String hash) {
+    this.bytes = bytes;
+    this.hash = hash;
+  }
+
+  /**
+   * Encoded data, to be stored in FILE_SOURCES.BINARY_DATA
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * MD5 of the uncompressed columns, to be stored in FILE_SOURCES.DATA_HASH
+   */
+  public String getHash() {
+    return hash;
+  }
+
+  public static Builder newBuilder(int nbLines) {
+    return new Builder(nbLines);
+  }
+
+  public static class Builder {
+    private final String[][] columns;
+    private final int nbLines;
+
+    private Builder(int nbLines) {
+      this.nbLines = nbLines;
+      this.columns = new String[NB_COLUMNS][nbLines];
+    }
+
+    /**
+     * @param line starts at 1
+     * @param values values of the columns, in the order of the indices
+     */
+    public Builder setLine(int line, @Nullable String... values) {
+      for (int column = 0; column < values.length; column++) {
+        columns[column][line - 1] = values[column];
+      }
+      return this;
+    }
+
+    public FileSourceData build() {
+      try {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        byte[][] compressedColumns = new byte[NB_COLUMNS][];
+        for (int column = 0; column < NB_COLUMNS; column++) {
+          byte[] rawColumn = encodeColumn(columns[column]);
+          digest.update(rawColumn);
+          compressedColumns[column] = compress(rawColumn);
+          // free memory
+          columns[column] = null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(VERSION);
+        output.writeInt(nbLines);
+        output.writeInt(NB_COLUMNS);
+        for (byte[] compressedColumn : compressedColumns) {
+          output.writeInt(compressedColumn.length);
+        }
+        for (byte[] compressedColumn : compressedColumns) {
+          output.write(compressedColumn);
+        }
+        output.flush();
+        return new FileSourceData(bytes.toByteArray(), Hex.encodeHexString(digest.digest()));
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to encode source data", e);
+      }
+    }
+
+    private static byte[] encodeColumn(String[] values) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(bytes);
+      for (String value : values) {
+        byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(valueBytes.length);
+        output.write(valueBytes);
+      }
+      output.flush();
+      return bytes.toByteArray();
+    }
+
+    private static byte[] compress(byte[] bytes) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(bytes);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length / 4 + 16);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+          output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return output.toByteArray();
+      } finally {
+        deflater.end();
+      }
+    }
+  }
+
+  /**
+   * Number of lines of the file
+   */
+  public static int countLines(byte[] data) {
+    return readHeader(data).nbLines;
+  }
+
+  /**
+   * Decodes only the requested column.
+   * @return the values of the lines, the first element of the array being line 1
+   */
+  public static String[] decodeColumn(byte[] data, int column) {
+    Header header = readHeader(data);
+    if (column < 0 || column >= header.columnSizes.length) {
+      // column added by a later version of the format
+      return new String[header.nbLines];
+    }
+    int offset = HEADER_SIZE + 4 * header.columnSizes.length;
+    for (int i = 0; i < column; i++) {
+      offset += header.columnSizes[i];
+    }
+    try {
+      byte[] rawColumn = decompress(data, offset, header.columnSizes[column]);
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(rawColumn));
+      String[] values = new String[header.nbLines];
+      for (int line = 0; line < header.nbLines; line++) {
+        byte[] valueBytes = new byte[input.readInt()];
+        input.readFully(valueBytes);
+        values[line] = new String(valueBytes, StandardCharsets.UTF_8);
+      }
+      return values;
+    } catch (IOException | DataFormatException e) {
+      throw new IllegalStateException("Fail to decode column " + column + " of source data", e);
+    }
+  }
+
+  /**
+   * Decodes all the columns.
+   * @return the values indexed by column then by line, the first line having the index 0
+   */
+  public static String[][] decodeColumns(byte[] data) {
+    String[][] columns = new String[NB_COLUMNS][];
+    for (int column = 0; column < NB_COLUMNS; column++) {
+      columns[column] = decodeColumn(data, column);
+    }
+    return columns;
+  }
+
+  private static Header readHeader(byte[] data) {
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+      byte version = input.readByte();
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported version of source data: " + version);
+      }
+      Header header = new Header(input.readInt(), new int[input.readInt()]);
+      for (int i = 0; i < header.columnSizes.length; i++) {
+        header.columnSizes[i] = input.readInt();
+      }
+      return header;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to decode header of source data", e);
+    }
+  }
+
+  private static byte[] decompress(byte[] data, int offset, int length) throws DataFormatException {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data, offset, length);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(length * 4);
+      byte[] buffer = new byte[8192];
+      while (!inflater.finished()) {
+        int count = inflater.inflate(buffer);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new DataFormatException("Truncated column");
+        }
+        output.write(buffer, 0, count);
+      }
+      return output.toByteArray();
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static class Header {
+    private final int nbLines;
+    private final int[] columnSizes;
+
+    private Header(int nbLines, int[] columnSizes) {
+      this.nbLines = nbLines;
+      this.columnSizes = columnSizes;
+    }
+  }
+}
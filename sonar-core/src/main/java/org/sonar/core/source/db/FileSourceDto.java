@@ -46,6 +46,7 @@ public class FileSourceDto {
   private long createdAt;
   private long updatedAt;
   private String data;
+  private byte[] binaryData;
   private String lineHashes;
   private String dataHash;
   private String srcHash;
@@ -87,6 +88,20 @@ public class FileSourceDto {
     return this;
   }
 
+  /**
+   * Encoded by {@link FileSourceData}
+   * @since 5.1
+   */
+  @CheckForNull
+  public byte[] getBinaryData() {
+    return binaryData;
+  }
+
+  public FileSourceDto setBinaryData(@Nullable byte[] binaryData) {
+    this.binaryData = binaryData;
+    return this;
+  }
+
   @CheckForNull
   public String getLineHashes() {
     return lineHashes;
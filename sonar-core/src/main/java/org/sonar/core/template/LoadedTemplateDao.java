@@ -26,6 +26,8 @@ import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.DbSession;
 import org.sonar.core.persistence.MyBatis;
 
+import java.util.List;
+
 public class LoadedTemplateDao implements DaoComponent, BatchComponent, ServerComponent {
 
   private MyBatis mybatis;
@@ -47,6 +49,9 @@ public class LoadedTemplateDao implements DaoComponent, BatchComponent, ServerCo
     return session.getMapper(LoadedTemplateMapper.class).countByTypeAndKey(type, key);
   }
 
+  public List<LoadedTemplateDto> selectByType(DbSession session, String type) {
+    return session.getMapper(LoadedTemplateMapper.class).selectByType(type);
+  }
 
   public void insert(LoadedTemplateDto loadedTemplateDto) {
     SqlSession session = mybatis.openSession(false);
@@ -0,0 +1,143 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.issue.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.issue.internal.DefaultIssue;
+import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class IssueBulkWriterTest extends AbstractDaoTestCase {
+
+  UpdateConflictResolver conflictResolver = mock(UpdateConflictResolver.class);
+  DbSession session;
+
+  @Before
+  public void setUp() {
+    session = getMyBatis().openSession(true);
+  }
+
+  @After
+  public void tearDown() {
+    MyBatis.closeQuietly(session);
+  }
+
+  @Test
+  public void insert_issues_and_changes() throws Exception {
+    // flush every two rows
+    IssueBulkWriter writer = new IssueBulkWriter(session, conflictResolver, 2);
+    writer.insert(newIssue("ISSUE_1"));
+    writer.insertChange(newComment("ISSUE_1", "first comment"));
+    writer.insert(newIssue("ISSUE_2"));
+    writer.insert(newIssue("ISSUE_3"));
+    writer.insertChange(newComment("ISSUE_3", "second comment"));
+    writer.flush();
+
+    checkTable("insert_issues_and_changes", "issues", "kee", "status");
+    checkTable("insert_issues_and_changes", "issue_changes", "issue_key", "change_type", "change_data");
+  }
+
+  @Test
+  public void update_issues() throws Exception {
+    setupData("shared");
+
+    IssueBulkWriter writer = new IssueBulkWriter(session, conflictResolver);
+    writer.update(updateOf("ISSUE_A"));
+    writer.update(updateOf("ISSUE_B"));
+    writer.flush();
+
+    checkTable("update_issues", "issues", "kee", "status", "updated_at");
+    verifyZeroInteractions(conflictResolver);
+  }
+
+  @Test
+  public void update_issues_and_detect_conflicts() throws Exception {
+    setupData("shared");
+
+    IssueBulkWriter writer = new IssueBulkWriter(session, conflictResolver);
+    DefaultIssue issueA = new DefaultIssue().setKey("ISSUE_A");
+    DefaultIssue issueB = new DefaultIssue().setKey("ISSUE_B");
+    writer.updateIfBeforeSelectedDate(issueA, updateOf("ISSUE_A").setSelectedAt(1420000000000L));
+    writer.updateIfBeforeSelectedDate(issueB, updateOf("ISSUE_B").setSelectedAt(1420000000000L));
+    writer.flush();
+
+    checkTable("update_issues_and_detect_conflicts", "issues", "kee", "status", "updated_at");
+    ArgumentCaptor<Collection> conflicts = ArgumentCaptor.forClass(Collection.class);
+    verify(conflictResolver).resolve(conflicts.capture(), any(IssueMapper.class));
+    assertThat(conflicts.getValue()).containsOnly(issueB);
+  }
+
+  @Test
+  public void detect_conflicts_on_more_updates_than_batch_size() throws Exception {
+    setupData("shared");
+
+    IssueBulkWriter writer = new IssueBulkWriter(session, conflictResolver, IssueBulkWriter.CHECKED_UPDATES_PER_FLUSH * 3);
+    for (int i = 0; i < IssueBulkWriter.CHECKED_UPDATES_PER_FLUSH; i++) {
+      // unknown issues, nothing is updated but these are not conflicts
+      writer.updateIfBeforeSelectedDate(new DefaultIssue().setKey("UNKNOWN_" + i), updateOf("UNKNOWN_" + i).setSelectedAt(1420000000000L));
+    }
+    DefaultIssue issueB = new DefaultIssue().setKey("ISSUE_B");
+    writer.updateIfBeforeSelectedDate(issueB, updateOf("ISSUE_B").setSelectedAt(1420000000000L));
+    writer.flush();
+
+    ArgumentCaptor<Collection> conflicts = ArgumentCaptor.forClass(Collection.class);
+    verify(conflictResolver).resolve(conflicts.capture(), any(IssueMapper.class));
+    assertThat(conflicts.getValue()).containsOnly(issueB);
+  }
+
+  private static IssueDto newIssue(String key) {
+    return new IssueDto()
+      .setKee(key)
+      .setRuleId(200)
+      .setComponentUuid("uuid-123")
+      .setProjectUuid("uuid-100")
+      .setSeverity("INFO")
+      .setStatus("OPEN")
+      .setCreatedAt(1400000000000L)
+      .setUpdatedAt(1400000000000L);
+  }
+
+  private static IssueDto updateOf(String key) {
+    return newIssue(key)
+      .setStatus("RESOLVED")
+      .setUpdatedAt(1500000000000L);
+  }
+
+  private static IssueChangeDto newComment(String issueKey, String text) {
+    return new IssueChangeDto()
+      .setIssueKey(issueKey)
+      .setChangeType(IssueChangeDto.TYPE_COMMENT)
+      .setChangeData(text)
+      .setCreatedAt(1400000000000L)
+      .setUpdatedAt(1400000000000L);
+  }
+}
@@ -27,7 +27,11 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.rule.Severity;
 import org.sonar.api.utils.DateUtils;
 
+import java.util.Arrays;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.*;
 
 public class UpdateConflictResolverTest {
@@ -65,6 +69,29 @@ public class UpdateConflictResolverTest {
     assertThat(updatedIssue.getAssignee()).isEqualTo("arthur");
   }
 
+  @Test
+  public void should_reload_issues_and_resolve_conflicts_in_a_single_request() throws Exception {
+    DefaultIssue issueA = new DefaultIssue().setKey("ABCDE").setRuleKey(RuleKey.of("squid", "AvoidCycles")).setNew(false).setStatus(Issue.STATUS_OPEN);
+    DefaultIssue issueB = new DefaultIssue().setKey("FGHIJ").setRuleKey(RuleKey.of("squid", "AvoidCycles")).setNew(false).setStatus(Issue.STATUS_OPEN);
+
+    IssueMapper mapper = mock(IssueMapper.class);
+    when(mapper.selectByKeys(anyCollection())).thenReturn(Arrays.asList(
+      new IssueDto().setKee("ABCDE").setStatus(Issue.STATUS_OPEN).setAssignee("arthur"),
+      new IssueDto().setKee("FGHIJ").setStatus(Issue.STATUS_OPEN).setAssignee("simon")
+      ));
+
+    new UpdateConflictResolver().resolve(Arrays.asList(issueA, issueB), mapper);
+
+    verify(mapper, times(1)).selectByKeys(anyCollection());
+    verify(mapper, never()).selectByKey(anyString());
+    ArgumentCaptor<IssueDto> argument = ArgumentCaptor.forClass(IssueDto.class);
+    verify(mapper, times(2)).update(argument.capture());
+    assertThat(argument.getAllValues().get(0).getKee()).isEqualTo("ABCDE");
+    assertThat(argument.getAllValues().get(0).getAssignee()).isEqualTo("arthur");
+    assertThat(argument.getAllValues().get(1).getKee()).isEqualTo("FGHIJ");
+    assertThat(argument.getAllValues().get(1).getAssignee()).isEqualTo("simon");
+  }
+
   @Test
   public void should_keep_changes_made_by_user() throws Exception {
     DefaultIssue issue = new DefaultIssue()
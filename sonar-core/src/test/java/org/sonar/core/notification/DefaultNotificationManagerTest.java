@@ -34,6 +34,7 @@ import org.sonar.core.notification.db.NotificationQueueDto;
 import org.sonar.core.properties.PropertiesDao;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
+import java.io.IOException;
 import java.io.InvalidClassException;
 import java.util.Arrays;
 import java.util.Collection;
@@ -44,6 +45,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
@@ -124,6 +126,27 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     verify(manager, times(1)).logDeserializationIssue();
   }
 
+  @Test
+  public void get_batch_from_queue() throws Exception {
+    NotificationQueueDto dto1 = NotificationQueueDto.toNotificationQueueDto(new Notification("test1"));
+    NotificationQueueDto unreadable = mock(NotificationQueueDto.class);
+    when(unreadable.toNotification()).thenThrow(new IOException("corrupted"));
+    NotificationQueueDto dto2 = NotificationQueueDto.toNotificationQueueDto(new Notification("test2"));
+    List<NotificationQueueDto> dtos = Arrays.asList(dto1, unreadable, dto2);
+    when(notificationQueueDao.findOldest(10)).thenReturn(dtos);
+
+    List<Notification> notifications = manager.getFromQueue(10);
+
+    assertThat(notifications).extracting("type").containsExactly("test1", "test2");
+    verify(notificationQueueDao).delete(dtos);
+  }
+
+  @Test
+  public void get_empty_batch_from_queue() {
+    assertThat(manager.getFromQueue(10)).isEmpty();
+    verify(notificationQueueDao, never()).delete(any(List.class));
+  }
+
   @Test
   public void shouldFindNoRecipient() {
     assertThat(manager.findSubscribedRecipientsForDispatcher(dispatcher, 45).asMap().entrySet()).hasSize(0);
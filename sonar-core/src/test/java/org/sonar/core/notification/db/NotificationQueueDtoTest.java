@@ -0,0 +1,134 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.notification.db;
+
+import org.junit.Test;
+import org.sonar.api.notifications.Notification;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class NotificationQueueDtoTest {
+
+  @Test
+  public void write_and_read_notification() throws Exception {
+    Notification notification = new Notification("new-issues")
+      .setDefaultMessage("D\u00e9j\u00e0 vu")
+      .setFieldValue("projectKey", "struts")
+      .setFieldValue("assignee", null);
+
+    Notification read = NotificationQueueDto.toNotificationQueueDto(notification).toNotification();
+
+    assertThat(read.getClass()).isEqualTo(Notification.class);
+    assertThat(read).isEqualTo(notification);
+    assertThat(read.getDefaultMessage()).isEqualTo("D\u00e9j\u00e0 vu");
+    assertThat(read.getFieldValues()).containsKey("assignee");
+  }
+
+  @Test
+  public void use_compact_format_instead_of_java_serialization() {
+    NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(new Notification("new-issues"));
+
+    // Java serialization stream magic is 0xACED
+    assertThat(dto.getData()[0]).isEqualTo((byte) 'N');
+    assertThat(dto.getData()[3]).isEqualTo((byte) NotificationQueueDto.FORMAT_VERSION);
+  }
+
+  @Test
+  public void restore_class_of_notification() throws Exception {
+    Notification read = NotificationQueueDto.toNotificationQueueDto(new FieldsOnlyNotification().setFieldValue("key", "ABC")).toNotification();
+
+    assertThat(read).isInstanceOf(FieldsOnlyNotification.class);
+    assertThat(read.getFieldValue("key")).isEqualTo("ABC");
+  }
+
+  @Test
+  public void restore_plain_notification_if_class_can_not_be_instantiated() throws Exception {
+    Notification read = NotificationQueueDto.toNotificationQueueDto(new NoDefaultConstructorNotification("foo")).toNotification();
+
+    assertThat(read.getClass()).isEqualTo(Notification.class);
+    assertThat(read.getType()).isEqualTo("foo");
+  }
+
+  @Test
+  public void use_java_serialization_if_notification_has_its_own_attributes() throws Exception {
+    StatefulNotification notification = new StatefulNotification();
+    notification.state = "foo";
+
+    NotificationQueueDto dto = NotificationQueueDto.toNotificationQueueDto(notification);
+
+    assertThat(((StatefulNotification) dto.toNotification()).state).isEqualTo("foo");
+  }
+
+  @Test
+  public void read_notification_serialized_by_previous_versions() throws Exception {
+    Notification notification = new Notification("new-issues").setFieldValue("projectKey", "struts");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(notification);
+    output.close();
+
+    Notification read = new NotificationQueueDto().setData(bytes.toByteArray()).toNotification();
+
+    assertThat(read).isEqualTo(notification);
+  }
+
+  @Test
+  public void fail_if_unknown_format_version() throws Exception {
+    byte[] data = NotificationQueueDto.toNotificationQueueDto(new Notification("new-issues")).getData();
+    data[3] = (byte) (NotificationQueueDto.FORMAT_VERSION + 1);
+
+    try {
+      new NotificationQueueDto().setData(data).toNotification();
+      fail();
+    } catch (IOException e) {
+      assertThat(e).hasMessage("Unsupported format of notification: " + (NotificationQueueDto.FORMAT_VERSION + 1));
+    }
+  }
+
+  @Test
+  public void no_data() throws Exception {
+    assertThat(new NotificationQueueDto().toNotification()).isNull();
+  }
+
+  public static class FieldsOnlyNotification extends Notification {
+    public FieldsOnlyNotification() {
+      super("fields-only");
+    }
+  }
+
+  public static class NoDefaultConstructorNotification extends Notification {
+    public NoDefaultConstructorNotification(String type) {
+      super(type);
+    }
+  }
+
+  public static class StatefulNotification extends Notification {
+    private String state;
+
+    public StatefulNotification() {
+      super("stateful");
+    }
+  }
+}
@@ -101,6 +101,14 @@ public class PurgeDaoTest extends AbstractDaoTestCase {
     checkTables("shouldDeleteHistoricalDataOfDirectoriesAndFiles", "projects", "snapshots");
   }
 
+  @Test
+  public void purge_project_snapshots_by_batches() {
+    // 150 old analyses, purged by batches of 100 project snapshots
+    setupData("purge_project_snapshots_by_batches");
+    sut.purge(new PurgeConfiguration(new IdUuidPair(1L, "1"), new String[]{Scopes.FILE}, 30), PurgeListener.EMPTY);
+    checkTables("purge_project_snapshots_by_batches", "projects", "snapshots");
+  }
+
   @Test
   public void disable_resources_without_last_snapshot() {
     setupData("disable_resources_without_last_snapshot");
@@ -24,6 +24,7 @@ import org.junit.Test;
 import org.slf4j.Logger;
 
 import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.endsWith;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 
@@ -80,6 +81,25 @@ public class PurgeProfilerTest {
     verify(logger).info(contains("bar: 5ms"));
   }
 
+  @Test
+  public void shouldProfileThroughput() {
+    profiler.start("foo");
+    clock.sleep(100);
+    profiler.stop(200);
+
+    profiler.start("foo");
+    clock.sleep(100);
+    profiler.stop(200);
+
+    profiler.start("bar");
+    clock.sleep(5);
+    profiler.stop();
+
+    profiler.dump(205, logger);
+    verify(logger).info(contains("foo: 200ms (97%) - 400 ids, 2000 ids/s"));
+    verify(logger).info(endsWith("bar: 5ms (2%)"));
+  }
+
   private class MockedClock extends org.sonar.core.purge.PurgeProfiler.Clock {
     private long now = 0;
 
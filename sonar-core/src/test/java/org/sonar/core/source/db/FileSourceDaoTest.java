@@ -76,6 +76,30 @@ public class FileSourceDaoTest extends AbstractDaoTestCase {
     assertThat(stringParser.getResult()).isEqualTo("aef12a,alice,2014-04-25T12:34:56+0100,,class Foo");
   }
 
+  @Test
+  public void select_binary_data() throws Exception {
+    setupData("shared");
+
+    FileSourceData data = FileSourceData.newBuilder(1).setLine(1, "aef12a", "alice").build();
+    dao.update(new FileSourceDto().setId(101L).setProjectUuid("abcd").setFileUuid("ab12")
+      .setBinaryData(data.getBytes())
+      .setDataHash(data.getHash())
+      .setUpdatedAt(DateUtils.parseDateTime("2014-10-31T16:44:02+0100").getTime()));
+
+    byte[] binaryData = dao.selectBinaryData("ab12");
+    assertThat(binaryData).isEqualTo(data.getBytes());
+    assertThat(dao.select("ab12").getBinaryData()).isEqualTo(data.getBytes());
+    assertThat(dao.select("ab12").getData()).isNull();
+  }
+
+  @Test
+  public void no_binary_data_on_csv_file_or_unknown_file() throws Exception {
+    setupData("shared");
+
+    assertThat(dao.selectBinaryData("ab12")).isNull();
+    assertThat(dao.selectBinaryData("unknown")).isNull();
+  }
+
   @Test
   public void select_line_hashes() throws Exception {
     setupData("shared");
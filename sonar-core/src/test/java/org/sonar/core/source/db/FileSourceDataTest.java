@@ -0,0 +1,96 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.core.source.db;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FileSourceDataTest {
+
+  @Test
+  public void encode_and_decode_columns() throws Exception {
+    FileSourceData data = FileSourceData.newBuilder(3)
+      .setLine(1, "rev1", "simon", "2014-10-11T16:44:02+0100", "1", "4", "2", "2", "5", "3", "3", "6", "4", "0,3,a", "1,2,1", "1,3", "class Foo {")
+      .setLine(2, "rev2", "julien")
+      .setLine(3, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, "}")
+      .build();
+
+    byte[] bytes = data.getBytes();
+    assertThat(FileSourceData.countLines(bytes)).isEqualTo(3);
+    assertThat(FileSourceData.decodeColumn(bytes, FileSourceDto.CSV_INDEX_SCM_AUTHOR)).containsExactly("simon", "julien", "");
+    assertThat(FileSourceData.decodeColumn(bytes, FileSourceDto.CSV_INDEX_DUPLICATIONS)).containsExactly("1,3", "", "");
+    assertThat(FileSourceData.decodeColumn(bytes, FileSourceData.SOURCE_INDEX)).containsExactly("class Foo {", "", "}");
+
+    String[][] columns = FileSourceData.decodeColumns(bytes);
+    assertThat(columns).hasSize(FileSourceData.NB_COLUMNS);
+    assertThat(columns[FileSourceDto.CSV_INDEX_SCM_REVISION]).containsExactly("rev1", "rev2", "");
+    assertThat(columns[FileSourceDto.CSV_INDEX_OVERALL_COVERED_CONDITIONS]).containsExactly("4", "", "");
+  }
+
+  @Test
+  public void encode_utf8_values() throws Exception {
+    FileSourceData data = FileSourceData.newBuilder(1).setLine(1, "rev", "sébastien").build();
+
+    assertThat(FileSourceData.decodeColumn(data.getBytes(), FileSourceDto.CSV_INDEX_SCM_AUTHOR)).containsExactly("sébastien");
+  }
+
+  @Test
+  public void empty_file() throws Exception {
+    FileSourceData data = FileSourceData.newBuilder(0).build();
+
+    assertThat(FileSourceData.countLines(data.getBytes())).isEqualTo(0);
+    assertThat(FileSourceData.decodeColumn(data.getBytes(), FileSourceData.SOURCE_INDEX)).isEmpty();
+  }
+
+  @Test
+  public void hash_depends_only_on_values() throws Exception {
+    FileSourceData data1 = FileSourceData.newBuilder(2).setLine(1, "rev", "simon").setLine(2, "rev", "julien").build();
+    FileSourceData data2 = FileSourceData.newBuilder(2).setLine(1, "rev", "simon").setLine(2, "rev", "julien").build();
+    FileSourceData data3 = FileSourceData.newBuilder(2).setLine(1, "rev", "simon").setLine(2, "rev", "julie").build();
+
+    assertThat(data1.getHash()).hasSize(32).isEqualTo(data2.getHash());
+    assertThat(data1.getHash()).isNotEqualTo(data3.getHash());
+    // null and empty values are not distinguished
+    assertThat(FileSourceData.newBuilder(1).setLine(1, "rev", null).build().getHash())
+      .isEqualTo(FileSourceData.newBuilder(1).setLine(1, "rev", "").build().getHash());
+  }
+
+  @Test
+  public void column_added_by_a_later_version_is_empty() throws Exception {
+    FileSourceData data = FileSourceData.newBuilder(2).setLine(1, "rev").build();
+
+    assertThat(FileSourceData.decodeColumn(data.getBytes(), FileSourceData.NB_COLUMNS)).containsExactly(null, null);
+  }
+
+  @Test
+  public void fail_on_unsupported_version() throws Exception {
+    byte[] bytes = FileSourceData.newBuilder(1).setLine(1, "rev").build().getBytes();
+    bytes[0] = 42;
+
+    try {
+      FileSourceData.countLines(bytes);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("Unsupported version of source data: 42");
+    }
+  }
+}
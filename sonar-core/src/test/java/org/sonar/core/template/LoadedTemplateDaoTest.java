@@ -22,6 +22,10 @@ package org.sonar.core.template;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.AbstractDaoTestCase;
+import org.sonar.core.persistence.DbSession;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -43,6 +47,20 @@ public class LoadedTemplateDaoTest extends AbstractDaoTestCase {
     assertThat(dao.countByTypeAndKey("PROFILE", "HOTSPOTS"), is(0));
   }
 
+  @Test
+  public void shouldSelectByType() throws Exception {
+    setupData("shouldCountByTypeAndKey");
+    DbSession session = getMyBatis().openSession(false);
+    try {
+      List<LoadedTemplateDto> templates = dao.selectByType(session, "DASHBOARD");
+      assertThat(templates.size(), is(1));
+      assertThat(templates.get(0).getKey(), is("HOTSPOTS"));
+      assertThat(dao.selectByType(session, "PROFILE").isEmpty(), is(true));
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   @Test
   public void shouldInsert() throws Exception {
     setupData("shouldInsert");
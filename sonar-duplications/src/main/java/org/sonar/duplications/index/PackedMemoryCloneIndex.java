@@ -40,6 +40,9 @@ import java.util.List;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Queries can be executed concurrently, as long as no more blocks are inserted.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -54,7 +57,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * Indicates that index requires sorting to perform queries.
    */
-  private boolean sorted;
+  private volatile boolean sorted;
 
   /**
    * Current number of blocks in index.
@@ -66,8 +69,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -96,15 +97,12 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getByResourceId(String resourceId) {
     ensureSorted();
 
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    int index = lowerBoundByResourceId(resourceId);
 
+    Block.Builder blockBuilder = Block.builder();
     List<Block> result = Lists.newArrayList();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
+    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[index]], resourceId) == 0) {
+      int realIndex = resourceIdsIndex[index];
       // extract block (note that there is no need to extract resourceId)
       int offset = realIndex * blockInts;
       int[] hash = new int[hashInts];
@@ -127,7 +125,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
       result.add(block);
 
       index++;
-      realIndex = resourceIdsIndex[index];
     }
     return result;
   }
@@ -144,18 +141,15 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
 
-    int index = DataUtils.binarySearch(byBlockHash);
+    int index = lowerBoundByHash(hash);
 
+    Block.Builder blockBuilder = Block.builder();
     List<Block> result = Lists.newArrayList();
-    while (index < size && !isLessByHash(size, index)) {
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
-      offset = index * blockInts + hashInts;
+      int offset = index * blockInts + hashInts;
       int indexInFile = blockData[offset++];
       int firstLineNumber = blockData[offset++];
       int lastLineNumber = blockData[offset++];
@@ -227,22 +221,71 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   }
 
   /**
-   * Performs sorting, if necessary.
+   * Performs sorting, if necessary. Concurrent queries wait for the first one to sort the index.
    */
   private void ensureSorted() {
     if (sorted) {
       return;
     }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
+      ensureCapacity();
 
-    ensureCapacity();
+      DataUtils.sort(byBlockHash);
+      for (int i = 0; i < size; i++) {
+        resourceIdsIndex[i] = i;
+      }
+      DataUtils.sort(byResourceId);
+
+      sorted = true;
+    }
+  }
 
-    DataUtils.sort(byBlockHash);
-    for (int i = 0; i < size; i++) {
-      resourceIdsIndex[i] = i;
+  /**
+   * Binary search of the first block with given hash, without modification of the index
+   * (unlike {@link DataUtils#binarySearch(DataUtils.Sortable)}), so that it can be executed concurrently.
+   */
+  private int lowerBoundByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
     }
-    DataUtils.sort(byResourceId);
+    return lower;
+  }
 
-    sorted = true;
+  private int lowerBoundByResourceId(String resourceId) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  private int compareHash(int i, int[] hash) {
+    int i2 = i * blockInts;
+    for (int k = 0; k < hashInts; k++, i2++) {
+      if (blockData[i2] < hash[k]) {
+        return -1;
+      }
+      if (blockData[i2] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
   }
 
   private boolean isLessByHash(int i, int j) {
@@ -19,12 +19,18 @@
  */
 package org.sonar.duplications.index;
 
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
@@ -109,6 +115,36 @@ public class PackedMemoryCloneIndexTest {
     index.getBySequenceHash(new ByteArray(1L));
   }
 
+  @Test
+  public void should_support_concurrent_queries() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("resource" + (i % 10), i % 100));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> futures = Lists.newArrayList();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            boolean ok = true;
+            for (int i = 0; i < 100; i++) {
+              ok &= index.getBySequenceHash(new ByteArray((long) i)).size() == 10;
+              ok &= index.getByResourceId("resource" + (i % 10)).size() == 100;
+            }
+            return ok;
+          }
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertThat(future.get(), is(true));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   private static Block newBlock(String resourceId, long hash) {
     return Block.builder()
         .setResourceId(resourceId)
@@ -0,0 +1,211 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable copy of the outgoing edges of a set of vertices, stored in compressed sparse rows:
+ * vertices are identified by their index and the targets of the edges of vertex <code>i</code> are
+ * <code>targets[offsets[i]]</code> to <code>targets[offsets[i + 1] - 1]</code>. Edges to vertices
+ * out of the set are ignored.
+ */
+public class CompactDirectedGraph<V> {
+
+  private final List<V> vertices;
+  private final Map<V, Integer> indexes;
+  private final int[] offsets;
+  private final int[] targets;
+  private final Edge[] edges;
+
+  public CompactDirectedGraph(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
+    this.vertices = new ArrayList<V>(new LinkedHashSet<V>(vertices));
+    this.indexes = new HashMap<V, Integer>(this.vertices.size() * 2);
+    for (int i = 0; i < this.vertices.size(); i++) {
+      indexes.put(this.vertices.get(i), i);
+    }
+
+    int size = this.vertices.size();
+    this.offsets = new int[size + 1];
+    List<Edge> keptEdges = new ArrayList<Edge>();
+    List<Integer> keptTargets = new ArrayList<Integer>();
+    for (int i = 0; i < size; i++) {
+      offsets[i] = keptEdges.size();
+      for (Edge<V> edge : graph.getOutgoingEdges(this.vertices.get(i))) {
+        Integer target = indexes.get(edge.getTo());
+        if (target != null) {
+          keptEdges.add(edge);
+          keptTargets.add(target);
+        }
+      }
+    }
+    offsets[size] = keptEdges.size();
+    this.edges = keptEdges.toArray(new Edge[keptEdges.size()]);
+    this.targets = new int[keptTargets.size()];
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = keptTargets.get(i);
+    }
+  }
+
+  public int getVertexCount() {
+    return vertices.size();
+  }
+
+  public int getEdgeCount() {
+    return edges.length;
+  }
+
+  public V getVertex(int index) {
+    return vertices.get(index);
+  }
+
+  /**
+   * @return the index of the vertex, or -1 if the vertex is not part of the graph
+   */
+  public int indexOf(V vertex) {
+    Integer index = indexes.get(vertex);
+    return index == null ? -1 : index;
+  }
+
+  /**
+   * Strongly connected components which contain at least one cycle, computed with Tarjan's algorithm
+   * (without recursion). Components are ordered by their first vertex, and vertices of a component
+   * keep the order of the vertices given to the constructor.
+   *
+   * @param edgesToExclude edges considered as removed from the graph
+   */
+  public List<Set<V>> getCyclicComponents(Set<Edge> edgesToExclude) {
+    int size = vertices.size();
+    boolean[] excluded = new boolean[edges.length];
+    if (!edgesToExclude.isEmpty()) {
+      for (int e = 0; e < edges.length; e++) {
+        excluded[e] = edgesToExclude.contains(edges[e]);
+      }
+    }
+
+    int[] component = tarjan(excluded);
+
+    // a component with a single vertex is cyclic only if the vertex has an edge to itself
+    int[] componentSizes = new int[size];
+    boolean[] cyclic = new boolean[size];
+    for (int v = 0; v < size; v++) {
+      componentSizes[component[v]]++;
+      for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+        if (!excluded[e] && targets[e] == v) {
+          cyclic[component[v]] = true;
+        }
+      }
+    }
+
+    List<Set<V>> result = new ArrayList<Set<V>>();
+    Map<Integer, Set<V>> componentVertices = new HashMap<Integer, Set<V>>();
+    for (int v = 0; v < size; v++) {
+      int c = component[v];
+      if (componentSizes[c] > 1 || cyclic[c]) {
+        Set<V> set = componentVertices.get(c);
+        if (set == null) {
+          set = new LinkedHashSet<V>();
+          componentVertices.put(c, set);
+          result.add(set);
+        }
+        set.add(vertices.get(v));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the id of the strongly connected component of each vertex
+   */
+  private int[] tarjan(boolean[] excluded) {
+    int size = vertices.size();
+    int[] index = new int[size];
+    Arrays.fill(index, -1);
+    int[] lowLink = new int[size];
+    int[] component = new int[size];
+    boolean[] onStack = new boolean[size];
+    int[] stack = new int[size];
+    int stackSize = 0;
+    // explicit call stack: vertex and position in its edges
+    int[] callStack = new int[size];
+    int[] nextEdge = new int[size];
+    int callStackSize = 0;
+    int counter = 0;
+    int componentCount = 0;
+
+    for (int root = 0; root < size; root++) {
+      if (index[root] != -1) {
+        continue;
+      }
+      index[root] = counter;
+      lowLink[root] = counter;
+      counter++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      nextEdge[root] = offsets[root];
+      callStack[callStackSize++] = root;
+
+      while (callStackSize > 0) {
+        int v = callStack[callStackSize - 1];
+        if (nextEdge[v] < offsets[v + 1]) {
+          int e = nextEdge[v]++;
+          if (excluded[e]) {
+            continue;
+          }
+          int w = targets[e];
+          if (index[w] == -1) {
+            index[w] = counter;
+            lowLink[w] = counter;
+            counter++;
+            stack[stackSize++] = w;
+            onStack[w] = true;
+            nextEdge[w] = offsets[w];
+            callStack[callStackSize++] = w;
+          } else if (onStack[w]) {
+            lowLink[v] = Math.min(lowLink[v], index[w]);
+          }
+        } else {
+          callStackSize--;
+          if (callStackSize > 0) {
+            int parent = callStack[callStackSize - 1];
+            lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+          }
+          if (lowLink[v] == index[v]) {
+            int w;
+            do {
+              w = stack[--stackSize];
+              onStack[w] = false;
+              component[w] = componentCount;
+            } while (w != v);
+            componentCount++;
+          }
+        }
+      }
+    }
+    return component;
+  }
+}
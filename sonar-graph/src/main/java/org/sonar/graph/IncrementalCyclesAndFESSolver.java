@@ -19,17 +19,30 @@
  */
 package org.sonar.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Every cycle is contained in a strongly connected component of the graph, so cycles and feedback edges
+ * are searched independently in each component. At each iteration, cycles are searched only in the
+ * components which are still cyclic once the current feedback edges are removed, and the feedback edge
+ * set is computed again only for the components in which new cycles have been found.
+ */
 public class IncrementalCyclesAndFESSolver<V> {
 
   private Set<Cycle> cycles = new LinkedHashSet<Cycle>();
   private long searchCyclesCalls = 0;
   private static final int DEFAULT_MAX_SEARCH_DEPTH_AT_FIRST = 3;
   private static final int DEFAULT_MAX_CYCLES_TO_FOUND_BY_ITERATION = 100;
-  private MinimumFeedbackEdgeSetSolver solver;
+  private static final int MIN_LOOPS_PER_COMPONENT = 10000;
+  private final List<Component> components = new ArrayList<Component>();
+  private final Map<V, Component> componentsByVertex = new HashMap<V, Component>();
   private int iterations = 0;
 
   public IncrementalCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices) {
@@ -39,35 +52,99 @@ public class IncrementalCyclesAndFESSolver<V> {
   public IncrementalCyclesAndFESSolver(DirectedGraphAccessor<V, ? extends Edge> graph, Collection<V> vertices, int maxSearchDepthAtFirst,
     int maxCyclesToFoundByIteration) {
 
+    CompactDirectedGraph<V> compactGraph = new CompactDirectedGraph<V>(graph, vertices);
+    for (Set<V> componentVertices : compactGraph.getCyclicComponents(Collections.<Edge>emptySet())) {
+      Component component = new Component(componentVertices);
+      components.add(component);
+      for (V vertex : componentVertices) {
+        componentsByVertex.put(vertex, component);
+      }
+    }
+
     iterations++;
-    CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, vertices);
-    cycleDetector.detectCyclesWithMaxSearchDepth(maxSearchDepthAtFirst);
-    searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
-    cycles.addAll(cycleDetector.getCycles());
-    solver = new MinimumFeedbackEdgeSetSolver(cycles);
-    Set<Edge> edgesToExclude = solver.getEdges();
+    for (Component component : components) {
+      CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, component.vertices);
+      cycleDetector.detectCyclesWithMaxSearchDepth(maxSearchDepthAtFirst);
+      searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
+      addCycles(cycleDetector.getCycles());
+    }
+    solveModifiedComponents();
 
+    boolean newCycles;
     do {
       iterations++;
-      cycleDetector = new CycleDetector<V>(graph, vertices, edgesToExclude);
-      cycleDetector.detectCyclesWithUpperLimit(maxCyclesToFoundByIteration);
-      searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
-      cycles.addAll(cycleDetector.getCycles());
-      solver = new MinimumFeedbackEdgeSetSolver(cycles);
-      edgesToExclude = solver.getEdges();
-    } while (!cycleDetector.getCycles().isEmpty());
+      newCycles = false;
+      Set<Edge> edgesToExclude = getFeedbackEdgeSet();
+      int cyclesToFound = maxCyclesToFoundByIteration;
+      for (Set<V> componentVertices : compactGraph.getCyclicComponents(edgesToExclude)) {
+        CycleDetector<V> cycleDetector = new CycleDetector<V>(graph, componentVertices, edgesToExclude);
+        cycleDetector.detectCyclesWithUpperLimit(cyclesToFound);
+        searchCyclesCalls += cycleDetector.getSearchCyclesCalls();
+        addCycles(cycleDetector.getCycles());
+        newCycles |= !cycleDetector.getCycles().isEmpty();
+        cyclesToFound -= cycleDetector.getCycles().size();
+        if (cyclesToFound <= 0) {
+          break;
+        }
+      }
+      solveModifiedComponents();
+    } while (newCycles);
+  }
+
+  private void addCycles(Set<Cycle> newCycles) {
+    for (Cycle cycle : newCycles) {
+      if (cycles.add(cycle)) {
+        // edges of cycles are edges of the graph, whose vertices are of type V
+        @SuppressWarnings("unchecked")
+        V vertex = (V) cycle.getEdges()[0].getFrom();
+        Component component = componentsByVertex.get(vertex);
+        component.cycles.add(cycle);
+        component.modified = true;
+      }
+    }
+  }
+
+  private void solveModifiedComponents() {
+    // the loops of the search of the minimum feedback edge set are shared between components, with a minimum per
+    // component: each pass on modified components costs at most max(1000000, 10000 * number of components) loops
+    int maxLoopsPerComponent = Math.max(MIN_LOOPS_PER_COMPONENT, MinimumFeedbackEdgeSetSolver.DEFAULT_MAXIMUM_NUMBER_OF_LOOPS / Math.max(components.size(), 1));
+    for (Component component : components) {
+      if (component.modified) {
+        component.solver = new MinimumFeedbackEdgeSetSolver(component.cycles, maxLoopsPerComponent,
+          MinimumFeedbackEdgeSetSolver.MAXIMUM_NUMBER_OF_CYCLE_THAT_CAN_BE_HANDLED);
+        component.modified = false;
+      }
+    }
   }
 
   public int getWeightOfFeedbackEdgeSet() {
-    return solver.getWeightOfFeedbackEdgeSet();
+    int weight = 0;
+    for (Component component : components) {
+      if (component.solver != null) {
+        weight += component.solver.getWeightOfFeedbackEdgeSet();
+      }
+    }
+    return weight;
   }
 
   public int getNumberOfLoops() {
-    return solver.getNumberOfLoops();
+    int loops = 0;
+    for (Component component : components) {
+      if (component.solver != null) {
+        loops += component.solver.getNumberOfLoops();
+      }
+    }
+    return loops;
   }
 
   public Set<Edge> getFeedbackEdgeSet() {
-    return solver.getEdges();
+    Set<Edge> edges = new LinkedHashSet<Edge>();
+    for (Component component : components) {
+      if (component.solver != null) {
+        edges.addAll(component.solver.getEdges());
+      }
+    }
+    return edges;
   }
 
   public Set<Cycle> getCycles() {
@@ -85,4 +162,15 @@ public class IncrementalCyclesAndFESSolver<V> {
   public int getIterations() {
     return iterations;
   }
+
+  private class Component {
+    private final Set<V> vertices;
+    private final Set<Cycle> cycles = new LinkedHashSet<Cycle>();
+    private MinimumFeedbackEdgeSetSolver solver;
+    private boolean modified = false;
+
+    Component(Set<V> vertices) {
+      this.vertices = vertices;
+    }
+  }
 }
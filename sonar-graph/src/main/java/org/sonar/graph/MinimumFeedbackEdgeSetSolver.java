@@ -30,8 +30,8 @@ public class MinimumFeedbackEdgeSetSolver {
   private int minimumFeedbackEdgesWeight = Integer.MAX_VALUE;
   private final int cyclesNumber;
   private final int maxNumberCyclesForSearchingMinimumFeedback;
-  private static final int DEFAULT_MAXIMUM_NUMBER_OF_LOOPS = 1000000;
-  private static final int MAXIMUM_NUMBER_OF_CYCLE_THAT_CAN_BE_HANDLED = 1500;
+  static final int DEFAULT_MAXIMUM_NUMBER_OF_LOOPS = 1000000;
+  static final int MAXIMUM_NUMBER_OF_CYCLE_THAT_CAN_BE_HANDLED = 1500;
   private final int maximumNumberOfLoops;
 
   public int getNumberOfLoops() {
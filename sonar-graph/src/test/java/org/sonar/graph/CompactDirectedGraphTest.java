@@ -0,0 +1,92 @@
+/*
+ * SonarQube, open source software quality management tool.
+ * Copyright (C) 2008-2014 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * SonarQube is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * SonarQube is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.graph;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompactDirectedGraphTest {
+
+  @Test
+  public void ignore_edges_to_other_vertices() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("C", "D");
+
+    CompactDirectedGraph<String> compactGraph = new CompactDirectedGraph<String>(graph, Arrays.asList("A", "B", "C"));
+
+    assertThat(compactGraph.getVertexCount()).isEqualTo(3);
+    assertThat(compactGraph.getEdgeCount()).isEqualTo(2);
+    assertThat(compactGraph.getVertex(1)).isEqualTo("B");
+    assertThat(compactGraph.indexOf("C")).isEqualTo(2);
+    assertThat(compactGraph.indexOf("D")).isEqualTo(-1);
+  }
+
+  @Test
+  public void find_cyclic_components() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+    graph.addEdge("C", "D");
+    graph.addEdge("D", "E").addEdge("E", "D");
+    graph.addEdge("E", "F");
+    graph.addEdge("G", "G");
+
+    CompactDirectedGraph<String> compactGraph = new CompactDirectedGraph<String>(graph, graph.getVertices());
+    List<Set<String>> components = compactGraph.getCyclicComponents(Collections.<Edge>emptySet());
+
+    assertThat(components).hasSize(3);
+    assertThat(components.get(0)).containsExactly("A", "B", "C");
+    assertThat(components.get(1)).containsExactly("D", "E");
+    assertThat(components.get(2)).containsExactly("G");
+  }
+
+  @Test
+  public void exclude_edges() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("C", "A");
+    graph.addEdge("B", "A");
+
+    CompactDirectedGraph<String> compactGraph = new CompactDirectedGraph<String>(graph, graph.getVertices());
+
+    Set<Edge> excluded = Collections.<Edge>singleton(graph.getEdge("C", "A"));
+    List<Set<String>> components = compactGraph.getCyclicComponents(excluded);
+    assertThat(components).hasSize(1);
+    assertThat(components.get(0)).containsExactly("A", "B");
+
+    excluded = new HashSet<Edge>(Arrays.<Edge>asList(graph.getEdge("C", "A"), graph.getEdge("B", "A")));
+    assertThat(compactGraph.getCyclicComponents(excluded)).isEmpty();
+  }
+
+  @Test
+  public void acyclic_graph() {
+    DirectedGraph<String, StringEdge> graph = DirectedGraph.createStringDirectedGraph();
+    graph.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C");
+
+    CompactDirectedGraph<String> compactGraph = new CompactDirectedGraph<String>(graph, graph.getVertices());
+
+    assertThat(compactGraph.getCyclicComponents(Collections.<Edge>emptySet())).isEmpty();
+  }
+}
@@ -69,4 +69,28 @@ public class IncrementalCyclesAndFESSolverTest {
     cyclesAndFESSolver.getFeedbackEdgeSet();
   }
 
+  @Test
+  public void solve_each_strongly_connected_component() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B", 3).addEdge("B", "A", 1);
+    dcg.addEdge("B", "C");
+    dcg.addEdge("C", "D", 2).addEdge("D", "E", 5).addEdge("E", "C", 4);
+
+    IncrementalCyclesAndFESSolver<String> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(cyclesAndFESSolver.getCycles().size(), is(2));
+    assertThat(cyclesAndFESSolver.getWeightOfFeedbackEdgeSet(), is(3));
+    assertThat(cyclesAndFESSolver.getFeedbackEdgeSet().contains(dcg.getEdge("B", "A")), is(true));
+    assertThat(cyclesAndFESSolver.getFeedbackEdgeSet().contains(dcg.getEdge("C", "D")), is(true));
+  }
+
+  @Test
+  public void acyclic_graph() {
+    DirectedGraph<String, StringEdge> dcg = DirectedGraph.createStringDirectedGraph();
+    dcg.addEdge("A", "B").addEdge("B", "C").addEdge("A", "C");
+
+    IncrementalCyclesAndFESSolver<String> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<String>(dcg, dcg.getVertices());
+    assertThat(cyclesAndFESSolver.isAcyclicGraph(), is(true));
+    assertThat(cyclesAndFESSolver.getFeedbackEdgeSet().isEmpty(), is(true));
+    assertThat(cyclesAndFESSolver.getWeightOfFeedbackEdgeSet(), is(0));
+  }
 }
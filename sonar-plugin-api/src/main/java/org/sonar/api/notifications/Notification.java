@@ -25,6 +25,7 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -120,6 +121,15 @@ public class Notification implements Serializable {
     return fields.get(field);
   }
 
+  /**
+   * Returns all the fields of the notification, including the default message.
+   *
+   * @since 5.1
+   */
+  public Map<String, String> getFieldValues() {
+    return Collections.unmodifiableMap(fields);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (!(obj instanceof Notification)) {
@@ -64,8 +64,10 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
    */
   protected ComponentContainer(ComponentContainer parent) {
     this.parent = parent;
-    this.pico = parent.pico.makeChildContainer();
-    this.parent.child = this;
+    synchronized (parent) {
+      this.pico = parent.pico.makeChildContainer();
+      this.parent.child = this;
+    }
     this.propertyDefinitions = parent.propertyDefinitions;
     this.componentKeys = new ComponentKeys();
     addSingleton(this);
@@ -130,7 +132,7 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     } finally {
       removeChild();
       if (parent != null) {
-        parent.removeChild();
+        parent.removeChild(this);
       }
     }
     return this;
@@ -217,7 +219,7 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return pico.getComponents(tClass);
   }
 
-  public ComponentContainer removeChild() {
+  public synchronized ComponentContainer removeChild() {
     if (child != null) {
       pico.removeChildContainer(child.pico);
       child = null;
@@ -225,6 +227,19 @@ public class ComponentContainer implements BatchComponent, ServerComponent {
     return this;
   }
 
+  /**
+   * Unlike {@link #removeChild()}, removes the given child even if other children were created
+   * after it. Children can be created and removed concurrently.
+   * @since 5.1
+   */
+  public synchronized ComponentContainer removeChild(ComponentContainer childToBeRemoved) {
+    pico.removeChildContainer(childToBeRemoved.pico);
+    if (child == childToBeRemoved) {
+      child = null;
+    }
+    return this;
+  }
+
   public ComponentContainer createChild() {
     return new ComponentContainer(this);
   }